@@ -0,0 +1,444 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.MaeException;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.AgreementBootstrap;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.ConfidenceInterval;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.SpanAligner;
+import edu.brandeis.cs.nlp.mae.database.InMemoryDriverImpl;
+import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
+import edu.brandeis.cs.nlp.mae.io.DTDLoader;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+import edu.brandeis.cs.nlp.mae.util.MappedSet;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.*;
+
+/**
+ * Headless entry point of IAA calculation, for batch runs on machines
+ * without a display. Reads an annotation scheme into a private in-memory
+ * database, computes all requested agreements on a worker pool, and writes
+ * one record per metric, tag type and attribute to standard output as soon
+ * as each metric is done.
+ *
+ * A target spec has one target per line, as whitespace separated
+ * {@code scope metric tagType [attType ...]}, where scope is either
+ * {@code local} or {@code global} and metric is one of {@code alphau},
+ * {@code multipi} and {@code multikappa}. Attribute types are ignored for
+ * global targets. Lines starting with {@code #} are ignored.
+ */
+public class MaeAgreementCLI {
+
+    static final String USAGE = "usage: MaeAgreementCLI --dtd FILE --dataset DIR (--spec FILE | --target SPEC)...\n" +
+            "                       [--format tsv|json] [--threads N] [--cache DIR]\n" +
+            "                       [--bootstrap N [--confidence C] [--seed S]]\n" +
+            "                       [--span-match exact|overlap [--min-overlap R]]\n" +
+            "  --dtd FILE       annotation scheme of the dataset\n" +
+            "  --dataset DIR    directory of annotation files\n" +
+            "  --spec FILE      file of targets, one \"scope metric tagType [attType ...]\" per line\n" +
+            "  --target SPEC    a single target, can be repeated\n" +
+            "  --format FORMAT  tsv (default) or json, one JSON object per line\n" +
+            "  --threads N      number of worker threads, defaults to number of processors\n" +
+            "  --cache DIR      directory to keep per-document results between runs\n" +
+            "  --bootstrap N    estimate confidence intervals from N document resamples\n" +
+            "  --confidence C   confidence level of intervals, defaults to 0.95\n" +
+            "  --seed S         random seed of resampling, for reproducible intervals\n" +
+            "  --span-match M   exact (default) or overlap, to align spans of labeling metrics\n" +
+            "  --min-overlap R  with overlap matching, minimum ratio of shared characters, defaults to 0\n";
+
+    static final String SCOPE_LOCAL = "local";
+    static final String SCOPE_GLOBAL = "global";
+    static final Map<String, String> METRIC_KEYS = new LinkedHashMap<String, String>() {{
+        put("alphau", ALPHAU_CALC_STRING);
+        put("multipi", MULTIPI_CALC_STRING);
+        put("multikappa", MULTIKAPPA_CALC_STRING);
+    }};
+
+    public static void main(String[] args) {
+        // nothing here draws, and nothing should try to reach a display
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command line.
+     *
+     * @return exit status, 0 on success, 1 on failed calculation, 2 on invalid arguments
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return 2;
+        }
+
+        MaeDriverI driver = null;
+        try {
+            // only the schema is read into the driver, no annotation
+            driver = new InMemoryDriverImpl();
+            new DTDLoader(driver).read(options.dtd);
+
+            Map<String, MappedSet<String, String>> global = new LinkedHashMap<>();
+            Map<String, MappedSet<String, String>> local = new LinkedHashMap<>();
+            readTargets(options.targets, driver, global, local);
+
+            MaeAgreementMain calc = new MaeAgreementMain(driver);
+            calc.setParallelism(options.threads);
+            calc.setStudyCacheDir(options.cacheDir);
+            calc.setSpanAligner(options.overlap ? SpanAligner.overlap(options.minOverlap) : SpanAligner.EXACT);
+            if (options.resamples > 0) {
+                calc.setBootstrap(new AgreementBootstrap(options.resamples, options.confidence, options.seed));
+            }
+            calc.loadAnnotationFiles(options.dataset);
+            boolean withIntervals = options.resamples > 0;
+            AgreementWriter writer = options.json ? new JsonWriter(out, withIntervals) : new TsvWriter(out, withIntervals);
+            writer.writeHeader();
+            calc.calculateAgreements(global, local, writer);
+            calc.setParallelism(1);
+
+            Map<String, Integer> missingCounts = calc.getMissingAnnotationCounts();
+            for (String annotator : missingCounts.keySet()) {
+                if (missingCounts.get(annotator) > 0) {
+                    err.println(String.format("warning: %s has no annotation of %d document(s)",
+                            annotator, missingCounts.get(annotator)));
+                }
+            }
+            Map<String, String> parseWarnings = calc.getParseWarnings();
+            for (String fileName : parseWarnings.keySet()) {
+                err.println(String.format("warning: %s: %s", fileName, parseWarnings.get(fileName)));
+            }
+            return out.checkError() ? 1 : 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 2;
+        } catch (MaeException | SAXException | IOException e) {
+            err.println("failed to calculate agreements: " + e.getMessage());
+            return 1;
+        } finally {
+            if (driver != null) {
+                try {
+                    driver.destroy();
+                } catch (MaeException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads target spec lines into maps from metric type to target tag types
+     * and attribute types, as taken by {@link MaeAgreementMain}.
+     */
+    static void readTargets(List<String> specLines, MaeDriverI driver,
+                            Map<String, MappedSet<String, String>> global,
+                            Map<String, MappedSet<String, String>> local) throws MaeException {
+        Set<String> tagTypeNames = new HashSet<>();
+        for (TagType tagType : driver.getAllTagTypes()) {
+            tagTypeNames.add(tagType.getName());
+        }
+        for (String line : specLines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length < 3) {
+                throw new IllegalArgumentException("invalid target, expected \"scope metric tagType [attType ...]\": " + line);
+            }
+            Map<String, MappedSet<String, String>> scope;
+            switch (fields[0].toLowerCase()) {
+                case SCOPE_LOCAL:
+                    scope = local;
+                    break;
+                case SCOPE_GLOBAL:
+                    scope = global;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown scope: " + fields[0]);
+            }
+            String metricType = METRIC_KEYS.get(fields[1].toLowerCase());
+            if (metricType == null) {
+                throw new IllegalArgumentException("unknown metric: " + fields[1]);
+            }
+            String tagTypeName = fields[2];
+            if (!tagTypeNames.contains(tagTypeName)) {
+                throw new IllegalArgumentException("unknown tag type: " + tagTypeName);
+            }
+            MappedSet<String, String> targets = scope.computeIfAbsent(metricType, key -> new MappedSet<>());
+            List<String> attTypeNames = scope == local ?
+                    Arrays.asList(fields).subList(3, fields.length) : Collections.emptyList();
+            targets.putCollection(tagTypeName, attTypeNames);
+        }
+    }
+
+    static String getMetricKey(String metricType) {
+        for (String key : METRIC_KEYS.keySet()) {
+            if (METRIC_KEYS.get(key).equals(metricType)) {
+                return key;
+            }
+        }
+        return metricType;
+    }
+
+    static class Options {
+        File dtd;
+        File dataset;
+        File cacheDir;
+        List<String> targets = new ArrayList<>();
+        boolean json = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int resamples = 0;
+        double confidence = AgreementBootstrap.DEFAULT_CONFIDENCE;
+        long seed = AgreementBootstrap.DEFAULT_SEED;
+        boolean overlap = false;
+        double minOverlap = 0.0;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--dtd":
+                        options.dtd = new File(value);
+                        break;
+                    case "--dataset":
+                        options.dataset = new File(value);
+                        break;
+                    case "--cache":
+                        options.cacheDir = new File(value);
+                        break;
+                    case "--target":
+                        options.targets.add(value);
+                        break;
+                    case "--spec":
+                        try {
+                            options.targets.addAll(Files.readAllLines(new File(value).toPath(), StandardCharsets.UTF_8));
+                        } catch (IOException e) {
+                            throw new IllegalArgumentException("cannot read target spec: " + value);
+                        }
+                        break;
+                    case "--format":
+                        if (!value.equals("json") && !value.equals("tsv")) {
+                            throw new IllegalArgumentException("unknown format: " + value);
+                        }
+                        options.json = value.equals("json");
+                        break;
+                    case "--threads":
+                        try {
+                            options.threads = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid number of threads: " + value);
+                        }
+                        break;
+                    case "--bootstrap":
+                        try {
+                            options.resamples = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid number of resamples: " + value);
+                        }
+                        break;
+                    case "--confidence":
+                        try {
+                            options.confidence = Double.parseDouble(value);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid confidence level: " + value);
+                        }
+                        if (!(options.confidence > 0.0 && options.confidence < 1.0)) {
+                            throw new IllegalArgumentException("confidence level must be between 0 and 1: " + value);
+                        }
+                        break;
+                    case "--seed":
+                        try {
+                            options.seed = Long.parseLong(value);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid seed: " + value);
+                        }
+                        break;
+                    case "--span-match":
+                        if (!value.equals("exact") && !value.equals("overlap")) {
+                            throw new IllegalArgumentException("unknown span matching: " + value);
+                        }
+                        options.overlap = value.equals("overlap");
+                        break;
+                    case "--min-overlap":
+                        try {
+                            options.minOverlap = Double.parseDouble(value);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid overlap ratio: " + value);
+                        }
+                        if (!(options.minOverlap >= 0.0 && options.minOverlap <= 1.0)) {
+                            throw new IllegalArgumentException("overlap ratio must be between 0 and 1: " + value);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + option);
+                }
+            }
+            if (options.dtd == null || !options.dtd.isFile()) {
+                throw new IllegalArgumentException("DTD file is not given or not found");
+            }
+            if (options.dataset == null || !options.dataset.isDirectory()) {
+                throw new IllegalArgumentException("dataset directory is not given or not found");
+            }
+            if (options.resamples < 0) {
+                throw new IllegalArgumentException("number of resamples must not be negative");
+            }
+            if (options.targets.isEmpty()) {
+                throw new IllegalArgumentException("no targets are given");
+            }
+            return options;
+        }
+    }
+
+    /**
+     * Writes one record per agreement value. For global agreements, the tag
+     * type field holds all target tag types joined by commas. With intervals,
+     * each record also has lower and upper bounds of its confidence interval.
+     */
+    static abstract class AgreementWriter implements MaeAgreementMain.AgreementListener {
+
+        final PrintStream out;
+        final boolean withIntervals;
+
+        AgreementWriter(PrintStream out, boolean withIntervals) {
+            this.out = out;
+            this.withIntervals = withIntervals;
+        }
+
+        void writeHeader() {
+        }
+
+        /**
+         * @param interval - confidence interval of the agreement, null when not estimated
+         */
+        abstract void writeRecord(String scope, String metric, String tagType, String attType, double agreement, ConfidenceInterval interval);
+
+        @Override
+        public void agreementsCalculated(String metricType, boolean local, MappedSet<String, String> targetTagsAndAtts,
+                                         Map<String, Double> agreements, Map<String, ConfidenceInterval> intervals) {
+            String scope = local ? SCOPE_LOCAL : SCOPE_GLOBAL;
+            String metric = getMetricKey(metricType);
+            for (String agreementKey : agreements.keySet()) {
+                String tagType;
+                String attType;
+                if (local) {
+                    int delim = agreementKey.indexOf(TAG_ATT_DELIM);
+                    tagType = agreementKey.substring(0, delim);
+                    attType = agreementKey.substring(delim + TAG_ATT_DELIM.length());
+                } else {
+                    tagType = String.join(",", targetTagsAndAtts.keyList());
+                    attType = SPAN_ATT;
+                }
+                writeRecord(scope, metric, tagType, attType, agreements.get(agreementKey), intervals.get(agreementKey));
+            }
+            out.flush();
+        }
+    }
+
+    static class TsvWriter extends AgreementWriter {
+
+        TsvWriter(PrintStream out, boolean withIntervals) {
+            super(out, withIntervals);
+        }
+
+        @Override
+        void writeHeader() {
+            out.println("scope\tmetric\ttagType\tattType\tagreement" + (withIntervals ? "\tlower\tupper" : ""));
+        }
+
+        @Override
+        void writeRecord(String scope, String metric, String tagType, String attType, double agreement, ConfidenceInterval interval) {
+            String record = String.join("\t", scope, metric, tagType, attType, Double.toString(agreement));
+            if (withIntervals) {
+                record += interval == null ? "\tNaN\tNaN" :
+                        "\t" + Double.toString(interval.getLower()) + "\t" + Double.toString(interval.getUpper());
+            }
+            out.println(record);
+        }
+    }
+
+    static class JsonWriter extends AgreementWriter {
+
+        JsonWriter(PrintStream out, boolean withIntervals) {
+            super(out, withIntervals);
+        }
+
+        @Override
+        void writeRecord(String scope, String metric, String tagType, String attType, double agreement, ConfidenceInterval interval) {
+            String intervalFields = "";
+            if (withIntervals) {
+                intervalFields = String.format(",\"lower\":%s,\"upper\":%s",
+                        number(interval == null ? Double.NaN : interval.getLower()),
+                        number(interval == null ? Double.NaN : interval.getUpper()));
+            }
+            out.println(String.format("{\"scope\":%s,\"metric\":%s,\"tagType\":%s,\"attType\":%s,\"agreement\":%s%s}",
+                    quote(scope), quote(metric), quote(tagType), quote(attType), number(agreement), intervalFields));
+        }
+
+        static String number(double value) {
+            // JSON has no literal for NaN or infinities
+            return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+        }
+
+        static String quote(String string) {
+            StringBuilder quoted = new StringBuilder("\"");
+            for (char c : string.toCharArray()) {
+                switch (c) {
+                    case '"':
+                        quoted.append("\\\"");
+                        break;
+                    case '\\':
+                        quoted.append("\\\\");
+                        break;
+                    case '\n':
+                        quoted.append("\\n");
+                        break;
+                    case '\t':
+                        quoted.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            quoted.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            quoted.append(c);
+                        }
+                }
+            }
+            return quoted.append('"').toString();
+        }
+    }
+}
@@ -27,7 +27,10 @@ package edu.brandeis.cs.nlp.mae.agreement;
 import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.agreement.calculator.*;
 import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.AnnotationDirsIndexer;
 import edu.brandeis.cs.nlp.mae.agreement.io.AnnotationFilesIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.StudyCache;
+import edu.brandeis.cs.nlp.mae.agreement.io.TextFingerprint;
 import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
@@ -35,13 +38,19 @@ import edu.brandeis.cs.nlp.mae.io.MaeIOException;
 import edu.brandeis.cs.nlp.mae.io.MaeIOXMLException;
 import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
 import edu.brandeis.cs.nlp.mae.util.FileHandler;
+import edu.brandeis.cs.nlp.mae.util.ForkJoinHandler;
+import edu.brandeis.cs.nlp.mae.util.HashHandler;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.*;
 
@@ -56,6 +65,11 @@ public class MaeAgreementMain {
     private MaeDriverI driver;
     private XMLParseCache parseCache;
     private int[] documentLength;
+    private ForkJoinPool pool;
+    private File studyCacheDir;
+    private StudyCache studyCache;
+    private AgreementBootstrap bootstrap;
+    private SpanAligner spanAligner = SpanAligner.EXACT;
 
     public MaeAgreementMain(MaeDriverI driver) {
         this.driver = driver;
@@ -63,11 +77,13 @@ public class MaeAgreementMain {
 
     public void loadAnnotationFiles(File singleDir) throws MaeIOException, IOException, SAXException, MaeDBException {
 
-        if (!FileHandler.containsDirsOnly(singleDir)) {
+        // keep the indexer across loads; it caches headers of files it has seen
+        if (FileHandler.containsDirsOnly(singleDir)) {
+            if (!(fileIdx instanceof AnnotationDirsIndexer)) {
+                fileIdx = new AnnotationDirsIndexer();
+            }
+        } else if (!(fileIdx instanceof AnnotationFilesIndexer)) {
             fileIdx = new AnnotationFilesIndexer();
-//        } else {
-            // TODO: 2016-04-23 17:03:30EDT  implement indexer from dirs
-//            fileIdx = new AnnotationDirsIndexer();
         }
         fileIdx.indexAnnotations(singleDir);
         String invalidTaskNameFile = validateTaskNames(driver.getTaskName());
@@ -78,7 +94,56 @@ public class MaeAgreementMain {
         if (!invalidPrimaryTextFile.equals(SUCCESS)) {
             throw new MaeIOException("XML file has different primary text: " + invalidPrimaryTextFile);
         }
-        parseCache = new XMLParseCache(driver, fileIdx);
+        if (studyCacheDir == null) {
+            studyCache = null;
+            parseCache = new XMLParseCache(driver, fileIdx);
+        } else {
+            studyCache = new StudyCache(studyCacheDir, getSchemaSignature());
+            // with cached studies, most documents are never parsed, so don't parse ahead
+            parseCache = new XMLParseCache(driver, fileIdx, ForkJoinPool.commonPool(),
+                    XMLParseCache.DEFAULT_MAX_CACHED_DOCUMENTS, 0);
+        }
+    }
+
+    /**
+     * Sets a directory to persist per-document intermediate results of
+     * agreement calculation in. When set, only documents with changed
+     * annotation files are parsed and processed again in later runs, and
+     * cached results of the others are aggregated into final agreements.
+     * Takes effect from the next {@link #loadAnnotationFiles(File)}.
+     *
+     * @param studyCacheDir - a cache directory, or null not to cache results
+     */
+    public void setStudyCacheDir(File studyCacheDir) {
+        this.studyCacheDir = studyCacheDir;
+    }
+
+    StudyCache getStudyCache() {
+        return studyCache;
+    }
+
+    /**
+     * Cached results depend on the annotation scheme as well as the files,
+     * so they are bound to the task name and the contents of its DTD.
+     */
+    private String getSchemaSignature() throws MaeDBException {
+        String signature = driver.getTaskName();
+        String dtdFileName = driver.getTaskFileName();
+        if (dtdFileName != null) {
+            try {
+                signature += String.format("-%016x", HashHandler.fnv1a64(Files.readAllBytes(new File(dtdFileName).toPath())));
+            } catch (IOException ignored) {
+                // DTD is not on disk any more, the task name alone will do
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return map from annotators to numbers of documents they have no annotation file of
+     */
+    public Map<String, Integer> getMissingAnnotationCounts() {
+        return fileIdx.getMissingAnnotationCounts();
     }
 
     public Map<String, String> getParseWarnings() {
@@ -89,12 +154,8 @@ public class MaeAgreementMain {
         MaeXMLParser parser = new MaeXMLParser();
         for (String docName : fileIdx.getDocumentNames()) {
             for (String fileName : fileIdx.getAnnotationsOfDocument(docName)) {
-                try {
-                    if (fileName != null && !parser.isTaskNameMatching(new File(fileName), taskName)) {
-                        return fileName;
-                    }
-                } catch (SAXParseException e) {
-                    throw new MaeIOXMLException(String.format("Invalid XML string (%s): %s", e.getMessage(), fileName));
+                if (fileName != null && !readHeader(parser, new File(fileName)).equals(taskName)) {
+                    return fileName;
                 }
             }
         }
@@ -108,22 +169,45 @@ public class MaeAgreementMain {
         for (String docName : fileIdx.getDocumentNames()) {
             String[] fileNames = fileIdx.getAnnotationsOfDocument(docName);
             int seen = getFirstNonNullIndex(fileNames);
-            parser.readAnnotationPreamble(new File(fileNames[seen++]));
-            String primaryText = parser.getParsedPrimaryText();
-            documentLength[curDoc++] = primaryText.length();
+            File firstFile = new File(fileNames[seen++]);
+            readHeader(parser, firstFile);
+            TextFingerprint fingerprint = fileIdx.getCachedTextFingerprint(firstFile);
+            documentLength[curDoc++] = fingerprint.getLength();
             for (int i = seen; i < fileNames.length; i++) {
-                try {
-                    if (fileNames[i] != null && !parser.isPrimaryTextMatching(new File(fileNames[i]), primaryText)) {
-                        return fileNames[i];
-                    }
-                } catch (SAXParseException e) {
-                    throw new MaeIOXMLException(String.format("Invalid XML string (%s): %s", e.getMessage(), fileNames[i]));
+                if (fileNames[i] == null) {
+                    continue;
+                }
+                File file = new File(fileNames[i]);
+                readHeader(parser, file);
+                if (!fingerprint.equals(fileIdx.getCachedTextFingerprint(file))) {
+                    return fileNames[i];
                 }
             }
         }
         return SUCCESS;
     }
 
+    /**
+     * Reads task name and primary text fingerprint of a file in one header-only pass,
+     * unless they are already cached in the indexer and the file is unchanged.
+     *
+     * @return task name of the file
+     */
+    private String readHeader(MaeXMLParser parser, File file) throws IOException, SAXException, MaeIOXMLException {
+        if (!fileIdx.hasCachedHeader(file)) {
+            try {
+                parser.readAnnotationPreamble(file);
+            } catch (SAXParseException e) {
+                throw new MaeIOXMLException(String.format("Invalid XML string (%s): %s", e.getMessage(), file.getAbsolutePath()));
+            }
+            MaeXMLParser.MaeSAXHandler header = parser.getParsed();
+            String text = header.getPrimaryText();
+            fileIdx.cacheHeader(file, header.getTaskName(),
+                    new TextFingerprint(header.getPrimaryTextHash(), text == null ? 0 : text.length()));
+        }
+        return fileIdx.getCachedTaskName(file);
+    }
+
     private static int countNonNull(Object[] array) {
         int countNonNull = 0;
         for (Object obj : array) {
@@ -143,9 +227,13 @@ public class MaeAgreementMain {
     }
 
     public String agreementsToString(String agreementType, Map<String, Double> agreements) {
+        return agreementsToString(agreementType, agreements, Collections.emptyMap());
+    }
+
+    public String agreementsToString(String agreementType, Map<String, Double> agreements, Map<String, ConfidenceInterval> intervals) {
         String results = String.format("== %s ==\n\n", agreementType);
         for (String agreementKey : agreements.keySet()) {
-            results += agreementToString(agreementType, agreementKey, agreements.get(agreementKey));
+            results += agreementToString(agreementType, agreementKey, agreements.get(agreementKey), intervals.get(agreementKey));
         }
         results += "\n";
         return results;
@@ -155,85 +243,333 @@ public class MaeAgreementMain {
         return String.format("% .4f (%s) %s\n", agr, agrType, agrKey );
     }
 
-    Map<String, Double> calculateLocalAlphaU(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeDBException {
-        LocalAlphaUCalc calc = new LocalAlphaUCalc(fileIdx, parseCache, documentLength);
-        return calc.calculateAgreement(targetTagsAndAtts);
+    public String agreementToString(String agrType, String agrKey, Double agr, ConfidenceInterval interval) {
+        if (interval == null) {
+            return agreementToString(agrType, agrKey, agr);
+        }
+        return String.format("% .4f %s (%s) %s\n", agr, interval, agrType, agrKey );
+    }
+
+    private AbstractMaeAgreementCalc createCalculator(String metricType, boolean local) {
+        AbstractMaeAgreementCalc calc;
+        switch (metricType) {
+            case ALPHAU_CALC_STRING:
+                calc = local ? new LocalAlphaUCalc(fileIdx, parseCache, documentLength)
+                        : new GlobalAlphaUCalc(fileIdx, parseCache, documentLength);
+                break;
+            case MULTIKAPPA_CALC_STRING:
+                calc = local ? new LocalMultiKappaCalc(fileIdx, parseCache) : new GlobalMultiKappaCalc(fileIdx, parseCache);
+                break;
+            case MULTIPI_CALC_STRING:
+                calc = local ? new LocalMultiPiCalc(fileIdx, parseCache) : new GlobalMultiPiCalc(fileIdx, parseCache);
+                break;
+            default:
+                return null;
+        }
+        calc.setStudyCache(studyCache);
+        if (calc instanceof AbstractCodingAgreementCalc) {
+            ((AbstractCodingAgreementCalc) calc).setAligner(spanAligner);
+        }
+        return calc;
+    }
+
+    Map<String, Double> calculateLocalAlphaU(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+        return calculateAgreement(ALPHAU_CALC_STRING, targetTagsAndAtts, true);
     }
 
-    Map<String, Double> calculateGlobalAlphaU(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeDBException {
-        GlobalAlphaUCalc calc = new GlobalAlphaUCalc(fileIdx, parseCache, documentLength);
-        return calc.calculateAgreement(targetTagsAndAtts);
+    Map<String, Double> calculateGlobalAlphaU(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+        return calculateAgreement(ALPHAU_CALC_STRING, targetTagsAndAtts, false);
     }
 
     Map<String, Double> calculateLocalMultiPi(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
-        LocalMultiPiCalc calc = new LocalMultiPiCalc(fileIdx, parseCache);
-        return calc.calculateAgreement(targetTagsAndAtts);
+        return calculateAgreement(MULTIPI_CALC_STRING, targetTagsAndAtts, true);
     }
 
     Map<String, Double> calculateGlobalMultiPi(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
-        GlobalMultiPiCalc calc = new GlobalMultiPiCalc(fileIdx, parseCache);
-        return calc.calculateAgreement(targetTagsAndAtts);
+        return calculateAgreement(MULTIPI_CALC_STRING, targetTagsAndAtts, false);
     }
 
-     Map<String, Double> calculateLocalMultiKappa(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
-        LocalMultiKappaCalc calc = new LocalMultiKappaCalc(fileIdx, parseCache);
-        return calc.calculateAgreement(targetTagsAndAtts);
+    Map<String, Double> calculateLocalMultiKappa(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+        return calculateAgreement(MULTIKAPPA_CALC_STRING, targetTagsAndAtts, true);
     }
 
     Map<String, Double> calculateGlobalMultiKappa(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
-        GlobalMultiKappaCalc calc = new GlobalMultiKappaCalc(fileIdx, parseCache);
-        return calc.calculateAgreement(targetTagsAndAtts);
+        return calculateAgreement(MULTIKAPPA_CALC_STRING, targetTagsAndAtts, false);
     }
 
-    public String calcGlobalAgreementToString(Map<String, MappedSet<String, String>> metricToTargetsMap) throws MaeException, SAXException, IOException {
-        String result = "";
-        for (String metricType : metricToTargetsMap.keySet()) {
-            MappedSet<String, String> targetTagsAndAtts = metricToTargetsMap.get(metricType);
-            if (targetTagsAndAtts.size() == 0) {
-                continue;
+    /**
+     * Computes Cohen's kappa between every pair of annotators on local codings
+     * of target tag types and attributes. Each document is read once for all
+     * pairs; tag types are computed as separate tasks when computing in parallel.
+     *
+     * @return map from full attribute names to pairwise agreements
+     */
+    public Map<String, PairwiseAgreementMatrix> calculatePairwiseAgreements(MappedSet<String, String> targetTagsAndAtts) throws MaeException, SAXException, IOException {
+        List<ForkJoinTask<Map<String, PairwiseAgreementMatrix>>> tasks = new ArrayList<>();
+        List<MappedSet<String, String>> units = pool != null ?
+                splitByTagTypes(targetTagsAndAtts) : Collections.singletonList(targetTagsAndAtts);
+        for (MappedSet<String, String> unit : units) {
+            ForkJoinTask<Map<String, PairwiseAgreementMatrix>> task = ForkJoinTask.adapt(() -> {
+                PairwiseAgreementCalc calc = new PairwiseAgreementCalc(fileIdx, parseCache);
+                calc.setStudyCache(studyCache);
+                calc.setAligner(spanAligner);
+                return calc.calculateMatrices(unit);
+            });
+            tasks.add(pool == null ? task : pool.submit(task));
+        }
+        Map<String, PairwiseAgreementMatrix> matrices = joinMetricTasks(tasks);
+        flushStudyCache();
+        return matrices;
+    }
+
+    public String calcPairwiseAgreementToString(MappedSet<String, String> targetTagsAndAtts) throws MaeException, SAXException, IOException {
+        if (targetTagsAndAtts.size() == 0) {
+            return "";
+        }
+        return pairwiseAgreementsToString(calculatePairwiseAgreements(targetTagsAndAtts));
+    }
+
+    /**
+     * Renders a table of kappas per attribute; the last column holds the mean
+     * kappa of each annotator with all others, which is the lowest for an outlier.
+     */
+    public String pairwiseAgreementsToString(Map<String, PairwiseAgreementMatrix> matrices) {
+        StringBuilder results = new StringBuilder();
+        for (String agreementKey : matrices.keySet()) {
+            PairwiseAgreementMatrix matrix = matrices.get(agreementKey);
+            List<String> annotators = matrix.getAnnotators();
+            int width = 8;
+            for (String annotator : annotators) {
+                width = Math.max(width, annotator.length() + 1);
+            }
+            String cell = "%" + width + "s";
+            results.append(String.format("== <%s> %s ==\n\n", PAIRWISE_CALC_STRING, agreementKey));
+            results.append(String.format(cell, ""));
+            for (String annotator : annotators) {
+                results.append(String.format(cell, annotator));
             }
-            String agrTitle = String.format("<%s> %s  %s", SCOPE_CROSSTAG_STRING, metricType, targetTagsAndAtts.keyList());
-            switch (metricType) {
-                case ALPHAU_CALC_STRING:
-                    result += agreementsToString(agrTitle, calculateGlobalAlphaU(targetTagsAndAtts));
-                    break;
-                case ALPHA_CALC_STRING:
-                    break;
-                case MULTIKAPPA_CALC_STRING:
-                    result += agreementsToString(agrTitle, calculateGlobalMultiKappa(targetTagsAndAtts));
-                    break;
-                case MULTIPI_CALC_STRING:
-                    result += agreementsToString(agrTitle, calculateGlobalMultiPi(targetTagsAndAtts));
-                    break;
+            results.append(String.format(cell, "mean")).append("\n");
+            for (int i = 0; i < matrix.size(); i++) {
+                results.append(String.format(cell, annotators.get(i)));
+                for (int j = 0; j < matrix.size(); j++) {
+                    results.append(String.format(cell, String.format("% .4f", matrix.getCohenKappa(i, j))));
+                }
+                results.append(String.format(cell, String.format("% .4f", matrix.getMeanCohenKappa(i)))).append("\n");
             }
+            results.append("\n");
+        }
+        return results.toString();
+    }
+
+    /**
+     * Sets how spans of annotators are aligned into items of labeling
+     * (multi-pi, multi-kappa and pairwise) agreements. Alpha-U compares
+     * segmentations itself, and is not affected.
+     *
+     * @param spanAligner - an aligner, or null for exact matching of spans
+     */
+    public void setSpanAligner(SpanAligner spanAligner) {
+        this.spanAligner = spanAligner == null ? SpanAligner.EXACT : spanAligner;
+    }
 
+    public SpanAligner getSpanAligner() {
+        return spanAligner;
+    }
+
+    /**
+     * Sets a bootstrap to estimate confidence intervals of agreements with.
+     * When set, agreements are reported with their intervals.
+     *
+     * @param bootstrap - a bootstrap, or null to report point estimates only
+     */
+    public void setBootstrap(AgreementBootstrap bootstrap) {
+        this.bootstrap = bootstrap;
+    }
+
+    public AgreementBootstrap getBootstrap() {
+        return bootstrap;
+    }
+
+    /**
+     * Sets number of threads to compute agreements with. When more than one,
+     * each (metric, tag type) pair of local agreements and each global metric
+     * is computed as a separate task, sharing parsed documents read-only.
+     * Results are the same as sequential computation.
+     *
+     * @param parallelism - number of threads, 1 or less for sequential computation
+     */
+    public void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
         }
-        return result;
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    public String calcGlobalAgreementToString(Map<String, MappedSet<String, String>> metricToTargetsMap) throws MaeException, SAXException, IOException {
+        StringBuilder result = new StringBuilder();
+        calculateAgreements(metricToTargetsMap, Collections.emptyMap(),
+                (metricType, local, targetTagsAndAtts, agreements, intervals) -> {
+                    String agrTitle = String.format("<%s> %s  %s", SCOPE_CROSSTAG_STRING, metricType, targetTagsAndAtts.keyList());
+                    result.append(agreementsToString(agrTitle, agreements, intervals));
+                });
+        return result.toString();
     }
 
     public String calcLocalAgreementToString(Map<String, MappedSet<String, String>> metricToTargetsMap) throws MaeException, SAXException, IOException {
-        String result = "";
+        StringBuilder result = new StringBuilder();
+        calculateAgreements(Collections.emptyMap(), metricToTargetsMap,
+                (metricType, local, targetTagsAndAtts, agreements, intervals) -> {
+                    String agrTitle = String.format("<%s> %s", SCOPE_LOCAL_STRING, metricType);
+                    result.append(agreementsToString(agrTitle, agreements, intervals));
+                });
+        return result.toString();
+    }
+
+    /**
+     * Computes agreements of all metrics with non-empty targets of both scopes
+     * at once, and passes agreements of each metric to a listener as soon as
+     * they are computed. Global metrics are reported first, then local ones,
+     * each in the iteration order of the given map. With a bootstrap set,
+     * confidence intervals are estimated along with agreements.
+     */
+    public void calculateAgreements(Map<String, MappedSet<String, String>> globalMetricToTargetsMap,
+                                    Map<String, MappedSet<String, String>> localMetricToTargetsMap,
+                                    AgreementListener listener) throws MaeException, SAXException, IOException {
+        Map<String, List<ForkJoinTask<Map<String, Double>>>> globalTasks
+                = submitMetricTasks(globalMetricToTargetsMap, false, this::calculateAgreement);
+        Map<String, List<ForkJoinTask<Map<String, Double>>>> localTasks
+                = submitMetricTasks(localMetricToTargetsMap, true, this::calculateAgreement);
+        Map<String, List<ForkJoinTask<Map<String, ConfidenceInterval>>>> globalIntervalTasks = new HashMap<>();
+        Map<String, List<ForkJoinTask<Map<String, ConfidenceInterval>>>> localIntervalTasks = new HashMap<>();
+        if (bootstrap != null) {
+            globalIntervalTasks = submitMetricTasks(globalMetricToTargetsMap, false, this::calculateConfidenceIntervals);
+            localIntervalTasks = submitMetricTasks(localMetricToTargetsMap, true, this::calculateConfidenceIntervals);
+        }
+        for (String metricType : globalTasks.keySet()) {
+            listener.agreementsCalculated(metricType, false, globalMetricToTargetsMap.get(metricType),
+                    joinMetricTasks(globalTasks.get(metricType)),
+                    joinMetricTasks(globalIntervalTasks.getOrDefault(metricType, Collections.emptyList())));
+        }
+        for (String metricType : localTasks.keySet()) {
+            listener.agreementsCalculated(metricType, true, localMetricToTargetsMap.get(metricType),
+                    joinMetricTasks(localTasks.get(metricType)),
+                    joinMetricTasks(localIntervalTasks.getOrDefault(metricType, Collections.emptyList())));
+        }
+        flushStudyCache();
+    }
+
+    /**
+     * Receives agreements of a metric computed by
+     * {@link #calculateAgreements(Map, Map, AgreementListener)}.
+     */
+    public interface AgreementListener {
+        /**
+         * @param intervals - confidence intervals of agreements, empty when no bootstrap is set
+         */
+        void agreementsCalculated(String metricType, boolean local, MappedSet<String, String> targetTagsAndAtts,
+                                  Map<String, Double> agreements, Map<String, ConfidenceInterval> intervals) throws IOException;
+    }
+
+    private interface MetricCalculation<T> {
+        Map<String, T> calculate(String metricType, MappedSet<String, String> targetTagsAndAtts, boolean local) throws MaeException, SAXException, IOException;
+    }
+
+    /**
+     * Creates tasks computing results of each metric. Tasks are forked to
+     * the worker pool right away when computing in parallel, otherwise they
+     * are run one by one when joined.
+     */
+    private <T> Map<String, List<ForkJoinTask<Map<String, T>>>> submitMetricTasks(Map<String, MappedSet<String, String>> metricToTargetsMap, boolean local, MetricCalculation<T> calculation) {
+        Map<String, List<ForkJoinTask<Map<String, T>>>> tasks = new LinkedHashMap<>();
         for (String metricType : metricToTargetsMap.keySet()) {
             MappedSet<String, String> targetTagsAndAtts = metricToTargetsMap.get(metricType);
-            if (targetTagsAndAtts.size() == 0) {
+            if (targetTagsAndAtts.size() == 0 || !isSupportedMetric(metricType)) {
                 continue;
             }
-            String agrTitle = String.format("<%s> %s", SCOPE_LOCAL_STRING, metricType);
-            switch (metricType) {
-                case ALPHAU_CALC_STRING:
-                    result += agreementsToString(agrTitle, calculateLocalAlphaU(targetTagsAndAtts));
-                    break;
-                case ALPHA_CALC_STRING:
-                    break;
-                case MULTIKAPPA_CALC_STRING:
-                    result += agreementsToString(agrTitle, calculateLocalMultiKappa(targetTagsAndAtts));
-                    break;
-                case MULTIPI_CALC_STRING:
-                    result += agreementsToString(agrTitle, calculateLocalMultiPi(targetTagsAndAtts));
-                    break;
+            List<ForkJoinTask<Map<String, T>>> metricTasks = new ArrayList<>();
+            // local agreements are independent between tag types, global ones are not
+            List<MappedSet<String, String>> units = local && pool != null ?
+                    splitByTagTypes(targetTagsAndAtts) : Collections.singletonList(targetTagsAndAtts);
+            for (MappedSet<String, String> unit : units) {
+                ForkJoinTask<Map<String, T>> task = ForkJoinTask.adapt(() -> calculation.calculate(metricType, unit, local));
+                metricTasks.add(pool == null ? task : pool.submit(task));
             }
+            tasks.put(metricType, metricTasks);
+        }
+        return tasks;
+    }
+
+    private void flushStudyCache() throws MaeIOException {
+        if (studyCache != null) {
+            studyCache.flush();
+        }
+    }
+
+    private static boolean isSupportedMetric(String metricType) {
+        switch (metricType) {
+            case ALPHAU_CALC_STRING:
+            case MULTIKAPPA_CALC_STRING:
+            case MULTIPI_CALC_STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Map<String, Double> calculateAgreement(String metricType, MappedSet<String, String> targetTagsAndAtts, boolean local) throws MaeException, SAXException, IOException {
+        AbstractMaeAgreementCalc calc = createCalculator(metricType, local);
+        return calc == null ? new TreeMap<>() : calc.calculateAgreement(targetTagsAndAtts);
+    }
 
+    private Map<String, ConfidenceInterval> calculateConfidenceIntervals(String metricType, MappedSet<String, String> targetTagsAndAtts, boolean local) throws MaeException, SAXException, IOException {
+        AbstractMaeAgreementCalc calc = createCalculator(metricType, local);
+        return calc == null ? new TreeMap<>() : calc.calculateConfidenceIntervals(targetTagsAndAtts, bootstrap);
+    }
+
+    private static List<MappedSet<String, String>> splitByTagTypes(MappedSet<String, String> targetTagsAndAtts) {
+        List<MappedSet<String, String>> units = new ArrayList<>();
+        for (String tagTypeName : targetTagsAndAtts.keyList()) {
+            MappedSet<String, String> unit = new MappedSet<>();
+            unit.putCollection(tagTypeName, targetTagsAndAtts.get(tagTypeName));
+            units.add(unit);
+        }
+        return units;
+    }
+
+    private <T> Map<String, T> joinMetricTasks(List<ForkJoinTask<Map<String, T>>> tasks) throws MaeException, SAXException, IOException {
+        Map<String, T> merged = new TreeMap<>();
+        for (ForkJoinTask<Map<String, T>> task : tasks) {
+            merged.putAll(joinMetricTask(task));
+        }
+        return merged;
+    }
+
+    private <T> Map<String, T> joinMetricTask(ForkJoinTask<Map<String, T>> task) throws MaeException, SAXException, IOException {
+        try {
+            if (pool == null) {
+                // not forked, run it here
+                task.quietlyInvoke();
+            }
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MaeException("interrupted while computing agreements", e);
+        } catch (ExecutionException e) {
+            Throwable cause = ForkJoinHandler.unwrapFailure(e.getCause());
+            if (cause instanceof MaeException) {
+                throw (MaeException) cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new MaeException(cause.getMessage(), cause);
         }
-        return result;
     }
 }
@@ -34,6 +34,7 @@ public class MaeAgreementStrings {
     public final static String SPAN_ATT = "-";
     public final static String UNMARKED_CAT = "#UNMARKED#";
     public final static String TAG_ATT_DELIM = "::";
+    public final static String STUDY_CACHE_DIR_NAME = ".mae-iaa-cache";
     public final static String GUI_ATT_SELECT_GUIDE = "Select tag type first and select att type to calculate attribute types in the list. Use ctrl/cmd and/or shift keys to select multiple items.";
 
 
@@ -51,6 +52,7 @@ public class MaeAgreementStrings {
     public final static String MULTIPI_CALC_STRING = "Multi-Pi (Fleiss' Kappa)";
     public final static String MULTIKAPPA_CALC_STRING = "Multi-Kappa (Huberts' Kappa)";
     public final static String ALPHA_CALC_STRING = "Alpha (Krippendorf's)";
+    public final static String PAIRWISE_CALC_STRING = "Pairwise Cohen's Kappa";
 
     public final static ArrayList<String> SCOPE_TYPE_STRINGS = new ArrayList<String>() { {
         add(SCOPE_IGNORE_STRING);
@@ -26,18 +26,16 @@ package edu.brandeis.cs.nlp.mae.agreement.calculator;
 
 import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentCodings;
 import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
-import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
-import edu.brandeis.cs.nlp.mae.io.ParsedAtt;
-import edu.brandeis.cs.nlp.mae.io.ParsedTag;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
-import edu.brandeis.cs.nlp.mae.util.SortedIntArrayComparator;
 import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.ToDoubleFunction;
 
 import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.*;
 
@@ -46,46 +44,34 @@ import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.*;
  */
 public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCalc {
 
+    private static final String GLOBAL_STUDY = "global";
+
+    SpanAligner aligner = SpanAligner.EXACT;
+
     public AbstractCodingAgreementCalc(AbstractAnnotationIndexer fileIdx, XMLParseCache parseCache) {
         super(fileIdx, parseCache);
     }
 
-    Set<int[]> getSegmentSpansOfTagType(MaeXMLParser[] parses, String tagTypeName) {
-        TreeSet<int[]> spans = new TreeSet<>(new SortedIntArrayComparator());
-
-        Arrays.stream(parses).filter(
-                parse -> parse != null
-        ).forEach(
-                parse -> parse.getParsedTags().stream().filter(
-                        tag -> tagTypeName.equals(tag.getTagTypeName())
-                ).forEach(
-                        tag -> spans.add(tag.getSpans())
-                ));
-        return spans;
+    public SpanAligner getAligner() {
+        return aligner;
     }
 
-    Set<int[]> getSegmentSpansOfTagTypes(MaeXMLParser[] parses, Set<String> tagTypeNames) {
-
-        TreeSet<int[]> spans = new TreeSet<>(new SortedIntArrayComparator());
-
-        Arrays.stream(parses).filter(
-                parse -> parse != null
-        ).forEach(
-                parse -> parse.getParsedTags().stream().filter(
-                        tag -> tagTypeNames.contains(tag.getTagTypeName())
-                ).forEach(
-                        tag -> spans.add(tag.getSpans())
-                ));
-        return spans;
+    /**
+     * Sets how tags of annotators are aligned into items. Defaults to exact
+     * matching of spans; overlap matching measures agreement with relaxed
+     * boundaries.
+     */
+    public void setAligner(SpanAligner aligner) {
+        this.aligner = aligner;
     }
 
-    List<ParsedTag> getTagsOfTagTypesAndSpans(int[] spans, Collection<String> tagTypeNames, MaeXMLParser parse) {
-        if (parse != null) {
-            return parse.getParsedTags().stream().filter(
-                    tag -> tagTypeNames.contains(tag.getTagTypeName()) && Arrays.equals(tag.getSpans(), spans)
-            ).collect(Collectors.toList());
-        }
-        return new ArrayList<>();
+    /**
+     * With exact matching, two tags of an annotator on the same span are an
+     * annotation error. With overlap matching, an annotator can split what
+     * others marked as one, and the longest tag stands for the annotator.
+     */
+    private boolean isDuplicateHit(SpanAligner.AlignedUnit unit, int annotator) {
+        return aligner.isExact() && unit.getHitCount(annotator) > 1;
     }
 
     Object[] prepareNullCodings() {
@@ -108,46 +94,77 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
             }
             List<String> documents = fileIdx.getDocumentNames();
             for (String document : documents) {
-                MaeXMLParser[] parses = getParses(document);
-                Set<int[]> relevantSpans = getSegmentSpansOfTagType(parses, tagTypeName);
-
-                for (int[] relevantSpan : relevantSpans) {
-                    Map<String, String[]> attAnnotationsMap = prepareAttAnnotationMap(attTypeNames);
-
-                    for (int j = 0; j < parses.length; j++) {
-                        MaeXMLParser parse = parses[j];
-                        if (parse == null) {
-                            fillUnmarkednessOfAnnotator(attAnnotationsMap, j);
-                        } else {
-                            List<ParsedTag> relevantTags
-                                    = getTagsOfTagTypesAndSpans(relevantSpan, Collections.singletonList(tagTypeName), parse);
-                            switch (relevantTags.size()) {
-                                case 0:
-                                    fillUnmarkednessOfAnnotator(attAnnotationsMap, j);
-                                    break;
-                                case 1:
-                                    attAnnotationsMap.get(SPAN_ATT)[j] = Boolean.toString(true);
-                                    String tid = relevantTags.get(0).getTid();
-                                    fillAllAttValueOfTid(parse, j, tid, attAnnotationsMap);
-                                    break;
-                                default:
-                                    throw new MaeException(
-                                            String.format("Error occurred while calculating local labeling agreement:" +
-                                                    " an annotator marked the same range with two or more times - \"%s\", \"%s\"",
-                                                    document, fileIdx.getAnnotators().get(j)));
-                            }
-                        }
-                    }
-                    for (String attTypeName : attAnnotationsMap.keySet()) {
-                        String attFullName = attFullNameMap.get(attTypeName);
-                        studyPerAtt.get(attFullName).addItemAsArray(attAnnotationsMap.get(attTypeName));
-                    }
+                DocumentCodings codings = getLocalCodings(document, tagTypeName, attTypeNames);
+                for (String attTypeName : attTypeNames) {
+                    codings.addTo(attTypeName, studyPerAtt.get(attFullNameMap.get(attTypeName)));
                 }
             }
         }
         return studyPerAtt;
     }
 
+    /**
+     * Summarizes codings of each document for local agreements, keyed by full
+     * attribute names as in {@link #prepareLocalCodingStudies(MappedSet)}.
+     */
+    Map<String, List<CodingStatistics>> prepareLocalCodingStatistics(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+
+        Map<String, List<CodingStatistics>> statisticsPerAtt = new LinkedHashMap<>();
+        List<String> documents = fileIdx.getDocumentNames();
+        for (String tagTypeName : targetTagsAndAtts.keyList()) {
+            List<String> attTypeNames = targetTagsAndAtts.getAsList(tagTypeName);
+            attTypeNames.add(0, SPAN_ATT);
+            for (String attTypeName : attTypeNames) {
+                statisticsPerAtt.put(tagTypeName + TAG_ATT_DELIM + attTypeName, new ArrayList<>());
+            }
+            for (String document : documents) {
+                DocumentCodings codings = getLocalCodings(document, tagTypeName, attTypeNames);
+                for (String attTypeName : attTypeNames) {
+                    statisticsPerAtt.get(tagTypeName + TAG_ATT_DELIM + attTypeName).add(
+                            CodingStatistics.of(numAnnotators, codings.getItems(attTypeName)));
+                }
+            }
+        }
+        return statisticsPerAtt;
+    }
+
+    /**
+     * Returns coding items of a document for local agreements of a tag type,
+     * grouped by attribute type names (including {@code SPAN_ATT}).
+     */
+    DocumentCodings getLocalCodings(String document, String tagTypeName, List<String> attTypeNames) throws IOException, SAXException, MaeException {
+        return getDocumentResult(document, "local-items:" + aligner.getKey() + tagTypeName + TAG_ATT_DELIM + attTypeNames,
+                () -> collectLocalCodings(document, tagTypeName, attTypeNames));
+    }
+
+    DocumentCodings collectLocalCodings(String document, String tagTypeName, List<String> attTypeNames) throws IOException, SAXException, MaeException {
+        DocumentCodings codings = new DocumentCodings();
+        CompactAnnotation[] parses = getParses(document);
+
+        for (SpanAligner.AlignedUnit unit : aligner.align(parses, Collections.singleton(tagTypeName))) {
+            Map<String, String[]> attAnnotationsMap = prepareAttAnnotationMap(attTypeNames);
+
+            for (int j = 0; j < parses.length; j++) {
+                CompactAnnotation parse = parses[j];
+                if (parse == null || unit.getHitCount(j) == 0) {
+                    fillUnmarkednessOfAnnotator(attAnnotationsMap, j);
+                } else if (isDuplicateHit(unit, j)) {
+                    throw new MaeException(
+                            String.format("Error occurred while calculating local labeling agreement:" +
+                                    " an annotator marked the same range with two or more times - \"%s\", \"%s\"",
+                                    document, fileIdx.getAnnotators().get(j)));
+                } else {
+                    attAnnotationsMap.get(SPAN_ATT)[j] = Boolean.toString(true);
+                    fillAllAttValueOfTag(parse, j, unit.getHit(j), attAnnotationsMap);
+                }
+            }
+            for (String attTypeName : attAnnotationsMap.keySet()) {
+                codings.add(attTypeName, attAnnotationsMap.get(attTypeName));
+            }
+        }
+        return codings;
+    }
+
     void fillUnmarkednessOfAnnotator(Map<String, String[]> attAnnotationMap, int annotatorIdx) {
         for (String attTypeName : attAnnotationMap.keySet()) {
             String[] markups = attAnnotationMap.get(attTypeName);
@@ -164,12 +181,13 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
         return attMarkupMap;
     }
 
-    void fillAllAttValueOfTid(MaeXMLParser annotation, int annotatorIdx, String tid, Map<String, String[]> attAnnotationsMap) {
-        for (ParsedAtt att : annotation.getParsedAtts()) {
-            if (att.getTid().equals(tid) && attAnnotationsMap.containsKey(att.getAttTypeName())) {
-                String attTypeName = att.getAttTypeName();
-                if (att.getAttValue() != null && att.getAttValue().length() > 0) {
-                    attAnnotationsMap.get(attTypeName)[annotatorIdx] = att.getAttValue();
+    void fillAllAttValueOfTag(CompactAnnotation annotation, int annotatorIdx, int tag, Map<String, String[]> attAnnotationsMap) {
+        for (int att = 0; att < annotation.getAttCount(tag); att++) {
+            String attTypeName = annotation.getAttTypeName(tag, att);
+            if (attAnnotationsMap.containsKey(attTypeName)) {
+                String attValue = annotation.getAttValue(tag, att);
+                if (attValue != null && attValue.length() > 0) {
+                    attAnnotationsMap.get(attTypeName)[annotatorIdx] = attValue;
                 } else {
                     // TODO: 2016-04-25 15:27:30EDT  unmarked vs empty marked ??
                     attAnnotationsMap.get(attTypeName)[annotatorIdx] = UNMARKED_CAT;
@@ -185,35 +203,61 @@ public abstract class AbstractCodingAgreementCalc extends AbstractMaeAgreementCa
         Set<String> targetTags = targetTagsAndAtts.keySet();
 
         for (String document : documents) {
-            MaeXMLParser[] parses = parseCache.getParses(document);
-            Set<int[]> relevantSpans = getSegmentSpansOfTagTypes(parses, targetTags);
-            if (relevantSpans.size() == 0) {
-                study.addItem(prepareNullCodings());
-            } else {
-                for (int[] span : relevantSpans) {
-                    Object[] annotations = new String[numAnnotators];
-                    for (int i = 0; i < parses.length; i++) {
-                        MaeXMLParser parse = parses[i];
-                        List<ParsedTag> relevantTags = getTagsOfTagTypesAndSpans(span, targetTags, parse);
-                        switch (relevantTags.size()) {
-                            case 0:
-                                annotations[i] = UNMARKED_CAT;
-                                break;
-                            case 1:
-                                annotations[i] = relevantTags.get(0).getTagTypeName();
-                                break;
-                            default:
-                                throw new MaeException(
+            getGlobalCodings(document, targetTags).addTo(GLOBAL_STUDY, study);
+        }
+        return study;
+    }
+
+    /**
+     * Summarizes codings of each document for a global agreement.
+     */
+    List<CodingStatistics> prepareGlobalCodingStatistics(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+
+        List<CodingStatistics> statistics = new ArrayList<>();
+        Set<String> targetTags = targetTagsAndAtts.keySet();
+        for (String document : fileIdx.getDocumentNames()) {
+            statistics.add(CodingStatistics.of(numAnnotators, getGlobalCodings(document, targetTags).getItems(GLOBAL_STUDY)));
+        }
+        return statistics;
+    }
+
+    ConfidenceInterval estimateConfidenceInterval(List<CodingStatistics> documents, AgreementBootstrap bootstrap, ToDoubleFunction<CodingStatistics> measure) {
+        return bootstrap.estimate(documents.size(),
+                sample -> measure.applyAsDouble(CodingStatistics.merge(documents, sample, numAnnotators)));
+    }
+
+    /**
+     * Returns coding items of a document for a global agreement over given tag types.
+     */
+    DocumentCodings getGlobalCodings(String document, Set<String> targetTags) throws IOException, SAXException, MaeException {
+        return getDocumentResult(document, "global-items:" + aligner.getKey() + new TreeSet<>(targetTags),
+                () -> collectGlobalCodings(document, targetTags));
+    }
+
+    DocumentCodings collectGlobalCodings(String document, Set<String> targetTags) throws IOException, SAXException, MaeException {
+        DocumentCodings codings = new DocumentCodings();
+        CompactAnnotation[] parses = getParses(document);
+        List<SpanAligner.AlignedUnit> units = aligner.align(parses, targetTags);
+        if (units.size() == 0) {
+            codings.add(GLOBAL_STUDY, prepareNullCodings());
+        } else {
+            for (SpanAligner.AlignedUnit unit : units) {
+                Object[] annotations = new String[numAnnotators];
+                for (int i = 0; i < parses.length; i++) {
+                    if (unit.getHitCount(i) == 0) {
+                        annotations[i] = UNMARKED_CAT;
+                    } else if (isDuplicateHit(unit, i)) {
+                        throw new MaeException(
                                 String.format("Error occurred while calculating global labeling agreement:" +
                                                 " an annotator marked the same range with two or labels - \"%s\", \"%s\"",
                                         document, fileIdx.getAnnotators().get(i)));
-                        }
+                    } else {
+                        annotations[i] = parses[i].getTagTypeName(unit.getHit(i));
                     }
-                    study.addItem(annotations);
                 }
+                codings.add(GLOBAL_STUDY, annotations);
             }
         }
-        return study;
+        return codings;
     }
 }
-
@@ -26,23 +26,26 @@ package edu.brandeis.cs.nlp.mae.agreement.calculator;
 
 import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.agreement.io.StudyCache;
 import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
-import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Map;
 
 /**
  * Created by krim on 4/23/2016.
  */
-abstract class AbstractMaeAgreementCalc {
+public abstract class AbstractMaeAgreementCalc {
 
     int numAnnotators;
     AbstractAnnotationIndexer fileIdx;
     XMLParseCache parseCache;
+    StudyCache studyCache;
 
     public AbstractMaeAgreementCalc(AbstractAnnotationIndexer fileIdx, XMLParseCache parseCache) {
         this.fileIdx = fileIdx;
@@ -62,9 +65,53 @@ abstract class AbstractMaeAgreementCalc {
         return parseCache;
     }
 
-    public MaeXMLParser[] getParses(String docName) throws IOException, SAXException, MaeDBException {
+    public CompactAnnotation[] getParses(String docName) throws IOException, SAXException, MaeDBException {
         return this.parseCache.getParses(docName);
     }
 
+    public StudyCache getStudyCache() {
+        return studyCache;
+    }
+
+    /**
+     * Sets a cache to keep per-document intermediate results in. With a cache,
+     * documents are parsed only when their results are not cached yet.
+     *
+     * @param studyCache - a cache, or null to always compute from parses
+     */
+    public void setStudyCache(StudyCache studyCache) {
+        this.studyCache = studyCache;
+    }
+
+    /**
+     * Returns an intermediate result of a document from the study cache,
+     * computing and caching it when it's missing or outdated.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Serializable> T getDocumentResult(String docName, String key, DocumentResultSupplier<T> supplier) throws IOException, SAXException, MaeException {
+        if (studyCache == null) {
+            return supplier.get();
+        }
+        String[] fileNames = fileIdx.getAnnotationsOfDocument(docName);
+        T result = (T) studyCache.get(docName, fileNames, key);
+        if (result == null) {
+            result = supplier.get();
+            studyCache.put(docName, fileNames, key, result);
+        }
+        return result;
+    }
+
+    interface DocumentResultSupplier<T extends Serializable> {
+        T get() throws IOException, SAXException, MaeException;
+    }
+
     public abstract Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException;
+
+    /**
+     * Estimates bootstrap confidence intervals of the agreements computed by
+     * {@link #calculateAgreement(MappedSet)}, keyed the same way. Documents
+     * are summarized into sufficient statistics once, and resamples only
+     * merge those.
+     */
+    public abstract Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException;
 }
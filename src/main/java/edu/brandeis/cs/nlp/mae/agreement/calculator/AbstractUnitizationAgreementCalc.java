@@ -24,21 +24,21 @@
 
 package edu.brandeis.cs.nlp.mae.agreement.calculator;
 
+import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
 import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
-import edu.brandeis.cs.nlp.mae.database.MaeDBException;
-import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
-import edu.brandeis.cs.nlp.mae.io.ParsedAtt;
-import edu.brandeis.cs.nlp.mae.io.ParsedTag;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
-import edu.brandeis.cs.nlp.mae.util.SpanHandler;
-import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
 
+import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.TAG_ATT_DELIM;
+
 /**
  * Created by krim on 4/23/2016.
  */
@@ -55,37 +55,51 @@ public abstract class AbstractUnitizationAgreementCalc extends AbstractMaeAgreem
 
     }
 
-    void addTagAsUnits(String tagTypeName, MaeXMLParser[] annotations, int textOffset, UnitizingAnnotationStudy study) {
+    /**
+     * Returns consuming tags of a tag type in a document as units, categorized by the tag type.
+     */
+    DocumentUnits getTagUnits(String docName, String tagTypeName) throws IOException, SAXException, MaeException {
+        return getDocumentResult(docName, "tag-units:" + tagTypeName,
+                () -> collectTagUnits(tagTypeName, getParses(docName)));
+    }
+
+    /**
+     * Returns consuming tags of a tag type in a document as units, categorized by values of an attribute.
+     */
+    DocumentUnits getAttUnits(String docName, String tagTypeName, String attTypeName) throws IOException, SAXException, MaeException {
+        return getDocumentResult(docName, "att-units:" + tagTypeName + TAG_ATT_DELIM + attTypeName,
+                () -> collectAttUnits(tagTypeName, attTypeName, getParses(docName)));
+    }
 
+    DocumentUnits collectTagUnits(String tagTypeName, CompactAnnotation[] annotations) {
+
+        DocumentUnits units = new DocumentUnits();
         int annotator = 0;
-        for (MaeXMLParser parse : annotations) {
+        for (CompactAnnotation parse : annotations) {
             if (parse != null) {
-                for (ParsedTag tag : parse.getParsedTags()) {
-                    if (tag.getTagTypeName().equals(tagTypeName) && tag.getSpans().length > 0) {
-                        for (int[] pair : SpanHandler.convertArrayToPairs(tag.getSpans())) {
-                            study.addUnit(pair[0] + textOffset, pair[1] - pair[0], annotator, tagTypeName);
-                        }
+                for (int tag = 0; tag < parse.getTagCount(); tag++) {
+                    if (parse.getTagTypeName(tag).equals(tagTypeName) && parse.isConsuming(tag)) {
+                        addSpansAsUnits(parse, tag, annotator, tagTypeName, units);
                     }
                 }
             }
             annotator++;
         }
+        return units;
 
     }
 
-    void addAttAsUnits(String tagTypeName, String attTypeName, MaeXMLParser[] annotations, int textOffset, UnitizingAnnotationStudy study) {
+    DocumentUnits collectAttUnits(String tagTypeName, String attTypeName, CompactAnnotation[] annotations) {
 
+        DocumentUnits units = new DocumentUnits();
         int annotator = 0;
-        for (MaeXMLParser parse : annotations) {
+        for (CompactAnnotation parse : annotations) {
             if (parse != null) {
-                for (ParsedTag tag : parse.getParsedTags()) {
-                    if (tag.getTagTypeName().equalsIgnoreCase(tagTypeName) && tag.getSpans().length > 0) {
-                        for (ParsedAtt att : parse.getParsedAtts()) {
-                            if (att.getTagTypeName().equalsIgnoreCase(tag.getTagTypeName()) &&
-                                    att.getAttTypeName().equalsIgnoreCase(attTypeName)) {
-                                for (int[] pair : SpanHandler.convertArrayToPairs(tag.getSpans())) {
-                                    study.addUnit(pair[0] + textOffset, pair[1] - pair[0], annotator, att.getAttValue());
-                                }
+                for (int tag = 0; tag < parse.getTagCount(); tag++) {
+                    if (parse.getTagTypeName(tag).equalsIgnoreCase(tagTypeName) && parse.isConsuming(tag)) {
+                        for (int att = 0; att < parse.getAttCount(tag); att++) {
+                            if (parse.getAttTypeName(tag, att).equalsIgnoreCase(attTypeName)) {
+                                addSpansAsUnits(parse, tag, annotator, parse.getAttValue(tag, att), units);
                             }
                         }
                     }
@@ -93,9 +107,29 @@ public abstract class AbstractUnitizationAgreementCalc extends AbstractMaeAgreem
             }
             annotator++;
         }
+        return units;
     }
 
+    private void addSpansAsUnits(CompactAnnotation parse, int tag, int annotator, Object category, DocumentUnits units) {
+        for (int pair = 0; pair < parse.getSpanPairCount(tag); pair++) {
+            int start = parse.getSpanPairStart(tag, pair);
+            units.add(start, parse.getSpanPairEnd(tag, pair) - start, annotator, category);
+        }
+    }
+
+
+    /**
+     * Summarizes a document for computing alpha-U, with or without bootstrapping.
+     */
+    UnitizingStatistics getStatistics(int documentIdx, DocumentUnits units) {
+        return UnitizingStatistics.of(units, documentLength[documentIdx], numAnnotators);
+    }
+
+    ConfidenceInterval estimateConfidenceInterval(List<UnitizingStatistics> documents, AgreementBootstrap bootstrap) {
+        return bootstrap.estimate(documents.size(),
+                sample -> UnitizingStatistics.alphaU(documents, sample, numAnnotators));
+    }
 
     @Override
-    abstract public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeDBException;
+    abstract public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException;
 }
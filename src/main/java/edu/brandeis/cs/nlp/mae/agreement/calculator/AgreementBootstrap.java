@@ -0,0 +1,172 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Document-level bootstrap of agreement scores. Each resample draws as many
+ * documents as the dataset has, with replacement, and passes their indices
+ * to a statistic that computes an agreement from per-document sufficient
+ * statistics, so that no resample needs to build a study of its own.
+ * Resamples are computed in parallel on a fork/join pool, and each one is
+ * drawn from its own seed so results don't depend on the parallelism.
+ */
+public class AgreementBootstrap {
+
+    public static final int DEFAULT_RESAMPLES = 1000;
+    public static final double DEFAULT_CONFIDENCE = 0.95;
+    public static final long DEFAULT_SEED = 20160414L;
+
+    private static final long SEED_STEP = 0x9e3779b97f4a7c15L;
+    private static final int RESAMPLES_PER_TASK = 8;
+
+    private final int resampleCount;
+    private final double confidence;
+    private final long seed;
+    private ForkJoinPool pool;
+
+    public AgreementBootstrap() {
+        this(DEFAULT_RESAMPLES, DEFAULT_CONFIDENCE, DEFAULT_SEED);
+    }
+
+    public AgreementBootstrap(int resampleCount, double confidence, long seed) {
+        if (resampleCount < 1) {
+            throw new IllegalArgumentException("number of resamples must be positive: " + resampleCount);
+        }
+        if (!(confidence > 0.0 && confidence < 1.0)) {
+            throw new IllegalArgumentException("confidence level must be between 0 and 1: " + confidence);
+        }
+        this.resampleCount = resampleCount;
+        this.confidence = confidence;
+        this.seed = seed;
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    public int getResampleCount() {
+        return resampleCount;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Sets a pool to run resamples on, when not called from a fork/join task already.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    /**
+     * Computes a percentile confidence interval of a statistic over documents.
+     *
+     * @param documentCount number of documents in the dataset
+     * @param statistic computes an agreement from indices of resampled documents,
+     *                  NaN when the agreement is undefined for the resample
+     */
+    public ConfidenceInterval estimate(int documentCount, ToDoubleFunction<int[]> statistic) {
+        double[] values = new double[resampleCount];
+        ResampleTask task = new ResampleTask(documentCount, statistic, values, 0, resampleCount);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+
+        double[] defined = Arrays.stream(values).filter(value -> !Double.isNaN(value)).sorted().toArray();
+        double tail = (1.0 - confidence) / 2.0;
+        return new ConfidenceInterval(percentile(defined, tail), percentile(defined, 1.0 - tail),
+                confidence, resampleCount, resampleCount - defined.length);
+    }
+
+    /**
+     * @return indices of all documents, i.e. the original sample
+     */
+    public static int[] identitySample(int documentCount) {
+        int[] sample = new int[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            sample[i] = i;
+        }
+        return sample;
+    }
+
+    int[] drawSample(int resample, int documentCount) {
+        SplittableRandom random = new SplittableRandom(seed + resample * SEED_STEP);
+        int[] sample = new int[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            sample[i] = random.nextInt(documentCount);
+        }
+        return sample;
+    }
+
+    /**
+     * Linear interpolation between closest ranks of sorted values.
+     */
+    static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double rank = p * (sorted.length - 1);
+        int below = (int) Math.floor(rank);
+        int above = Math.min(below + 1, sorted.length - 1);
+        return sorted[below] + (rank - below) * (sorted[above] - sorted[below]);
+    }
+
+    private class ResampleTask extends RecursiveAction {
+
+        private final int documentCount;
+        private final ToDoubleFunction<int[]> statistic;
+        private final double[] values;
+        private final int from;
+        private final int to;
+
+        ResampleTask(int documentCount, ToDoubleFunction<int[]> statistic, double[] values, int from, int to) {
+            this.documentCount = documentCount;
+            this.statistic = statistic;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RESAMPLES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    values[i] = statistic.applyAsDouble(drawSample(i, documentCount));
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ResampleTask(documentCount, statistic, values, from, mid),
+                        new ResampleTask(documentCount, statistic, values, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import java.util.*;
+
+/**
+ * Krippendorff's alpha-U of a corpus, accumulated one document at a time.
+ * Documents are added in the order they are concatenated, and only
+ * {@link UnitizingStatistics} of the current document need to be in memory.
+ *
+ * Per category, observed disagreement is a running sum, and expected
+ * disagreement is kept as unit counts, sums over unit lengths, and two
+ * histograms: l^2 weights of units by length, and gaps by length. Their
+ * size is bounded by the number of distinct lengths, not by the corpus. A
+ * gap touching the end of a document is joined with whatever comes before
+ * the first unit in following documents, so it is held back per rater
+ * until the next unit of the category shows up.
+ */
+public class AlphaUAccumulator {
+
+    private final int raterCount;
+    private long length;
+    private final Map<Object, CategoryAccumulator> categories;
+
+    public AlphaUAccumulator(int raterCount) {
+        this.raterCount = raterCount;
+        this.length = 0;
+        this.categories = new LinkedHashMap<>();
+    }
+
+    public void add(UnitizingStatistics document) {
+        for (Map.Entry<Object, UnitizingStatistics.CategoryStatistics> category : document.getCategories().entrySet()) {
+            // a category first seen here has been a single gap so far
+            categories.computeIfAbsent(category.getKey(), key -> new CategoryAccumulator(raterCount, length))
+                    .add(category.getValue(), document.getLength());
+        }
+        for (Map.Entry<Object, CategoryAccumulator> category : categories.entrySet()) {
+            if (!document.getCategories().containsKey(category.getKey())) {
+                category.getValue().extendPendingGaps(document.getLength());
+            }
+        }
+        length += document.getLength();
+    }
+
+    /**
+     * @return total length of documents added so far
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Computes alpha-U of documents added so far; more documents can be added afterwards.
+     *
+     * @return alpha-U, NaN when no unit has been added
+     */
+    public double getAlphaU() {
+        double observed = 0.0;
+        double expected = 0.0;
+        for (CategoryAccumulator category : categories.values()) {
+            observed += category.getObservedDisagreement(raterCount, length);
+            expected += category.getExpectedDisagreement(raterCount, length);
+        }
+        observed /= categories.size();
+        expected /= categories.size();
+        return observed == expected ? 0.0 : 1.0 - observed / expected;
+    }
+
+    private static class CategoryAccumulator {
+
+        private double observedSum;
+        private long unitCount;
+        private double lengthPairSum;
+        private double cubicSum;
+        // unit length -> sum of l^2 of units of that length
+        private final TreeMap<Long, double[]> unitWeights;
+        // gap length -> number of gaps
+        private final TreeMap<Long, long[]> gapCounts;
+        // gaps of raters still open at the end of the last document
+        private final long[] pendingGaps;
+
+        CategoryAccumulator(int raterCount, long offset) {
+            this.unitWeights = new TreeMap<>();
+            this.gapCounts = new TreeMap<>();
+            this.pendingGaps = new long[raterCount];
+            Arrays.fill(pendingGaps, offset);
+        }
+
+        void add(UnitizingStatistics.CategoryStatistics statistics, long documentLength) {
+            observedSum += statistics.observedSum;
+            unitCount += statistics.unitCount;
+            lengthPairSum += statistics.lengthPairSum;
+            cubicSum += statistics.cubicSum;
+            for (int i = 0; i < statistics.unitLengths.length; i++) {
+                unitWeights.computeIfAbsent(statistics.unitLengths[i], key -> new double[1])[0] += statistics.unitWeights[i];
+            }
+            for (long gap : statistics.innerGaps) {
+                addGap(gap);
+            }
+            for (int rater = 0; rater < pendingGaps.length; rater++) {
+                if (statistics.hasUnits[rater]) {
+                    addGap(pendingGaps[rater] + statistics.headGaps[rater]);
+                    pendingGaps[rater] = statistics.tailGaps[rater];
+                } else {
+                    pendingGaps[rater] += documentLength;
+                }
+            }
+        }
+
+        void extendPendingGaps(long length) {
+            for (int rater = 0; rater < pendingGaps.length; rater++) {
+                pendingGaps[rater] += length;
+            }
+        }
+
+        private void addGap(long gap) {
+            // gaps of overlapping units are negative, and nothing fits in an empty gap
+            if (gap > 0) {
+                gapCounts.computeIfAbsent(gap, key -> new long[1])[0]++;
+            }
+        }
+
+        double getObservedDisagreement(int raterCount, long length) {
+            return 2.0 * observedSum / ((double) raterCount * (raterCount - 1) * length * length);
+        }
+
+        double getExpectedDisagreement(int raterCount, long length) {
+            // walks both histograms from the longest length down, with running
+            // count and sum of gaps long enough for the current unit length
+            Iterator<Map.Entry<Long, long[]>> gaps = gapCounts.descendingMap().entrySet().iterator();
+            Map.Entry<Long, long[]> gap = gaps.hasNext() ? gaps.next() : null;
+            long fittingCount = 0;
+            double fittingSum = 0.0;
+            double fitSum = 0.0;
+            for (Map.Entry<Long, double[]> unitWeight : unitWeights.descendingMap().entrySet()) {
+                long unitLength = unitWeight.getKey();
+                while (gap != null && gap.getKey() >= unitLength) {
+                    fittingCount += gap.getValue()[0];
+                    fittingSum += (double) gap.getKey() * gap.getValue()[0];
+                    gap = gaps.hasNext() ? gaps.next() : null;
+                }
+                double fits = fittingSum - (double) fittingCount * (unitLength - 1);
+                // open gaps are closed by the end of the corpus
+                for (long pendingGap : pendingGaps) {
+                    if (pendingGap > 0 && pendingGap >= unitLength) {
+                        fits += pendingGap - unitLength + 1;
+                    }
+                }
+                fitSum += unitWeight.getValue()[0] * fits;
+            }
+
+            double numerator = (unitCount - 1) * cubicSum / 3.0 + fitSum;
+            double denominator = (double) raterCount * length * ((double) raterCount * length - 1) - lengthPairSum;
+            return 2.0 / length * numerator / denominator;
+        }
+    }
+}
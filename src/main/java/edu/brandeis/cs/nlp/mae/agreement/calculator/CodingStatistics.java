@@ -0,0 +1,172 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sufficient statistics of a coding study, e.g. of the items found in a
+ * single document. Statistics of documents can be merged, and chance-corrected
+ * agreements of merged statistics are the same as computed by dkpro's
+ * {@code FleissKappaAgreement} and {@code HubertKappaAgreement} on a study
+ * of all their items. Null codings are treated as missing, as dkpro does.
+ */
+public class CodingStatistics {
+
+    private final int raterCount;
+    private int itemCount;
+    // sum over items with two or more codings of sum_c n_c (n_c - 1) / (r - 1)
+    private double observedSum;
+    // sum over items with two or more codings of r
+    private long observedRaterSum;
+    // sum over items of n_c / r, per category
+    private final Map<Object, double[]> categoryShares;
+    // number of codings per category and rater
+    private final Map<Object, long[]> categoryRaterCounts;
+
+    public CodingStatistics(int raterCount) {
+        this.raterCount = raterCount;
+        this.categoryShares = new HashMap<>();
+        this.categoryRaterCounts = new HashMap<>();
+    }
+
+    public static CodingStatistics of(int raterCount, List<Object[]> items) {
+        CodingStatistics statistics = new CodingStatistics(raterCount);
+        for (Object[] item : items) {
+            statistics.addItem(item);
+        }
+        return statistics;
+    }
+
+    /**
+     * Merges statistics of documents in a sample; a document is merged as many
+     * times as its index appears in the sample.
+     */
+    public static CodingStatistics merge(List<CodingStatistics> documents, int[] sample, int raterCount) {
+        CodingStatistics merged = new CodingStatistics(raterCount);
+        for (int document : sample) {
+            merged.add(documents.get(document));
+        }
+        return merged;
+    }
+
+    public void addItem(Object[] codings) {
+        itemCount++;
+        Map<Object, Integer> counts = new HashMap<>();
+        int codingCount = 0;
+        for (int rater = 0; rater < codings.length; rater++) {
+            Object category = codings[rater];
+            if (category != null) {
+                codingCount++;
+                counts.merge(category, 1, Integer::sum);
+                categoryRaterCounts.computeIfAbsent(category, key -> new long[raterCount])[rater]++;
+            }
+        }
+        for (Map.Entry<Object, Integer> count : counts.entrySet()) {
+            categoryShares.computeIfAbsent(count.getKey(), key -> new double[1])[0] += (double) count.getValue() / codingCount;
+        }
+        if (codingCount > 1) {
+            double agreeingPairs = 0.0;
+            for (int count : counts.values()) {
+                agreeingPairs += count * (count - 1);
+            }
+            observedSum += agreeingPairs / (codingCount - 1);
+            observedRaterSum += codingCount;
+        }
+    }
+
+    public void add(CodingStatistics other) {
+        itemCount += other.itemCount;
+        observedSum += other.observedSum;
+        observedRaterSum += other.observedRaterSum;
+        for (Map.Entry<Object, double[]> share : other.categoryShares.entrySet()) {
+            categoryShares.computeIfAbsent(share.getKey(), key -> new double[1])[0] += share.getValue()[0];
+        }
+        for (Map.Entry<Object, long[]> counts : other.categoryRaterCounts.entrySet()) {
+            long[] merged = categoryRaterCounts.computeIfAbsent(counts.getKey(), key -> new long[raterCount]);
+            for (int rater = 0; rater < raterCount; rater++) {
+                merged[rater] += counts.getValue()[rater];
+            }
+        }
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getCategoryCount() {
+        return categoryRaterCounts.size();
+    }
+
+    /**
+     * @return observed agreement, NaN when less than two categories are used
+     */
+    public double getObservedAgreement() {
+        if (getCategoryCount() <= 1) {
+            return Double.NaN;
+        }
+        return observedSum / observedRaterSum;
+    }
+
+    /**
+     * @return Fleiss' kappa (multi-pi), NaN when undefined
+     */
+    public double getFleissKappa() {
+        double expected = 0.0;
+        for (double[] share : categoryShares.values()) {
+            expected += share[0] * share[0];
+        }
+        expected /= (double) itemCount * itemCount;
+        return chanceCorrected(getObservedAgreement(), expected);
+    }
+
+    /**
+     * @return Hubert's kappa (multi-kappa), NaN when undefined
+     */
+    public double getHubertKappa() {
+        double expected = 0.0;
+        for (long[] counts : categoryRaterCounts.values()) {
+            for (int i = 0; i < raterCount; i++) {
+                for (int j = i + 1; j < raterCount; j++) {
+                    expected += (double) counts[i] * counts[j];
+                }
+            }
+        }
+        expected = 2.0 * expected / ((double) raterCount * (raterCount - 1) * itemCount * itemCount);
+        return chanceCorrected(getObservedAgreement(), expected);
+    }
+
+    private static double chanceCorrected(double observed, double expected) {
+        if (expected == 0.0) {
+            return observed;
+        }
+        if (observed == 1.0 && expected == 1.0) {
+            return Double.NaN;
+        }
+        return (observed - expected) / (1.0 - expected);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+/**
+ * Percentile bootstrap confidence interval of an agreement score.
+ */
+public class ConfidenceInterval {
+
+    private final double lower;
+    private final double upper;
+    private final double confidence;
+    private final int resampleCount;
+    private final int undefinedCount;
+
+    public ConfidenceInterval(double lower, double upper, double confidence, int resampleCount, int undefinedCount) {
+        this.lower = lower;
+        this.upper = upper;
+        this.confidence = confidence;
+        this.resampleCount = resampleCount;
+        this.undefinedCount = undefinedCount;
+    }
+
+    public double getLower() {
+        return lower;
+    }
+
+    public double getUpper() {
+        return upper;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public int getResampleCount() {
+        return resampleCount;
+    }
+
+    /**
+     * @return number of resamples where agreement was undefined (e.g. only one category was used)
+     */
+    public int getUndefinedCount() {
+        return undefinedCount;
+    }
+
+    public boolean contains(double agreement) {
+        return lower <= agreement && agreement <= upper;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[% .4f, % .4f]", lower, upper);
+    }
+}
@@ -24,16 +24,15 @@
 
 package edu.brandeis.cs.nlp.mae.agreement.calculator;
 
+import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
 import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
-import edu.brandeis.cs.nlp.mae.database.MaeDBException;
-import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
-import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
-import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -49,24 +48,38 @@ public class GlobalAlphaUCalc extends AbstractUnitizationAgreementCalc {
     }
 
     @Override
-    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeDBException {
+    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
         Map<String, Double> globalAlphaU = new TreeMap<>();
 
-        UnitizingAnnotationStudy study = new UnitizingAnnotationStudy(numAnnotators, totalDocumentsLength);
-        int curDocLength = 0;
+        AlphaUAccumulator accumulator = new AlphaUAccumulator(numAnnotators);
         List<String> documents = fileIdx.getDocumentNames();
         for (int i = 0; i < documents.size(); i++) {
-            String document = documents.get(i);
-            MaeXMLParser[] parses = parseCache.getParses(document);
-            for (String tagTypeName : targetTagsAndAtts.keyList()) {
-                addTagAsUnits(tagTypeName, parses, curDocLength, study);
-            }
-            curDocLength += documentLength[i];
+            accumulator.add(getStatistics(i, getCrossTagUnits(documents.get(i), targetTagsAndAtts)));
         }
-        double agree = (new KrippendorffAlphaUnitizingAgreement(study)).calculateAgreement();
-        globalAlphaU.put("cross-tag_alpha_u", agree);
+        globalAlphaU.put("cross-tag_alpha_u", accumulator.getAlphaU());
         return globalAlphaU;
 
     }
 
+    @Override
+    public Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException {
+        Map<String, ConfidenceInterval> intervals = new TreeMap<>();
+
+        List<UnitizingStatistics> statistics = new ArrayList<>();
+        List<String> documents = fileIdx.getDocumentNames();
+        for (int i = 0; i < documents.size(); i++) {
+            statistics.add(getStatistics(i, getCrossTagUnits(documents.get(i), targetTagsAndAtts)));
+        }
+        intervals.put("cross-tag_alpha_u", estimateConfidenceInterval(statistics, bootstrap));
+        return intervals;
+    }
+
+    private DocumentUnits getCrossTagUnits(String document, MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+        DocumentUnits units = new DocumentUnits();
+        for (String tagTypeName : targetTagsAndAtts.keyList()) {
+            units.addAll(getTagUnits(document, tagTypeName));
+        }
+        return units;
+    }
+
 }
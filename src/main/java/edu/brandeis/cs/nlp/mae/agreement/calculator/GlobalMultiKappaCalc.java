@@ -33,6 +33,7 @@ import org.dkpro.statistics.agreement.coding.HubertKappaAgreement;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -53,6 +54,14 @@ public class GlobalMultiKappaCalc extends AbstractCodingAgreementCalc {
         globalMultiKappa.put("cross-tag_multi_kappa", agreement);
         return globalMultiKappa;
     }
+
+    @Override
+    public Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException {
+        Map<String, ConfidenceInterval> intervals = new TreeMap<>();
+        List<CodingStatistics> statistics = prepareGlobalCodingStatistics(targetTagsAndAtts);
+        intervals.put("cross-tag_multi_kappa", estimateConfidenceInterval(statistics, bootstrap, CodingStatistics::getHubertKappa));
+        return intervals;
+    }
 }
 
 
@@ -33,6 +33,7 @@ import org.dkpro.statistics.agreement.coding.FleissKappaAgreement;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -53,6 +54,14 @@ public class GlobalMultiPiCalc extends AbstractCodingAgreementCalc {
         globalMultiPi.put("cross-tag_multi_pi", agreement);
         return globalMultiPi;
     }
+
+    @Override
+    public Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException {
+        Map<String, ConfidenceInterval> intervals = new TreeMap<>();
+        List<CodingStatistics> statistics = prepareGlobalCodingStatistics(targetTagsAndAtts);
+        intervals.put("cross-tag_multi_pi", estimateConfidenceInterval(statistics, bootstrap, CodingStatistics::getFleissKappa));
+        return intervals;
+    }
 }
 
 
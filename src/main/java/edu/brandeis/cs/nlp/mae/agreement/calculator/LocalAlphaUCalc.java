@@ -24,13 +24,11 @@
 
 package edu.brandeis.cs.nlp.mae.agreement.calculator;
 
+import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
 import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
-import edu.brandeis.cs.nlp.mae.database.MaeDBException;
-import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
-import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
-import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
@@ -50,38 +48,53 @@ public class LocalAlphaUCalc extends AbstractUnitizationAgreementCalc {
     }
 
     @Override
-    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeDBException {
+    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
         Map<String, Double> alphaUs = new TreeMap<>();
 
-        Map<String, String> attFullNameMap = new HashMap<>();
+        List<String> documents = fileIdx.getDocumentNames();
         for (String tagTypeName : targetTagsAndAtts.keyList()) {
-            Map<String, UnitizingAnnotationStudy> studyPerAtt = new LinkedHashMap<>();
             List<String> attTypeNames = targetTagsAndAtts.getAsList(tagTypeName);
             attTypeNames.add(0, SPAN_ATT);
+            Map<String, AlphaUAccumulator> accumulatorPerAtt = new LinkedHashMap<>();
             for (String attTypeName : attTypeNames) {
-                String attFullName = tagTypeName + TAG_ATT_DELIM + attTypeName;
-                studyPerAtt.put(attFullName, new UnitizingAnnotationStudy(numAnnotators, totalDocumentsLength));
-                attFullNameMap.put(attTypeName, attFullName);
+                accumulatorPerAtt.put(attTypeName, new AlphaUAccumulator(numAnnotators));
             }
-            int curDocLength = 0;
-            List<String> documents = fileIdx.getDocumentNames();
+            // one document at a time, so only its units need to be kept around
             for (int i = 0; i < documents.size(); i++) {
-                String document = documents.get(i);
-                MaeXMLParser[] parses = getParses(document);
-
-                addTagAsUnits(tagTypeName, parses, curDocLength, studyPerAtt.get(attFullNameMap.get(SPAN_ATT)));
-                for (int j = 1; j < attTypeNames.size(); j++) {
-                    String attTypeName = attTypeNames.get(j);
-                    addAttAsUnits(tagTypeName, attTypeName, parses, curDocLength, studyPerAtt.get(attFullNameMap.get(attTypeName)));
+                for (String attTypeName : attTypeNames) {
+                    accumulatorPerAtt.get(attTypeName).add(getStatistics(i, getUnits(documents.get(i), tagTypeName, attTypeName)));
                 }
-                curDocLength += documentLength[i];
             }
             for (String attTypeName : attTypeNames) {
-                double agree = (new KrippendorffAlphaUnitizingAgreement(studyPerAtt.get(attFullNameMap.get(attTypeName)))).calculateAgreement();
-                alphaUs.put(attFullNameMap.get(attTypeName), agree);
+                alphaUs.put(tagTypeName + TAG_ATT_DELIM + attTypeName, accumulatorPerAtt.get(attTypeName).getAlphaU());
             }
         }
         return alphaUs;
     }
 
+    @Override
+    public Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException {
+        Map<String, ConfidenceInterval> intervals = new TreeMap<>();
+
+        List<String> documents = fileIdx.getDocumentNames();
+        for (String tagTypeName : targetTagsAndAtts.keyList()) {
+            List<String> attTypeNames = targetTagsAndAtts.getAsList(tagTypeName);
+            attTypeNames.add(0, SPAN_ATT);
+            for (String attTypeName : attTypeNames) {
+                List<UnitizingStatistics> statistics = new ArrayList<>();
+                for (int i = 0; i < documents.size(); i++) {
+                    statistics.add(getStatistics(i, getUnits(documents.get(i), tagTypeName, attTypeName)));
+                }
+                intervals.put(tagTypeName + TAG_ATT_DELIM + attTypeName, estimateConfidenceInterval(statistics, bootstrap));
+            }
+        }
+        return intervals;
+    }
+
+    private DocumentUnits getUnits(String document, String tagTypeName, String attTypeName) throws IOException, SAXException, MaeException {
+        return attTypeName.equals(SPAN_ATT) ?
+                getTagUnits(document, tagTypeName) :
+                getAttUnits(document, tagTypeName, attTypeName);
+    }
+
 }
@@ -33,6 +33,7 @@ import org.dkpro.statistics.agreement.coding.FleissKappaAgreement;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -54,4 +55,14 @@ public class LocalMultiPiCalc extends AbstractCodingAgreementCalc {
         }
         return localMultiPi;
     }
+
+    @Override
+    public Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException {
+        Map<String, ConfidenceInterval> intervals = new TreeMap<>();
+        Map<String, List<CodingStatistics>> statistics = prepareLocalCodingStatistics(targetTagsAndAtts);
+        for (String attFullName : statistics.keySet()) {
+            intervals.put(attFullName, estimateConfidenceInterval(statistics.get(attFullName), bootstrap, CodingStatistics::getFleissKappa));
+        }
+        return intervals;
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import edu.brandeis.cs.nlp.mae.MaeException;
+import edu.brandeis.cs.nlp.mae.agreement.io.AbstractAnnotationIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentCodings;
+import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
+import edu.brandeis.cs.nlp.mae.util.MappedSet;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.*;
+
+import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.SPAN_ATT;
+import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.TAG_ATT_DELIM;
+
+/**
+ * Computes agreements between every pair of annotators on the same local
+ * codings multi-pi and multi-kappa use, so that an annotator who disagrees
+ * with everyone else can be found without running calculators on subsets
+ * of annotation files. As an aggregate, reports the mean of pairwise
+ * Cohen's kappas.
+ */
+public class PairwiseAgreementCalc extends AbstractCodingAgreementCalc {
+
+    public PairwiseAgreementCalc(AbstractAnnotationIndexer fileIdx, XMLParseCache parseCache) {
+        super(fileIdx, parseCache);
+    }
+
+    /**
+     * @return names of annotators, in the order of codings in items
+     */
+    List<String> getAnnotatorNames() {
+        String[] names = new String[numAnnotators];
+        for (String annotator : fileIdx.getAnnotators()) {
+            names[fileIdx.getAnnotatorIndex(annotator)] = annotator;
+        }
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Computes pairwise agreement matrices of local codings, keyed by full
+     * attribute names as in {@link #prepareLocalCodingStudies(MappedSet)}.
+     */
+    public Map<String, PairwiseAgreementMatrix> calculateMatrices(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+        Map<String, PairwiseAgreementMatrix> matrices = new TreeMap<>();
+        for (Map.Entry<String, List<PairwiseAgreementMatrix>> perDocument : prepareDocumentMatrices(targetTagsAndAtts).entrySet()) {
+            PairwiseAgreementMatrix merged = new PairwiseAgreementMatrix(getAnnotatorNames());
+            for (PairwiseAgreementMatrix matrix : perDocument.getValue()) {
+                merged.add(matrix);
+            }
+            matrices.put(perDocument.getKey(), merged);
+        }
+        return matrices;
+    }
+
+    /**
+     * Reads local codings of each document once, into a matrix per document and attribute.
+     */
+    Map<String, List<PairwiseAgreementMatrix>> prepareDocumentMatrices(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+
+        List<String> annotators = getAnnotatorNames();
+        Map<String, List<PairwiseAgreementMatrix>> matricesPerAtt = new LinkedHashMap<>();
+        List<String> documents = fileIdx.getDocumentNames();
+        for (String tagTypeName : targetTagsAndAtts.keyList()) {
+            List<String> attTypeNames = targetTagsAndAtts.getAsList(tagTypeName);
+            attTypeNames.add(0, SPAN_ATT);
+            for (String attTypeName : attTypeNames) {
+                matricesPerAtt.put(tagTypeName + TAG_ATT_DELIM + attTypeName, new ArrayList<>());
+            }
+            for (String document : documents) {
+                DocumentCodings codings = getLocalCodings(document, tagTypeName, attTypeNames);
+                for (String attTypeName : attTypeNames) {
+                    PairwiseAgreementMatrix matrix = new PairwiseAgreementMatrix(annotators);
+                    for (Object[] item : codings.getItems(attTypeName)) {
+                        matrix.addItem(item);
+                    }
+                    matricesPerAtt.get(tagTypeName + TAG_ATT_DELIM + attTypeName).add(matrix);
+                }
+            }
+        }
+        return matricesPerAtt;
+    }
+
+    @Override
+    public Map<String, Double> calculateAgreement(MappedSet<String, String> targetTagsAndAtts) throws IOException, SAXException, MaeException {
+        Map<String, Double> meanKappas = new TreeMap<>();
+        Map<String, PairwiseAgreementMatrix> matrices = calculateMatrices(targetTagsAndAtts);
+        for (String attFullName : matrices.keySet()) {
+            meanKappas.put(attFullName, matrices.get(attFullName).getMeanCohenKappa());
+        }
+        return meanKappas;
+    }
+
+    @Override
+    public Map<String, ConfidenceInterval> calculateConfidenceIntervals(MappedSet<String, String> targetTagsAndAtts, AgreementBootstrap bootstrap) throws IOException, SAXException, MaeException {
+        Map<String, ConfidenceInterval> intervals = new TreeMap<>();
+        List<String> annotators = getAnnotatorNames();
+        Map<String, List<PairwiseAgreementMatrix>> matrices = prepareDocumentMatrices(targetTagsAndAtts);
+        for (String attFullName : matrices.keySet()) {
+            List<PairwiseAgreementMatrix> documents = matrices.get(attFullName);
+            intervals.put(attFullName, bootstrap.estimate(documents.size(), sample -> {
+                PairwiseAgreementMatrix merged = new PairwiseAgreementMatrix(annotators);
+                for (int document : sample) {
+                    merged.add(documents.get(document));
+                }
+                return merged.getMeanCohenKappa();
+            }));
+        }
+        return intervals;
+    }
+}
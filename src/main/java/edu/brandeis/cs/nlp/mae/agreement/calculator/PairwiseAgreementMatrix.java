@@ -0,0 +1,198 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agreements between every pair of annotators on a coding study. Items are
+ * read once, and for each pair of annotators who both coded an item, the
+ * pair's contingency counts are updated: number of items, number of
+ * agreeing items and row and column totals per category. That's all
+ * Cohen's kappa of a pair needs, so kappas of all pairs come out of a
+ * single pass, instead of a study per pair.
+ */
+public class PairwiseAgreementMatrix {
+
+    private final List<String> annotators;
+    private final PairCounts[] pairs;
+
+    /**
+     * @param annotators names of annotators, in the order of codings in items
+     */
+    public PairwiseAgreementMatrix(List<String> annotators) {
+        this.annotators = annotators;
+        int size = annotators.size();
+        this.pairs = new PairCounts[size * (size - 1) / 2];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new PairCounts();
+        }
+    }
+
+    public List<String> getAnnotators() {
+        return annotators;
+    }
+
+    public int size() {
+        return annotators.size();
+    }
+
+    private int pairIndex(int first, int second) {
+        if (first > second) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        // pairs are laid out row by row in the upper triangle
+        return first * (2 * size() - first - 1) / 2 + (second - first - 1);
+    }
+
+    /**
+     * Adds an item; a null coding means the annotator did not code it, and
+     * leaves out every pair with that annotator.
+     */
+    public void addItem(Object[] codings) {
+        for (int i = 0; i < codings.length; i++) {
+            if (codings[i] == null) {
+                continue;
+            }
+            for (int j = i + 1; j < codings.length; j++) {
+                if (codings[j] != null) {
+                    pairs[pairIndex(i, j)].add(codings[i], codings[j]);
+                }
+            }
+        }
+    }
+
+    public void add(PairwiseAgreementMatrix other) {
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i].add(other.pairs[i]);
+        }
+    }
+
+    public long getItemCount(int first, int second) {
+        return first == second ? 0 : pairs[pairIndex(first, second)].itemCount;
+    }
+
+    /**
+     * @return proportion of items two annotators coded the same, NaN when they share no items
+     */
+    public double getObservedAgreement(int first, int second) {
+        if (first == second) {
+            return 1.0;
+        }
+        PairCounts counts = pairs[pairIndex(first, second)];
+        return counts.itemCount == 0 ? Double.NaN : (double) counts.agreeingCount / counts.itemCount;
+    }
+
+    /**
+     * @return Cohen's kappa of two annotators, NaN when undefined
+     */
+    public double getCohenKappa(int first, int second) {
+        if (first == second) {
+            return 1.0;
+        }
+        PairCounts counts = pairs[pairIndex(first, second)];
+        if (counts.itemCount == 0) {
+            return Double.NaN;
+        }
+        double observed = (double) counts.agreeingCount / counts.itemCount;
+        double expected = 0.0;
+        for (Map.Entry<Object, long[]> row : counts.firstTotals.entrySet()) {
+            long[] column = counts.secondTotals.get(row.getKey());
+            if (column != null) {
+                expected += (double) row.getValue()[0] * column[0];
+            }
+        }
+        expected /= (double) counts.itemCount * counts.itemCount;
+        if (expected == 1.0) {
+            return Double.NaN;
+        }
+        return (observed - expected) / (1.0 - expected);
+    }
+
+    /**
+     * @return mean of Cohen's kappas of all pairs where it is defined (Light's kappa), NaN if none
+     */
+    public double getMeanCohenKappa() {
+        double sum = 0.0;
+        int defined = 0;
+        for (int i = 0; i < size(); i++) {
+            for (int j = i + 1; j < size(); j++) {
+                double kappa = getCohenKappa(i, j);
+                if (!Double.isNaN(kappa)) {
+                    sum += kappa;
+                    defined++;
+                }
+            }
+        }
+        return defined == 0 ? Double.NaN : sum / defined;
+    }
+
+    /**
+     * @return mean of Cohen's kappas between an annotator and all others, NaN if none is defined
+     */
+    public double getMeanCohenKappa(int annotator) {
+        double sum = 0.0;
+        int defined = 0;
+        for (int other = 0; other < size(); other++) {
+            double kappa = other == annotator ? Double.NaN : getCohenKappa(annotator, other);
+            if (!Double.isNaN(kappa)) {
+                sum += kappa;
+                defined++;
+            }
+        }
+        return defined == 0 ? Double.NaN : sum / defined;
+    }
+
+    private static class PairCounts {
+        long itemCount;
+        long agreeingCount;
+        final Map<Object, long[]> firstTotals = new HashMap<>();
+        final Map<Object, long[]> secondTotals = new HashMap<>();
+
+        void add(Object first, Object second) {
+            itemCount++;
+            if (first.equals(second)) {
+                agreeingCount++;
+            }
+            firstTotals.computeIfAbsent(first, key -> new long[1])[0]++;
+            secondTotals.computeIfAbsent(second, key -> new long[1])[0]++;
+        }
+
+        void add(PairCounts other) {
+            itemCount += other.itemCount;
+            agreeingCount += other.agreeingCount;
+            for (Map.Entry<Object, long[]> total : other.firstTotals.entrySet()) {
+                firstTotals.computeIfAbsent(total.getKey(), key -> new long[1])[0] += total.getValue()[0];
+            }
+            for (Map.Entry<Object, long[]> total : other.secondTotals.entrySet()) {
+                secondTotals.computeIfAbsent(total.getKey(), key -> new long[1])[0] += total.getValue()[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+
+import java.util.*;
+
+/**
+ * Aligns tags of all annotators of a document into units to code. Tags of
+ * each annotator come already sorted by spans from their parse, then a
+ * single sweep over all annotators emits units with the tags of each
+ * annotator that fall in them, so
+ * calculators don't need to look up spans in every parse again.
+ *
+ * With {@link Matching#EXACT}, a unit is a distinct span, and tags hit it
+ * only with exactly the same spans. With {@link Matching#OVERLAP}, tags of
+ * different annotators sharing characters are aligned together, which
+ * measures agreement with relaxed boundaries. A minimum overlap ratio
+ * (shared characters over characters covered by either tag) can be set to
+ * exclude marginal overlaps. Non-consuming tags have no span, and are
+ * aligned as a single unit in both modes.
+ */
+public class SpanAligner {
+
+    public enum Matching { EXACT, OVERLAP }
+
+    public static final SpanAligner EXACT = new SpanAligner(Matching.EXACT, 0.0);
+
+    private final Matching matching;
+    private final double minOverlap;
+
+    /**
+     * @param matching - how spans of annotators are matched
+     * @param minOverlap - with overlap matching, minimum ratio of shared characters
+     *                   to align two tags; 0 aligns any overlapping tags
+     */
+    public SpanAligner(Matching matching, double minOverlap) {
+        if (minOverlap < 0.0 || minOverlap > 1.0) {
+            throw new IllegalArgumentException("overlap ratio must be between 0 and 1: " + minOverlap);
+        }
+        this.matching = matching;
+        this.minOverlap = minOverlap;
+    }
+
+    public static SpanAligner overlap(double minOverlap) {
+        return new SpanAligner(Matching.OVERLAP, minOverlap);
+    }
+
+    public Matching getMatching() {
+        return matching;
+    }
+
+    public double getMinOverlap() {
+        return minOverlap;
+    }
+
+    public boolean isExact() {
+        return matching == Matching.EXACT;
+    }
+
+    /**
+     * @return a string identifying this alignment in cache keys, empty for exact matching
+     */
+    public String getKey() {
+        return isExact() ? "" : String.format("overlap>=%s", minOverlap);
+    }
+
+    @Override
+    public String toString() {
+        return isExact() ? "exact" : String.format("overlap (>= %.2f)", minOverlap);
+    }
+
+    /**
+     * Aligns tags of given types of all annotators.
+     *
+     * @param parses parses of a document, by annotator; null when an annotator has no annotation
+     * @return aligned units, in the order of their spans
+     */
+    public List<AlignedUnit> align(CompactAnnotation[] parses, Collection<String> tagTypeNames) {
+        List<int[]> tagsPerAnnotator = new ArrayList<>();
+        for (CompactAnnotation parse : parses) {
+            tagsPerAnnotator.add(parse == null ? new int[0] : parse.getTagsInSpanOrder(tagTypeNames));
+        }
+        return isExact() ? alignExactly(parses, tagsPerAnnotator) : alignOverlapping(parses, tagsPerAnnotator);
+    }
+
+    /**
+     * Compares [start, end) pairs of two tags lexicographically; a non-consuming tag comes first.
+     */
+    static int compareSpans(CompactAnnotation parse, int tag, CompactAnnotation otherParse, int otherTag) {
+        int pairs = parse.getSpanPairCount(tag);
+        int otherPairs = otherParse.getSpanPairCount(otherTag);
+        for (int p = 0; p < Math.min(pairs, otherPairs); p++) {
+            int c = Integer.compare(parse.getSpanPairStart(tag, p), otherParse.getSpanPairStart(otherTag, p));
+            if (c == 0) {
+                c = Integer.compare(parse.getSpanPairEnd(tag, p), otherParse.getSpanPairEnd(otherTag, p));
+            }
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(pairs, otherPairs);
+    }
+
+    /**
+     * Merges sorted tag lists of annotators; each step takes the smallest
+     * span among heads of the lists, and all tags with that span.
+     */
+    private List<AlignedUnit> alignExactly(CompactAnnotation[] parses, List<int[]> tagsPerAnnotator) {
+        int annotatorCount = parses.length;
+        int[] heads = new int[annotatorCount];
+        List<AlignedUnit> units = new ArrayList<>();
+        while (true) {
+            int smallest = -1;
+            for (int a = 0; a < annotatorCount; a++) {
+                if (heads[a] < tagsPerAnnotator.get(a).length && (smallest < 0 ||
+                        compareSpans(parses[a], tagsPerAnnotator.get(a)[heads[a]],
+                                parses[smallest], tagsPerAnnotator.get(smallest)[heads[smallest]]) < 0)) {
+                    smallest = a;
+                }
+            }
+            if (smallest < 0) {
+                return units;
+            }
+            CompactAnnotation unitParse = parses[smallest];
+            int unitTag = tagsPerAnnotator.get(smallest)[heads[smallest]];
+            AlignedUnit unit = new AlignedUnit(annotatorCount, getStart(unitParse, unitTag), getEnd(unitParse, unitTag));
+            for (int a = 0; a < annotatorCount; a++) {
+                int[] tags = tagsPerAnnotator.get(a);
+                while (heads[a] < tags.length && compareSpans(parses[a], tags[heads[a]], unitParse, unitTag) == 0) {
+                    unit.hit(a, tags[heads[a]++], 0);
+                }
+            }
+            units.add(unit);
+        }
+    }
+
+    /**
+     * Sweeps tags of all annotators by their start, keeping tags still open
+     * at the current position; a tag is aligned with each open tag of
+     * another annotator it overlaps enough, and aligned tags form a unit.
+     */
+    private List<AlignedUnit> alignOverlapping(CompactAnnotation[] parses, List<int[]> tagsPerAnnotator) {
+        int annotatorCount = parses.length;
+        // non-consuming tags come first in sorted lists, and are aligned as one unit
+        AlignedUnit nonConsuming = new AlignedUnit(annotatorCount, -1, -1);
+        List<long[]> sweep = new ArrayList<>();
+        for (int a = 0; a < annotatorCount; a++) {
+            for (int tag : tagsPerAnnotator.get(a)) {
+                if (parses[a].getSpanPairCount(tag) == 0) {
+                    nonConsuming.hit(a, tag, 0);
+                } else {
+                    sweep.add(new long[]{getStart(parses[a], tag), getEnd(parses[a], tag), a, tag});
+                }
+            }
+        }
+        sweep.sort((x, y) -> x[0] != y[0] ? Long.compare(x[0], y[0]) : Long.compare(x[1], y[1]));
+
+        int[] parents = new int[sweep.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        List<Integer> open = new ArrayList<>();
+        for (int i = 0; i < sweep.size(); i++) {
+            long[] current = sweep.get(i);
+            open.removeIf(j -> sweep.get(j)[1] <= current[0]);
+            for (int j : open) {
+                long[] other = sweep.get(j);
+                if (other[2] != current[2] && overlapsEnough(parses[(int) other[2]], (int) other[3],
+                        parses[(int) current[2]], (int) current[3])) {
+                    parents[find(parents, i)] = find(parents, j);
+                }
+            }
+            open.add(i);
+        }
+
+        List<AlignedUnit> units = new ArrayList<>();
+        if (nonConsuming.isHit()) {
+            units.add(nonConsuming);
+        }
+        Map<Integer, AlignedUnit> unitOfRoot = new HashMap<>();
+        for (int i = 0; i < sweep.size(); i++) {
+            long[] item = sweep.get(i);
+            int annotator = (int) item[2];
+            int tag = (int) item[3];
+            AlignedUnit unit = unitOfRoot.get(find(parents, i));
+            if (unit == null) {
+                unit = new AlignedUnit(annotatorCount, (int) item[0], (int) item[1]);
+                unitOfRoot.put(find(parents, i), unit);
+                units.add(unit);
+            }
+            unit.hit(annotator, tag, getLength(parses[annotator], tag));
+            unit.end = Math.max(unit.end, (int) item[1]);
+        }
+        return units;
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private boolean overlapsEnough(CompactAnnotation parse, int tag, CompactAnnotation otherParse, int otherTag) {
+        int shared = 0;
+        int p = 0;
+        int q = 0;
+        while (p < parse.getSpanPairCount(tag) && q < otherParse.getSpanPairCount(otherTag)) {
+            int start = Math.max(parse.getSpanPairStart(tag, p), otherParse.getSpanPairStart(otherTag, q));
+            int end = Math.min(parse.getSpanPairEnd(tag, p), otherParse.getSpanPairEnd(otherTag, q));
+            if (end > start) {
+                shared += end - start;
+            }
+            if (parse.getSpanPairEnd(tag, p) < otherParse.getSpanPairEnd(otherTag, q)) {
+                p++;
+            } else {
+                q++;
+            }
+        }
+        if (shared == 0) {
+            return false;
+        }
+        int covered = getLength(parse, tag) + getLength(otherParse, otherTag) - shared;
+        return (double) shared / covered >= minOverlap;
+    }
+
+    private static int getStart(CompactAnnotation parse, int tag) {
+        return parse.getSpanPairCount(tag) == 0 ? -1 : parse.getSpanPairStart(tag, 0);
+    }
+
+    private static int getEnd(CompactAnnotation parse, int tag) {
+        int pairs = parse.getSpanPairCount(tag);
+        return pairs == 0 ? -1 : parse.getSpanPairEnd(tag, pairs - 1);
+    }
+
+    private static int getLength(CompactAnnotation parse, int tag) {
+        int length = 0;
+        for (int p = 0; p < parse.getSpanPairCount(tag); p++) {
+            length += parse.getSpanPairEnd(tag, p) - parse.getSpanPairStart(tag, p);
+        }
+        return length;
+    }
+
+    /**
+     * A unit of aligned tags, with hits of each annotator.
+     */
+    public static class AlignedUnit {
+
+        private final int start;
+        private int end;
+        private final int[] tags;
+        private final int[] hitCounts;
+        private final int[] hitLengths;
+
+        AlignedUnit(int annotatorCount, int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.tags = new int[annotatorCount];
+            this.hitCounts = new int[annotatorCount];
+            this.hitLengths = new int[annotatorCount];
+            Arrays.fill(tags, -1);
+        }
+
+        void hit(int annotator, int tag, int length) {
+            // keep the first of the longest tags
+            if (hitCounts[annotator] == 0 || length > hitLengths[annotator]) {
+                tags[annotator] = tag;
+                hitLengths[annotator] = length;
+            }
+            hitCounts[annotator]++;
+        }
+
+        boolean isHit() {
+            for (int count : hitCounts) {
+                if (count > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the first character of the unit, -1 for the unit of non-consuming tags
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the character after the unit, -1 for the unit of non-consuming tags
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return number of tags of an annotator in the unit
+         */
+        public int getHitCount(int annotator) {
+            return hitCounts[annotator];
+        }
+
+        /**
+         * @return a tag of an annotator in the unit, the longest when there are many, -1 if none
+         */
+        public int getHit(int annotator) {
+            return tags[annotator];
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.calculator;
+
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
+import org.dkpro.statistics.agreement.unitizing.IUnitizingAnnotationStudy;
+import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
+import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
+
+import java.util.*;
+
+/**
+ * Sufficient statistics of Krippendorff's alpha-U over units of a single
+ * document. Alpha-U of any sequence of documents, concatenated as
+ * {@link AbstractUnitizationAgreementCalc} does, can be computed by adding
+ * statistics of the documents to an {@link AlphaUAccumulator}, the same as
+ * dkpro's {@code KrippendorffAlphaUnitizingAgreement} computes it on the
+ * concatenated study.
+ *
+ * Observed disagreement only compares overlapping segments, so it is a sum
+ * over documents. Expected disagreement also depends on how many places of
+ * each gap a unit could fit in, and gaps at the ends of documents are joined
+ * with gaps of neighbouring documents, so ends of documents are kept apart
+ * from the gaps inside.
+ */
+public class UnitizingStatistics {
+
+    private final int raterCount;
+    private final long length;
+    private final Map<Object, CategoryStatistics> categories;
+
+    private UnitizingStatistics(int raterCount, long length) {
+        this.raterCount = raterCount;
+        this.length = length;
+        this.categories = new HashMap<>();
+    }
+
+    /**
+     * @param units units of a document, with offsets relative to the document
+     * @param length length of the document text
+     * @param raterCount number of annotators
+     */
+    public static UnitizingStatistics of(DocumentUnits units, long length, int raterCount) {
+        UnitizingStatistics statistics = new UnitizingStatistics(raterCount, length);
+        UnitizingAnnotationStudy study = new UnitizingAnnotationStudy(raterCount, 0, length);
+        Map<Object, List<List<long[]>>> segmentsPerCategory = new HashMap<>();
+        for (int i = 0; i < units.size(); i++) {
+            Object category = units.getCategory(i);
+            if (category == null) {
+                // dkpro never counts units without a category
+                continue;
+            }
+            study.addUnit(units.getOffset(i), units.getLength(i), units.getAnnotator(i), category);
+            List<List<long[]>> perRater = segmentsPerCategory.computeIfAbsent(category, key -> {
+                List<List<long[]>> raters = new ArrayList<>();
+                for (int rater = 0; rater < raterCount; rater++) {
+                    raters.add(new ArrayList<>());
+                }
+                return raters;
+            });
+            perRater.get(units.getAnnotator(i)).add(new long[]{units.getOffset(i), units.getLength(i)});
+        }
+
+        DocumentAlphaU alphaU = new DocumentAlphaU(study);
+        for (Map.Entry<Object, List<List<long[]>>> category : segmentsPerCategory.entrySet()) {
+            double observedSum = raterCount < 2 || length == 0 ? 0.0 : alphaU.getObservedDistanceSum(category.getKey(), raterCount, length);
+            statistics.categories.put(category.getKey(),
+                    new CategoryStatistics(category.getValue(), length, raterCount, observedSum));
+        }
+        return statistics;
+    }
+
+    /**
+     * Computes alpha-U of documents in a sample concatenated in the order of the sample.
+     *
+     * @return alpha-U, NaN when no unit is found in the sample
+     */
+    public static double alphaU(List<UnitizingStatistics> documents, int[] sample, int raterCount) {
+        AlphaUAccumulator accumulator = new AlphaUAccumulator(raterCount);
+        for (int document : sample) {
+            accumulator.add(documents.get(document));
+        }
+        return accumulator.getAlphaU();
+    }
+
+    public int getRaterCount() {
+        return raterCount;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    Map<Object, CategoryStatistics> getCategories() {
+        return categories;
+    }
+
+    static class CategoryStatistics {
+
+        // half of the sum of distances between segments of all rater pairs
+        final double observedSum;
+        final long unitCount;
+        // sum of l (l - 1) over units
+        final double lengthPairSum;
+        // sum of 2 l^3 - 3 l^2 + l over units
+        final double cubicSum;
+        // distinct unit lengths and sum of l^2 of units of each length
+        final long[] unitLengths;
+        final double[] unitWeights;
+        // gaps between units of a rater, not touching ends of the document
+        final long[] innerGaps;
+        // gaps from the beginning to the first unit and from the last unit to the end, per rater
+        final long[] headGaps;
+        final long[] tailGaps;
+        final boolean[] hasUnits;
+
+        CategoryStatistics(List<List<long[]>> segmentsPerRater, long length, int raterCount, double observedSum) {
+            this.observedSum = observedSum;
+            this.headGaps = new long[raterCount];
+            this.tailGaps = new long[raterCount];
+            this.hasUnits = new boolean[raterCount];
+            long unitCount = 0;
+            double lengthPairSum = 0.0;
+            double cubicSum = 0.0;
+            TreeMap<Long, double[]> weights = new TreeMap<>();
+            List<Long> innerGaps = new ArrayList<>();
+
+            for (int rater = 0; rater < raterCount; rater++) {
+                List<long[]> segments = segmentsPerRater.get(rater);
+                // same order as units are kept in dkpro studies
+                segments.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+                for (long[] segment : segments) {
+                    long l = segment[1];
+                    unitCount++;
+                    lengthPairSum += (double) l * (l - 1);
+                    cubicSum += 2.0 * l * l * l - 3.0 * l * l + l;
+                    weights.computeIfAbsent(l, key -> new double[1])[0] += (double) l * l;
+                }
+                hasUnits[rater] = !segments.isEmpty();
+                if (hasUnits[rater]) {
+                    sweepGaps(segments, length, rater, innerGaps);
+                }
+            }
+
+            this.unitCount = unitCount;
+            this.lengthPairSum = lengthPairSum;
+            this.cubicSum = cubicSum;
+            this.unitLengths = new long[weights.size()];
+            this.unitWeights = new double[weights.size()];
+            int i = 0;
+            for (Map.Entry<Long, double[]> weight : weights.entrySet()) {
+                unitLengths[i] = weight.getKey();
+                unitWeights[i++] = weight.getValue()[0];
+            }
+            this.innerGaps = new long[innerGaps.size()];
+            for (i = 0; i < this.innerGaps.length; i++) {
+                this.innerGaps[i] = innerGaps.get(i);
+            }
+            Arrays.sort(this.innerGaps);
+        }
+
+        /**
+         * Walks units of a rater the way dkpro does when collecting gaps for
+         * expected disagreement. Overlapping units produce negative gaps, as
+         * they do in dkpro; they never fit a unit, so they're harmless.
+         */
+        private void sweepGaps(List<long[]> segments, long length, int rater, List<Long> innerGaps) {
+            long position = 0;
+            long segmentBegin = 0;
+            long segmentLength = 0;
+            int next = 0;
+            while (position < length) {
+                if (position == segmentBegin + segmentLength) {
+                    if (next < segments.size() && position == segments.get(next)[0]) {
+                        segmentLength = segments.get(next++)[1];
+                    } else {
+                        boolean last = next == segments.size();
+                        segmentLength = (last ? length : segments.get(next)[0]) - position;
+                        if (position == 0) {
+                            headGaps[rater] = segmentLength;
+                        } else if (last) {
+                            tailGaps[rater] = segmentLength;
+                        } else {
+                            innerGaps.add(segmentLength);
+                        }
+                    }
+                    segmentBegin = position;
+                }
+                position = segmentBegin + segmentLength;
+            }
+        }
+    }
+
+    /**
+     * Gives access to dkpro's observed disagreement of a category in a single document.
+     */
+    private static class DocumentAlphaU extends KrippendorffAlphaUnitizingAgreement {
+
+        DocumentAlphaU(IUnitizingAnnotationStudy study) {
+            super(study);
+        }
+
+        double getObservedDistanceSum(Object category, int raterCount, long length) {
+            double disagreement = calculateObservedCategoryDisagreement(category);
+            // distances are integers, undo the normalization of dkpro
+            return Math.rint(disagreement * raterCount * (raterCount - 1) * length * length / 2.0);
+        }
+    }
+}
@@ -39,10 +39,13 @@ public abstract class AbstractAnnotationIndexer {
 
     Map<String, Integer> annotatorMap;
     Map<String, String[]> documentFileMap;
+    // survives re-indexing, so that repeated IAA runs skip re-reading unchanged files
+    private Map<String, AnnotationHeader> headerCache;
 
     public AbstractAnnotationIndexer() {
         annotatorMap = new TreeMap<>();
         documentFileMap = new TreeMap<>();
+        headerCache = new HashMap<>();
     }
 
     public List<String> getAnnotators() {
@@ -65,6 +68,38 @@ public abstract class AbstractAnnotationIndexer {
         return documentFileMap.get(docName);
     }
 
+    /**
+     * Counts documents each annotator has no annotation file of, from the
+     * index alone.
+     *
+     * @return map from annotators to numbers of missing annotations
+     */
+    public Map<String, Integer> getMissingAnnotationCounts() {
+        Map<String, Integer> missing = new TreeMap<>();
+        for (String annotator : annotatorMap.keySet()) {
+            int annotatorIdx = annotatorMap.get(annotator);
+            int count = 0;
+            for (String[] fileNames : documentFileMap.values()) {
+                if (fileNames[annotatorIdx] == null) {
+                    count++;
+                }
+            }
+            missing.put(annotator, count);
+        }
+        return missing;
+    }
+
+    /**
+     * @return number of missing annotation files over all documents and annotators
+     */
+    public int getMissingAnnotationCount() {
+        int count = 0;
+        for (int missing : getMissingAnnotationCounts().values()) {
+            count += missing;
+        }
+        return count;
+    }
+
     public String generateAnnotationFileName(String document, String annotator) {
         return String.format("%s%s%s%s",
                 document, ANNOTATOR_SUFFIX_DELIM,
@@ -75,11 +110,61 @@ public abstract class AbstractAnnotationIndexer {
 
     public abstract int listupAnnotators(File datasetDirectory) throws MaeIOException;
 
-    public void getAnnotationMatrixFromDirectories(List<File> annotationDirs) throws MaeIOException {
-        // TODO: 2016-04-13 20:41:43EDT implement this to take a set of dir names and treat each of them as an annotator
+    /**
+     * Stores the task name and primary text fingerprint read from an annotation file.
+     * The entry is valid as long as the file's modification time and size do not change.
+     */
+    public void cacheHeader(File annotationFile, String taskName, TextFingerprint textFingerprint) {
+        headerCache.put(annotationFile.getAbsolutePath(),
+                new AnnotationHeader(annotationFile.lastModified(), annotationFile.length(), taskName, textFingerprint));
+    }
 
+    /**
+     * @return true if header of the file is cached and the file has not changed since
+     */
+    public boolean hasCachedHeader(File annotationFile) {
+        return getValidHeader(annotationFile) != null;
     }
 
+    /**
+     * @return cached task name of the file, or null if not cached or the file has changed
+     */
+    public String getCachedTaskName(File annotationFile) {
+        AnnotationHeader header = getValidHeader(annotationFile);
+        return header == null ? null : header.taskName;
+    }
 
+    /**
+     * @return cached text fingerprint of the file, or null if not cached or the file has changed
+     */
+    public TextFingerprint getCachedTextFingerprint(File annotationFile) {
+        AnnotationHeader header = getValidHeader(annotationFile);
+        return header == null ? null : header.textFingerprint;
+    }
+
+    private AnnotationHeader getValidHeader(File annotationFile) {
+        String path = annotationFile.getAbsolutePath();
+        AnnotationHeader header = headerCache.get(path);
+        if (header != null && (header.lastModified != annotationFile.lastModified()
+                || header.size != annotationFile.length())) {
+            headerCache.remove(path);
+            return null;
+        }
+        return header;
+    }
+
+    private static class AnnotationHeader {
+        private final long lastModified;
+        private final long size;
+        private final String taskName;
+        private final TextFingerprint textFingerprint;
+
+        AnnotationHeader(long lastModified, long size, String taskName, TextFingerprint textFingerprint) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.taskName = taskName;
+            this.textFingerprint = textFingerprint;
+        }
+    }
 
 }
@@ -0,0 +1,148 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.io;
+
+import edu.brandeis.cs.nlp.mae.io.MaeIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static edu.brandeis.cs.nlp.mae.util.FileHandler.*;
+
+/**
+ * Indexes a dataset organized as one directory per annotator, where the
+ * name of each sub-directory is taken as an annotator and annotation files
+ * of a document share their path relative to annotator directories. A
+ * file name may carry its annotator suffix (e.g. {@code a1/doc1_a1.xml}),
+ * which is dropped from the document name.
+ *
+ * Annotator directories are walked concurrently and each walk fills its
+ * own column of the document x annotator matrix, so large exports are
+ * indexed without comparing file names of annotators to each other.
+ */
+public class AnnotationDirsIndexer extends AbstractAnnotationIndexer {
+
+    private List<Path> annotatorDirs;
+
+    @Override
+    public int listupAnnotators(File datasetDirectory) throws MaeIOException {
+        if (!datasetDirectory.isDirectory()) {
+            throw new MaeIOException("Not a directory: " + datasetDirectory.getName());
+        }
+        TreeMap<String, Path> dirs = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(datasetDirectory.toPath(), Files::isDirectory)) {
+            for (Path dir : stream) {
+                dirs.put(dir.getFileName().toString(), dir);
+            }
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot list annotator directories: " + datasetDirectory.getName(), e);
+        }
+        if (dirs.size() == 0) {
+            throw new MaeIOException("No annotator directory found in: " + datasetDirectory.getName());
+        }
+        annotatorMap = new TreeMap<>();
+        annotatorDirs = new ArrayList<>();
+        for (String annotator : dirs.keySet()) {
+            annotatorMap.put(annotator, annotatorDirs.size());
+            annotatorDirs.add(dirs.get(annotator));
+        }
+        return annotatorMap.size();
+    }
+
+    @Override
+    public void indexAnnotations(File datasetDirectory) throws MaeIOException {
+        // list directories every time, so that the same indexer can be reused for repeated runs
+        int annotatorCount = listupAnnotators(datasetDirectory);
+        Map<String, String[]> documents = new ConcurrentHashMap<>();
+        List<String> annotators = getAnnotators();
+        try {
+            annotators.parallelStream().forEach(annotator -> {
+                int annotatorIdx = annotatorMap.get(annotator);
+                Path annotatorDir = annotatorDirs.get(annotatorIdx);
+                try (Stream<Path> files = Files.walk(annotatorDir)) {
+                    files.parallel().filter(
+                            file -> file.getFileName().toString().toLowerCase().endsWith(XML_EXT) && Files.isRegularFile(file)
+                    ).forEach(file -> {
+                        String documentName = getDocumentName(annotatorDir.relativize(file), annotator);
+                        // each walk writes to its own slot of the arrays only,
+                        // but files of an annotator are visited in parallel
+                        String[] fileNames = documents.computeIfAbsent(documentName, key -> new String[annotatorCount]);
+                        String fileName = file.toAbsolutePath().toString();
+                        String existing;
+                        synchronized (fileNames) {
+                            existing = fileNames[annotatorIdx];
+                            if (existing == null) {
+                                fileNames[annotatorIdx] = fileName;
+                            }
+                        }
+                        if (existing != null) {
+                            throw new DuplicateAnnotationException(String.format(
+                                    "Two files of %s are taken as the same document \"%s\": %s, %s",
+                                    annotator, documentName, existing, fileName));
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new MaeIOException("Cannot read annotation directories: " + e.getCause().getMessage(), e.getCause());
+        } catch (DuplicateAnnotationException e) {
+            throw new MaeIOException(e.getMessage());
+        }
+        if (documents.size() == 0) {
+            throw new MaeIOException("No XML found in the annotator directories: " + datasetDirectory.getName());
+        }
+        documentFileMap = new TreeMap<>(documents);
+    }
+
+    /**
+     * @return path of a file relative to its annotator directory, without the
+     * extension and the annotator suffix, with '/' as separator
+     */
+    static String getDocumentName(Path relativePath, String annotator) {
+        String documentName = getFileNameWithoutExtension(relativePath.toString().replace(File.separatorChar, '/'));
+        String annotatorSuffix = ANNOTATOR_SUFFIX_DELIM + annotator;
+        if (documentName.endsWith(annotatorSuffix) && documentName.length() > annotatorSuffix.length()) {
+            documentName = documentName.substring(0, documentName.length() - annotatorSuffix.length());
+        }
+        return documentName;
+    }
+
+    // carries a collision out of the parallel walks
+    private static class DuplicateAnnotationException extends RuntimeException {
+
+        DuplicateAnnotationException(String message) {
+            super(message);
+        }
+    }
+}
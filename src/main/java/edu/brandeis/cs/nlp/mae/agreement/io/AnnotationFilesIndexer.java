@@ -28,6 +28,7 @@ import edu.brandeis.cs.nlp.mae.io.MaeIOException;
 import edu.brandeis.cs.nlp.mae.util.FileHandler;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
 
@@ -69,10 +70,10 @@ public class AnnotationFilesIndexer extends AbstractAnnotationIndexer {
 
     @Override
     public void indexAnnotations(File datasetDirectory) throws MaeIOException {
-        if (annotationFiles == null) {
-            annotationFiles = FileHandler.getAllXMLFilesIn(datasetDirectory);
-        }
-        indexAnnotationFiles(annotationFiles);
+        // list files every time, so that the same indexer can be reused for repeated runs
+        annotationFiles = FileHandler.getAllXMLFilesIn(datasetDirectory);
+        documentFileMap = new TreeMap<>();
+        indexAnnotationFiles(new ArrayList<>(annotationFiles));
     }
 
     private void indexAnnotationFiles(List<File> annotationFiles) throws MaeIOException {
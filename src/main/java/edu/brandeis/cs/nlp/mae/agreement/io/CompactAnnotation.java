@@ -0,0 +1,287 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.io;
+
+import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
+import edu.brandeis.cs.nlp.mae.io.ParsedAtt;
+import edu.brandeis.cs.nlp.mae.io.ParsedTag;
+import edu.brandeis.cs.nlp.mae.util.SpanHandler;
+import edu.brandeis.cs.nlp.mae.util.StringInterner;
+
+import java.util.*;
+
+/**
+ * Read-only, columnar copy of a parsed annotation file for IAA computation.
+ * Tags are addressed by their index (order of appearance in the file).
+ * <p>
+ * Names (tag types, attribute types, attribute values) are dictionary-encoded
+ * against a small per-file table of strings, of which tag and attribute type
+ * names are interned across files. Spans are packed as
+ * [start, end) pairs into a single array with per-tag offsets, and attributes
+ * are kept in parallel arrays with per-tag offsets. Compared to keeping a
+ * {@link MaeXMLParser} with its {@link ParsedTag}s, {@link ParsedAtt}s and
+ * per-character span arrays, this takes a fraction of heap.
+ * Safe to share between threads.
+ */
+public class CompactAnnotation {
+
+    private static final int NO_VALUE = -1;
+
+    // sorted, so that a name is found by binary search
+    private final String[] names;
+    private final int[] tagTypes;
+    private final BitSet links;
+    private final int[] spanOffsets;
+    private final int[] spanPairs;
+    private final int[] attOffsets;
+    private final int[] attTypes;
+    private final int[] attValues;
+    // tag indices ordered by tag type, then spans, so tags of a type are a sorted slice
+    private final int[] byTypeAndSpans;
+
+    public CompactAnnotation(MaeXMLParser parse, StringInterner interner) {
+        List<ParsedTag> tags = parse.getParsedTags();
+        int tagCount = tags.size();
+
+        TreeSet<String> nameSet = new TreeSet<>();
+        // only names from the schema are shared between files, values are free text
+        Set<String> typeNames = new HashSet<>();
+        int attCount = 0;
+        for (ParsedTag tag : tags) {
+            nameSet.add(tag.getTagTypeName());
+            typeNames.add(tag.getTagTypeName());
+            for (ParsedAtt att : parse.getParsedAttsOfTid(tag.getTid())) {
+                nameSet.add(att.getAttTypeName());
+                typeNames.add(att.getAttTypeName());
+                if (att.getAttValue() != null) {
+                    nameSet.add(att.getAttValue());
+                }
+                attCount++;
+            }
+        }
+        names = new String[nameSet.size()];
+        int n = 0;
+        for (String name : nameSet) {
+            names[n++] = typeNames.contains(name) ? interner.intern(name) : name;
+        }
+
+        tagTypes = new int[tagCount];
+        links = new BitSet(tagCount);
+        spanOffsets = new int[tagCount + 1];
+        attOffsets = new int[tagCount + 1];
+        attTypes = new int[attCount];
+        attValues = new int[attCount];
+        int[] pairs = new int[16];
+        int pairsEnd = 0;
+        int attsEnd = 0;
+        for (int i = 0; i < tagCount; i++) {
+            ParsedTag tag = tags.get(i);
+            tagTypes[i] = nameId(tag.getTagTypeName());
+            links.set(i, tag.isLink());
+            spanOffsets[i] = pairsEnd;
+            int[] tagPairs = toPairs(tag.getSpans());
+            if (pairsEnd + tagPairs.length > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, pairsEnd + tagPairs.length));
+            }
+            System.arraycopy(tagPairs, 0, pairs, pairsEnd, tagPairs.length);
+            pairsEnd += tagPairs.length;
+
+            attOffsets[i] = attsEnd;
+            for (ParsedAtt att : parse.getParsedAttsOfTid(tag.getTid())) {
+                attTypes[attsEnd] = nameId(att.getAttTypeName());
+                attValues[attsEnd] = att.getAttValue() == null ? NO_VALUE : nameId(att.getAttValue());
+                attsEnd++;
+            }
+        }
+        spanOffsets[tagCount] = pairsEnd;
+        attOffsets[tagCount] = attsEnd;
+        spanPairs = Arrays.copyOf(pairs, pairsEnd);
+
+        Integer[] order = new Integer[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            order[i] = i;
+        }
+        // stable, tags with the same type and spans stay in order of appearance
+        Arrays.sort(order, (a, b) -> {
+            int byType = Integer.compare(tagTypes[a], tagTypes[b]);
+            return byType != 0 ? byType : comparePairs(a, spanPairs, spanOffsets[b], spanOffsets[b + 1]);
+        });
+        byTypeAndSpans = new int[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            byTypeAndSpans[i] = order[i];
+        }
+    }
+
+    private static int[] toPairs(int[] spans) {
+        if (spans == null || spans.length == 0) {
+            return new int[0];
+        }
+        List<int[]> pairList = SpanHandler.convertArrayToPairs(spans.clone());
+        int[] pairs = new int[pairList.size() * 2];
+        for (int i = 0; i < pairList.size(); i++) {
+            pairs[i * 2] = pairList.get(i)[0];
+            pairs[i * 2 + 1] = pairList.get(i)[1];
+        }
+        return pairs;
+    }
+
+    private int nameId(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    /**
+     * Compares spans of a tag against a packed pairs array slice.
+     */
+    private int comparePairs(int tag, int[] pairs, int from, int to) {
+        int tagFrom = spanOffsets[tag];
+        int tagTo = spanOffsets[tag + 1];
+        int toLook = Math.min(tagTo - tagFrom, to - from);
+        for (int i = 0; i < toLook; i++) {
+            int c = Integer.compare(spanPairs[tagFrom + i], pairs[from + i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(tagTo - tagFrom, to - from);
+    }
+
+    public int getTagCount() {
+        return tagTypes.length;
+    }
+
+    public String getTagTypeName(int tag) {
+        return names[tagTypes[tag]];
+    }
+
+    public boolean isLink(int tag) {
+        return links.get(tag);
+    }
+
+    public boolean isConsuming(int tag) {
+        return spanOffsets[tag + 1] > spanOffsets[tag];
+    }
+
+    /**
+     * @return number of [start, end) pairs of a tag's spans
+     */
+    public int getSpanPairCount(int tag) {
+        return (spanOffsets[tag + 1] - spanOffsets[tag]) / 2;
+    }
+
+    public int getSpanPairStart(int tag, int pair) {
+        return spanPairs[spanOffsets[tag] + pair * 2];
+    }
+
+    public int getSpanPairEnd(int tag, int pair) {
+        return spanPairs[spanOffsets[tag] + pair * 2 + 1];
+    }
+
+    /**
+     * @return spans of a tag as an array of character offsets, the same as {@link ParsedTag#getSpans()}
+     */
+    public int[] getSpans(int tag) {
+        int length = 0;
+        for (int p = 0; p < getSpanPairCount(tag); p++) {
+            length += getSpanPairEnd(tag, p) - getSpanPairStart(tag, p);
+        }
+        int[] spans = new int[length];
+        int i = 0;
+        for (int p = 0; p < getSpanPairCount(tag); p++) {
+            for (int c = getSpanPairStart(tag, p); c < getSpanPairEnd(tag, p); c++) {
+                spans[i++] = c;
+            }
+        }
+        return spans;
+    }
+
+    public int getAttCount(int tag) {
+        return attOffsets[tag + 1] - attOffsets[tag];
+    }
+
+    public String getAttTypeName(int tag, int att) {
+        return names[attTypes[attOffsets[tag] + att]];
+    }
+
+    public String getAttValue(int tag, int att) {
+        int value = attValues[attOffsets[tag] + att];
+        return value == NO_VALUE ? null : names[value];
+    }
+
+    /**
+     * @return indices of tags of any of the given types, ordered by spans,
+     * then by order of appearance; a non-consuming tag comes first
+     */
+    public int[] getTagsInSpanOrder(Collection<String> tagTypeNames) {
+        // tags of each type are a contiguous, already sorted slice of byTypeAndSpans
+        SortedSet<Integer> types = new TreeSet<>();
+        for (String tagTypeName : tagTypeNames) {
+            int type = nameId(tagTypeName);
+            if (type >= 0) {
+                types.add(type);
+            }
+        }
+        int[] heads = new int[types.size()];
+        int[] ends = new int[types.size()];
+        int total = 0;
+        int slice = 0;
+        for (int type : types) {
+            heads[slice] = firstOfType(type);
+            ends[slice] = firstOfType(type + 1);
+            total += ends[slice] - heads[slice];
+            slice++;
+        }
+        int[] sorted = new int[total];
+        for (int i = 0; i < total; i++) {
+            int smallest = -1;
+            for (slice = 0; slice < heads.length; slice++) {
+                if (heads[slice] < ends[slice] && (smallest < 0 ||
+                        compareTags(byTypeAndSpans[heads[slice]], byTypeAndSpans[heads[smallest]]) < 0)) {
+                    smallest = slice;
+                }
+            }
+            sorted[i] = byTypeAndSpans[heads[smallest]++];
+        }
+        return sorted;
+    }
+
+    private int compareTags(int tag, int otherTag) {
+        int bySpans = comparePairs(tag, spanPairs, spanOffsets[otherTag], spanOffsets[otherTag + 1]);
+        return bySpans != 0 ? bySpans : Integer.compare(tag, otherTag);
+    }
+
+    private int firstOfType(int type) {
+        int lo = 0;
+        int hi = byTypeAndSpans.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tagTypes[byTypeAndSpans[mid]] < type) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.io;
+
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coding items found in a single document, grouped by names of studies
+ * they belong to (e.g. full attribute names for local agreements).
+ * Each item holds one category per annotator.
+ */
+public class DocumentCodings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HashMap<String, ArrayList<Object[]>> itemsPerStudy;
+
+    public DocumentCodings() {
+        itemsPerStudy = new HashMap<>();
+    }
+
+    public void add(String studyName, Object[] item) {
+        itemsPerStudy.computeIfAbsent(studyName, name -> new ArrayList<>()).add(item);
+    }
+
+    public List<Object[]> getItems(String studyName) {
+        List<Object[]> items = itemsPerStudy.get(studyName);
+        return items == null ? new ArrayList<>() : items;
+    }
+
+    /**
+     * Adds all items of a study to a dkpro study, in the order they were added.
+     */
+    public void addTo(String studyName, CodingAnnotationStudy study) {
+        for (Object[] item : getItems(studyName)) {
+            study.addItemAsArray(item);
+        }
+    }
+
+    public void addAllTo(Map<String, CodingAnnotationStudy> studies) {
+        for (String studyName : studies.keySet()) {
+            addTo(studyName, studies.get(studyName));
+        }
+    }
+}
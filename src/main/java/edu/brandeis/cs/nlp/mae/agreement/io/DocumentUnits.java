@@ -0,0 +1,106 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.io;
+
+import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Units found in a single document, stored as parallel arrays. Offsets are
+ * relative to the document, so a unit list can be cached per document and
+ * later added to a study that concatenates many documents.
+ */
+public class DocumentUnits implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int size;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] annotators;
+    private Object[] categories;
+
+    public DocumentUnits() {
+        offsets = new int[16];
+        lengths = new int[16];
+        annotators = new int[16];
+        categories = new Object[16];
+    }
+
+    public void add(int offset, int length, int annotator, Object category) {
+        if (size == offsets.length) {
+            int capacity = size * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            annotators = Arrays.copyOf(annotators, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        annotators[size] = annotator;
+        categories[size] = category;
+        size++;
+    }
+
+    public void addAll(DocumentUnits other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.offsets[i], other.lengths[i], other.annotators[i], other.categories[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getOffset(int unit) {
+        return offsets[unit];
+    }
+
+    public int getLength(int unit) {
+        return lengths[unit];
+    }
+
+    public int getAnnotator(int unit) {
+        return annotators[unit];
+    }
+
+    public Object getCategory(int unit) {
+        return categories[unit];
+    }
+
+    /**
+     * Adds all units to a study, in the order they were added to this list.
+     *
+     * @param study - a study to add units to
+     * @param textOffset - offset of the document in the concatenated text of the study
+     */
+    public void addTo(UnitizingAnnotationStudy study, int textOffset) {
+        for (int i = 0; i < size; i++) {
+            study.addUnit(offsets[i] + textOffset, lengths[i], annotators[i], categories[i]);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.io;
+
+import edu.brandeis.cs.nlp.mae.io.MaeIOException;
+import edu.brandeis.cs.nlp.mae.util.HashHandler;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of per-document intermediate results of agreement
+ * calculation (e.g. unit lists or coding items of a document), so that
+ * agreements over a mostly unchanged dataset can be re-aggregated without
+ * re-parsing every annotation file.
+ *
+ * A document entry is kept as long as all of its annotation files are
+ * unchanged. A file is unchanged when its path, modification time and size
+ * are the same as when the entry was made, or, failing that, when its
+ * contents hash to the same value (e.g. a file touched by a checkout).
+ * Entries are also bound to a schema signature, so that results computed
+ * under a different DTD are never reused.
+ *
+ * Only recently used entries are kept in memory; older ones are written out
+ * (if changed) and dropped, and read back from disk when asked again.
+ */
+public class StudyCache {
+
+    private static final String ENTRY_SUFFIX = ".iaa";
+    public static final int DEFAULT_MAX_LOADED_ENTRIES = 64;
+
+    private final File cacheDir;
+    private final String schemaSignature;
+    // access-ordered, guarded by this
+    private final LinkedHashMap<String, Entry> entries;
+    private final int maxLoadedEntries;
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    public StudyCache(File cacheDir, String schemaSignature) throws MaeIOException {
+        this(cacheDir, schemaSignature, DEFAULT_MAX_LOADED_ENTRIES);
+    }
+
+    /**
+     * @param maxLoadedEntries - number of document entries to keep in memory,
+     *                         least recently used ones are flushed and dropped
+     */
+    public StudyCache(File cacheDir, String schemaSignature, int maxLoadedEntries) throws MaeIOException {
+        if (maxLoadedEntries < 1) {
+            throw new IllegalArgumentException("cache should hold at least one entry");
+        }
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new MaeIOException("cannot create cache directory: " + cacheDir.getAbsolutePath());
+        }
+        this.cacheDir = cacheDir;
+        this.schemaSignature = schemaSignature;
+        this.maxLoadedEntries = maxLoadedEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Returns a cached result of a document, or null if the document or any
+     * of its annotation files has changed since the result was cached.
+     *
+     * @param docName - name of the document
+     * @param fileNames - annotation files of the document, indexed by annotator
+     * @param key - name of the intermediate result
+     */
+    public synchronized Serializable get(String docName, String[] fileNames, String key) throws MaeIOException {
+        Serializable value = getEntry(docName, fileNames).get(key);
+        if (value == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    public synchronized void put(String docName, String[] fileNames, String key, Serializable value) throws MaeIOException {
+        getEntry(docName, fileNames).put(key, value);
+    }
+
+    /**
+     * Writes entries that have changed since they were read from disk.
+     */
+    public synchronized void flush() throws MaeIOException {
+        for (Entry entry : entries.values()) {
+            if (entry.dirty) {
+                writeEntry(entry);
+                entry.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Forgets all entries, both in memory and on disk.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        File[] entryFiles = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (entryFiles != null) {
+            for (File entryFile : entryFiles) {
+                entryFile.delete();
+            }
+        }
+    }
+
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    public synchronized int getLoadedEntryCount() {
+        return entries.size();
+    }
+
+    // must be called holding the lock
+    private Entry getEntry(String docName, String[] fileNames) throws MaeIOException {
+        Entry entry = entries.get(docName);
+        if (entry == null) {
+            entry = readEntry(docName);
+        }
+        if (entry == null || !entry.isValidFor(schemaSignature, fileNames)) {
+            entry = new Entry(docName, schemaSignature, fileNames);
+        }
+        entries.put(docName, entry);
+        dropEldestEntries();
+        return entry;
+    }
+
+    private void dropEldestEntries() throws MaeIOException {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxLoadedEntries) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            if (entry.dirty) {
+                writeEntry(entry);
+            }
+        }
+    }
+
+    private File getEntryFile(String docName) {
+        String safeName = docName.replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(cacheDir, String.format("%s-%016x%s", safeName, HashHandler.fnv1a64(docName), ENTRY_SUFFIX));
+    }
+
+    private Entry readEntry(String docName) {
+        File entryFile = getEntryFile(docName);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+            Entry entry = (Entry) in.readObject();
+            return entry.docName.equals(docName) ? entry : null;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // a broken or outdated entry is as good as a missing one
+            return null;
+        }
+    }
+
+    private void writeEntry(Entry entry) throws MaeIOException {
+        File entryFile = getEntryFile(entry.docName);
+        File tempFile = new File(cacheDir, entryFile.getName() + ".tmp");
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeObject(entry);
+            }
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw new MaeIOException("cannot write cache entry: " + entryFile.getAbsolutePath(), e);
+        }
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String docName;
+        private final String schemaSignature;
+        private final String[] fileNames;
+        private final long[] lastModified;
+        private final long[] sizes;
+        private final long[] contentHashes;
+        private final HashMap<String, Serializable> values;
+        private transient boolean dirty;
+
+        Entry(String docName, String schemaSignature, String[] fileNames) {
+            this.docName = docName;
+            this.schemaSignature = schemaSignature;
+            this.fileNames = fileNames.clone();
+            this.lastModified = new long[fileNames.length];
+            this.sizes = new long[fileNames.length];
+            this.contentHashes = new long[fileNames.length];
+            for (int i = 0; i < fileNames.length; i++) {
+                if (fileNames[i] != null) {
+                    File file = new File(fileNames[i]);
+                    lastModified[i] = file.lastModified();
+                    sizes[i] = file.length();
+                    contentHashes[i] = hashContents(file);
+                }
+            }
+            this.values = new HashMap<>();
+            this.dirty = true;
+        }
+
+        boolean isValidFor(String schemaSignature, String[] fileNames) {
+            if (!this.schemaSignature.equals(schemaSignature) || !Arrays.equals(this.fileNames, fileNames)) {
+                return false;
+            }
+            for (int i = 0; i < fileNames.length; i++) {
+                if (fileNames[i] == null) {
+                    continue;
+                }
+                File file = new File(fileNames[i]);
+                if (file.lastModified() == lastModified[i] && file.length() == sizes[i]) {
+                    continue;
+                }
+                if (file.length() != sizes[i] || hashContents(file) != contentHashes[i]) {
+                    return false;
+                }
+                // same contents with a new timestamp, no need to hash it again next time
+                lastModified[i] = file.lastModified();
+                dirty = true;
+            }
+            return true;
+        }
+
+        synchronized Serializable get(String key) {
+            return values.get(key);
+        }
+
+        synchronized void put(String key, Serializable value) {
+            values.put(key, value);
+            dirty = true;
+        }
+
+        private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+        }
+
+        private static long hashContents(File file) {
+            try {
+                return HashHandler.fnv1a64(Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                // unreadable file never matches, the parser will report it
+                return 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement.io;
+
+import edu.brandeis.cs.nlp.mae.util.HashHandler;
+
+/**
+ * Length and 64-bit hash of a primary text. Two annotation files are
+ * considered to share their text when their fingerprints are equal, so that
+ * texts don't need to be kept in memory or compared char by char.
+ */
+public final class TextFingerprint {
+
+    private final long hash;
+    private final int length;
+
+    public TextFingerprint(long hash, int length) {
+        this.hash = hash;
+        this.length = length;
+    }
+
+    public static TextFingerprint of(String text) {
+        return new TextFingerprint(HashHandler.fnv1a64(text), text == null ? 0 : text.length());
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TextFingerprint that = (TextFingerprint) o;
+        return hash == that.hash && length == that.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(hash) + length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x(%d)", hash, length);
+    }
+}
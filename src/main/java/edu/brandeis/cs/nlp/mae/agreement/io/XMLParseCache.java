@@ -27,58 +27,216 @@ package edu.brandeis.cs.nlp.mae.agreement.io;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
 import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
+import edu.brandeis.cs.nlp.mae.io.ParseSchema;
+import edu.brandeis.cs.nlp.mae.util.ForkJoinHandler;
+import edu.brandeis.cs.nlp.mae.util.StringInterner;
 import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by krim on 4/23/2016.
  */
 public class XMLParseCache {
-    private Map<String, MaeXMLParser[]> parseCache;
-    private MaeDriverI driver;
-    private AbstractAnnotationIndexer fileIdx;
-    private Map<String, String> parseWarnings;
+    public static final int DEFAULT_MAX_CACHED_DOCUMENTS = 32;
+    public static final int DEFAULT_PREFETCH_SIZE = 4;
+
+    // access-ordered, guarded by this
+    private final LinkedHashMap<String, ForkJoinTask<CompactAnnotation[]>> parseCache;
+    private final MaeDriverI driver;
+    private final AbstractAnnotationIndexer fileIdx;
+    // document names in index order, to find documents to prefetch
+    private final List<String> docNames;
+    private final Map<String, Integer> docIndices;
+    private final Map<String, String> parseWarnings;
+    private final ForkJoinPool pool;
+    private final int maxCachedDocuments;
+    private final int prefetchSize;
+    private volatile ParseSchema schema;
+    // holds only tag and attribute type names, bounded by the schema
+    private final StringInterner interner = new StringInterner();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     public XMLParseCache(MaeDriverI driver, AbstractAnnotationIndexer fileIdx) {
+        this(driver, fileIdx, ForkJoinPool.commonPool(), DEFAULT_MAX_CACHED_DOCUMENTS, DEFAULT_PREFETCH_SIZE);
+    }
+
+    /**
+     * @param pool - pool to run parses on
+     * @param maxCachedDocuments - number of documents to keep parses of, least recently used ones are evicted
+     * @param prefetchSize - number of following documents to start parsing when a document is requested,
+     *                     bounded to be less than maxCachedDocuments
+     */
+    public XMLParseCache(MaeDriverI driver, AbstractAnnotationIndexer fileIdx,
+                         ForkJoinPool pool, int maxCachedDocuments, int prefetchSize) {
+        if (maxCachedDocuments < 1) {
+            throw new IllegalArgumentException("cache should hold at least one document");
+        }
         this.driver = driver;
         this.fileIdx = fileIdx;
-        this.parseCache = new HashMap<>();
-        this.parseWarnings = new HashMap<>();
+        this.docNames = fileIdx.getDocumentNames();
+        this.docIndices = new HashMap<>();
+        for (int i = 0; i < docNames.size(); i++) {
+            docIndices.put(docNames.get(i), i);
+        }
+        this.pool = pool;
+        this.maxCachedDocuments = maxCachedDocuments;
+        this.prefetchSize = Math.max(0, Math.min(prefetchSize, maxCachedDocuments - 1));
+        this.parseWarnings = new ConcurrentHashMap<>();
+        this.parseCache = new LinkedHashMap<String, ForkJoinTask<CompactAnnotation[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ForkJoinTask<CompactAnnotation[]>> eldest) {
+                if (size() > XMLParseCache.this.maxCachedDocuments) {
+                    evictions.incrementAndGet();
+                    // don't spend workers on a prefetch nobody is going to read
+                    eldest.getValue().cancel(false);
+                    return true;
+                }
+                return false;
+            }
+        };
     }
 
-    public MaeXMLParser[] getParses(String docName) throws IOException, SAXException, MaeDBException {
+    /**
+     * @return compact parses of annotation files of a document, in annotator order, null for missing files
+     */
+    public CompactAnnotation[] getParses(String docName) throws IOException, SAXException, MaeDBException {
         return getOrCacheXMLParse(docName);
     }
 
-    private MaeXMLParser[] getOrCacheXMLParse(String docName) throws MaeDBException, IOException, SAXException {
-        if (!this.parseCache.containsKey(docName)) {
-            parseCache.put(docName, cacheXMLParse(docName));
+    private CompactAnnotation[] getOrCacheXMLParse(String docName) throws MaeDBException, IOException, SAXException {
+        while (true) {
+            ForkJoinTask<CompactAnnotation[]> parse;
+            synchronized (this) {
+                parse = parseCache.get(docName);
+                if (parse == null) {
+                    misses.incrementAndGet();
+                    parse = submitParse(docName);
+                } else {
+                    hits.incrementAndGet();
+                }
+                prefetchAfter(docName);
+            }
+            try {
+                return parse.get();
+            } catch (CancellationException e) {
+                // evicted by another thread while waiting, parse it again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while parsing " + docName, e);
+            } catch (ExecutionException e) {
+                synchronized (this) {
+                    // don't keep failures, next request will try again
+                    if (parseCache.get(docName) == parse) {
+                        parseCache.remove(docName);
+                    }
+                }
+                Throwable failure = ForkJoinHandler.unwrapFailure(e.getCause());
+                if (failure instanceof MaeDBException) {
+                    throw (MaeDBException) failure;
+                } else if (failure instanceof SAXException) {
+                    throw (SAXException) failure;
+                } else if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw new IOException(failure);
+            }
+        }
+    }
+
+    private void prefetchAfter(String docName) throws MaeDBException {
+        if (prefetchSize == 0) {
+            return;
+        }
+        Integer current = docIndices.get(docName);
+        if (current == null) {
+            return;
+        }
+        int next = current + 1;
+        for (int i = next; i < next + prefetchSize && i < docNames.size(); i++) {
+            String nextDocName = docNames.get(i);
+            if (!parseCache.containsKey(nextDocName)) {
+                submitParse(nextDocName);
+            }
         }
-        return parseCache.get(docName);
     }
 
-    private MaeXMLParser[] cacheXMLParse(String docName) throws MaeDBException, IOException, SAXException {
+    // must be called holding the lock
+    private ForkJoinTask<CompactAnnotation[]> submitParse(String docName) throws MaeDBException {
+        ParseSchema schema = getSchema();
+        ForkJoinTask<CompactAnnotation[]> parse = pool.submit(() -> cacheXMLParse(schema, docName));
+        parseCache.put(docName, parse);
+        return parse;
+    }
+
+    private ParseSchema getSchema() throws MaeDBException {
+        // read on the calling thread only, workers never touch the driver
+        if (schema == null) {
+            schema = new ParseSchema(driver);
+        }
+        return schema;
+    }
+
+    private CompactAnnotation[] cacheXMLParse(ParseSchema schema, String docName) throws MaeDBException, IOException, SAXException {
         String[] xmlFileNames = fileIdx.getAnnotationsOfDocument(docName);
-        MaeXMLParser[] parses = new MaeXMLParser[xmlFileNames.length];
+        CompactAnnotation[] parses = new CompactAnnotation[xmlFileNames.length];
+        List<ForkJoinTask<CompactAnnotation>> annotatorParses = new ArrayList<>();
+        for (String fileName : xmlFileNames) {
+            annotatorParses.add(fileName == null ? null : ForkJoinTask.adapt(() -> parseFile(schema, fileName)));
+        }
+        for (ForkJoinTask<CompactAnnotation> annotatorParse : annotatorParses) {
+            if (annotatorParse != null) {
+                annotatorParse.fork();
+            }
+        }
         for (int i = 0; i < xmlFileNames.length; i++) {
-            String fileName = xmlFileNames[i];
-            if (fileName != null) {
-                MaeXMLParser parser = new MaeXMLParser(driver);
-                parser.readAnnotationFile(new File(fileName));
-                parses[i] = parser;
-                if (parser.getParseWarnings().length() > 0) {
-                    this.parseWarnings.put(fileName, parser.getParseWarnings());
-                }
+            ForkJoinTask<CompactAnnotation> annotatorParse = annotatorParses.get(i);
+            if (annotatorParse != null) {
+                // failures are unwrapped by the caller of the document parse
+                parses[i] = annotatorParse.join();
             }
         }
         return parses;
     }
 
+    private CompactAnnotation parseFile(ParseSchema schema, String fileName) throws MaeDBException, IOException, SAXException {
+        MaeXMLParser parser = new MaeXMLParser(schema);
+        parser.readAnnotationFile(new File(fileName));
+        if (parser.getParseWarnings().length() > 0) {
+            this.parseWarnings.put(fileName, parser.getParseWarnings());
+        }
+        // only the compact copy is kept, the parser and its parsed objects are garbage from here
+        return new CompactAnnotation(parser, interner);
+    }
+
     public Map<String, String> getParseWarnings() {
         return this.parseWarnings;
     }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int getCachedDocumentCount() {
+        return parseCache.size();
+    }
 }
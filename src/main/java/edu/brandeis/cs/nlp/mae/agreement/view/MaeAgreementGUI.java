@@ -31,6 +31,7 @@ import edu.brandeis.cs.nlp.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
 import edu.brandeis.cs.nlp.mae.database.MySQLDriverBuilder;
+import edu.brandeis.cs.nlp.mae.database.SqliteProfile;
 import edu.brandeis.cs.nlp.mae.io.MaeIOException;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 import org.xml.sax.SAXException;
@@ -50,6 +51,7 @@ import java.util.Properties;
 import java.util.TreeMap;
 
 import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.ALL_METRIC_TYPE_STRINGS;
+import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.STUDY_CACHE_DIR_NAME;
 
 /**
  * Created by krim on 4/14/2016.
@@ -83,7 +85,7 @@ public class MaeAgreementGUI extends JFrame {
         this.initUI();
     }
     
-    MaeDriverI setupSQLiteDriver() throws MaeException, FileNotFoundException{
+    MaeDriverI setupSQLiteDriver(SqliteProfile profile) throws MaeException, FileNotFoundException{
     	String dbFilename = String.format("mae-iaa-%d", System.currentTimeMillis());
         File dbFile;
         try {
@@ -91,7 +93,7 @@ public class MaeAgreementGUI extends JFrame {
         } catch (IOException e) {
             throw new MaeIOException("Could not generate DB file:", e);
         }
-        return new LocalSqliteDriverImpl(dbFile.getAbsolutePath());
+        return new LocalSqliteDriverImpl(dbFile.getAbsolutePath(), profile);
     }
 
     void setupDriver() throws MaeException, FileNotFoundException {
@@ -102,7 +104,7 @@ public class MaeAgreementGUI extends JFrame {
 			throw new MaeException(e);
 		}
     	if(Boolean.valueOf(applicationProperties.getProperty("useSqlite")))
-    		driver = setupSQLiteDriver();
+    		driver = setupSQLiteDriver(SqliteProfile.fromProperties(applicationProperties));
     	else
     		driver = MySQLDriverBuilder.buildDriverFromProperties();
     	driver.readTask(taskScheme);
@@ -321,7 +323,13 @@ public class MaeAgreementGUI extends JFrame {
     }
 
     private void computeAgreement() throws IOException, MaeException, SAXException {
-        this.calc = new MaeAgreementMain(this.driver);
+        if (this.calc == null) {
+            // kept across runs, so that unchanged files are not validated again
+            this.calc = new MaeAgreementMain(this.driver);
+            this.calc.setParallelism(Runtime.getRuntime().availableProcessors());
+            // per-document results persist between sessions, so reruns only process changed files
+            this.calc.setStudyCacheDir(new File(System.getProperty("user.home"), STUDY_CACHE_DIR_NAME));
+        }
         if (datasetDir == null) {
             JOptionPane.showMessageDialog(null, "Choose dataset path first!");
         } else {
@@ -347,13 +355,27 @@ public class MaeAgreementGUI extends JFrame {
                     }
                 }
             }
+            // pairwise agreements of everything targeted locally, to spot an outlying annotator
+            MappedSet<String, String> pairwise = new MappedSet<>();
+            for (MappedSet<String, String> targets : local.values()) {
+                for (String tagTypeName : targets.keyList()) {
+                    pairwise.putCollection(tagTypeName, targets.get(tagTypeName));
+                }
+            }
             String result = "";
             result += calc.calcGlobalAgreementToString(global);
             result += calc.calcLocalAgreementToString(local);
+            result += calc.calcPairwiseAgreementToString(pairwise);
 
             Map<String, String> parseWarnings = calc.getParseWarnings();
-            if (parseWarnings.size() > 0) {
+            Map<String, Integer> missingCounts = calc.getMissingAnnotationCounts();
+            if (parseWarnings.size() > 0 || missingCounts.values().stream().anyMatch(count -> count > 0)) {
                 String warnings = "";
+                for (String annotator : missingCounts.keySet()) {
+                    if (missingCounts.get(annotator) > 0) {
+                        warnings += String.format("%s: \n no annotation of %d document(s)\n  ===\n\n", annotator, missingCounts.get(annotator));
+                    }
+                }
                 for (String fileName : parseWarnings.keySet()) {
                     warnings += String.format("%s: \n %s\n  ===\n\n", fileName, parseWarnings.get(fileName));
                 }
@@ -361,7 +383,10 @@ public class MaeAgreementGUI extends JFrame {
 
             }
 
-            JOptionPane.showMessageDialog(null, new JTextArea(result), "Inter-Annotator Agreements", JOptionPane.PLAIN_MESSAGE);
+            JTextArea resultArea = new JTextArea(result);
+            // pairwise tables are aligned by spaces
+            resultArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, resultArea.getFont().getSize()));
+            JOptionPane.showMessageDialog(null, resultArea, "Inter-Annotator Agreements", JOptionPane.PLAIN_MESSAGE);
         }
     }
 }
@@ -30,6 +30,7 @@ import edu.brandeis.cs.nlp.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
 import edu.brandeis.cs.nlp.mae.database.MySQLDriverBuilder;
+import edu.brandeis.cs.nlp.mae.database.SqliteProfile;
 import edu.brandeis.cs.nlp.mae.io.MaeIODTDException;
 import edu.brandeis.cs.nlp.mae.io.MaeIOException;
 import edu.brandeis.cs.nlp.mae.model.*;
@@ -553,14 +554,27 @@ public class MaeMainController extends JPanel {
     }
 
     private void timeConsumingSetupScheme(File taskFile) throws MaeException {
-        String dbFilename = String.format("mae-%d", System.currentTimeMillis());
-        File dbFile;
-        try {
-            dbFile = File.createTempFile(dbFilename, ".sqlite");
-        } catch (IOException e) {
-            throw new MaeIOException("Could not generate DB file:", e);
+        if (isSchemaSharable(taskFile)) {
+            // another document of the same task goes to the same DB, no need to read the DTD again
+            currentDriver = getDriver().createDocumentDriver();
+            drivers.add(currentDriver);
+            logger.info(String.format("task \"%s\" is shared with the new document", getDriver().getTaskName()));
+            return;
         }
-        MaeDriverI driver = Boolean.valueOf(applicationProperties.getProperty("useSqlite"))?new LocalSqliteDriverImpl(dbFile.getAbsolutePath()):MySQLDriverBuilder.buildDriverFromProperties();
+        MaeDriverI driver;
+        if (Boolean.valueOf(applicationProperties.getProperty("useSqlite"))) {
+            String dbFilename = String.format("mae-%d", System.currentTimeMillis());
+            File dbFile;
+            try {
+                dbFile = File.createTempFile(dbFilename, ".sqlite");
+            } catch (IOException e) {
+                throw new MaeIOException("Could not generate DB file:", e);
+            }
+            driver = new LocalSqliteDriverImpl(dbFile.getAbsolutePath(), SqliteProfile.fromProperties(applicationProperties));
+        } else {
+            driver = MySQLDriverBuilder.buildDriverFromProperties();
+        }
+        driver.setSpanStorageMode(Boolean.valueOf(applicationProperties.getProperty("useSpanStorage")));
         currentDriver = driver;
         drivers.add(currentDriver);
         try {
@@ -587,6 +601,20 @@ public class MaeMainController extends JPanel {
                 getDriver().getTaskName(), getDriver().getExtentTagTypes().size(), getDriver().getLinkTagTypes().size()));
     }
 
+    private boolean isSchemaSharable(File taskFile) throws MaeDBException {
+        return !drivers.isEmpty() && getDriver().isTaskLoaded()
+                && taskFile.getAbsolutePath().equals(getDriver().getTaskFileName());
+    }
+
+    private boolean isStoreSharedByAllDocuments() {
+        for (MaeDriverI driver : getDrivers()) {
+            if (!getDriver().isSharingStoreWith(driver)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void addDocument(final File annotationFile) {
         if (checkDuplicateDocs(annotationFile)) return;
 
@@ -904,6 +932,9 @@ public class MaeMainController extends JPanel {
     public List<ExtentTag> getNCTagsOfATypeFromAllDocuments(TagType type) {
         List<ExtentTag> nctags = new LinkedList<>();
         try {
+            if (isStoreSharedByAllDocuments()) {
+                return getDriver().getAllNCTagsOfTypeOfAllDocuments(type);
+            }
             for (MaeDriverI driver : getDrivers()) {
                 nctags.addAll(driver.getAllNCTagsOfType(type));
             }
@@ -917,6 +948,9 @@ public class MaeMainController extends JPanel {
     public List<ExtentTag> getExtentTagsOfATypeFromAllDocumentsIn(TagType type, int[] locations) {
         List<ExtentTag> tags = new LinkedList<>();
         try {
+            if (isStoreSharedByAllDocuments()) {
+                return getDriver().getTagsOfTypeOfAllDocumentsIn(type, locations);
+            }
             for (MaeDriverI driver : getDrivers()) {
                 tags.addAll(driver.getTagsOfTypeIn(type, locations));
             }
@@ -930,6 +964,10 @@ public class MaeMainController extends JPanel {
     public List<ExtentTag> getExtentTagsFromAllDocumentsIn(int[] locations) {
         Set<ExtentTag> tags = new HashSet<>();
         try {
+            if (isStoreSharedByAllDocuments()) {
+                // one query over the tag tables of all documents
+                return getDriver().getTagsOfAllDocumentsIn(locations);
+            }
             for (MaeDriverI driver : getDrivers()) {
                 tags.addAll(driver.getTagsIn(locations));
             }
@@ -1042,6 +1080,11 @@ public class MaeMainController extends JPanel {
             }
         }
         getDrivers().clear();
+        try {
+            MySQLDriverBuilder.closeSharedPools();
+        } catch (MaeDBException e) {
+            showError(e);
+        }
     }
 
     public Color getDocumentColor(String documentName) {
@@ -26,17 +26,12 @@ package edu.brandeis.cs.nlp.mae.controller.action;
 
 import edu.brandeis.cs.nlp.mae.controller.MaeMainController;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
-import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
-import edu.brandeis.cs.nlp.mae.model.ExtentTag;
-import edu.brandeis.cs.nlp.mae.model.LinkTag;
-import edu.brandeis.cs.nlp.mae.model.TagType;
+import edu.brandeis.cs.nlp.mae.io.AnnotationXmlWriter;
+import edu.brandeis.cs.nlp.mae.io.MaeIOException;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
 
 /**
  * Listener for the File menu; determines what action to take for loading/saving
@@ -44,14 +39,6 @@ import java.io.OutputStreamWriter;
  */
 public class SaveXML extends MenuActionI {
 
-    private static String xmlHeader = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<%s>\n";
-    // tried embed dtd source in the xml, but that fails XML parser to successfully parse
-    // <!DOCTYPE root_element SYSTEM "DTD_filename">\
-    // <!DOCTYPE root_element PUBLIC "DTD_name" "DTD_location">
-    // see https://xmlwriter.net/xml_guide/doctype_declaration.shtml
-    private static String xmlText = "<TEXT><![CDATA[%s]]></TEXT>\n<TAGS>\n";
-    private static String xmlTail = "</TAGS>\n</%s>";
-
     public SaveXML(String text, ImageIcon icon, KeyStroke hotkey, Integer mnemonic, MaeMainController controller) {
         super(text, icon, hotkey, mnemonic, controller);
     }
@@ -74,32 +61,10 @@ public class SaveXML extends MenuActionI {
 
     }
 
-    void exportXML(File file) throws MaeDBException, IOException {
+    void exportXML(File file) throws MaeDBException, MaeIOException {
         getMainController().getDriver().setAnnotationChanged(false);
         getMainController().getDriver().setAnnotationFileName(file.getAbsolutePath());
-        OutputStreamWriter fw = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
-        fw.write(generateXMLString());
-        fw.close();
-    }
-
-    String generateXMLString() throws MaeDBException {
-        MaeDriverI driver = getMainController().getDriver();
-//        String head = String.format(xmlHeader, driver.getTaskFileName(), driver.getTaskName());
-        String head = String.format(xmlHeader, driver.getTaskName());
-        String text = String.format(xmlText, driver.getPrimaryText());
-        String tail = String.format(xmlTail, driver.getTaskName());
-        String tags = "";
-        for (TagType eType : driver.getExtentTagTypes()) {
-            for (ExtentTag tag : driver.getAllExtentTagsOfType(eType)) {
-                tags += tag.toXmlString() + "\n";
-            }
-        }
-        for (TagType lType : driver.getLinkTagTypes()) {
-            for (LinkTag tag : driver.getAllLinkTagsOfType(lType)) {
-                tags += tag.toXmlString() + "\n";
-            }
-        }
-        return head + text + tags + tail;
+        new AnnotationXmlWriter(getMainController().getDriver()).write(file);
     }
 
     String getXMLFileName() throws MaeDBException {
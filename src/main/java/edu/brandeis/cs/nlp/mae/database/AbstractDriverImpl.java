@@ -7,11 +7,15 @@ import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ART_COL_NAME;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ART_FCOL_TT;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ATT_FCOL_AT;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ATT_FCOL_ETAG;
+import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ATT_FCOL_LTAG;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_AT_COL_NAME;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_AT_FCOL_TT;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_CI_COL_LOCATION;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_CI_FCOL_ETAG;
+import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ETAG_COL_SPANS;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_ETAG_COL_TEXT;
+import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_TAG_COL_DOC;
+import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_TAG_COL_ID;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_TAG_COL_TID;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_TAG_FCOL_TT;
 import static edu.brandeis.cs.nlp.mae.model.DBSchema.TAB_TT_COL_NAME;
@@ -22,25 +26,33 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
 import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 
 import edu.brandeis.cs.nlp.mae.MaeException;
+import edu.brandeis.cs.nlp.mae.MaeStrings;
 import edu.brandeis.cs.nlp.mae.io.AnnotationLoader;
 import edu.brandeis.cs.nlp.mae.io.DTDLoader;
 import edu.brandeis.cs.nlp.mae.io.MaeIODTDException;
@@ -57,43 +69,85 @@ import edu.brandeis.cs.nlp.mae.model.Tag;
 import edu.brandeis.cs.nlp.mae.model.TagType;
 import edu.brandeis.cs.nlp.mae.model.Task;
 import edu.brandeis.cs.nlp.mae.util.FileHandler;
+import edu.brandeis.cs.nlp.mae.util.MappedList;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 import edu.brandeis.cs.nlp.mae.util.SpanHandler;
 
 public abstract class AbstractDriverImpl implements MaeDriverI{
 	
 	private static Logger logger = LoggerFactory.getLogger(AbstractDriverImpl.class);
+    private static final int MAX_IN_CLAUSE_SIZE = 500;
+    private static final int MAX_OR_CLAUSE_SIZE = 200;
 	protected ConnectionSource cs;
 	protected IdHandler idHandler;
     // this should be distinguishable over diff tasks and diff versions
 	protected Task workingTask;
-	protected boolean workChanged;
+	protected volatile boolean workChanged;
+    // when true, char_index table is not used and spans are looked up via spanIndex
+    protected volatile boolean spanStorageMode = false;
+    protected SpanIndex spanIndex = new SpanIndex();
 
     protected Dao<Task, Integer> taskDao;
     protected Dao<CharIndex, Integer> charIndexDao;
     protected Dao<TagType, Integer> tagTypeDao;
-    protected Dao<ExtentTag, String> eTagDao;
-    protected Dao<LinkTag, String> lTagDao;
+    protected Dao<ExtentTag, Integer> eTagDao;
+    protected Dao<LinkTag, Integer> lTagDao;
     protected Dao<AttributeType, Integer> attTypeDao;
     protected Dao<Attribute, Integer> attDao;
     protected Dao<ArgumentType, Integer> argTypeDao;
     protected Dao<Argument, Integer> argDao;
 
-    protected QueryBuilder<CharIndex, Integer> charIndexQuery;
-    protected QueryBuilder<TagType, Integer> tagTypeQuery;
-    protected QueryBuilder<ExtentTag, String> eTagQuery;
-    protected QueryBuilder<LinkTag, String> lTagQuery;
-    protected QueryBuilder<AttributeType, Integer> attTypeQuery;
-    protected QueryBuilder<Attribute, Integer> attQuery;
-    protected QueryBuilder<ArgumentType, Integer> argTypeQuery;
-    protected QueryBuilder<Argument, Integer> argQuery;
-
     protected Dao[] allDaos;
-    protected QueryBuilder[] allQueryBuilders;
-    
+
+    // shared with drivers of other documents of the task, see createDocumentDriver()
+    protected final DocumentStore store;
+    // the lock of the store, as documents in it share the connection and tables
+    protected final ReentrantReadWriteLock lock;
+
+    /**
+     * What drivers for documents of a task share: a database, where each
+     * document is a partition of the tag tables keyed by its row in the task
+     * table, and a lock over it. The list of open documents is guarded by
+     * the lock.
+     */
+    protected static class DocumentStore {
+
+        // reads can run in parallel, e.g. from background workers and the UI thread,
+        // writes are exclusive. Query builders are made per call, so no query state is shared.
+        // A write holder may read, but a read holder must not write (no lock upgrade).
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        final List<AbstractDriverImpl> documents = new ArrayList<>();
+    }
+
+    protected AbstractDriverImpl() {
+        store = new DocumentStore();
+        lock = store.lock;
+    }
+
+    /**
+     * Sets up a driver for another document in the store of the given driver.
+     * Schema tables are shared, so the DTD is not read again. Subclasses should
+     * call {@link #openDocument(String)} afterwards.
+     */
+    protected AbstractDriverImpl(AbstractDriverImpl storeSource) throws MaeDBException {
+        store = storeSource.store;
+        lock = store.lock;
+        cs = storeSource.cs;
+        spanStorageMode = storeSource.spanStorageMode;
+        idHandler = new IdHandler();
+        createDaos(cs);
+    }
+
     @Override
     public void setupDatabase(ConnectionSource source) throws MaeDBException {
+        createDaos(source);
+        dropAllTables(source);
+        createAllTables(source);
+
+    }
 
+    private void createDaos(ConnectionSource source) throws MaeDBException {
         try {
             taskDao = DaoManager.createDao(source, Task.class);
             charIndexDao = DaoManager.createDao(source, CharIndex.class);
@@ -108,21 +162,62 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             throw catchSQLException(e);
         }
 
-        charIndexQuery = charIndexDao.queryBuilder();
-        tagTypeQuery = tagTypeDao.queryBuilder();
-        eTagQuery = eTagDao.queryBuilder();
-        lTagQuery = lTagDao.queryBuilder();
-        attTypeQuery = attTypeDao.queryBuilder();
-        attQuery = attDao.queryBuilder();
-        argTypeQuery = argTypeDao.queryBuilder();
-        argQuery = argDao.queryBuilder();
-
         allDaos = new Dao[]{ taskDao, charIndexDao, tagTypeDao, eTagDao, lTagDao, attTypeDao, attDao, argTypeDao, argDao};
-        allQueryBuilders = new QueryBuilder[]{ charIndexQuery, tagTypeQuery, eTagQuery, lTagQuery, attTypeQuery, attQuery, argTypeQuery, argQuery};
+    }
 
-        dropAllTables(source);
-        createAllTables(source);
+    /**
+     * Adds a row of this document to the task table, of which id keys tags of
+     * the document. A document joining a store with other documents in it
+     * takes their task.
+     */
+    protected void openDocument(String taskName) throws MaeDBException {
+        lock.writeLock().lock();
+        try {
+            workingTask = new Task(taskName);
+            if (!store.documents.isEmpty()) {
+                Task sharedTask = store.documents.get(0).workingTask;
+                workingTask.setName(sharedTask.getName());
+                workingTask.setTaskFileName(sharedTask.getTaskFileName());
+            }
+            taskDao.create(workingTask);
+            store.documents.add(this);
+        } catch (SQLException e) {
+            throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
+    /**
+     * Takes this document out of the store. Tags and the task row of the
+     * document are deleted, unless it is the last one in the store.
+     *
+     * @return true when no other document is left, so the store can be closed
+     */
+    protected boolean releaseDocument() throws MaeDBException {
+        lock.writeLock().lock();
+        try {
+            store.documents.remove(this);
+            if (store.documents.isEmpty()) {
+                return true;
+            }
+            emptyAnnotations();
+            taskDao.delete(workingTask);
+            return false;
+        } catch (SQLException e) {
+            throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    protected int getDocument() {
+        return workingTask.getDocument();
+    }
+
+    @Override
+    public boolean isSharingStoreWith(MaeDriverI driver) {
+        return driver instanceof AbstractDriverImpl && ((AbstractDriverImpl) driver).store == store;
     }
 
     public void createAllTables(ConnectionSource source) throws MaeDBException {
@@ -149,33 +244,104 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public void readTask(File file) throws MaeIODTDException, MaeDBException, FileNotFoundException {
-        DTDLoader dtdl = new DTDLoader(this);
-        dropAllTables(cs);
-        createAllTables(cs);
-        if (!dtdl.read(file)) {
-            throw new MaeIODTDException("DTD does not contain any definition, maybe not a DTD file? " + file.getAbsolutePath());
+        lock.writeLock().lock();
+        try {
+            if (store.documents.size() > 1) {
+                throw new MaeDBException("cannot read a task into a DB shared with other documents: " + file.getAbsolutePath());
+            }
+            DTDLoader dtdl = new DTDLoader(this);
+            dropAllTables(cs);
+            createAllTables(cs);
+            // task row of the document is gone with the table, and gets a new id
+            taskDao.create(workingTask);
+            spanIndex.clear();
+            if (!dtdl.read(file)) {
+                throw new MaeIODTDException("DTD does not contain any definition, maybe not a DTD file? " + file.getAbsolutePath());
+            }
+        } catch (SQLException e) {
+            throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public String readAnnotation(File file) throws MaeException {
-        AnnotationLoader xmll = new AnnotationLoader(this);
-        String xmlParseWarnings =  xmll.loadFile(file);
-        setAnnotationChanged(false);
-        return xmlParseWarnings;
+        lock.writeLock().lock();
+        try {
+            AnnotationLoader xmll = new AnnotationLoader(this);
+            String xmlParseWarnings =  xmll.loadFile(file);
+            setAnnotationChanged(false);
+            return xmlParseWarnings;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
+    @Override
+    public void setSpanStorageMode(boolean b) throws MaeDBException {
+        lock.writeLock().lock();
+        try {
+            spanStorageMode = b;
+            spanIndex.clear();
+            if (spanStorageMode) {
+                // spans column is always written, so the index can be rebuilt from what's in DB
+                try {
+                    for (ExtentTag tag : eTagDao.queryForEq(TAB_TAG_COL_DOC, getDocument())) {
+                        spanIndex.add(tag);
+                    }
+                } catch (SQLException e) {
+                    throw catchSQLException(e);
+                }
+            }
+            logger.info("span storage mode is " + (spanStorageMode ? "on" : "off"));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    private void resetQueryBuilders() {
-        for (QueryBuilder qb : allQueryBuilders) {
-            qb.reset();
+    @Override
+    public boolean isSpanStorageMode() {
+        return spanStorageMode;
+    }
+
+    /**
+     * Retrieves extent tags of given ids with a single IN query per chunk
+     * (large IN lists are split not to hit SQL length limits).
+     */
+    protected List<ExtentTag> getExtentTagsByTids(Collection<String> tids) throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            List<ExtentTag> results = new ArrayList<>();
+            List<String> chunk = new ArrayList<>();
+            try {
+                for (String tid : tids) {
+                    chunk.add(tid);
+                    if (chunk.size() == MAX_IN_CLAUSE_SIZE) {
+                        results.addAll(eTagDao.queryBuilder().where().eq(TAB_TAG_COL_DOC, getDocument()).and().in(TAB_TAG_COL_TID, chunk).query());
+                        chunk.clear();
+                    }
+                }
+                if (chunk.size() > 0) {
+                    results.addAll(eTagDao.queryBuilder().where().eq(TAB_TAG_COL_DOC, getDocument()).and().in(TAB_TAG_COL_TID, chunk).query());
+                }
+                return results;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public String getAnnotationFileName() throws MaeDBException {
-        return workingTask.getAnnotationFileName();
+        lock.readLock().lock();
+        try {
+            return workingTask.getAnnotationFileName();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -185,26 +351,37 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public void setAnnotationFileName(String fileName) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             this.workingTask.setAnnotationFileName(fileName);
             taskDao.update(workingTask);
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public String getPrimaryText() throws MaeDBException {
-        return workingTask.getPrimaryText();
+        lock.readLock().lock();
+        try {
+            return workingTask.getPrimaryText();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void setPrimaryText(String text) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             this.workingTask.setPrimaryText(text);
             taskDao.update(workingTask);
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -215,28 +392,37 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public void setTaskName(String name) throws MaeDBException {
+        lock.writeLock().lock();
         try {
-            // need to clear task table before updating id column of it
-            TableUtils.clearTable(cs, taskDao.getDataClass());
             workingTask.setName(name);
-            taskDao.create(workingTask);
+            taskDao.update(workingTask);
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public String getTaskFileName() throws MaeDBException {
-        return workingTask.getTaskFileName();
+        lock.readLock().lock();
+        try {
+            return workingTask.getTaskFileName();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void setTaskFileName(String fileName) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             this.workingTask.setTaskFileName(fileName);
             taskDao.update(workingTask);
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -267,27 +453,41 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public List<ExtentTag> getTagsAt(int location) throws MaeDBException {
-
+        lock.readLock().lock();
         try {
-            List<ExtentTag> results;
-            charIndexQuery.where().eq(TAB_CI_COL_LOCATION, location);
-            results = eTagQuery.join(charIndexQuery).query();
-            resetQueryBuilders();
-            return results;
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+            if (spanStorageMode) {
+                return getExtentTagsByTids(spanIndex.getTidsAt(location));
+            }
+            try {
+                QueryBuilder<CharIndex, Integer> atLocation = charIndexDao.queryBuilder();
+                atLocation.where().eq(TAB_CI_COL_LOCATION, new SelectArg(location));
+                QueryBuilder<ExtentTag, Integer> ofDocument = eTagDao.queryBuilder().join(atLocation);
+                ofDocument.where().eq(TAB_TAG_COL_DOC, getDocument());
+                return ofDocument.query();
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public List<ExtentTag> getTagsIn(int[] locations) throws MaeDBException {
-        Set<ExtentTag> tags = new TreeSet<>();
-        for (int location : locations) {
-            tags.addAll(getTagsAt(location));
-        }
+        Set<ExtentTag> tags = new TreeSet<>(getTagsInRanges(locationsToRanges(locations)));
         return new ArrayList<>(tags);
     }
 
+    @Override
+    public List<ExtentTag> getTagsOfAllDocumentsIn(int[] locations) throws MaeDBException {
+        return getTagsOfAllDocumentsInRanges(locationsToRanges(locations));
+    }
+
+    @Override
+    public List<ExtentTag> getTagsOfTypeOfAllDocumentsIn(TagType type, int[] locations) throws MaeDBException {
+        return getTagsOfAllDocumentsInRanges(locationsToRanges(locations), type);
+    }
+
     public List<String> getTagIdsAt(int loc) throws MaeDBException {
         List<String> tids = new ArrayList<>();
         for (ExtentTag tag : getTagsAt(loc)) {
@@ -298,77 +498,263 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public List<ExtentTag> getTagsOfTypeAt(TagType type, int location) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            List<ExtentTag> results;
-            charIndexQuery.where().eq(TAB_CI_COL_LOCATION, location);
-            results = eTagQuery.join(charIndexQuery).where().eq(TAB_TAG_FCOL_TT, type).query();
-            resetQueryBuilders();
-            return results;
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+            if (spanStorageMode) {
+                return getExtentTagsByTids(spanIndex.getTidsAt(location, type.getName()));
+            }
+            try {
+                QueryBuilder<CharIndex, Integer> atLocation = charIndexDao.queryBuilder();
+                atLocation.where().eq(TAB_CI_COL_LOCATION, new SelectArg(location));
+                QueryBuilder<ExtentTag, Integer> ofType = eTagDao.queryBuilder().join(atLocation);
+                ofType.where().eq(TAB_TAG_COL_DOC, getDocument()).and().eq(TAB_TAG_FCOL_TT, new SelectArg(type));
+                return ofType.query();
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public List<ExtentTag> getTagsOfTypeIn(TagType type, int[] locations) throws MaeDBException {
-        Set<ExtentTag> tags = new HashSet<>();
-        for (int location : locations) {
-            tags.addAll(getTagsOfTypeAt(type, location));
-        }
-        return new ArrayList<>(tags);
+        return getTagsInRanges(locationsToRanges(locations), type);
     }
 
     @Override
     public List<ExtentTag> getTagsOfTypeBetween(TagType type, int begin, int end) throws MaeDBException {
-        Set<ExtentTag> tags = new HashSet<>();
-        for (int i = begin; i < end; i++) {
-            tags.addAll(getTagsOfTypeAt(type, i));
-        }
-        return new ArrayList<>(tags);
+        return getTagsIntersecting(begin, end, type);
     }
 
     @Override
-    public List<Integer> getAllAnchors() throws MaeDBException{
-        List<Integer> anchors = new ArrayList<>();
+    public List<ExtentTag> getTagsIntersecting(int begin, int end, TagType... types) throws MaeDBException {
+        List<int[]> ranges = new ArrayList<>();
+        ranges.add(new int[]{begin, end});
+        return getTagsInRanges(ranges, types);
+    }
+
+    /**
+     * Sorts and coalesces a set of char offsets into [start, end) ranges
+     */
+    private List<int[]> locationsToRanges(int[] locations) {
+        if (locations == null || locations.length == 0) {
+            return new ArrayList<>();
+        }
+        return SpanHandler.convertArrayToPairs(locations.clone());
+    }
+
+    /**
+     * Retrieves extent tags of given types (all types if none given) that have
+     * any char in any of given [start, end) ranges. Ranges are looked up at once,
+     * as a disjunction of BETWEEN clauses, or by probing the span index.
+     */
+    protected List<ExtentTag> getTagsInRanges(List<int[]> ranges, TagType... types) throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            List<int[]> validRanges = getValidRanges(ranges);
+            if (validRanges.size() == 0) {
+                return new ArrayList<>();
+            }
+            List<String> typeNames = getTypeNames(types);
+            if (spanStorageMode) {
+                Set<String> tids = new LinkedHashSet<>();
+                for (int[] range : validRanges) {
+                    tids.addAll(spanIndex.getTidsIntersecting(range[0], range[1], typeNames));
+                }
+                return getExtentTagsByTids(tids);
+            }
+            return queryTagsInRanges(Collections.singletonList(this), validRanges, typeNames);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #getTagsInRanges(List, TagType...)}, but over all
+     * documents in the store, with one query for all of them.
+     */
+    protected List<ExtentTag> getTagsOfAllDocumentsInRanges(List<int[]> ranges, TagType... types) throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            if (isAnyDocumentInSpanStorageMode()) {
+                // spans are in per document indices, not in the char index table
+                List<ExtentTag> tags = new ArrayList<>();
+                for (AbstractDriverImpl document : store.documents) {
+                    tags.addAll(document.getTagsInRanges(ranges, types));
+                }
+                return tags;
+            }
+            List<int[]> validRanges = getValidRanges(ranges);
+            if (validRanges.size() == 0) {
+                return new ArrayList<>();
+            }
+            return queryTagsInRanges(store.documents, validRanges, getTypeNames(types));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<int[]> getValidRanges(List<int[]> ranges) {
+        List<int[]> validRanges = new ArrayList<>();
+        for (int[] range : ranges) {
+            if (range[0] < range[1]) {
+                validRanges.add(range);
+            }
+        }
+        return validRanges;
+    }
+
+    private List<String> getTypeNames(TagType... types) {
+        if (types == null || types.length == 0) {
+            return null;
+        }
+        List<String> typeNames = new ArrayList<>();
+        for (TagType type : types) {
+            typeNames.add(type.getName());
+        }
+        return typeNames;
+    }
+
+    private boolean isAnyDocumentInSpanStorageMode() {
+        for (AbstractDriverImpl document : store.documents) {
+            if (document.spanStorageMode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ExtentTag> queryTagsInRanges(List<AbstractDriverImpl> documents, List<int[]> validRanges, List<String> typeNames) throws MaeDBException {
         try {
-            for (CharIndex location : charIndexDao.queryForAll()) {
-                anchors.add(location.getLocation());
+            // a tag covering multiple chars in the ranges comes in multiple rows,
+            // and tids repeat across documents, so keep one per generated id
+            Map<Integer, ExtentTag> tags = new LinkedHashMap<>();
+            // keep OR clauses under SQL expression depth limits
+            for (int i = 0; i < validRanges.size(); i += MAX_OR_CLAUSE_SIZE) {
+                List<int[]> chunk = validRanges.subList(i, Math.min(i + MAX_OR_CLAUSE_SIZE, validRanges.size()));
+                QueryBuilder<CharIndex, Integer> inRanges = charIndexDao.queryBuilder();
+                Where<CharIndex, Integer> where = inRanges.where();
+                for (int[] range : chunk) {
+                    where.between(TAB_CI_COL_LOCATION, range[0], range[1] - 1);
+                }
+                if (chunk.size() > 1) {
+                    where.or(chunk.size());
+                }
+                QueryBuilder<ExtentTag, Integer> ofTypes = eTagDao.queryBuilder();
+                Where<ExtentTag, Integer> ofDocuments = whereDocumentIn(ofTypes.where(), documents);
+                if (typeNames != null) {
+                    ofDocuments.and().in(TAB_TAG_FCOL_TT, typeNames);
+                }
+                for (ExtentTag tag : ofTypes.join(inRanges).query()) {
+                    tags.put(tag.getRowId(), tag);
+                }
             }
-            return anchors;
+            return new ArrayList<>(tags.values());
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
+    }
 
+    /**
+     * Narrows down a tag query to tags of given documents, using the
+     * (document, tid) index of tag tables.
+     */
+    private <T extends Tag> Where<T, Integer> whereDocumentIn(Where<T, Integer> where, List<AbstractDriverImpl> documents) throws SQLException {
+        if (documents.size() == 1) {
+            return where.eq(TAB_TAG_COL_DOC, documents.get(0).getDocument());
+        }
+        List<Integer> documentIds = new ArrayList<>();
+        for (AbstractDriverImpl document : documents) {
+            documentIds.add(document.getDocument());
+        }
+        return where.in(TAB_TAG_COL_DOC, documentIds);
     }
 
     @Override
-    public List<Integer> getAllAnchorsOfTagType(TagType type) throws MaeDBException{
+    public List<Integer> getAllAnchors() throws MaeDBException{
+        lock.readLock().lock();
+        try {
+            if (spanStorageMode) {
+                return spanIndex.getAllAnchors();
+            }
+            List<Integer> anchors = new ArrayList<>();
+            try {
+                QueryBuilder<ExtentTag, Integer> ofDocument = eTagDao.queryBuilder();
+                ofDocument.where().eq(TAB_TAG_COL_DOC, getDocument());
+                for (CharIndex location : charIndexDao.queryBuilder().join(ofDocument).query()) {
+                    anchors.add(location.getLocation());
+                }
+                return anchors;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
+    @Override
+    public List<Integer> getAllAnchorsOfTagType(TagType type) throws MaeDBException{
+        lock.readLock().lock();
         try {
-            List<CharIndex> locations;
+            if (spanStorageMode) {
+                return getAllAnchorsOfTagTypeFromIndex(type);
+            }
+            try {
+                List<CharIndex> locations;
 
-            if (type.isExtent()) {
-                eTagQuery.where().eq(TAB_TAG_FCOL_TT, type);
-                locations = charIndexQuery.join(eTagQuery).query();
+                QueryBuilder<ExtentTag, Integer> eTagQuery = eTagDao.queryBuilder();
+                if (type.isExtent()) {
+                    eTagQuery.where().eq(TAB_TAG_COL_DOC, getDocument()).and().eq(TAB_TAG_FCOL_TT, type);
+                    locations = charIndexDao.queryBuilder().join(eTagQuery).query();
 
-            } else {
-                lTagQuery.where().eq(TAB_TAG_FCOL_TT, type);
-                argQuery.join(lTagQuery).selectColumns(TAB_ARG_FCOL_ETAG).distinct();
-                eTagQuery.join(argQuery);
-                locations = charIndexQuery.join(eTagQuery).query();
+                } else {
+                    QueryBuilder<LinkTag, Integer> lTagQuery = lTagDao.queryBuilder();
+                    lTagQuery.where().eq(TAB_TAG_COL_DOC, getDocument()).and().eq(TAB_TAG_FCOL_TT, type);
+                    QueryBuilder<Argument, Integer> argQuery = argDao.queryBuilder();
+                    argQuery.join(lTagQuery).selectColumns(TAB_ARG_FCOL_ETAG).distinct();
+                    eTagQuery.join(argQuery);
+                    locations = charIndexDao.queryBuilder().join(eTagQuery).query();
 
-            }
+                }
 
-            ArrayList<Integer> locationList = new ArrayList<>();
-            for (CharIndex ci : locations) {
-                locationList.add(ci.getLocation());
+                ArrayList<Integer> locationList = new ArrayList<>();
+                for (CharIndex ci : locations) {
+                    locationList.add(ci.getLocation());
+                }
+                return locationList;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
             }
-            resetQueryBuilders();
-            return locationList;
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
+    private List<Integer> getAllAnchorsOfTagTypeFromIndex(TagType type) throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            if (type.isExtent()) {
+                return spanIndex.getAnchorsOfTagType(type.getName());
+            }
+            try {
+                QueryBuilder<LinkTag, Integer> lTagQuery = lTagDao.queryBuilder();
+                lTagQuery.where().eq(TAB_TAG_COL_DOC, getDocument()).and().eq(TAB_TAG_FCOL_TT, type);
+                QueryBuilder<Argument, Integer> argQuery = argDao.queryBuilder();
+                argQuery.join(lTagQuery).selectColumns(TAB_ARG_FCOL_ETAG).distinct();
+                List<ExtentTag> args = eTagDao.queryBuilder().join(argQuery).query();
+                List<Integer> locationList = new ArrayList<>();
+                for (ExtentTag arg : args) {
+                    locationList.addAll(arg.getSpansAsList());
+                }
+                return locationList;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -382,34 +768,51 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
     }
 
     public List<ExtentTag> getArgumentTags(LinkTag linker) {
-        return linker.getArgumentTags();
+        // arguments are a lazy collection, read from the DB when iterated
+        lock.readLock().lock();
+        try {
+            return linker.getArgumentTags();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public List<Integer> getAnchorsByTid(String tid) throws MaeDBException {
-        Tag tag = getTagByTid(tid);
-        if (tag.getTagtype().isExtent()) {
-            return ((ExtentTag) tag).getSpansAsList();
-        } else {
+        lock.readLock().lock();
+        try {
+            Tag tag = getTagByTid(tid);
+            if (tag.getTagtype().isExtent()) {
+                return ((ExtentTag) tag).getSpansAsList();
+            } else {
 
-            Set<Integer> argSpans = new TreeSet<>();
-            for (ExtentTag arg : ((LinkTag) tag).getArgumentTags()) {
-                argSpans.addAll(arg.getSpansAsList());
+                Set<Integer> argSpans = new TreeSet<>();
+                for (ExtentTag arg : ((LinkTag) tag).getArgumentTags()) {
+                    argSpans.addAll(arg.getSpansAsList());
+                }
+                return new ArrayList<>(argSpans);
             }
-            return new ArrayList<>(argSpans);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public Tag getTagByTid(String tid) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            if (eTagDao.queryForId(tid) != null) {
-                return eTagDao.queryForId(tid);
+            ExtentTag extentTag = eTagDao.queryBuilder().where().eq(TAB_TAG_COL_DOC, getDocument())
+                    .and().eq(TAB_TAG_COL_TID, new SelectArg(tid)).queryForFirst();
+            if (extentTag != null) {
+                return extentTag;
             } else {
-                return lTagDao.queryForId(tid);
+                return lTagDao.queryBuilder().where().eq(TAB_TAG_COL_DOC, getDocument())
+                        .and().eq(TAB_TAG_COL_TID, new SelectArg(tid)).queryForFirst();
             }
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -421,14 +824,21 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public String getNextId(TagType type) {
-        return idHandler.getNextID(type);
+        lock.readLock().lock();
+        try {
+            return idHandler.getNextID(type);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void deleteTag(Tag tag) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             if (tag instanceof ExtentTag) {
                 eTagDao.delete((ExtentTag) tag);
+                spanIndex.remove(tag.getId());
             } else {
                 lTagDao.delete((LinkTag) tag);
             }
@@ -436,70 +846,90 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             setAnnotationChanged(true);
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public Set<LinkTag> getLinksHasArgumentTag(ExtentTag argument) throws MaeDBException{
+        lock.readLock().lock();
         try {
             TreeSet<LinkTag> links = new TreeSet<>();
-            List<Argument> results;
-            results = argQuery.where().eq(TAB_ARG_FCOL_ETAG, argument).query();
-            for (Argument result : results) {
+            QueryBuilder<Argument, Integer> ofArgument = argDao.queryBuilder();
+            ofArgument.where().eq(TAB_ARG_FCOL_ETAG, new SelectArg(argument));
+            for (Argument result : ofArgument.query()) {
                 links.add(result.getLinker());
             }
-            resetQueryBuilders();
             return links;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public List<LinkTag> getAllLinkTagsOfAllTypes() throws MaeDBException {
+        lock.readLock().lock();
         try {
-            return new ArrayList<>(lTagDao.queryForAll());
+            return new ArrayList<>(lTagDao.queryForEq(TAB_TAG_COL_DOC, getDocument()));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public List<ExtentTag> getAllExtentTagsOfAllTypes(boolean consumingOnly) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            return new ArrayList<>(eTagDao.queryForAll());
+            return new ArrayList<>(eTagDao.queryForEq(TAB_TAG_COL_DOC, getDocument()));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
+    @Override
     public MappedSet<TagType, ExtentTag> getAllExtentTagsByTypes(boolean consumingOnly) throws MaeDBException {
         MappedSet<TagType, ExtentTag> tagsByTypes = new MappedSet<>();
-        for (TagType type : getAllTagTypes()) {
-            if (type.isExtent()) {
-                tagsByTypes.putCollection(type, type.getExtentTagsAsList(consumingOnly));
-            }
-        }
+        tagsByTypes.merge(getExtentTagsWithSpans(consumingOnly));
         return tagsByTypes;
 
     }
 
     @Override
-    public MappedSet<TagType,ExtentTag> getTagsByTypesAt(int location) throws MaeDBException{
-        MappedSet<TagType, ExtentTag> tags = new MappedSet<>();
-        for (ExtentTag tag : getTagsAt(location)) {
-            tags.putItem(tag.getTagtype(), tag);
+    public MappedList<TagType, ExtentTag> getExtentTagsWithSpans(boolean consumingOnly) throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            MappedList<TagType, ExtentTag> tagsByTypes = new MappedList<>();
+            try {
+                // spans come with the span column, so a single query is enough
+                for (ExtentTag tag : eTagDao.queryForEq(TAB_TAG_COL_DOC, getDocument())) {
+                    if (tag.isConsuming() || !consumingOnly) {
+                        tagsByTypes.putItem(tag.getTagtype(), tag);
+                    }
+                }
+                return tagsByTypes;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
         }
-        return tags;
+    }
+
+    @Override
+    public MappedSet<TagType,ExtentTag> getTagsByTypesAt(int location) throws MaeDBException{
+        return groupTagsByTypes(getTagsAt(location));
     }
 
     @Override
     public MappedSet<TagType,ExtentTag> getTagsByTypesIn(int... locations) throws MaeDBException{
-        MappedSet<TagType, ExtentTag> tags = new MappedSet<>();
-        for (int location : locations) {
-            tags.merge(getTagsByTypesAt(location));
-        }
-        return tags;
+        return groupTagsByTypes(getTagsInRanges(locationsToRanges(locations)));
     }
 
     public MappedSet<TagType,ExtentTag> getTagsByTypesIn(String spansString) throws MaeDBException {
@@ -507,28 +937,37 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
     }
 
     public MappedSet<TagType,ExtentTag> getTagsByTypesIn(ArrayList<int[]> spansPairs) throws MaeDBException {
-        MappedSet<TagType, ExtentTag> tags = new MappedSet<>();
-        for (int[] pair : spansPairs) {
-            tags.merge(getTagsByTypesBetween(pair[0], pair[1]));
-        }
-        return tags;
+        return groupTagsByTypes(getTagsInRanges(spansPairs));
     }
 
     @Override
     public MappedSet<TagType,ExtentTag> getTagsByTypesBetween(int begin, int end) throws MaeDBException{
-        MappedSet<TagType, ExtentTag> tags = new MappedSet<>();
-        for (int i=begin; i<end; i++) {
-            tags.merge(getTagsByTypesAt(i));
+        return groupTagsByTypes(getTagsIntersecting(begin, end));
+    }
+
+    private MappedSet<TagType, ExtentTag> groupTagsByTypes(Collection<ExtentTag> tags) {
+        MappedSet<TagType, ExtentTag> tagsByTypes = new MappedSet<>();
+        for (ExtentTag tag : tags) {
+            tagsByTypes.putItem(tag.getTagtype(), tag);
         }
-        return tags;
+        return tagsByTypes;
     }
 
+    @Override
     public List<? extends Tag> getAllTagsOfType(TagType type) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            tagTypeDao.refresh(type);
-            return new ArrayList<>(type.getTags());
+            if (type.isExtent()) {
+                return new ArrayList<>(eTagDao.queryBuilder().where().eq(TAB_TAG_COL_DOC, getDocument())
+                        .and().eq(TAB_TAG_FCOL_TT, type).query());
+            } else {
+                return new ArrayList<>(lTagDao.queryBuilder().where().eq(TAB_TAG_COL_DOC, getDocument())
+                        .and().eq(TAB_TAG_FCOL_TT, type).query());
+            }
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -540,11 +979,46 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public List<ExtentTag> getAllNCTagsOfType(TagType type) throws MaeDBException, IllegalArgumentException {
+        lock.readLock().lock();
+        try {
+            return queryNCTagsOfType(Collections.singletonList(this), type, spanStorageMode);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ExtentTag> getAllNCTagsOfTypeOfAllDocuments(TagType type) throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            if (isAnyDocumentInSpanStorageMode()) {
+                // with span storage, NC tags are found by spans column, otherwise by missing char indices
+                List<ExtentTag> tags = new ArrayList<>();
+                List<AbstractDriverImpl> indexedDocuments = new ArrayList<>();
+                for (AbstractDriverImpl document : store.documents) {
+                    if (document.spanStorageMode) {
+                        indexedDocuments.add(document);
+                    } else {
+                        tags.addAll(queryNCTagsOfType(Collections.singletonList(document), type, false));
+                    }
+                }
+                tags.addAll(queryNCTagsOfType(indexedDocuments, type, true));
+                return tags;
+            }
+            return queryNCTagsOfType(store.documents, type, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<ExtentTag> queryNCTagsOfType(List<AbstractDriverImpl> documents, TagType type, boolean bySpansColumn) throws MaeDBException {
         try {
-            charIndexQuery.selectColumns(DBSchema.TAB_CI_FCOL_ETAG);
-            List<ExtentTag> nctags = eTagQuery.where().eq(TAB_TAG_FCOL_TT, type).and().notIn(TAB_TAG_COL_TID, charIndexQuery).query();
-            resetQueryBuilders();
-            return nctags;
+            Where<ExtentTag, Integer> ofType = whereDocumentIn(eTagDao.queryBuilder().where(), documents).and().eq(TAB_TAG_FCOL_TT, type);
+            if (bySpansColumn) {
+                return ofType.and().eq(TAB_ETAG_COL_SPANS, MaeStrings.NCSPAN_PLACEHOLDER).query();
+            }
+            QueryBuilder<CharIndex, Integer> anchored = charIndexDao.queryBuilder().selectColumns(DBSchema.TAB_CI_FCOL_ETAG);
+            return ofType.and().notIn(TAB_TAG_COL_ID, anchored).query();
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
@@ -557,8 +1031,81 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     }
 
+    @Override
+    public TagCursor<ExtentTag> getExtentTagCursorOfType(TagType type) throws MaeDBException {
+        // the cursor keeps the read lock until it's closed
+        lock.readLock().lock();
+        try {
+            return new DaoTagCursor<>(eTagDao.iterator(eTagDao.queryBuilder().where()
+                    .eq(TAB_TAG_COL_DOC, getDocument()).and().eq(TAB_TAG_FCOL_TT, type).prepare()));
+        } catch (SQLException e) {
+            lock.readLock().unlock();
+            throw catchSQLException(e);
+        } catch (RuntimeException e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public TagCursor<LinkTag> getLinkTagCursorOfType(TagType type) throws MaeDBException {
+        // the cursor keeps the read lock until it's closed
+        lock.readLock().lock();
+        try {
+            return new DaoTagCursor<>(lTagDao.iterator(lTagDao.queryBuilder().where()
+                    .eq(TAB_TAG_COL_DOC, getDocument()).and().eq(TAB_TAG_FCOL_TT, type).prepare()));
+        } catch (SQLException e) {
+            lock.readLock().unlock();
+            throw catchSQLException(e);
+        } catch (RuntimeException e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Holds the read lock from its creation until {@link #close()}, so writers
+     * wait for open cursors. Must be closed on the thread that opened it, and
+     * that thread must not write to the driver while the cursor is open.
+     */
+    private class DaoTagCursor<T extends Tag> implements TagCursor<T> {
+
+        private final CloseableIterator<T> iterator;
+        private boolean closed = false;
+
+        DaoTagCursor(CloseableIterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() throws MaeDBException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                iterator.close();
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
     @Override
     public TagType createTagType(String typeName, String prefix, boolean isLink) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             TagType type  = new TagType(typeName, prefix, isLink);
             tagTypeDao.create(type);
@@ -567,11 +1114,14 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return type;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public AttributeType createAttributeType(TagType tagType, String attTypeName) throws  MaeDBException {
+        lock.writeLock().lock();
         try {
             AttributeType attType = new AttributeType(tagType, attTypeName);
             attTypeDao.create(attType);
@@ -580,64 +1130,107 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return attType;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public AttributeType getAttributeTypeOfTagTypeByName(TagType type, String name) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            AttributeType result
-                    = attTypeQuery.where().eq(TAB_AT_FCOL_TT, type).
+            return attTypeDao.queryBuilder().where().eq(TAB_AT_FCOL_TT, type).
                     and().eq(TAB_AT_COL_NAME, name).queryForFirst();
-            resetQueryBuilders();
-            return  result;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public ArgumentType getArgumentTypeOfTagTypeByName(TagType type, String name) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            ArgumentType result
-                    = argTypeQuery.where().eq(TAB_ART_FCOL_TT, type).
+            return argTypeDao.queryBuilder().where().eq(TAB_ART_FCOL_TT, type).
                     and().eq(TAB_ART_COL_NAME, name).queryForFirst();
-            resetQueryBuilders();
-            return  result;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public List<AttributeType> getAttributeTypesOfTagType(TagType type) throws MaeDBException {
+        lock.readLock().lock();
         try {
             return new ArrayList<>(attTypeDao.queryForEq(TAB_AT_FCOL_TT, type));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public MappedSet<String, String> getTagTypesAndAttTypes() throws MaeDBException {
         MappedSet<String, String> tagsAndAtts = new MappedSet<>();
-        for (TagType tagType : getAllTagTypes()) {
+        MappedList<TagType, AttributeType> schema = getTagTypesWithAttributeTypes();
+        for (TagType tagType : schema.keySet()) {
             // TODO: 2016-04-17 19:23:06EDT support link tags as well in the future
             if (tagType.isExtent()) {
-                tagsAndAtts.putCollection(tagType.getName(), tagType.getAttributeTypesAsString());
+                List<String> attTypeNames = new ArrayList<>();
+                for (AttributeType attType : schema.get(tagType)) {
+                    attTypeNames.add(attType.getName());
+                }
+                tagsAndAtts.putCollection(tagType.getName(), attTypeNames);
             }
         }
         return tagsAndAtts;
     }
 
+    @Override
+    public MappedList<TagType, AttributeType> getTagTypesWithAttributeTypes() throws MaeDBException {
+        lock.readLock().lock();
+        try {
+            MappedList<TagType, AttributeType> schema = new MappedList<>();
+            Map<String, TagType> typesByName = new HashMap<>();
+            for (TagType type : getTagTypesOnly()) {
+                typesByName.put(type.getName(), type);
+                schema.putCollection(type, new ArrayList<AttributeType>());
+            }
+            try {
+                // foreign tag type in attribute types only holds the name, so fill in with full objects
+                for (AttributeType attType : attTypeDao.queryForAll()) {
+                    TagType type = typesByName.get(attType.getTagType().getName());
+                    attType.setTagType(type);
+                    schema.putItem(type, attType);
+                }
+                return schema;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public Map<String, String> getAttributeMapOfTag(Tag tag) throws MaeDBException {
-        return tag.getAttributesWithNames();
+        // attributes are a lazy collection, read from the DB when iterated
+        lock.readLock().lock();
+        try {
+            return tag.getAttributesWithNames();
+        } finally {
+            lock.readLock().unlock();
+        }
 
     }
 
     @Override
     public ArgumentType createArgumentType(TagType tagType, String argTypeName) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             ArgumentType argType = new ArgumentType(tagType, argTypeName);
             argTypeDao.create(argType);
@@ -646,18 +1239,28 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return argType;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public ExtentTag createExtentTag(String tid, TagType tagType, String text, int... spans) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             ExtentTag tag = new ExtentTag(tid, tagType, getAnnotationFileName());
+            tag.setDocument(getDocument());
             tag.setText(text);
-            for (CharIndex ci: tag.setSpans(spans)) {
-                charIndexDao.create(ci);
-            }
+            List<CharIndex> anchors = tag.setSpans(spans);
+            // char indices refer to the generated id of the tag
             eTagDao.create(tag);
+            if (spanStorageMode) {
+                spanIndex.add(tag);
+            } else {
+                for (CharIndex ci : anchors) {
+                    charIndexDao.create(ci);
+                }
+            }
             eTagDao.update(tag); //only after update(), all properties are saved
             boolean added = idHandler.addId(tagType, tid);
             if (!added) {
@@ -668,18 +1271,27 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return tag;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public ExtentTag createExtentTag(TagType tagType, String text, int...spans) throws MaeDBException {
-        String tid = idHandler.getNextID(tagType);
-        return createExtentTag(tid, tagType, text, spans);
+        lock.writeLock().lock();
+        try {
+            String tid = idHandler.getNextID(tagType);
+            return createExtentTag(tid, tagType, text, spans);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public LinkTag createLinkTag(String tid, TagType tagType) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             LinkTag link = new LinkTag(tid, tagType, getAnnotationFileName());
+            link.setDocument(getDocument());
             lTagDao.create(link);
             boolean added = idHandler.addId(tagType, tid);
             if (!added) {
@@ -690,24 +1302,36 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return link;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public LinkTag createLinkTag(TagType tagtype) throws MaeDBException {
-        return createLinkTag(idHandler.getNextID(tagtype), tagtype);
+        lock.writeLock().lock();
+        try {
+            return createLinkTag(idHandler.getNextID(tagtype), tagtype);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public LinkTag createLinkTag(String tid, TagType tagType, HashMap<ArgumentType, ExtentTag> arguments) throws MaeDBException {
-        LinkTag link = createLinkTag(tid, tagType);
-        for (ArgumentType argType : arguments.keySet()) {
-            addArgument(link, argType, arguments.get(argType));
-        }
+        lock.writeLock().lock();
         try {
-            lTagDao.update(link);
-            return link;
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+            LinkTag link = createLinkTag(tid, tagType);
+            for (ArgumentType argType : arguments.keySet()) {
+                addArgument(link, argType, arguments.get(argType));
+            }
+            try {
+                lTagDao.update(link);
+                return link;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -718,34 +1342,40 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public Attribute updateAttribute(Tag tag, AttributeType attType, String attValue) throws MaeDBException {
-        logger.debug(String.format("adding an attribute '%s: %s' to tag %s (%s)", attType.getName(), attValue, tag.getId(), tag.getTagTypeName()));
+        lock.writeLock().lock();
         try {
-            Attribute oldAtt = attQuery.where().eq(TAB_ATT_FCOL_ETAG, tag).and().eq(TAB_ATT_FCOL_AT, attType).queryForFirst();
-            if (oldAtt != null) {
-                logger.debug(String.format("an old attribute \"%s\" is deleted from \"%s\"", oldAtt.toString(), tag.toString()));
-                attDao.delete(oldAtt);
-                setAnnotationChanged(true);
-            }
-            if (attValue != null && attValue.length() > 0) {
-                return addAttribute(tag, attType, attValue);
-            } else {
-                logger.debug("no new value is provided. leaving the attribute deleted");
-                setAnnotationChanged(true);
-                return null;
+            logger.debug(String.format("adding an attribute '%s: %s' to tag %s (%s)", attType.getName(), attValue, tag.getId(), tag.getTagTypeName()));
+            try {
+                // tag tables have their own ids, so look up the column of the tag's table
+                String tagColumn = tag instanceof ExtentTag ? TAB_ATT_FCOL_ETAG : TAB_ATT_FCOL_LTAG;
+                Attribute oldAtt = attDao.queryBuilder().where().eq(tagColumn, tag).and().eq(TAB_ATT_FCOL_AT, attType).queryForFirst();
+                if (oldAtt != null) {
+                    logger.debug(String.format("an old attribute \"%s\" is deleted from \"%s\"", oldAtt.toString(), tag.toString()));
+                    attDao.delete(oldAtt);
+                    setAnnotationChanged(true);
+                }
+                if (attValue != null && attValue.length() > 0) {
+                    return addAttribute(tag, attType, attValue);
+                } else {
+                    logger.debug("no new value is provided. leaving the attribute deleted");
+                    setAnnotationChanged(true);
+                    return null;
+                }
+            } catch (SQLException e) {
+                throw catchSQLException(e);
             }
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public Attribute addAttribute(Tag tag, AttributeType attType, String attValue) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             Attribute att = new Attribute(tag, attType, attValue);
             attDao.create(att);
             refreshTag(tag);
-            resetQueryBuilders();
             logger.debug(String.format("an attribute \"%s\" is attached to \"%s\"", att.toString(), tag.toString()));
             setAnnotationChanged(true);
             return att;
@@ -753,6 +1383,8 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             throw catchSQLException(e);
         } catch (MaeModelException e) {
             throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -766,14 +1398,19 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public void batchCreateExtentTags(final Collection<ExtentTag> tags) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             eTagDao.callBatchTasks(new Callable<Void>() {
                 public Void call() throws Exception {
                     for (ExtentTag tag : tags) {
+                        tag.setDocument(getDocument());
                         eTagDao.create(tag);
                         if (!idHandler.addId(tag.getTagtype(), tag.getId())) {
                             throw new MaeDBException("tag id is already in DB!: " + tag.getId());
                         }
+                        if (spanStorageMode) {
+                            spanIndex.add(tag);
+                        }
                     }
                     return null;
                 }
@@ -786,39 +1423,50 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
         } catch (MaeDBException e) {
             throw e;
         } catch (Exception ignored) {
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public void batchCreateAnchors(final Collection<CharIndex> anchors) throws MaeDBException {
+        lock.writeLock().lock();
         try {
-            charIndexDao.callBatchTasks(new Callable<Void>() {
-                public Void call() throws Exception {
-                    for (CharIndex anchor : anchors) {
-                        charIndexDao.create(anchor);
+            if (spanStorageMode) {
+                logger.debug("span storage mode, skipping char index insertion");
+                return;
+            }
+            try {
+                charIndexDao.callBatchTasks(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (CharIndex anchor : anchors) {
+                            charIndexDao.create(anchor);
+                        }
+                        return null;
                     }
-                    return null;
-                }
-            });
-            logger.debug(String.format("%d anchors are inserted",anchors.size()));
-        } catch (SQLException e) {
-            throw catchSQLException(e);
-        } catch (MaeModelException e) {
-            throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
-        } catch (MaeDBException e) {
-            throw e;
-        } catch (Exception ignored) {
+                });
+                logger.debug(String.format("%d anchors are inserted",anchors.size()));
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            } catch (MaeModelException e) {
+                throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
+            } catch (MaeDBException e) {
+                throw e;
+            } catch (Exception ignored) {
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public void batchCreateLinkTags(final Collection<LinkTag> tags) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             lTagDao.callBatchTasks(new Callable<Void>() {
                 public Void call() throws Exception {
                     for (LinkTag tag : tags) {
+                        tag.setDocument(getDocument());
                         lTagDao.create(tag);
                         if (!idHandler.addId(tag.getTagtype(), tag.getId())) {
                             throw new MaeDBException("tag id is already in DB!: " + tag.getId());
@@ -833,12 +1481,14 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
         } catch (MaeDBException e) {
             throw e;
         } catch (Exception ignored) {
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public void batchCreateAttributes(final Collection<Attribute> atts) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             attDao.callBatchTasks(new Callable<Void>() {
                 public Void call() throws Exception {
@@ -854,12 +1504,14 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
         } catch (MaeDBException e) {
             throw e;
         } catch (Exception ignored) {
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public void batchCreateArguments(final Collection<Argument> args) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             argDao.callBatchTasks(new Callable<Void>() {
                 public Void call() throws Exception {
@@ -875,43 +1527,48 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
         } catch (MaeDBException e) {
             throw e;
         } catch (Exception ignored) {
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public Set<Attribute> batchAddAttributes(Tag tag, final Map<AttributeType, String> attributes) throws MaeDBException {
-        final Set<Attribute> toBeAdded = new HashSet<>();
+        lock.writeLock().lock();
         try {
-            for (AttributeType attType : attributes.keySet()) {
-                Attribute att = new Attribute(tag, attType, attributes.get(attType));
-                toBeAdded.add(att);
-            }
-            attDao.callBatchTasks(new Callable<Void>() {
-                public Void call() throws Exception {
-                    for (Attribute attribute : toBeAdded) {
-                        attDao.create(attribute);
-                    }
-                    return null;
+            final Set<Attribute> toBeAdded = new HashSet<>();
+            try {
+                for (AttributeType attType : attributes.keySet()) {
+                    Attribute att = new Attribute(tag, attType, attributes.get(attType));
+                    toBeAdded.add(att);
                 }
-            });
-            refreshTag(tag);
-            resetQueryBuilders();
-            logger.debug(String.format("attributes \"%s\" are attached to \"%s\"", toBeAdded.toString(), tag.toString()));
-            setAnnotationChanged(true);
-            return toBeAdded;
-        } catch (SQLException e) {
-            throw catchSQLException(e);
-        } catch (MaeModelException e) {
-            throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
-        } catch (Exception ignored) {
+                attDao.callBatchTasks(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (Attribute attribute : toBeAdded) {
+                            attDao.create(attribute);
+                        }
+                        return null;
+                    }
+                });
+                refreshTag(tag);
+                logger.debug(String.format("attributes \"%s\" are attached to \"%s\"", toBeAdded.toString(), tag.toString()));
+                setAnnotationChanged(true);
+                return toBeAdded;
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            } catch (MaeModelException e) {
+                throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
+            } catch (Exception ignored) {
+            }
+            return null;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return null;
-
     }
 
     @Override
     public Argument addArgument(LinkTag linker, ArgumentType argType, ExtentTag argument) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             logger.debug(String.format("adding an argument '%s: %s' to tag %s (%s)", argType.getName(), argument == null ? "null" : argument.getId(), linker.getId(), linker.getTagTypeName()));
             try {
@@ -927,21 +1584,23 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             }
         } catch (NullPointerException ex) {
             throw new MaeDBException("no such a tag is in DB");
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public Argument UpdateArgument(LinkTag linker, ArgumentType argType, ExtentTag argument) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             logger.debug(String.format("adding an argument '%s: %s' to tag %s (%s)", argType.getName(), argument == null ? "null" : argument.getId(), linker.getId(), linker.getTagTypeName()));
             try {
-                Argument oldArg = argQuery.where().eq(TAB_ARG_FCOL_LTAG, linker).
+                Argument oldArg = argDao.queryBuilder().where().eq(TAB_ARG_FCOL_LTAG, linker).
                         and().eq(TAB_ARG_FCOL_ART, argType).queryForFirst();
                 if (oldArg != null) {
                     argDao.delete(oldArg);
                     setAnnotationChanged(true);
                 }
-                resetQueryBuilders();
                 if (argument != null) {
                     return addArgument(linker, argType, argument);
                 } else {
@@ -954,35 +1613,48 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             }
         } catch (NullPointerException ex) {
             throw new MaeDBException("no such a tag is in DB");
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public boolean updateTagSpans(ExtentTag tag, int[] spans) throws MaeDBException {
+        lock.writeLock().lock();
         try {
-            List<CharIndex> olds = charIndexQuery.where().eq(TAB_CI_FCOL_ETAG, tag).query();
-            charIndexDao.delete(olds);
-            for (CharIndex anchor : tag.setSpans(spans)) {
-                charIndexDao.create(anchor);
+            List<CharIndex> anchors = tag.setSpans(spans);
+            if (spanStorageMode) {
+                spanIndex.add(tag);
+            } else {
+                List<CharIndex> olds = charIndexDao.queryBuilder().where().eq(TAB_CI_FCOL_ETAG, tag).query();
+                charIndexDao.delete(olds);
+                for (CharIndex anchor : anchors) {
+                    charIndexDao.create(anchor);
+                }
             }
-            resetQueryBuilders();
+            // DAO update() refreshes the tag first, so the spans column should be written beforehand
+            UpdateBuilder<ExtentTag, Integer> updateBuilder = eTagDao.updateBuilder();
+            updateBuilder.where().eq(TAB_TAG_COL_ID, tag.getRowId());
+            updateBuilder.updateColumnValue(TAB_ETAG_COL_SPANS, tag.getSpansAsString());
+            updateBuilder.update();
             if (eTagDao.update(tag) == 1) {
                 setAnnotationChanged(true);
-                resetQueryBuilders();
                 return true;
             }
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
         return false;
-
     }
 
     @Override
     public boolean updateTagText(ExtentTag tag, String text) throws MaeDBException {
+        lock.writeLock().lock();
         try {
-            UpdateBuilder<ExtentTag, String> updateBuilder = eTagDao.updateBuilder();
-            updateBuilder.where().eq(TAB_TAG_COL_TID, tag.getId());
+            UpdateBuilder<ExtentTag, Integer> updateBuilder = eTagDao.updateBuilder();
+            updateBuilder.where().eq(TAB_TAG_COL_ID, tag.getRowId());
             updateBuilder.updateColumnValue(TAB_ETAG_COL_TEXT,  text);
             if (updateBuilder.update() == 1) {
                 setAnnotationChanged(true);
@@ -991,28 +1663,35 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             }
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
         }
         return false;
-
     }
 
     @Override
     public void emptyAnnotations() throws MaeDBException {
+        lock.writeLock().lock();
         try {
-            for (ExtentTag tag : eTagDao.queryForAll()) {
-                eTagDao.delete(tag);
-            }
-            for (LinkTag tag : lTagDao.queryForAll()) {
-                lTagDao.delete(tag);
+            try {
+                for (ExtentTag tag : eTagDao.queryForEq(TAB_TAG_COL_DOC, getDocument())) {
+                    eTagDao.delete(tag);
+                }
+                for (LinkTag tag : lTagDao.queryForEq(TAB_TAG_COL_DOC, getDocument())) {
+                    lTagDao.delete(tag);
+                }
+            } catch (SQLException e) {
+                throw catchSQLException(e);
             }
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+            spanIndex.clear();
+            idHandler = new IdHandler();
+        } finally {
+            lock.writeLock().unlock();
         }
-        idHandler = new IdHandler();
-
     }
 
     public List<TagType> getTagTypes(boolean includeExtent, boolean includeLink) throws MaeDBException {
+        lock.readLock().lock();
         try {
             ArrayList<TagType> types = new ArrayList<>();
             for (TagType type : tagTypeDao.queryForAll()) {
@@ -1025,6 +1704,8 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return types;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -1033,6 +1714,12 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
         return getTagTypes(true, true);
     }
 
+    @Override
+    public List<TagType> getTagTypesOnly() throws MaeDBException {
+        // tag types have only lazy collections, no annotation is read here
+        return getAllTagTypes();
+    }
+
     @Override
     public List<TagType> getExtentTagTypes() throws MaeDBException {
         return getTagTypes(true, false);
@@ -1044,6 +1731,7 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
     }
 
     public List<TagType> getNonConsumingTagTypes() throws MaeDBException {
+        lock.readLock().lock();
         try {
             ArrayList<TagType> types = new ArrayList<>();
             for (TagType type : tagTypeDao.queryForAll()) {
@@ -1054,38 +1742,49 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return types;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     public boolean idExists(String tid) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            return (eTagDao.queryForId(tid) != null || lTagDao.queryForId(tid) != null);
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+            return getTagByTid(tid) != null;
+        } finally {
+            lock.readLock().unlock();
         }
-
     }
 
     @Override
     public TagType getTagTypeByName(String typeName) throws MaeDBException {
+        lock.readLock().lock();
         try {
-            return tagTypeDao.queryForEq(TAB_TT_COL_NAME, typeName).get(0);
+            QueryBuilder<TagType, Integer> byName = tagTypeDao.queryBuilder();
+            byName.where().eq(TAB_TT_COL_NAME, new SelectArg(typeName));
+            return byName.query().get(0);
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public List<ArgumentType> getArgumentTypesOfLinkTagType(TagType link) throws MaeDBException {
+        lock.readLock().lock();
         try {
             return new ArrayList<>(argTypeDao.queryForEq(TAB_ART_FCOL_TT, link));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     @Override
     public boolean setTagTypePrefix(TagType tagType, String prefix) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             tagType.setPrefix(prefix);
             boolean success = tagTypeDao.update(tagType) == 1;
@@ -1097,11 +1796,14 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return success;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public boolean setTagTypeNonConsuming(TagType tagType, boolean b) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             tagType.setNonConsuming(b);
             boolean success = tagTypeDao.update(tagType) == 1;
@@ -1113,17 +1815,24 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
             return success;
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public void setAttributeTypeValueSet(AttributeType attType, List<String> validValues) throws MaeDBException {
-        attType.setValuesetFromList(validValues);
+        lock.writeLock().lock();
         try {
-            attTypeDao.update(attType);
-            logger.debug(String.format("assigned a valid value set \"%s\" to an attribute type: %s", validValues.toString(), attType.getName()));
-        } catch (SQLException e) {
-            throw catchSQLException(e);
+            attType.setValuesetFromList(validValues);
+            try {
+                attTypeDao.update(attType);
+                logger.debug(String.format("assigned a valid value set \"%s\" to an attribute type: %s", validValues.toString(), attType.getName()));
+            } catch (SQLException e) {
+                throw catchSQLException(e);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -1133,46 +1842,57 @@ public abstract class AbstractDriverImpl implements MaeDriverI{
 
     @Override
     public void setAttributeTypeDefaultValue(AttributeType attType, String defaultValue) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             attType.setDefaultValue(defaultValue);
             attTypeDao.update(attType);
             logger.debug(String.format("assigned the default value \"%s\" to an attribute type: %s", defaultValue, attType.getName()));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public void setAttributeTypeIDRef(AttributeType attType, boolean b) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             attType.setIdRef(b);
             attTypeDao.update(attType);
             logger.debug(String.format("set an attribute type \"%s\" to be: %s", attType.getName(), b? "idref": "free-text"));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     @Override
     public void setAttributeTypeRequired(AttributeType attType, boolean b) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             attType.setRequired(true);
             attTypeDao.update(attType);
             logger.debug(String.format("set an attribute type \"%s\" to be: %s", attType.getName(), b? "required": "optional"));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
-
     }
 
     @Override
     public void setArgumentTypeRequired(ArgumentType argType, boolean b) throws MaeDBException {
+        lock.writeLock().lock();
         try {
             argType.setRequired(true);
             argTypeDao.update(argType);
             logger.debug(String.format("set an argument type \"%s\" to be: %s", argType.getName(), b? "required": "optional"));
         } catch (SQLException e) {
             throw catchSQLException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -34,11 +34,12 @@ import edu.brandeis.cs.nlp.mae.model.CharIndex;
 import edu.brandeis.cs.nlp.mae.model.ExtentTag;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 
 /**
  * Created by krim on 12/15/2015.
  */
-public class ExtentTagDao extends BaseDaoImpl<ExtentTag, String> {
+public class ExtentTagDao extends BaseDaoImpl<ExtentTag, Integer> {
 
     Dao<Attribute, Integer> attDao;
     Dao<CharIndex, Integer> charIndexDao;
@@ -68,25 +69,17 @@ public class ExtentTagDao extends BaseDaoImpl<ExtentTag, String> {
 
     @Override
     public int update(ExtentTag tag) throws SQLException {
+        // attributes and char indices are lazy collections, reading straight from DB,
+        // so refreshing the tag is enough to make them up to date
         refresh(tag);
-        for (Attribute att : tag.getAttributes()) {
-            attDao.createOrUpdate(att);
-        }
-        for (CharIndex ci : tag.getSpans()) {
-            charIndexDao.createOrUpdate(ci);
-        }
         return super.update(tag);
     }
 
     @Override
     public int delete(ExtentTag tag) throws SQLException {
         refresh(tag);
-        for (Attribute att : tag.getAttributes()) {
-            attDao.delete(att);
-        }
-        for (CharIndex ci : tag.getSpans()) {
-            charIndexDao.delete(ci);
-        }
+        attDao.delete(new ArrayList<>(tag.getAttributes()));
+        charIndexDao.delete(new ArrayList<>(tag.getSpans()));
         return super.delete(tag);
     }
 }
@@ -0,0 +1,1027 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import com.j256.ormlite.support.ConnectionSource;
+import edu.brandeis.cs.nlp.mae.MaeException;
+import edu.brandeis.cs.nlp.mae.io.AnnotationLoader;
+import edu.brandeis.cs.nlp.mae.io.DTDLoader;
+import edu.brandeis.cs.nlp.mae.io.MaeIODTDException;
+import edu.brandeis.cs.nlp.mae.model.*;
+import edu.brandeis.cs.nlp.mae.util.FileHandler;
+import edu.brandeis.cs.nlp.mae.util.MappedList;
+import edu.brandeis.cs.nlp.mae.util.MappedSet;
+import edu.brandeis.cs.nlp.mae.util.SpanHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.*;
+
+/**
+ * Driver that keeps a task and a single annotation in plain Java objects,
+ * without any DB behind. Tags are kept in hash maps keyed by tid, spans in
+ * a {@link SpanIndex}, and attributes and arguments in per-tag collections
+ * of the model objects, so lookups don't go through SQL at all. Links are
+ * also indexed by their argument tags, for
+ * {@link #getLinksHasArgumentTag(ExtentTag)}.
+ *
+ * Nothing is persisted; annotations are saved only by writing them out as
+ * XML. As there are no char index rows, this driver is always in span
+ * storage mode.
+ *
+ * Drivers for documents of the same task can share one schema: a driver
+ * made with {@link #InMemoryDriverImpl(InMemoryDriverImpl)} uses the tag,
+ * attribute and argument type objects of the given driver, instead of
+ * reading the DTD again. Tags are kept per driver, so each driver is a
+ * partition of annotations over the shared schema. Drivers sharing a schema
+ * also share the list of them, and lookups over all documents go through
+ * each driver in the list.
+ */
+public class InMemoryDriverImpl implements MaeDriverI {
+
+    public static final String IN_MEMORY_SOURCE = "in-memory";
+
+    private Logger logger;
+
+    private IdHandler idHandler;
+    private Task workingTask;
+    private boolean workChanged;
+    private SpanIndex spanIndex;
+
+    // keep inserted order, same as reading a DTD
+    // can be shared with other drivers, so it's only replaced, never cleared
+    private Map<String, TagType> tagTypes;
+    private Map<String, ExtentTag> extentTags;
+    private Map<String, LinkTag> linkTags;
+    // tag type name -> tags, not kept in tag type objects as those can be shared
+    private Map<String, Set<ExtentTag>> extentTagsOfType;
+    private Map<String, Set<LinkTag>> linkTagsOfType;
+    // tid of an extent tag -> links with the tag as an argument
+    private Map<String, Set<LinkTag>> linksOfArgument;
+    // drivers for documents sharing the schema, including this one
+    private List<InMemoryDriverImpl> documents;
+
+    public InMemoryDriverImpl() {
+        logger = LoggerFactory.getLogger(this.getClass().getName());
+        idHandler = new IdHandler();
+        workingTask = new Task(IN_MEMORY_SOURCE);
+        spanIndex = new SpanIndex();
+        tagTypes = new LinkedHashMap<>();
+        extentTags = new LinkedHashMap<>();
+        linkTags = new LinkedHashMap<>();
+        extentTagsOfType = new HashMap<>();
+        linkTagsOfType = new HashMap<>();
+        linksOfArgument = new HashMap<>();
+        documents = new ArrayList<>();
+        documents.add(this);
+        logger.info("New in-memory driver is initialized");
+        workChanged = false;
+
+    }
+
+    /**
+     * Creates a driver for another document of the task loaded in the given
+     * driver, sharing its schema. Schema changes made through either driver
+     * are seen by both, but annotations are not, except through lookups over
+     * all documents.
+     */
+    public InMemoryDriverImpl(InMemoryDriverImpl schemaSource) {
+        this();
+        tagTypes = schemaSource.tagTypes;
+        documents = schemaSource.documents;
+        documents.add(this);
+        workingTask.setName(schemaSource.getTaskName());
+        workingTask.setTaskFileName(schemaSource.getTaskFileName());
+        logger.info("schema is shared with another in-memory driver, task: " + getTaskName());
+    }
+
+    /**
+     * There's no DB to set up; this only wipes out everything stored so far.
+     */
+    @Override
+    public void setupDatabase(ConnectionSource source) throws MaeDBException {
+        clearAll();
+    }
+
+    private void clearAll() {
+        emptyAnnotations();
+        // other drivers might still be using the schema
+        tagTypes = new LinkedHashMap<>();
+    }
+
+    @Override
+    public void emptyAnnotations() {
+        extentTags.clear();
+        linkTags.clear();
+        extentTagsOfType.clear();
+        linkTagsOfType.clear();
+        linksOfArgument.clear();
+        spanIndex.clear();
+        idHandler = new IdHandler();
+
+    }
+
+    @Override
+    public void destroy() throws MaeDBException {
+        documents.remove(this);
+        clearAll();
+        logger.info("in-memory driver is destroyed");
+    }
+
+    @Override
+    public MaeDriverI createDocumentDriver() {
+        return new InMemoryDriverImpl(this);
+    }
+
+    @Override
+    public boolean isSharingStoreWith(MaeDriverI driver) {
+        return driver instanceof InMemoryDriverImpl && ((InMemoryDriverImpl) driver).documents == documents;
+    }
+
+    @Override
+    public List<ExtentTag> getTagsOfAllDocumentsIn(int[] locations) {
+        List<ExtentTag> tags = new ArrayList<>();
+        for (InMemoryDriverImpl document : documents) {
+            tags.addAll(document.getTagsIn(locations));
+        }
+        return tags;
+    }
+
+    @Override
+    public List<ExtentTag> getTagsOfTypeOfAllDocumentsIn(TagType type, int[] locations) {
+        List<ExtentTag> tags = new ArrayList<>();
+        for (InMemoryDriverImpl document : documents) {
+            tags.addAll(document.getTagsOfTypeIn(type, locations));
+        }
+        return tags;
+    }
+
+    @Override
+    public List<ExtentTag> getAllNCTagsOfTypeOfAllDocuments(TagType type) throws MaeDBException {
+        List<ExtentTag> tags = new ArrayList<>();
+        for (InMemoryDriverImpl document : documents) {
+            tags.addAll(document.getAllNCTagsOfType(type));
+        }
+        return tags;
+    }
+
+    @Override
+    public void readTask(File file) throws MaeDBException, MaeIODTDException, FileNotFoundException {
+        if (documents.size() > 1) {
+            throw new MaeDBException("cannot read a task into a schema shared with other documents: " + file.getAbsolutePath());
+        }
+        DTDLoader dtdl = new DTDLoader(this);
+        clearAll();
+        if (!dtdl.read(file)) {
+            throw new MaeIODTDException("DTD does not contain any definition, maybe not a DTD file? " + file.getAbsolutePath());
+        }
+
+    }
+
+    @Override
+    public String getTaskName() {
+        return workingTask.getName();
+    }
+
+    @Override
+    public void setTaskName(String name) {
+        workingTask.setName(name);
+    }
+
+    @Override
+    public String readAnnotation(File file) throws MaeException {
+        AnnotationLoader xmll = new AnnotationLoader(this);
+        String xmlParseWarnings = xmll.loadFile(file);
+        setAnnotationChanged(false);
+        return xmlParseWarnings;
+
+    }
+
+    @Override
+    public String getTaskFileName() {
+        return workingTask.getTaskFileName();
+    }
+
+    @Override
+    public void setTaskFileName(String fileName) {
+        workingTask.setTaskFileName(fileName);
+    }
+
+    @Override
+    public String getDBSourceName() {
+        return IN_MEMORY_SOURCE;
+    }
+
+    @Override
+    public String getAnnotationFileName() {
+        return workingTask.getAnnotationFileName();
+    }
+
+    @Override
+    public String getAnnotationFileBaseName() {
+        return FileHandler.getFileBaseName(getAnnotationFileName());
+    }
+
+    @Override
+    public void setAnnotationFileName(String fileName) {
+        workingTask.setAnnotationFileName(fileName);
+    }
+
+    @Override
+    public String getPrimaryText() {
+        return workingTask.getPrimaryText();
+    }
+
+    @Override
+    public void setPrimaryText(String text) {
+        workingTask.setPrimaryText(text);
+    }
+
+    @Override
+    public boolean isTaskLoaded() {
+        return workingTask.isTaskLoaded();
+    }
+
+    @Override
+    public boolean isAnnotationLoaded() {
+        return workingTask.isAnnotationLoaded();
+    }
+
+    @Override
+    public void setAnnotationChanged(boolean b) {
+        workChanged = b;
+    }
+
+    @Override
+    public boolean isAnnotationChanged() {
+        return isAnnotationLoaded() && workChanged;
+    }
+
+    @Override
+    public boolean isPrimaryTextLoaded() {
+        return workingTask.isPrimaryTextLoaded();
+    }
+
+    /**
+     * Spans always live in the span index, there are no char index rows to switch to.
+     */
+    @Override
+    public void setSpanStorageMode(boolean b) {
+        logger.info("in-memory driver is always in span storage mode");
+    }
+
+    @Override
+    public boolean isSpanStorageMode() {
+        return true;
+    }
+
+    @Override
+    public void batchCreateAnchors(Collection<CharIndex> anchors) {
+        logger.debug("span storage mode, skipping char index insertion");
+    }
+
+    @Override
+    public List<Integer> getAllAnchors() {
+        return spanIndex.getAllAnchors();
+    }
+
+    @Override
+    public List<Integer> getAllAnchorsOfTagType(TagType type) throws MaeDBException {
+        if (type.isExtent()) {
+            return spanIndex.getAnchorsOfTagType(type.getName());
+        }
+        Set<ExtentTag> args = new LinkedHashSet<>();
+        for (LinkTag link : getLinkTagsOfType(type)) {
+            args.addAll(getArgumentTags(link));
+        }
+        List<Integer> locationList = new ArrayList<>();
+        for (ExtentTag arg : args) {
+            locationList.addAll(arg.getSpansAsList());
+        }
+        return locationList;
+    }
+
+    @Override
+    public List<Integer> getAllAnchorsOfTagType(TagType type, List<TagType> exculdes) throws MaeDBException {
+        List<Integer> targetSpans = getAllAnchorsOfTagType(type);
+        for (TagType exclude : exculdes) {
+            targetSpans.removeAll(getAllAnchorsOfTagType(exclude));
+        }
+        return targetSpans;
+
+    }
+
+    private List<ExtentTag> getArgumentTags(LinkTag link) {
+        List<ExtentTag> args = new ArrayList<>();
+        for (Argument arg : link.getArguments()) {
+            if (arg.getArgument() != null) {
+                args.add(arg.getArgument());
+            }
+        }
+        return args;
+    }
+
+    @Override
+    public List<Integer> getAnchorsByTid(String tid) throws MaeDBException {
+        Tag tag = getTagByTid(tid);
+        if (tag.getTagtype().isExtent()) {
+            return ((ExtentTag) tag).getSpansAsList();
+        } else {
+            Set<Integer> argSpans = new TreeSet<>();
+            for (ExtentTag arg : getArgumentTags((LinkTag) tag)) {
+                argSpans.addAll(arg.getSpansAsList());
+            }
+            return new ArrayList<>(argSpans);
+        }
+    }
+
+    @Override
+    public TagType createTagType(String typeName, String prefix, boolean isLink) throws MaeDBException {
+        if (tagTypes.containsKey(typeName)) {
+            throw new MaeDBException("tag type is already in DB!: " + typeName);
+        }
+        TagType type = new TagType(typeName, prefix, isLink);
+        type.setAttributeTypes(new InMemoryForeignCollection<>());
+        type.setArgumentTypes(new InMemoryForeignCollection<>());
+        // tags are kept in the driver, these stay empty
+        type.setExtentTags(new InMemoryForeignCollection<>());
+        type.setLinkTags(new InMemoryForeignCollection<>());
+        tagTypes.put(typeName, type);
+        logger.debug("a new tag type is created: " + typeName);
+        setAnnotationChanged(true);
+        return type;
+    }
+
+    /**
+     * Returns the tag type object kept in this driver, which holds attribute
+     * and argument types in its collections.
+     */
+    private TagType getTagType(TagType type) throws MaeDBException {
+        TagType stored = type == null ? null : tagTypes.get(type.getName());
+        if (stored == null) {
+            throw new MaeDBException("no such a tag type is in DB: " + type);
+        }
+        return stored;
+    }
+
+    @Override
+    public List<TagType> getAllTagTypes() {
+        return getTagTypes(true, true);
+    }
+
+    public List<TagType> getTagTypes(boolean includeExtent, boolean includeLink) {
+        ArrayList<TagType> types = new ArrayList<>();
+        for (TagType type : tagTypes.values()) {
+            if (type.isLink() && includeLink) {
+                types.add(type);
+            } else if (type.isExtent() && includeExtent) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    @Override
+    public List<TagType> getTagTypesOnly() {
+        return getAllTagTypes();
+    }
+
+    @Override
+    public MappedList<TagType, AttributeType> getTagTypesWithAttributeTypes() {
+        MappedList<TagType, AttributeType> schema = new MappedList<>();
+        for (TagType type : tagTypes.values()) {
+            schema.putCollection(type, new ArrayList<>(type.getAttributeTypes()));
+        }
+        return schema;
+    }
+
+    @Override
+    public MappedList<TagType, ExtentTag> getExtentTagsWithSpans(boolean consumingOnly) {
+        MappedList<TagType, ExtentTag> tagsByTypes = new MappedList<>();
+        for (ExtentTag tag : extentTags.values()) {
+            if (tag.isConsuming() || !consumingOnly) {
+                tagsByTypes.putItem(tag.getTagtype(), tag);
+            }
+        }
+        return tagsByTypes;
+    }
+
+    @Override
+    public List<TagType> getExtentTagTypes() {
+        return getTagTypes(true, false);
+    }
+
+    @Override
+    public List<TagType> getLinkTagTypes() {
+        return getTagTypes(false, true);
+    }
+
+    @Override
+    public TagType getTagTypeByName(String name) {
+        return tagTypes.get(name);
+    }
+
+    @Override
+    public boolean setTagTypePrefix(TagType tagType, String prefix) throws MaeDBException {
+        getTagType(tagType).setPrefix(prefix);
+        tagType.setPrefix(prefix);
+        logger.debug(String.format("assigned prefix \"%s\" to a tag type: %s", prefix, tagType.getName()));
+        return true;
+    }
+
+    @Override
+    public boolean setTagTypeNonConsuming(TagType tagType, boolean b) throws MaeDBException {
+        getTagType(tagType).setNonConsuming(b);
+        tagType.setNonConsuming(b);
+        logger.debug(String.format("set a tag type \"%s\" to be: %s", tagType.getName(), b? "non-consuming": "only-consuming"));
+        return true;
+    }
+
+    @Override
+    public Tag getTagByTid(String tid) {
+        Tag tag = extentTags.get(tid);
+        return tag != null ? tag : linkTags.get(tid);
+    }
+
+    @Override
+    public TagType getTagTypeByTid(String tid) {
+        return getTagByTid(tid).getTagtype();
+    }
+
+    @Override
+    public String getNextId(TagType type) {
+        return idHandler.getNextID(type);
+    }
+
+    @Override
+    public ExtentTag createExtentTag(String tid, TagType tagType, String text, int... spans) throws MaeDBException {
+        ExtentTag tag = new ExtentTag(tid, getTagType(tagType), getAnnotationFileName());
+        tag.setText(text);
+        tag.setSpans(spans);
+        addExtentTag(tag);
+        logger.debug("a new extent tag is created: " + tid);
+        setAnnotationChanged(true);
+        return tag;
+    }
+
+    @Override
+    public ExtentTag createExtentTag(TagType tagType, String text, int... spans) throws MaeDBException {
+        String tid = idHandler.getNextID(tagType);
+        return createExtentTag(tid, tagType, text, spans);
+    }
+
+    private void addExtentTag(ExtentTag tag) throws MaeDBException {
+        if (getTagByTid(tag.getId()) != null || !idHandler.addId(tag.getTagtype(), tag.getId())) {
+            throw new MaeDBException("tag id is already in DB!: " + tag.getId());
+        }
+        tag.setTagtype(getTagType(tag.getTagtype()));
+        tag.setAttributes(new InMemoryForeignCollection<>());
+        extentTags.put(tag.getId(), tag);
+        extentTagsOfType.computeIfAbsent(tag.getTagTypeName(), key -> new LinkedHashSet<>()).add(tag);
+        spanIndex.add(tag);
+    }
+
+    @Override
+    public void batchCreateExtentTags(Collection<ExtentTag> tags) throws MaeDBException {
+        for (ExtentTag tag : tags) {
+            addExtentTag(tag);
+        }
+        logger.debug(String.format("%d tags are inserted", tags.size()));
+    }
+
+    @Override
+    public boolean updateTagSpans(ExtentTag tag, int[] spans) {
+        ExtentTag stored = extentTags.get(tag.getId());
+        if (stored == null) {
+            return false;
+        }
+        tag.setSpans(spans);
+        stored.setSpans(spans);
+        spanIndex.add(stored);
+        setAnnotationChanged(true);
+        return true;
+
+    }
+
+    @Override
+    public boolean updateTagText(ExtentTag tag, String text) {
+        ExtentTag stored = extentTags.get(tag.getId());
+        if (stored == null) {
+            return false;
+        }
+        tag.setText(text);
+        stored.setText(text);
+        setAnnotationChanged(true);
+        return true;
+
+    }
+
+    private List<ExtentTag> getExtentTagsByTids(Collection<String> tids) {
+        List<ExtentTag> tags = new ArrayList<>();
+        for (String tid : tids) {
+            tags.add(extentTags.get(tid));
+        }
+        return tags;
+    }
+
+    @Override
+    public List<ExtentTag> getTagsAt(int location) {
+        return getExtentTagsByTids(spanIndex.getTidsAt(location));
+    }
+
+    @Override
+    public List<ExtentTag> getTagsIn(int[] locations) {
+        Set<ExtentTag> tags = new TreeSet<>(getTagsInRanges(locationsToRanges(locations)));
+        return new ArrayList<>(tags);
+    }
+
+    @Override
+    public List<ExtentTag> getTagsOfTypeAt(TagType type, int location) {
+        return getExtentTagsByTids(spanIndex.getTidsAt(location, type.getName()));
+    }
+
+    @Override
+    public List<ExtentTag> getTagsOfTypeIn(TagType type, int[] locations) {
+        return getTagsInRanges(locationsToRanges(locations), type);
+    }
+
+    @Override
+    public List<ExtentTag> getTagsOfTypeBetween(TagType type, int begin, int end) {
+        return getTagsIntersecting(begin, end, type);
+    }
+
+    @Override
+    public List<ExtentTag> getTagsIntersecting(int begin, int end, TagType... types) {
+        List<int[]> ranges = new ArrayList<>();
+        ranges.add(new int[]{begin, end});
+        return getTagsInRanges(ranges, types);
+    }
+
+    private List<int[]> locationsToRanges(int[] locations) {
+        if (locations == null || locations.length == 0) {
+            return new ArrayList<>();
+        }
+        return SpanHandler.convertArrayToPairs(locations.clone());
+    }
+
+    private List<ExtentTag> getTagsInRanges(List<int[]> ranges, TagType... types) {
+        List<String> typeNames = null;
+        if (types != null && types.length > 0) {
+            typeNames = new ArrayList<>();
+            for (TagType type : types) {
+                typeNames.add(type.getName());
+            }
+        }
+        Set<String> tids = new LinkedHashSet<>();
+        for (int[] range : ranges) {
+            if (range[0] < range[1]) {
+                tids.addAll(spanIndex.getTidsIntersecting(range[0], range[1], typeNames));
+            }
+        }
+        return getExtentTagsByTids(tids);
+    }
+
+    @Override
+    public MappedSet<TagType, ExtentTag> getTagsByTypesAt(int location) {
+        return groupTagsByTypes(getTagsAt(location));
+    }
+
+    @Override
+    public MappedSet<TagType, ExtentTag> getTagsByTypesIn(int... locations) {
+        return groupTagsByTypes(getTagsInRanges(locationsToRanges(locations)));
+    }
+
+    @Override
+    public MappedSet<TagType, ExtentTag> getTagsByTypesBetween(int begin, int end) {
+        return groupTagsByTypes(getTagsIntersecting(begin, end));
+    }
+
+    private MappedSet<TagType, ExtentTag> groupTagsByTypes(Collection<ExtentTag> tags) {
+        MappedSet<TagType, ExtentTag> tagsByTypes = new MappedSet<>();
+        for (ExtentTag tag : tags) {
+            tagsByTypes.putItem(tag.getTagtype(), tag);
+        }
+        return tagsByTypes;
+    }
+
+    @Override
+    public List<ExtentTag> getAllExtentTagsOfAllTypes(boolean consumingOnly) {
+        List<ExtentTag> tags = new ArrayList<>();
+        for (ExtentTag tag : extentTags.values()) {
+            if (tag.isConsuming() || !consumingOnly) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    @Override
+    public MappedSet<TagType, ExtentTag> getAllExtentTagsByTypes(boolean consumingOnly) {
+        MappedSet<TagType, ExtentTag> tagsByTypes = new MappedSet<>();
+        tagsByTypes.merge(getExtentTagsWithSpans(consumingOnly));
+        return tagsByTypes;
+    }
+
+    @Override
+    public List<? extends Tag> getAllTagsOfType(TagType type) throws MaeDBException {
+        if (getTagType(type).isExtent()) {
+            return new ArrayList<>(getExtentTagsOfType(type));
+        } else {
+            return new ArrayList<>(getLinkTagsOfType(type));
+        }
+    }
+
+    private Set<ExtentTag> getExtentTagsOfType(TagType type) {
+        Set<ExtentTag> tags = extentTagsOfType.get(type.getName());
+        return tags == null ? Collections.<ExtentTag>emptySet() : tags;
+    }
+
+    private Set<LinkTag> getLinkTagsOfType(TagType type) {
+        Set<LinkTag> tags = linkTagsOfType.get(type.getName());
+        return tags == null ? Collections.<LinkTag>emptySet() : tags;
+    }
+
+    @Override
+    public List<ExtentTag> getAllExtentTagsOfType(TagType type) throws MaeDBException {
+        return new ArrayList<>(getExtentTagsOfType(getTagType(type)));
+    }
+
+    @Override
+    public List<ExtentTag> getAllNCTagsOfType(TagType type) throws MaeDBException {
+        List<ExtentTag> nctags = new ArrayList<>();
+        for (ExtentTag tag : getExtentTagsOfType(getTagType(type))) {
+            if (!tag.isConsuming()) {
+                nctags.add(tag);
+            }
+        }
+        return nctags;
+    }
+
+    @Override
+    public TagCursor<ExtentTag> getExtentTagCursorOfType(TagType type) throws MaeDBException {
+        return new ListTagCursor<>(getAllExtentTagsOfType(type));
+    }
+
+    @Override
+    public LinkTag createLinkTag(String tid, TagType tagType) throws MaeDBException {
+        LinkTag link = new LinkTag(tid, getTagType(tagType), getAnnotationFileName());
+        addLinkTag(link);
+        logger.debug("a new link tag is created: " + tid);
+        setAnnotationChanged(true);
+        return link;
+    }
+
+    @Override
+    public LinkTag createLinkTag(TagType tagType) throws MaeDBException {
+        return createLinkTag(idHandler.getNextID(tagType), tagType);
+    }
+
+    private void addLinkTag(LinkTag link) throws MaeDBException {
+        if (getTagByTid(link.getId()) != null || !idHandler.addId(link.getTagtype(), link.getId())) {
+            throw new MaeDBException("tag id is already in DB!: " + link.getId());
+        }
+        link.setTagtype(getTagType(link.getTagtype()));
+        link.setAttributes(new InMemoryForeignCollection<>());
+        link.setArguments(new InMemoryForeignCollection<>());
+        linkTags.put(link.getId(), link);
+        linkTagsOfType.computeIfAbsent(link.getTagTypeName(), key -> new LinkedHashSet<>()).add(link);
+    }
+
+    @Override
+    public void batchCreateLinkTags(Collection<LinkTag> tags) throws MaeDBException {
+        for (LinkTag tag : tags) {
+            addLinkTag(tag);
+        }
+        logger.debug(String.format("%d tags are inserted", tags.size()));
+    }
+
+    @Override
+    public List<LinkTag> getAllLinkTagsOfAllTypes() {
+        return new ArrayList<>(linkTags.values());
+    }
+
+    @Override
+    public List<LinkTag> getAllLinkTagsOfType(TagType type) throws MaeDBException {
+        return new ArrayList<>(getLinkTagsOfType(getTagType(type)));
+    }
+
+    @Override
+    public TagCursor<LinkTag> getLinkTagCursorOfType(TagType type) throws MaeDBException {
+        return new ListTagCursor<>(getAllLinkTagsOfType(type));
+    }
+
+    private static class ListTagCursor<T extends Tag> implements TagCursor<T> {
+
+        private final Iterator<T> iterator;
+
+        ListTagCursor(List<T> tags) {
+            this.iterator = tags.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    public void deleteTag(Tag tag) {
+        if (tag instanceof ExtentTag) {
+            ExtentTag stored = extentTags.remove(tag.getId());
+            if (stored != null) {
+                getExtentTagsOfType(stored.getTagtype()).remove(stored);
+                spanIndex.remove(stored.getId());
+            }
+        } else {
+            LinkTag stored = linkTags.remove(tag.getId());
+            if (stored != null) {
+                getLinkTagsOfType(stored.getTagtype()).remove(stored);
+                for (Argument arg : stored.getArguments()) {
+                    unindexArgument(arg);
+                }
+            }
+        }
+        logger.debug("a tag is deleted: " + tag.getId());
+        setAnnotationChanged(true);
+    }
+
+    @Override
+    public Set<LinkTag> getLinksHasArgumentTag(ExtentTag argument) {
+        Set<LinkTag> links = linksOfArgument.get(argument.getId());
+        return links == null ? new TreeSet<>() : new TreeSet<>(links);
+    }
+
+    private void indexArgument(Argument arg) {
+        if (arg.getArgument() != null) {
+            linksOfArgument.computeIfAbsent(arg.getArgument().getId(), key -> new HashSet<>()).add(arg.getLinker());
+        }
+    }
+
+    private void unindexArgument(Argument arg) {
+        if (arg.getArgument() != null) {
+            Set<LinkTag> links = linksOfArgument.get(arg.getArgument().getId());
+            if (links != null) {
+                links.remove(arg.getLinker());
+            }
+        }
+    }
+
+    @Override
+    public AttributeType createAttributeType(TagType tagType, String attTypeName) throws MaeDBException {
+        TagType stored = getTagType(tagType);
+        AttributeType attType = new AttributeType(stored, attTypeName);
+        stored.getAttributeTypes().add(attType);
+        logger.debug("a new attribute type is created: " + attTypeName);
+        setAnnotationChanged(true);
+        return attType;
+    }
+
+    @Override
+    public AttributeType getAttributeTypeOfTagTypeByName(TagType type, String name) throws MaeDBException {
+        for (AttributeType attType : getTagType(type).getAttributeTypes()) {
+            if (attType.getName().equals(name)) {
+                return attType;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<AttributeType> getAttributeTypesOfTagType(TagType type) throws MaeDBException {
+        return new ArrayList<>(getTagType(type).getAttributeTypes());
+    }
+
+    @Override
+    public MappedSet<String, String> getTagTypesAndAttTypes() {
+        MappedSet<String, String> tagsAndAtts = new MappedSet<>();
+        for (TagType tagType : tagTypes.values()) {
+            if (tagType.isExtent()) {
+                tagsAndAtts.putCollection(tagType.getName(), tagType.getAttributeTypesAsString());
+            }
+        }
+        return tagsAndAtts;
+    }
+
+    @Override
+    public void setAttributeTypeValueSet(AttributeType attType, List<String> validValues) {
+        attType.setValuesetFromList(validValues);
+        logger.debug(String.format("assigned a valid value set \"%s\" to an attribute type: %s", validValues.toString(), attType.getName()));
+    }
+
+    @Override
+    public void setAttributeTypeDefaultValue(AttributeType attType, String defaultValue) {
+        attType.setDefaultValue(defaultValue);
+        logger.debug(String.format("assigned the default value \"%s\" to an attribute type: %s", defaultValue, attType.getName()));
+    }
+
+    @Override
+    public void setAttributeTypeIDRef(AttributeType attType, boolean b) {
+        attType.setIdRef(b);
+        logger.debug(String.format("set an attribute type \"%s\" to be: %s", attType.getName(), b? "idref": "free-text"));
+    }
+
+    @Override
+    public void setAttributeTypeRequired(AttributeType attType, boolean b) {
+        attType.setRequired(b);
+        logger.debug(String.format("set an attribute type \"%s\" to be: %s", attType.getName(), b? "required": "optional"));
+    }
+
+    /**
+     * Returns the tag object kept in this driver, which holds attributes and arguments.
+     */
+    private Tag getStoredTag(Tag tag) throws MaeDBException {
+        Tag stored = tag == null ? null : getTagByTid(tag.getId());
+        if (stored == null) {
+            throw new MaeDBException("no such a tag is in DB");
+        }
+        return stored;
+    }
+
+    @Override
+    public Attribute addAttribute(Tag tag, AttributeType attType, String attValue) throws MaeDBException {
+        try {
+            Tag stored = getStoredTag(tag);
+            Attribute att = new Attribute(stored, attType, attValue);
+            stored.getAttributes().add(att);
+            logger.debug(String.format("an attribute \"%s\" is attached to \"%s\"", att.toString(), tag.toString()));
+            setAnnotationChanged(true);
+            return att;
+        } catch (MaeModelException e) {
+            throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void batchCreateAttributes(Collection<Attribute> atts) throws MaeDBException {
+        for (Attribute att : atts) {
+            Tag tag = getTagByTid(att.getTid());
+            if (tag == null) {
+                throw new MaeDBException("no such a tag is in DB: " + att.getTid());
+            }
+            tag.getAttributes().add(att);
+        }
+        logger.debug(String.format("%d attributes are inserted", atts.size()));
+    }
+
+    @Override
+    public void batchCreateArguments(Collection<Argument> args) throws MaeDBException {
+        for (Argument arg : args) {
+            LinkTag link = arg.getLinker() == null ? null : linkTags.get(arg.getLinker().getId());
+            if (link == null) {
+                throw new MaeDBException("no such a tag is in DB: " + arg.getLinker());
+            }
+            link.getArguments().add(arg);
+            indexArgument(arg);
+        }
+        logger.debug(String.format("%d arguments are inserted", args.size()));
+    }
+
+    @Override
+    public Set<Attribute> batchAddAttributes(Tag tag, Map<AttributeType, String> attributes) throws MaeDBException {
+        Set<Attribute> toBeAdded = new HashSet<>();
+        try {
+            Tag stored = getStoredTag(tag);
+            for (AttributeType attType : attributes.keySet()) {
+                toBeAdded.add(new Attribute(stored, attType, attributes.get(attType)));
+            }
+            stored.getAttributes().addAll(toBeAdded);
+            logger.debug(String.format("attributes \"%s\" are attached to \"%s\"", toBeAdded.toString(), tag.toString()));
+            setAnnotationChanged(true);
+            return toBeAdded;
+        } catch (MaeModelException e) {
+            throw new MaeDBException("failed to add an attribute: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Attribute updateAttribute(Tag tag, AttributeType attType, String attValue) throws MaeDBException {
+        logger.debug(String.format("adding an attribute '%s: %s' to tag %s (%s)", attType.getName(), attValue, tag.getId(), tag.getTagTypeName()));
+        Tag stored = getStoredTag(tag);
+        for (Attribute oldAtt : stored.getAttributes()) {
+            if (oldAtt.getAttributeType().equals(attType)) {
+                logger.debug(String.format("an old attribute \"%s\" is deleted from \"%s\"", oldAtt.toString(), tag.toString()));
+                stored.getAttributes().remove(oldAtt);
+                setAnnotationChanged(true);
+            }
+        }
+        if (attValue != null && attValue.length() > 0) {
+            return addAttribute(stored, attType, attValue);
+        } else {
+            logger.debug("no new value is provided. leaving the attribute deleted");
+            setAnnotationChanged(true);
+            return null;
+        }
+
+    }
+
+    @Override
+    public void deleteAttribute(Tag tag, AttributeType attType) throws MaeDBException {
+        updateAttribute(tag, attType, null);
+    }
+
+    @Override
+    public Map<String, String> getAttributeMapOfTag(Tag tag) throws MaeDBException {
+        return getStoredTag(tag).getAttributesWithNames();
+    }
+
+    @Override
+    public ArgumentType createArgumentType(TagType tagType, String argTypeName) throws MaeDBException {
+        TagType stored = getTagType(tagType);
+        ArgumentType argType = new ArgumentType(stored, argTypeName);
+        stored.getArgumentTypes().add(argType);
+        logger.debug("a new argument type is created: " + argTypeName);
+        setAnnotationChanged(true);
+        return argType;
+    }
+
+    @Override
+    public ArgumentType getArgumentTypeOfTagTypeByName(TagType type, String name) throws MaeDBException {
+        for (ArgumentType argType : getTagType(type).getArgumentTypes()) {
+            if (argType.getName().equals(name)) {
+                return argType;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<ArgumentType> getArgumentTypesOfLinkTagType(TagType link) throws MaeDBException {
+        return new ArrayList<>(getTagType(link).getArgumentTypes());
+    }
+
+    @Override
+    public void setArgumentTypeRequired(ArgumentType argType, boolean b) {
+        argType.setRequired(b);
+        logger.debug(String.format("set an argument type \"%s\" to be: %s", argType.getName(), b? "required": "optional"));
+    }
+
+    @Override
+    public Argument addArgument(LinkTag linker, ArgumentType argType, ExtentTag argument) throws MaeDBException {
+        LinkTag stored = linker == null ? null : linkTags.get(linker.getId());
+        if (stored == null || argument == null) {
+            throw new MaeDBException("no such a tag is in DB");
+        }
+        logger.debug(String.format("adding an argument '%s: %s' to tag %s (%s)", argType.getName(), argument.getId(), linker.getId(), linker.getTagTypeName()));
+        Argument arg = new Argument(stored, argType, argument);
+        stored.getArguments().add(arg);
+        indexArgument(arg);
+        logger.debug(String.format("an argument \"%s\" is attached to \"%s\"", argument.toString(), linker.toString()));
+        setAnnotationChanged(true);
+        return arg;
+    }
+
+    @Override
+    public Argument UpdateArgument(LinkTag linker, ArgumentType argType, ExtentTag argument) throws MaeDBException {
+        LinkTag stored = linker == null ? null : linkTags.get(linker.getId());
+        if (stored == null) {
+            throw new MaeDBException("no such a tag is in DB");
+        }
+        for (Argument oldArg : stored.getArguments()) {
+            if (oldArg.getArgumentType().equals(argType)) {
+                stored.getArguments().remove(oldArg);
+                unindexArgument(oldArg);
+                setAnnotationChanged(true);
+            }
+        }
+        if (argument != null) {
+            return addArgument(stored, argType, argument);
+        } else {
+            logger.debug("no new argument is provided. leaving the argument deleted");
+            return null;
+        }
+    }
+
+}
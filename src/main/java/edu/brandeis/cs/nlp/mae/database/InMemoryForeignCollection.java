@@ -0,0 +1,217 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.dao.CloseableWrappedIterable;
+import com.j256.ormlite.dao.CloseableWrappedIterableImpl;
+import com.j256.ormlite.dao.ForeignCollection;
+import com.j256.ormlite.support.DatabaseResults;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A foreign collection that is nothing but a list, for model objects kept
+ * by {@link InMemoryDriverImpl}. Models expose their children through
+ * ORMLite's {@link ForeignCollection}, so this lets them be used the same
+ * way with no DAO behind. There's nothing to refresh or update; iterators
+ * work on a snapshot, so the driver can modify the list while callers
+ * iterate.
+ */
+class InMemoryForeignCollection<T> extends AbstractCollection<T> implements ForeignCollection<T> {
+
+    private final List<T> items;
+
+    InMemoryForeignCollection() {
+        this.items = new ArrayList<>();
+    }
+
+    @Override
+    public boolean add(T item) {
+        return items.add(item);
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        return items.remove(item);
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public CloseableIterator<T> iterator() {
+        return new SnapshotIterator<>(new ArrayList<>(items));
+    }
+
+    @Override
+    public CloseableIterator<T> iterator(int flags) {
+        return iterator();
+    }
+
+    @Override
+    public CloseableIterator<T> closeableIterator() {
+        return iterator();
+    }
+
+    @Override
+    public CloseableIterator<T> closeableIterator(int flags) {
+        return iterator();
+    }
+
+    @Override
+    public CloseableIterator<T> iteratorThrow() {
+        return iterator();
+    }
+
+    @Override
+    public CloseableIterator<T> iteratorThrow(int flags) {
+        return iterator();
+    }
+
+    @Override
+    public CloseableWrappedIterable<T> getWrappedIterable() {
+        return new CloseableWrappedIterableImpl<>(this);
+    }
+
+    @Override
+    public CloseableWrappedIterable<T> getWrappedIterable(int flags) {
+        return getWrappedIterable();
+    }
+
+    @Override
+    public void closeLastIterator() {
+    }
+
+    @Override
+    public boolean isEager() {
+        return true;
+    }
+
+    @Override
+    public int update(T item) {
+        return items.contains(item) ? 1 : 0;
+    }
+
+    @Override
+    public int updateAll() {
+        return items.size();
+    }
+
+    @Override
+    public int refresh(T item) {
+        return items.contains(item) ? 1 : 0;
+    }
+
+    @Override
+    public int refreshAll() {
+        return items.size();
+    }
+
+    @Override
+    public int refreshCollection() {
+        return items.size();
+    }
+
+    private static class SnapshotIterator<T> implements CloseableIterator<T> {
+
+        private final List<T> snapshot;
+        private int next;
+
+        SnapshotIterator(List<T> snapshot) {
+            this.snapshot = snapshot;
+            this.next = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < snapshot.size();
+        }
+
+        @Override
+        public T next() {
+            return nextThrow();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void closeQuietly() {
+        }
+
+        @Override
+        public DatabaseResults getRawResults() {
+            return null;
+        }
+
+        @Override
+        public void moveToNext() {
+            next++;
+        }
+
+        @Override
+        public T first() {
+            next = 1;
+            return snapshot.isEmpty() ? null : snapshot.get(0);
+        }
+
+        @Override
+        public T previous() {
+            next--;
+            return next > 0 ? snapshot.get(next - 1) : null;
+        }
+
+        @Override
+        public T current() {
+            return next > 0 ? snapshot.get(next - 1) : null;
+        }
+
+        @Override
+        public T nextThrow() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return snapshot.get(next++);
+        }
+
+        @Override
+        public T moveRelative(int offset) {
+            next += offset;
+            return current();
+        }
+    }
+}
@@ -34,11 +34,12 @@ import edu.brandeis.cs.nlp.mae.model.Attribute;
 import edu.brandeis.cs.nlp.mae.model.LinkTag;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 
 /**
  * Created by krim on 12/15/2015.
  */
-public class LinkTagDao extends BaseDaoImpl<LinkTag, String> {
+public class LinkTagDao extends BaseDaoImpl<LinkTag, Integer> {
 
     Dao<Attribute, Integer> attDao;
     Dao<Argument, Integer> argDao;
@@ -68,25 +69,17 @@ public class LinkTagDao extends BaseDaoImpl<LinkTag, String> {
 
     @Override
     public int update(LinkTag tag) throws SQLException {
+        // attributes and arguments are lazy collections, reading straight from DB,
+        // so refreshing the tag is enough to make them up to date
         refresh(tag);
-        for (Attribute att : tag.getAttributes()) {
-            attDao.createOrUpdate(att);
-        }
-        for (Argument arg : tag.getArguments()) {
-            argDao.createOrUpdate(arg);
-        }
         return super.update(tag);
     }
 
     @Override
     public int delete(LinkTag tag) throws SQLException {
         refresh(tag);
-        for (Attribute att : tag.getAttributes()) {
-            attDao.delete(att);
-        }
-        for (Argument arg : tag.getArguments()) {
-            argDao.delete(arg);
-        }
+        attDao.delete(new ArrayList<>(tag.getAttributes()));
+        argDao.delete(new ArrayList<>(tag.getArguments()));
         return super.delete(tag);
     }
 }
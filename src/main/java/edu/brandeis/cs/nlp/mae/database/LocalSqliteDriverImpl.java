@@ -27,13 +27,14 @@ package edu.brandeis.cs.nlp.mae.database;
 
 import java.io.File;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
-
-import edu.brandeis.cs.nlp.mae.model.Task;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.support.DatabaseConnection;
 
 public class LocalSqliteDriverImpl extends AbstractDriverImpl {
 
@@ -41,47 +42,155 @@ public class LocalSqliteDriverImpl extends AbstractDriverImpl {
     private Logger logger;
 
     static final String JDBC_DRIVER = "jdbc:sqlite:";
+    // a private database that lives only as long as the connection, no file is made
+    public static final String IN_MEMORY_DB = ":memory:";
+
+    // suffixes of the files SQLite keeps next to a DB in WAL mode
+    private static final String[] WAL_FILE_SUFFIXES = {"-wal", "-shm"};
 
     private String SQLITE_FILENAME;
+    private SqliteProfile profile;
 
     public LocalSqliteDriverImpl(String sqlite_filename) throws MaeDBException {
+        this(sqlite_filename, SqliteProfile.DEFAULT);
+    }
+
+    public LocalSqliteDriverImpl(String sqlite_filename, SqliteProfile profile) throws MaeDBException {
         SQLITE_FILENAME = sqlite_filename;
+        this.profile = profile;
         logger = LoggerFactory.getLogger(this.getClass().getName() + SQLITE_FILENAME);
         try {
-            cs = new JdbcConnectionSource(JDBC_DRIVER + SQLITE_FILENAME);
+            cs = new JdbcConnectionSource(JDBC_DRIVER + (profile.isInMemory() ? IN_MEMORY_DB : SQLITE_FILENAME));
+            applyProfile();
             idHandler = new IdHandler();
             this.setupDatabase(cs);
             // put a placeholder for task metadata in DB
-            workingTask = new Task(SQLITE_FILENAME);
-            taskDao.create(workingTask);
+            openDocument(SQLITE_FILENAME);
         } catch (SQLException e) {
             throw catchSQLException(e);
         }
-        logger.info("New JDBC SQLite Driver is initialized, using a local file: " + SQLITE_FILENAME);
+        logger.info("New JDBC SQLite Driver is initialized, using " +
+                (isInMemory() ? "an in-memory database" : "a local file: " + SQLITE_FILENAME) +
+                ", profile: " + profile);
         workChanged = false;
 
     }
 
- 
+    /**
+     * Creates a driver for another document of the task loaded in the given
+     * driver. Tags of the new document go to the same DB file, keyed by the
+     * document, and the schema, connection and lock are shared, so the DTD is
+     * not read again.
+     */
+    public LocalSqliteDriverImpl(LocalSqliteDriverImpl storeSource) throws MaeDBException {
+        super(storeSource);
+        SQLITE_FILENAME = storeSource.SQLITE_FILENAME;
+        profile = storeSource.profile;
+        logger = storeSource.logger;
+        openDocument(SQLITE_FILENAME);
+        logger.info("New document is added to the SQLite DB: " + SQLITE_FILENAME + ", document: " + getDocument());
+        workChanged = false;
+    }
+
+    @Override
+    public MaeDriverI createDocumentDriver() throws MaeDBException {
+        return new LocalSqliteDriverImpl(this);
+    }
+
+    private void applyProfile() throws SQLException {
+        for (String pragma : profile.getPragmas()) {
+            execute(pragma);
+        }
+    }
+
+    /**
+     * Runs a SQLite statement that ORMLite doesn't know about. Some of them
+     * (e.g. journal mode pragma) return rows, so the statement has to be
+     * closed here, or the next commit fails.
+     */
+    private void execute(String sql) throws SQLException {
+        DatabaseConnection connection = cs.getReadWriteConnection();
+        try (Statement statement = ((JdbcDatabaseConnection) connection).getInternalConnection().createStatement()) {
+            statement.execute(sql);
+        } finally {
+            cs.releaseConnection(connection);
+        }
+    }
+
+    public boolean isInMemory() {
+        return profile.isInMemory() || IN_MEMORY_DB.equals(SQLITE_FILENAME);
+    }
+
+    public SqliteProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Writes a consistent copy of the current database to a file, using
+     * SQLite online backup. The copy is a plain SQLite file that can be opened
+     * with a new driver, so it can be used as a crash recovery snapshot
+     * whatever profile this driver is running on. An existing file is
+     * overwritten.
+     *
+     * @param snapshotFile where to write the copy
+     * @throws MaeDBException when the path can't be passed to SQLite or the backup fails
+     */
+    public void backupTo(File snapshotFile) throws MaeDBException {
+        String path = snapshotFile.getAbsolutePath();
+        if (path.contains("\"")) {
+            throw new MaeDBException("cannot back up to a path with a double quote: " + path);
+        }
+        lock.readLock().lock();
+        try {
+            execute(String.format("backup to \"%s\"", path));
+        } catch (SQLException e) {
+            throw catchSQLException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        logger.info("DB snapshot is written to: " + path);
+    }
+
     @Override
     public String getDBSourceName() {
         return SQLITE_FILENAME;
     }
 
     /**
-     * Shut down data source connection and delete all table from DB.
+     * Shut down data source connection and delete all table from DB. When
+     * other documents are still in the DB, only tags of this document are
+     * deleted.
      */
     @Override
     public void destroy() throws MaeDBException {
         if (cs != null){
-            dropAllTables(cs);
+            if (!releaseDocument()) {
+                logger.info("document is closed, DB is still used by other documents: " + SQLITE_FILENAME);
+                return;
+            }
+            lock.writeLock().lock();
             try {
+                dropAllTables(cs);
                 cs.close();
             } catch (SQLException e) {
                 throw catchSQLException(e);
+            } finally {
+                lock.writeLock().unlock();
             }
-            logger.info("closing JDBC datasource and deleting DB file: " + SQLITE_FILENAME);
+            if (IN_MEMORY_DB.equals(SQLITE_FILENAME)) {
+                logger.info("closing JDBC datasource, in-memory database is discarded");
+                return;
+            }
+            for (String suffix : WAL_FILE_SUFFIXES) {
+                new File(SQLITE_FILENAME + suffix).delete();
+            }
+            // with in-memory profile, the file is only a placeholder the caller might have made
             File dbFile = new File(SQLITE_FILENAME);
+            if (isInMemory() && !dbFile.exists()) {
+                logger.info("closing JDBC datasource, in-memory database is discarded");
+                return;
+            }
+            logger.info("closing JDBC datasource and deleting DB file: " + SQLITE_FILENAME);
             if (dbFile.delete()) {
                 logger.info("driver is completely destroyed");
             } else {
@@ -28,6 +28,7 @@ import com.j256.ormlite.support.ConnectionSource;
 import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.io.MaeIODTDException;
 import edu.brandeis.cs.nlp.mae.model.*;
+import edu.brandeis.cs.nlp.mae.util.MappedList;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 
 import java.io.File;
@@ -48,6 +49,20 @@ public interface MaeDriverI {
 
     void destroy() throws MaeDBException;
 
+    // documents: drivers for documents of the same task can share one store (schema and tag tables),
+    // each driver being a partition of tags of its own document
+    // a driver for another document of the task loaded in this one, sharing its store
+    MaeDriverI createDocumentDriver() throws MaeDBException;
+
+    boolean isSharingStoreWith(MaeDriverI driver);
+
+    // tags of all documents in this driver's store
+    List<ExtentTag> getTagsOfAllDocumentsIn(int[] locations) throws MaeDBException;
+
+    List<ExtentTag> getTagsOfTypeOfAllDocumentsIn(TagType type, int[] locations) throws MaeDBException;
+
+    List<ExtentTag> getAllNCTagsOfTypeOfAllDocuments(TagType type) throws MaeDBException;
+
     // task
     void readTask(File file) throws MaeDBException, MaeIODTDException, FileNotFoundException;
 
@@ -83,6 +98,12 @@ public interface MaeDriverI {
 
     boolean isPrimaryTextLoaded();
 
+    // span storage: when on, spans are stored once per tag and looked up through an in-memory index,
+    // instead of one char_index row per character. Should be set before any annotation is loaded
+    void setSpanStorageMode(boolean b) throws MaeDBException;
+
+    boolean isSpanStorageMode();
+
     // character index (anchor)
     void batchCreateAnchors(Collection<CharIndex> anchors) throws MaeDBException;
 
@@ -99,6 +120,16 @@ public interface MaeDriverI {
 
     List<TagType> getAllTagTypes() throws MaeDBException; // return list to keep inserted order (when read DTD, tagtypes are inserted to DB in order of their appearence in DTD)
 
+    // fetch plans: collections in model objects are lazy, these read a whole level at once
+    List<TagType> getTagTypesOnly() throws MaeDBException;
+    // tag types without touching their attribute types or tags
+
+    MappedList<TagType, AttributeType> getTagTypesWithAttributeTypes() throws MaeDBException;
+    // tag types and their attribute types (schema) from two queries, regardless of # of annotations
+
+    MappedList<TagType, ExtentTag> getExtentTagsWithSpans(boolean consumingOnly) throws MaeDBException;
+    // all extent tags, with spans from span column, grouped by their types
+
     List<TagType> getExtentTagTypes() throws MaeDBException;
 
     List<TagType> getLinkTagTypes() throws MaeDBException;
@@ -117,10 +148,10 @@ public interface MaeDriverI {
     String getNextId(TagType type); // auto generation of proper ID of a given tag type
 
     // extent tags
-    ExtentTag createExtentTag(String tid, TagType tagType, String text, int[] spans) throws MaeDBException;
+    ExtentTag createExtentTag(String tid, TagType tagType, String text, int... spans) throws MaeDBException;
     // create one using existing tid (e.g. reading from annotation xml)
 
-    ExtentTag createExtentTag(TagType tagType, String text, int[] spans) throws MaeDBException;
+    ExtentTag createExtentTag(TagType tagType, String text, int... spans) throws MaeDBException;
     // create one with autogenerated tid (need auto generation inside driver impl)
 
     void batchCreateExtentTags(Collection<ExtentTag> tags) throws MaeDBException;
@@ -139,18 +170,28 @@ public interface MaeDriverI {
 
     List<ExtentTag> getTagsOfTypeBetween(TagType type, int begin, int end) throws MaeDBException;
 
+    // tags of given types (all types if none given) that have any char in [begin, end), looked up at once
+    List<ExtentTag> getTagsIntersecting(int begin, int end, TagType... types) throws MaeDBException;
+
     MappedSet<TagType,ExtentTag> getTagsByTypesAt(int location) throws MaeDBException;
 
-    MappedSet<TagType,ExtentTag> getTagsByTypesIn(int[] locations) throws MaeDBException;
+    MappedSet<TagType,ExtentTag> getTagsByTypesIn(int... locations) throws MaeDBException;
 
     MappedSet<TagType,ExtentTag> getTagsByTypesBetween(int begin, int end) throws MaeDBException;
 
     List<ExtentTag> getAllExtentTagsOfAllTypes(boolean consumingOnly) throws MaeDBException;
 
+    MappedSet<TagType, ExtentTag> getAllExtentTagsByTypes(boolean consumingOnly) throws MaeDBException;
+
+    List<? extends Tag> getAllTagsOfType(TagType type) throws MaeDBException;
+
     List<ExtentTag> getAllExtentTagsOfType(TagType type) throws MaeDBException;
 
     List<ExtentTag> getAllNCTagsOfType(TagType type) throws MaeDBException;
 
+    TagCursor<ExtentTag> getExtentTagCursorOfType(TagType type) throws MaeDBException;
+    // iterate over tags of a type without loading all of them at once, caller should close the cursor
+
     // link tags
     LinkTag createLinkTag(String tid, TagType tagType) throws MaeDBException;
 
@@ -162,6 +203,8 @@ public interface MaeDriverI {
 
     List<LinkTag> getAllLinkTagsOfType(TagType type) throws MaeDBException;
 
+    TagCursor<LinkTag> getLinkTagCursorOfType(TagType type) throws MaeDBException;
+
     void deleteTag(Tag tag) throws MaeDBException;
 
     Set<LinkTag> getLinksHasArgumentTag(ExtentTag argument) throws MaeDBException;
@@ -1,11 +1,50 @@
 package edu.brandeis.cs.nlp.mae.database;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+
 import edu.brandeis.cs.nlp.mae.MaeException;
 
+/**
+ * Builds MySQL drivers from application.properties. By default all drivers
+ * on the same url and user share one pooled connection source, so opening a
+ * document doesn't open a new connection to the server, and connector-side
+ * prepared statement cache is turned on. Pooling is configured with:
+ *
+ * jdbc.pool.enabled: false to give each driver its own single connection
+ * jdbc.pool.maxFree: how many idle connections are kept open
+ * jdbc.pool.maxAgeMillis: idle connections older than this are closed
+ * jdbc.pool.checkEveryMillis: how often idle connections are tested and evicted, 0 to turn off
+ * jdbc.prepStmtCache: false not to add prepared statement options to jdbc.url
+ */
 public class MySQLDriverBuilder {
+	private static final Logger logger = LoggerFactory.getLogger(MySQLDriverBuilder.class);
+
+	public static final String POOL_ENABLED = "jdbc.pool.enabled";
+	public static final String POOL_MAX_FREE = "jdbc.pool.maxFree";
+	public static final String POOL_MAX_AGE_MILLIS = "jdbc.pool.maxAgeMillis";
+	public static final String POOL_CHECK_EVERY_MILLIS = "jdbc.pool.checkEveryMillis";
+	public static final String PREP_STMT_CACHE = "jdbc.prepStmtCache";
+
+	private static final int DEFAULT_MAX_FREE = 5;
+	private static final long DEFAULT_MAX_AGE_MILLIS = 10 * 60 * 1000;
+	private static final long DEFAULT_CHECK_EVERY_MILLIS = 30 * 1000;
+
+	// Connector/J options to prepare statements on the server and keep them per connection
+	private static final String PREP_STMT_CACHE_OPTIONS =
+			"useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048";
+
+	// keyed by url and user name
+	private static final Map<String, JdbcPooledConnectionSource> pools = new HashMap<>();
+
 	public static MaeDriverI buildDriverFromProperties() throws MaeException {
 		Properties applicationProperties = new Properties();
     	try {
@@ -13,6 +52,71 @@ public class MySQLDriverBuilder {
 		} catch (IOException e) {
 			throw new MaeException(e);
 		}
-    	return new MySQlDriverImpl(applicationProperties.getProperty("jdbc.url"), applicationProperties.getProperty("jdbc.username"), applicationProperties.getProperty("jdbc.password"));
+		return buildDriver(applicationProperties);
+	}
+
+	public static MaeDriverI buildDriver(Properties properties) throws MaeException {
+		String url = properties.getProperty("jdbc.url");
+		String userName = properties.getProperty("jdbc.username");
+		String password = properties.getProperty("jdbc.password");
+		if (Boolean.valueOf(properties.getProperty(PREP_STMT_CACHE, "true"))) {
+			url = withPrepStmtCache(url);
+		}
+		if (!Boolean.valueOf(properties.getProperty(POOL_ENABLED, "true"))) {
+			return new MySQlDriverImpl(url, userName, password);
+		}
+		return new MySQlDriverImpl(url, getSharedPool(url, userName, password, properties));
+	}
+
+	/**
+	 * Adds Connector/J prepared statement cache options to a JDBC url, unless
+	 * the url already sets any of them.
+	 */
+	static String withPrepStmtCache(String url) {
+		if (url == null || url.contains("PrepStmts")) {
+			return url;
+		}
+		return url + (url.contains("?") ? "&" : "?") + PREP_STMT_CACHE_OPTIONS;
+	}
+
+	private static synchronized JdbcPooledConnectionSource getSharedPool(
+			String url, String userName, String password, Properties properties) throws MaeDBException {
+		String key = userName + "@" + url;
+		JdbcPooledConnectionSource pool = pools.get(key);
+		if (pool != null && pool.isOpen()) {
+			return pool;
+		}
+		try {
+			pool = new JdbcPooledConnectionSource(url, userName, password);
+			pool.setMaxConnectionsFree(Integer.parseInt(properties.getProperty(POOL_MAX_FREE, String.valueOf(DEFAULT_MAX_FREE))));
+			pool.setMaxConnectionAgeMillis(Long.parseLong(properties.getProperty(POOL_MAX_AGE_MILLIS, String.valueOf(DEFAULT_MAX_AGE_MILLIS))));
+			long checkEvery = Long.parseLong(properties.getProperty(POOL_CHECK_EVERY_MILLIS, String.valueOf(DEFAULT_CHECK_EVERY_MILLIS)));
+			if (checkEvery > 0) {
+				pool.setCheckConnectionsEveryMillis(checkEvery);
+			}
+		} catch (SQLException e) {
+			throw new MaeDBException("could not open a connection pool to: " + url, e);
+		} catch (NumberFormatException e) {
+			throw new MaeDBException("invalid connection pool setting: " + e.getMessage(), e);
+		}
+		pools.put(key, pool);
+		logger.info("new shared connection pool is opened for url: " + url);
+		return pool;
+	}
+
+	/**
+	 * Closes all shared connection pools. Drivers built on them must not be
+	 * used afterwards; call this when the application is shutting down.
+	 */
+	public static synchronized void closeSharedPools() throws MaeDBException {
+		try {
+			for (JdbcPooledConnectionSource pool : pools.values()) {
+				pool.close();
+			}
+		} catch (SQLException e) {
+			throw new MaeDBException("could not close a shared connection pool", e);
+		} finally {
+			pools.clear();
+		}
 	}
 }
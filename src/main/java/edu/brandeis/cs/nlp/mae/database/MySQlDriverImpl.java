@@ -6,25 +6,55 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
-
-import edu.brandeis.cs.nlp.mae.model.Task;
+import com.j256.ormlite.support.ConnectionSource;
 
 public class MySQlDriverImpl extends AbstractDriverImpl {
 	private static final Logger logger = LoggerFactory.getLogger(MySQlDriverImpl.class);
 	private final String url;
+	// a shared pool outlives drivers, see MySQLDriverBuilder
+	private final boolean sharedSource;
 
 	public MySQlDriverImpl(String url, String userName, String password) throws MaeDBException {
 		this.url = url;
+		this.sharedSource = false;
 		try {
 			cs = new JdbcConnectionSource(url, userName, password);
-			idHandler = new IdHandler();
-			this.setupDatabase(cs);
-			// put a placeholder for task metadata in DB
-			workingTask = new Task("PLACE_HOLDER");
-			taskDao.create(workingTask);
 		} catch (SQLException e) {
 			throw catchSQLException(e);
 		}
+		init();
+	}
+
+	public MySQlDriverImpl(String url, ConnectionSource sharedSource) throws MaeDBException {
+		this.url = url;
+		this.sharedSource = true;
+		cs = sharedSource;
+		init();
+	}
+
+	/**
+	 * Creates a driver for another document of the task loaded in the given
+	 * driver, keeping its tags in the same tables keyed by the document.
+	 */
+	public MySQlDriverImpl(MySQlDriverImpl storeSource) throws MaeDBException {
+		super(storeSource);
+		this.url = storeSource.url;
+		this.sharedSource = storeSource.sharedSource;
+		openDocument("PLACE_HOLDER");
+		logger.info("New document is added to the MySQL DB, using url: " + url);
+		workChanged = false;
+	}
+
+	@Override
+	public MaeDriverI createDocumentDriver() throws MaeDBException {
+		return new MySQlDriverImpl(this);
+	}
+
+	private void init() throws MaeDBException {
+		idHandler = new IdHandler();
+		this.setupDatabase(cs);
+		// put a placeholder for task metadata in DB
+		openDocument("PLACE_HOLDER");
 		logger.info("New JDBC MySQL Driver is initialized, using url: " + url);
         workChanged = false;
 	}
@@ -32,11 +62,22 @@ public class MySQlDriverImpl extends AbstractDriverImpl {
 	@Override
 	public void destroy() throws MaeDBException {
 		if (cs != null) {
+			if (!releaseDocument()) {
+				logger.info("document is closed, DB is still used by other documents, url: " + url);
+				return;
+			}
+			if (sharedSource) {
+				logger.info("releasing shared JDBC datasource with url: " + url);
+				return;
+			}
 			logger.info("closing JDBC datasource with url: " + url);
+			lock.writeLock().lock();
 			try {
 				cs.close();
 			} catch (SQLException e) {
 				throw catchSQLException(e);
+			} finally {
+				lock.writeLock().unlock();
 			}
 
 		}
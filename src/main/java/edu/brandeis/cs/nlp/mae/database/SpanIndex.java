@@ -0,0 +1,161 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import edu.brandeis.cs.nlp.mae.model.ExtentTag;
+import edu.brandeis.cs.nlp.mae.util.IntervalTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory index of extent tag spans, keeping one interval tree per tag type.
+ * Used by drivers in span storage mode to answer location queries without
+ * per-character rows in DB. Entries are tag ids; drivers look up the actual
+ * tags from DB afterwards.
+ */
+public class SpanIndex {
+
+    private Map<String, IntervalTree<String>> trees;
+    private Map<String, String> typeOfTid;
+    private Map<String, List<int[]>> spansOfTid;
+
+    public SpanIndex() {
+        trees = new TreeMap<>();
+        typeOfTid = new HashMap<>();
+        spansOfTid = new HashMap<>();
+    }
+
+    public void add(ExtentTag tag) {
+        add(tag.getTagTypeName(), tag.getId(), tag.getSpansAsPairs());
+    }
+
+    public void add(String tagTypeName, String tid, List<int[]> spans) {
+        remove(tid);
+        IntervalTree<String> tree = trees.get(tagTypeName);
+        if (tree == null) {
+            tree = new IntervalTree<>();
+            trees.put(tagTypeName, tree);
+        }
+        for (int[] span : spans) {
+            tree.add(span[0], span[1], tid);
+        }
+        typeOfTid.put(tid, tagTypeName);
+        spansOfTid.put(tid, spans);
+    }
+
+    public boolean remove(String tid) {
+        String tagTypeName = typeOfTid.remove(tid);
+        if (tagTypeName == null) {
+            return false;
+        }
+        IntervalTree<String> tree = trees.get(tagTypeName);
+        for (int[] span : spansOfTid.remove(tid)) {
+            tree.remove(span[0], span[1], tid);
+        }
+        return true;
+    }
+
+    public boolean contains(String tid) {
+        return typeOfTid.containsKey(tid);
+    }
+
+    /**
+     * Returns ids of all indexed tags that cover the given location.
+     */
+    public Set<String> getTidsAt(int location) {
+        return getTidsIntersecting(location, location + 1, null);
+    }
+
+    /**
+     * Returns ids of tags of the given type that cover the given location.
+     */
+    public Set<String> getTidsAt(int location, String tagTypeName) {
+        Set<String> tids = new LinkedHashSet<>();
+        IntervalTree<String> tree = trees.get(tagTypeName);
+        if (tree != null) {
+            tids.addAll(tree.stab(location));
+        }
+        return tids;
+    }
+
+    /**
+     * Returns ids of tags with any span overlapping [begin, end).
+     *
+     * @param tagTypeNames names of tag types to look up, null to look up all types
+     */
+    public Set<String> getTidsIntersecting(int begin, int end, Collection<String> tagTypeNames) {
+        Set<String> tids = new LinkedHashSet<>();
+        Collection<String> targets = tagTypeNames == null ? trees.keySet() : tagTypeNames;
+        for (String tagTypeName : targets) {
+            IntervalTree<String> tree = trees.get(tagTypeName);
+            if (tree != null) {
+                tids.addAll(tree.overlapping(begin, end));
+            }
+        }
+        return tids;
+    }
+
+    /**
+     * Returns all character offsets covered by tags of a given type,
+     * once for each tag covering a character.
+     */
+    public List<Integer> getAnchorsOfTagType(String tagTypeName) {
+        List<Integer> anchors = new ArrayList<>();
+        IntervalTree<String> tree = trees.get(tagTypeName);
+        if (tree != null) {
+            for (int[] span : tree.intervals()) {
+                for (int i = span[0]; i < span[1]; i++) {
+                    anchors.add(i);
+                }
+            }
+        }
+        return anchors;
+    }
+
+    public List<Integer> getAllAnchors() {
+        List<Integer> anchors = new ArrayList<>();
+        for (String tagTypeName : trees.keySet()) {
+            anchors.addAll(getAnchorsOfTagType(tagTypeName));
+        }
+        return anchors;
+    }
+
+    public int size() {
+        return typeOfTid.size();
+    }
+
+    public void clear() {
+        trees.clear();
+        typeOfTid.clear();
+        spansOfTid.clear();
+    }
+}
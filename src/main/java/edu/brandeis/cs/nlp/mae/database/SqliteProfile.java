@@ -0,0 +1,95 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+
+/**
+ * How a {@link LocalSqliteDriverImpl} sets up its SQLite database. A driver
+ * DB is a scratch copy of one annotation, deleted when the driver is
+ * destroyed, so there's little point in paying for durable commits.
+ * Annotations are kept safe by saving XML, and
+ * {@link LocalSqliteDriverImpl#backupTo(java.io.File)} can take a snapshot
+ * of the DB in between.
+ *
+ * Selected by {@value #PROPERTY} in application.properties.
+ */
+public enum SqliteProfile {
+
+    // SQLite defaults: rollback journal, every commit is synced to disk
+    DEFAULT(false),
+    // write-ahead log and no syncing; an application crash can lose recent commits, but not corrupt the file,
+    // while an OS crash or power loss can corrupt it
+    WAL(false, "PRAGMA journal_mode=WAL", "PRAGMA synchronous=OFF",
+            "PRAGMA temp_store=MEMORY", "PRAGMA cache_size=" + SqliteProfile.CACHE_SIZE),
+    // no DB file at all, everything is gone when the driver is destroyed
+    MEMORY(true, "PRAGMA temp_store=MEMORY", "PRAGMA cache_size=" + SqliteProfile.CACHE_SIZE);
+
+    public static final String PROPERTY = "sqliteProfile";
+
+    // negative cache size is in KiB, instead of pages
+    private static final int CACHE_SIZE = -64 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(SqliteProfile.class);
+
+    private final boolean inMemory;
+    private final String[] pragmas;
+
+    SqliteProfile(boolean inMemory, String... pragmas) {
+        this.inMemory = inMemory;
+        this.pragmas = pragmas;
+    }
+
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * Returns statements to run on a new connection, before any table is created.
+     */
+    public String[] getPragmas() {
+        return pragmas.clone();
+    }
+
+    /**
+     * Reads a profile name from application properties, falls back to
+     * {@link #DEFAULT} when it's missing or unknown.
+     */
+    public static SqliteProfile fromProperties(Properties properties) {
+        String name = properties.getProperty(PROPERTY);
+        if (name == null || name.trim().length() == 0) {
+            return DEFAULT;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn(String.format("unknown %s \"%s\", using the default profile", PROPERTY, name));
+            return DEFAULT;
+        }
+    }
+}
@@ -22,24 +22,21 @@
  * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
  */
 
-package edu.brandeis.cs.nlp.mae.util;
+package edu.brandeis.cs.nlp.mae.database;
 
-import java.util.Comparator;
+import edu.brandeis.cs.nlp.mae.model.Tag;
+
+import java.util.Iterator;
 
 /**
- * Created by krim on 4/24/2016.
+ * Forward-only iterator over tags in DB, reading rows as it goes
+ * instead of loading all of them into a list.
+ * Must be closed after use, on the thread that opened it, to release the
+ * underlying DB statement and the read lock of the driver.
  */
-public class SortedIntArrayComparator implements Comparator<int[]> {
+public interface TagCursor<T extends Tag> extends Iterator<T>, AutoCloseable {
 
     @Override
-    public int compare(int[] o1, int[] o2) {
-        int toLook = Math.min(o1.length, o2.length);
-        for (int i = 0; i < toLook; i++) {
-            if (o1[i] != o2[i]) {
-                return o1[i] - o2[i];
-            }
-        }
-        return o1.length - o2.length;
-    }
+    void close() throws MaeDBException;
 
 }
@@ -34,6 +34,11 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 /**
@@ -113,6 +118,30 @@ public class AnnotationLoader {
         return false;
     }
 
+    /**
+     * Same as {@link #isXml(File)}, but checks an in-memory copy of the file.
+     */
+    public static boolean isXml(byte[] bytes) {
+        int i = 0;
+        // skip UTF-8 BOM
+        if (bytes.length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf) {
+            i = 3;
+        }
+        while (i < bytes.length && Character.isWhitespace(bytes[i])) {
+            i++;
+        }
+        byte[] xmlDecl = "<?xml".getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length - i < xmlDecl.length) {
+            return false;
+        }
+        for (int j = 0; j < xmlDecl.length; j++) {
+            if (bytes[i + j] != xmlDecl[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static boolean isTaskNameMatching(File file, String taskName) throws MaeIOException {
 
         try {
@@ -152,8 +181,12 @@ public class AnnotationLoader {
             MaeXMLParser loader = new MaeXMLParser();
             String currentTaskName = driver.getTaskName();
             String currentPrimaryText = driver.getPrimaryText();
-            return loader.isTaskNameMatching(file, currentTaskName) &&
-                    loader.isPrimaryTextMatching(file, currentPrimaryText);
+            // a single header-only pass gives both task name and primary text
+            loader.readAnnotationPreamble(file);
+            MaeXMLParser.MaeSAXHandler header = loader.getParsed();
+            return header.getTaskName().equals(currentTaskName) &&
+                    header.getPrimaryText() != null &&
+                    header.getPrimaryText().equals(currentPrimaryText);
 
         } catch (MaeDBException e) {
             throw e;
@@ -171,18 +204,20 @@ public class AnnotationLoader {
     public String loadFile(File file) throws MaeException {
         String fileParseWarning = "";
         if (fileName == null) fileName = file.getAbsolutePath();
-        if (isXml(file)) {
-            if (isTaskNameMatching(file, taskName)) {
+        // read the file once, all checks below and parsing work on the same bytes
+        byte[] bytes = readBytes(file);
+        if (isXml(bytes)) {
+            if (isTaskNameMatching(file, bytes, taskName)) {
                 logger.info("reading annotations from file: " + file.getAbsolutePath());
-                fileParseWarning = readAsXml(file);
+                fileParseWarning = readAsXml(file, bytes);
             } else {
-                readAsTxt(file);
+                readAsTxt(file, bytes);
                 String notXmlWarning = "file does not match working DTD, read as the primary text and a new XML file is generated:\n" + fileName;
                 logger.info(notXmlWarning);
                 fileParseWarning += notXmlWarning;
            }
         } else {
-            readAsTxt(file);
+            readAsTxt(file, bytes);
             String notXmlWarning = "file is not an XML, read as the primary text and a new XML file generated:\n" + fileName;
             logger.info(notXmlWarning);
             fileParseWarning += notXmlWarning;
@@ -192,11 +227,48 @@ public class AnnotationLoader {
 
     }
 
+    private static byte[] readBytes(File file) throws MaeIOException {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            catchIOError(file, e);
+        }
+        return new byte[0];
+    }
+
+    private static boolean isTaskNameMatching(File file, byte[] bytes, String taskName) throws MaeIOException {
+
+        try {
+            MaeXMLParser loader = new MaeXMLParser();
+            return loader.isTaskNameMatching(bytes, taskName);
+        } catch (IOException e) {
+            catchIOError(file, e);
+        } catch (SAXParseException e) {
+            catchSAXParseError(file, e);
+        } catch (SAXException e) {
+            catchSAXError(file, e);
+        }
+
+        return false;
+
+    }
+
     public String readAsXml(File file) throws MaeDBException, MaeIOException {
+        return readAsXml(file, null);
+    }
+
+    /**
+     * @param bytes - contents of the file already read in memory, null to read from the file
+     */
+    private String readAsXml(File file, byte[] bytes) throws MaeDBException, MaeIOException {
         try {
             if (fileName == null) fileName = file.getAbsolutePath();
             MaeXMLParser parser = new MaeXMLParser(driver);
-            parser.readAnnotationFile(file);
+            if (bytes == null) {
+                parser.readAnnotationFile(file);
+            } else {
+                parser.readAnnotationFile(bytes);
+            }
             driver.setPrimaryText(parser.getParsedPrimaryText());
             insertTagsToDB(parser.getParsedTags());
             insertAttsToDB(parser.getParsedAtts());
@@ -214,8 +286,7 @@ public class AnnotationLoader {
         return "";
     }
 
-    private void readAsTxt(File file) throws MaeException {
-        Scanner scanner = null;
+    private void readAsTxt(File file, byte[] bytes) throws MaeException {
         int suffix = 1;
         String filePath = file.getAbsolutePath();
         String fileExt = filePath.substring(filePath.length() - 4, filePath.length());
@@ -229,28 +300,22 @@ public class AnnotationLoader {
         }
         try {
             fileName = xmlized.getAbsolutePath();
-            scanner = new Scanner(file, "UTF-8");
-            scanner.useDelimiter("\\A");
-            String primaryText = "";
-            while (scanner.hasNext()) {
-                primaryText += scanner.next();
-            }
+            String primaryText = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
             FileWriter.writeTextToEmptyXML(primaryText, driver.getTaskName(), xmlized);
             try {
                 readAsXml(xmlized);
             } catch (MaeIOException e) {
                 xmlized.delete();
             }
-        } catch (NoSuchElementException ex) {
+        } catch (CharacterCodingException ex) {
             String message = "failed to read the file, maybe a binary file? " + file.getAbsolutePath();
             logger.error(message);
             throw new MaeIOTXTException(message);
-        } catch (FileNotFoundException ignored) {
         } catch (MaeException e) {
             throw e;
-        } finally {
-            assert scanner != null;
-            scanner.close();
         }
 
 
@@ -278,8 +343,9 @@ public class AnnotationLoader {
             if (!parsedTag.isLink()) {
                 ExtentTag tag = new ExtentTag(parsedTag.getTid(), tagTypeMap.get(parsedTag.getTagTypeName()), fileName);
                 tag.setText(parsedTag.getText());
-                for (CharIndex ci : tag.setSpans(parsedTag.getSpans())) {
-                    anchors.add(ci);
+                List<CharIndex> tagAnchors = tag.setSpans(parsedTag.getSpans());
+                if (!driver.isSpanStorageMode()) {
+                    anchors.addAll(tagAnchors);
                 }
                 String tid = parsedTag.getTid();
                 extTagMap.put(tid, tag);
@@ -0,0 +1,182 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.io;
+
+import edu.brandeis.cs.nlp.mae.database.MaeDBException;
+import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
+import edu.brandeis.cs.nlp.mae.database.TagCursor;
+import edu.brandeis.cs.nlp.mae.model.ExtentTag;
+import edu.brandeis.cs.nlp.mae.model.LinkTag;
+import edu.brandeis.cs.nlp.mae.model.Tag;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes the annotation in a driver into a MAE XML file. Tags are read through
+ * cursors and written one by one to a buffered UTF-8 stream, so the whole
+ * document is never held in memory as a string.
+ * Output is identical to what Tag.toXmlString() generates.
+ */
+public class AnnotationXmlWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private MaeDriverI driver;
+
+    public AnnotationXmlWriter(MaeDriverI driver) {
+        this.driver = driver;
+    }
+
+    public void write(File file) throws MaeIOException, MaeDBException {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            write(writer);
+        } catch (IOException e) {
+            throw new MaeIOException("Cannot write annotation to file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public void write(Writer writer) throws IOException, MaeDBException {
+        String taskName = driver.getTaskName();
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<");
+        writer.write(taskName);
+        writer.write(">\n");
+        // tried embed dtd source in the xml, but that fails XML parser to successfully parse
+        // <!DOCTYPE root_element SYSTEM "DTD_filename">\
+        // <!DOCTYPE root_element PUBLIC "DTD_name" "DTD_location">
+        // see https://xmlwriter.net/xml_guide/doctype_declaration.shtml
+        writer.write("<TEXT><![CDATA[");
+        writer.write(driver.getPrimaryText());
+        writer.write("]]></TEXT>\n<TAGS>\n");
+        for (TagType eType : driver.getExtentTagTypes()) {
+            try (TagCursor<ExtentTag> cursor = driver.getExtentTagCursorOfType(eType)) {
+                while (cursor.hasNext()) {
+                    writeExtentTag(writer, cursor.next());
+                }
+            }
+        }
+        for (TagType lType : driver.getLinkTagTypes()) {
+            try (TagCursor<LinkTag> cursor = driver.getLinkTagCursorOfType(lType)) {
+                while (cursor.hasNext()) {
+                    writeLinkTag(writer, cursor.next());
+                }
+            }
+        }
+        writer.write("</TAGS>\n</");
+        writer.write(taskName);
+        writer.write(">");
+        writer.flush();
+    }
+
+    void writeExtentTag(Writer writer, ExtentTag tag) throws IOException {
+        writer.write('<');
+        writer.write(tag.getTagTypeName());
+        writeAttribute(writer, "id", tag.getId());
+        writeAttribute(writer, "spans", tag.getSpansAsString());
+        writeAttribute(writer, "text", tag.getText());
+        writer.write(' ');
+        writeAttributes(writer, tag);
+        writer.write(" />\n");
+    }
+
+    void writeLinkTag(Writer writer, LinkTag tag) throws IOException {
+        writer.write('<');
+        writer.write(tag.getTagTypeName());
+        writeAttribute(writer, "id", tag.getId());
+        writer.write(' ');
+        // arguments come first, then attributes
+        writeAttributes(writer, tag);
+        writer.write(" />\n");
+    }
+
+    private void writeAttributes(Writer writer, Tag tag) throws IOException {
+        boolean first = true;
+        for (Map.Entry<String, String> att : tag.getAttributesWithNames().entrySet()) {
+            if (!first) {
+                writer.write(' ');
+            }
+            writer.write(att.getKey());
+            writer.write("=\"");
+            escape(writer, att.getValue());
+            writer.write('"');
+            first = false;
+        }
+    }
+
+    private void writeAttribute(Writer writer, String name, String value) throws IOException {
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+        escape(writer, value);
+        writer.write('"');
+    }
+
+    /**
+     * Escapes a string for an XML attribute value, same as Tag.escapeXmlString():
+     * newlines become spaces and an already escaped "&amp;amp;" is kept as is.
+     */
+    static void escape(Writer writer, String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\n':
+                    writer.write(' ');
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    if (text.startsWith("amp;", i + 1)) {
+                        i += 4;
+                    }
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                case '\'':
+                    writer.write("&apos;");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+}
@@ -28,20 +28,20 @@ import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.MaeStrings;
 import edu.brandeis.cs.nlp.mae.database.MaeDBException;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
-import edu.brandeis.cs.nlp.mae.model.ArgumentType;
-import edu.brandeis.cs.nlp.mae.model.AttributeType;
-import edu.brandeis.cs.nlp.mae.model.TagType;
+import edu.brandeis.cs.nlp.mae.util.HashHandler;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 import edu.brandeis.cs.nlp.mae.util.SpanHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -52,7 +52,19 @@ import java.util.*;
 public class MaeXMLParser {
     private static final Logger logger = LoggerFactory.getLogger(MaeXMLParser.class.getName());
 
+    private static final ThreadLocal<SAXParser> parserPool = new ThreadLocal<SAXParser>() {
+        @Override
+        protected SAXParser initialValue() {
+            try {
+                return SAXParserFactory.newInstance().newSAXParser();
+            } catch (ParserConfigurationException | SAXException e) {
+                throw new IllegalStateException("cannot create a SAX parser", e);
+            }
+        }
+    };
+
     private MaeDriverI driver;
+    private ParseSchema schema;
     private MaeSAXHandler xmlHandler;
     private String parseWarnings = "";
 
@@ -64,22 +76,33 @@ public class MaeXMLParser {
         this.driver = driver;
     }
 
+    /**
+     * Creates a parser that validates against a schema snapshot instead of
+     * querying a driver. Use this to parse many files on multiple threads.
+     */
+    public MaeXMLParser(ParseSchema schema) {
+        this.schema = schema;
+    }
+
     public void readAnnotationFile(File file) throws SAXException, IOException, MaeDBException {
-        try {
-            List<String> extTagTypeNames = new ArrayList<>();
-            for (TagType type : driver.getExtentTagTypes()) {
-                extTagTypeNames.add(type.getName());
-            }
-            List<String> linkTagTypeNames = new ArrayList<>();
-            for (TagType type : driver.getLinkTagTypes()) {
-                linkTagTypeNames.add(type.getName());
-            }
+        initFullHandler();
+        parse(fileSource(file));
+    }
 
-            this.xmlHandler = new MaeSAXHandler(extTagTypeNames, linkTagTypeNames);
-            parse(file);
-        } catch (MaeDBException e) {
-            throw e;
+    /**
+     * Reads annotations from an in-memory copy of a file, so that callers
+     * that already sniffed the header from the same bytes don't go to disk again.
+     */
+    public void readAnnotationFile(byte[] bytes) throws SAXException, IOException, MaeDBException {
+        initFullHandler();
+        parse(bytesSource(bytes));
+    }
+
+    private void initFullHandler() throws MaeDBException {
+        if (schema == null) {
+            schema = new ParseSchema(driver);
         }
+        this.xmlHandler = new MaeSAXHandler(schema);
     }
 
     public boolean hasParWarnings() {
@@ -93,31 +116,100 @@ public class MaeXMLParser {
         return parseWarnings;
     }
 
+    /**
+     * Reads the task name and the primary text of an annotation file.
+     * Parsing stops right after the TEXT element, tags are never read.
+     */
     public void readAnnotationPreamble(File file) throws IOException, SAXException {
-        this.xmlHandler = new MaeSAXSimpleHandler();
-        parse(file);
+        this.xmlHandler = new MaeSAXSimpleHandler(true);
+        parse(fileSource(file));
     }
 
-    private void parse(File file) throws IOException, SAXException  {
+    public void readAnnotationPreamble(byte[] bytes) throws IOException, SAXException {
+        this.xmlHandler = new MaeSAXSimpleHandler(true);
+        parse(bytesSource(bytes));
+    }
+
+    /**
+     * Same as {@link #readAnnotationPreamble(File)}, but on a given parser
+     * instead of the pooled one. Only for comparing against the pool.
+     */
+    void readAnnotationPreamble(File file, SAXParser saxParser) throws IOException, SAXException {
+        this.xmlHandler = new MaeSAXSimpleHandler(true);
+        parse(fileSource(file), saxParser);
+    }
+
+    /**
+     * Reads only the task name (the root element) of an annotation file.
+     */
+    public void readTaskName(File file) throws IOException, SAXException {
+        this.xmlHandler = new MaeSAXSimpleHandler(false);
+        parse(fileSource(file));
+    }
+
+    public void readTaskName(byte[] bytes) throws IOException, SAXException {
+        this.xmlHandler = new MaeSAXSimpleHandler(false);
+        parse(bytesSource(bytes));
+    }
+
+    private static InputSource fileSource(File file) {
+        // same as what SAXParser.parse(File, ...) does
+        return new InputSource(file.toURI().toASCIIString());
+    }
+
+    private static InputSource bytesSource(byte[] bytes) {
+        return new InputSource(new ByteArrayInputStream(bytes));
+    }
+
+    private void parse(InputSource source) throws IOException, SAXException  {
+        SAXParser saxParser = getPooledParser();
+        try {
+            parse(source, saxParser);
+        } finally {
+            saxParser.reset();
+        }
+    }
+
+    private void parse(InputSource source, SAXParser saxParser) throws IOException, SAXException  {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            saxParser.parse(file, xmlHandler);
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
+            saxParser.parse(source, xmlHandler);
+        } catch (HeaderParsedSignal ignored) {
+            // header-only handlers stop the parser as soon as they have what they need
         }
     }
 
+    /**
+     * Returns a SAX parser reserved for the current thread.
+     * Creating a factory and a parser per file is expensive when going over
+     * many files (e.g. in IAA), so each thread keeps one and reuses it.
+     * Callers must reset() the parser after each use.
+     */
+    static SAXParser getPooledParser() {
+        return parserPool.get();
+    }
+
     public boolean isTaskNameMatching(File file, String taskName) throws IOException, SAXException  {
-        this.xmlHandler = new MaeSAXSimpleHandler();
-        parse(file);
+        readTaskName(file);
+        return xmlHandler.getTaskName().equals(taskName);
+    }
+
+    public boolean isTaskNameMatching(byte[] bytes, String taskName) throws IOException, SAXException  {
+        readTaskName(bytes);
         return xmlHandler.getTaskName().equals(taskName);
     }
 
     public boolean isPrimaryTextMatching(File file, String primaryText) throws SAXException, IOException {
-        this.xmlHandler = new MaeSAXSimpleHandler();
-        parse(file);
-        return xmlHandler.getPrimaryText().equals(primaryText);
+        return isPrimaryTextMatching(file, HashHandler.fnv1a64(primaryText));
+    }
+
+    /**
+     * Compares primary text of a file against a hash computed once by the caller
+     * (e.g. {@link MaeSAXHandler#getPrimaryTextHash()} of a previously read file),
+     * so that the same text is not hashed over and over for many files.
+     */
+    public boolean isPrimaryTextMatching(File file, long primaryTextHash) throws SAXException, IOException {
+        readAnnotationPreamble(file);
+        return xmlHandler.getPrimaryText() != null && xmlHandler.getPrimaryTextHash() == primaryTextHash;
     }
 
     public List<ParsedTag> getParsedTags() {
@@ -132,6 +224,10 @@ public class MaeXMLParser {
         return xmlHandler.getParsedArgs();
     }
 
+    public List<ParsedAtt> getParsedAttsOfTid(String tid) {
+        return xmlHandler.getParsedAttsOfTid(tid);
+    }
+
     public String getParsedPrimaryText() {
         return xmlHandler.getPrimaryText();
     }
@@ -140,16 +236,34 @@ public class MaeXMLParser {
         return this.xmlHandler;
     }
 
+    /**
+     * Thrown by header-only handlers to stop the parser early, never escapes {@link #parse(InputSource, SAXParser)}.
+     */
+    private static class HeaderParsedSignal extends SAXException {
+
+        HeaderParsedSignal() {
+            super("header parsed");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            // control flow only, no need for a stack trace
+            return this;
+        }
+    }
+
     public class MaeSAXHandler extends DefaultHandler {
         private List<ParsedTag> tags;
         private List<ParsedAtt> atts;
+        private Map<String, List<ParsedAtt>> attsByTid;
         private List<ParsedArg> args;
         private boolean hasTextElem = false;
         private boolean hasRootElem = false;
+        private StringBuilder textBuffer = new StringBuilder();
         private String primaryText;
+        private long primaryTextHash;
         private String taskName;
-        private List<String> extTagTypeNames;
-        private List<String> linkTagTypeNames;
+        private ParseSchema schema;
         private MappedSet<String, String> attTypeMap;
         private Map<String, List<String>> attValueMap;
         private Map<String, String> attDefValueMap;
@@ -159,49 +273,20 @@ public class MaeXMLParser {
             initParsedLists();
         }
 
-        public MaeSAXHandler(List<String> extTagTypeNames, List<String> linkTagTypeNames) throws MaeDBException {
-            this.extTagTypeNames = extTagTypeNames;
-            this.linkTagTypeNames = linkTagTypeNames;
-            cacheAttMaps();
-            cacheArgMap();
+        public MaeSAXHandler(ParseSchema schema) {
+            this.schema = schema;
+            this.attTypeMap = schema.getAttTypeMap();
+            this.attValueMap = schema.getAttValueMap();
+            this.attDefValueMap = schema.getAttDefValueMap();
+            this.argTypeMap = schema.getArgTypeMap();
             initParsedLists();
 
         }
 
-        private void cacheArgMap() throws MaeDBException {
-            this.argTypeMap = new MappedSet<>();
-            for (String linkTypeName : linkTagTypeNames) {
-                for (ArgumentType argType : driver.getArgumentTypesOfLinkTagType(driver.getTagTypeByName(linkTypeName))) {
-                    argTypeMap.putItem(linkTypeName, argType.getName());
-                }
-            }
-        }
-
-        private void cacheAttMaps() throws MaeDBException {
-            this.attTypeMap = new MappedSet<>();
-            this.attValueMap = new HashMap<>();
-            this.attDefValueMap = new HashMap<>();
-            cacheAttMapsFromTagTypes(extTagTypeNames);
-            cacheAttMapsFromTagTypes(linkTagTypeNames);
-        }
-
-        private void cacheAttMapsFromTagTypes(List<String> tagTypeNames) throws MaeDBException {
-            for (String tagTypeName : tagTypeNames) {
-                for (AttributeType attType : driver.getAttributeTypesOfTagType(driver.getTagTypeByName(tagTypeName))) {
-                    String attTypeName = attType.getName();
-                    attTypeMap.putItem(tagTypeName, attTypeName);
-                    if (attType.isFiniteValueset()) {
-                        String attValuesKey = String.format("%s-%s", tagTypeName, attTypeName);
-                        attValueMap.put(attValuesKey, attType.getValuesetAsList());
-                        attDefValueMap.put(attValuesKey, attType.getDefaultValue());
-                    }
-                }
-            }
-        }
-
         private void initParsedLists() {
             this.tags = new ArrayList<>();
             this.atts = new ArrayList<>();
+            this.attsByTid = new HashMap<>();
             this.args = new ArrayList<>();
         }
 
@@ -220,6 +305,7 @@ public class MaeXMLParser {
             } else if (qName.equalsIgnoreCase("text")) {
                 logger.debug("found text node: " + qName);
                 hasTextElem = true;
+                textBuffer.setLength(0);
             } else if (qName.equalsIgnoreCase("tags")) {
             } else {
                 parseTag(qName, attributes);
@@ -228,10 +314,10 @@ public class MaeXMLParser {
 
         private void parseTag(String tagTypeName, Attributes attributes) throws SAXException {
             ParsedTag tag = new ParsedTag();
-            if (extTagTypeNames.contains(tagTypeName)) {
+            if (schema.isExtentTagType(tagTypeName)) {
                 logger.debug(String.format("found extent tag: %s(%s)", attributes.getValue("id"), tagTypeName));
                 parseExtentTag(tagTypeName, tag, attributes);
-            } else if (linkTagTypeNames.contains(tagTypeName)) {
+            } else if (schema.isLinkTagType(tagTypeName)) {
                 logger.debug(String.format("found link tag: %s(%s)", attributes.getValue("id"), tagTypeName));
                 parseLinkTag(tagTypeName, tag, attributes);
             } else {
@@ -360,7 +446,7 @@ public class MaeXMLParser {
             }
             ParsedAtt att = new ParsedAtt();
 
-            String attValuesKey = String.format("%s-%s", tagTypeName, name);
+            String attValuesKey = ParseSchema.attValuesKey(tagTypeName, name);
             if (attValueMap.containsKey(attValuesKey)) {
                 if (!attValueMap.get(attValuesKey).contains(value) && value.length() > 0) {
                     parseWarnings += String.format(
@@ -376,13 +462,28 @@ public class MaeXMLParser {
             att.setAttTypeName(name);
             att.setAttValue(value);
             atts.add(att);
+            List<ParsedAtt> attsOfTid = attsByTid.get(tid);
+            if (attsOfTid == null) {
+                attsOfTid = new ArrayList<>();
+                attsByTid.put(tid, attsOfTid);
+            }
+            attsOfTid.add(att);
         }
 
 
         @Override
         public void characters(char[] ch, int start, int length) {
+            // parser can deliver a long TEXT in multiple chunks
             if (hasTextElem) {
-                setPrimaryText(new String(ch, start, length));
+                textBuffer.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (hasTextElem && qName.equalsIgnoreCase("text")) {
+                setPrimaryText(textBuffer.toString());
+                textBuffer = new StringBuilder();
                 hasTextElem = false;
             }
         }
@@ -391,6 +492,14 @@ public class MaeXMLParser {
             return atts;
         }
 
+        /**
+         * @return attributes of a tag in the order of appearance, empty if the tag has none
+         */
+        public List<ParsedAtt> getParsedAttsOfTid(String tid) {
+            List<ParsedAtt> attsOfTid = attsByTid.get(tid);
+            return attsOfTid == null ? Collections.<ParsedAtt>emptyList() : attsOfTid;
+        }
+
         public List<ParsedArg> getParsedArgs() {
             return args;
         }
@@ -413,13 +522,32 @@ public class MaeXMLParser {
 
         public void setPrimaryText(String primaryText) {
             this.primaryText = primaryText;
+            this.primaryTextHash = HashHandler.fnv1a64(primaryText);
+        }
+
+        /**
+         * @return FNV-1a hash of the primary text, computed once when the text is read
+         */
+        public long getPrimaryTextHash() {
+            return primaryTextHash;
         }
 
     }
 
+    /**
+     * Reads only the header of an annotation file: the task name (root element)
+     * and, optionally, the primary text. Stops the parser as soon as those are read.
+     */
     public class MaeSAXSimpleHandler extends MaeSAXHandler {
 
+        private final boolean readText;
+
         public MaeSAXSimpleHandler() {
+            this(true);
+        }
+
+        public MaeSAXSimpleHandler(boolean readText) {
+            this.readText = readText;
         }
 
         @Override
@@ -432,19 +560,24 @@ public class MaeXMLParser {
                 } else {
                     setTaskName(qName);
                     super.hasRootElem = true;
+                    if (!readText) {
+                        throw new HeaderParsedSignal();
+                    }
                 }
-            }
-
-            if (qName.equalsIgnoreCase("text")) {
+            } else if (qName.equalsIgnoreCase("text")) {
                 super.hasTextElem = true;
+                super.textBuffer.setLength(0);
+            } else {
+                // reached TAGS without a TEXT element
+                throw new HeaderParsedSignal();
             }
         }
 
         @Override
-        public void characters(char[] ch, int start, int length) {
-            if (super.hasTextElem) {
-                setPrimaryText(new String(ch, start, length));
-                super.hasTextElem = false;
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (super.hasTextElem && qName.equalsIgnoreCase("text")) {
+                super.endElement(uri, localName, qName);
+                throw new HeaderParsedSignal();
             }
         }
 
@@ -0,0 +1,120 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.io;
+
+import edu.brandeis.cs.nlp.mae.database.MaeDBException;
+import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
+import edu.brandeis.cs.nlp.mae.model.ArgumentType;
+import edu.brandeis.cs.nlp.mae.model.AttributeType;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+import edu.brandeis.cs.nlp.mae.util.MappedSet;
+
+import java.util.*;
+
+/**
+ * Read-only snapshot of a task definition (tag, attribute, and argument types)
+ * that {@link MaeXMLParser} needs to validate annotations. Taken once from the
+ * driver, then shared by any number of parsers, so that parsers running on
+ * different threads never query the database.
+ */
+public class ParseSchema {
+
+    private final List<String> extTagTypeNames;
+    private final List<String> linkTagTypeNames;
+    private final MappedSet<String, String> attTypeMap;
+    private final Map<String, List<String>> attValueMap;
+    private final Map<String, String> attDefValueMap;
+    private final MappedSet<String, String> argTypeMap;
+
+    public ParseSchema(MaeDriverI driver) throws MaeDBException {
+        this.extTagTypeNames = new ArrayList<>();
+        this.linkTagTypeNames = new ArrayList<>();
+        this.attTypeMap = new MappedSet<>();
+        this.attValueMap = new HashMap<>();
+        this.attDefValueMap = new HashMap<>();
+        this.argTypeMap = new MappedSet<>();
+
+        for (TagType type : driver.getExtentTagTypes()) {
+            extTagTypeNames.add(type.getName());
+            cacheAttTypes(driver, type);
+        }
+        for (TagType type : driver.getLinkTagTypes()) {
+            linkTagTypeNames.add(type.getName());
+            cacheAttTypes(driver, type);
+            for (ArgumentType argType : driver.getArgumentTypesOfLinkTagType(type)) {
+                argTypeMap.putItem(type.getName(), argType.getName());
+            }
+        }
+    }
+
+    private void cacheAttTypes(MaeDriverI driver, TagType type) throws MaeDBException {
+        String tagTypeName = type.getName();
+        for (AttributeType attType : driver.getAttributeTypesOfTagType(type)) {
+            String attTypeName = attType.getName();
+            attTypeMap.putItem(tagTypeName, attTypeName);
+            if (attType.isFiniteValueset()) {
+                String attValuesKey = attValuesKey(tagTypeName, attTypeName);
+                attValueMap.put(attValuesKey, attType.getValuesetAsList());
+                attDefValueMap.put(attValuesKey, attType.getDefaultValue());
+            }
+        }
+    }
+
+    static String attValuesKey(String tagTypeName, String attTypeName) {
+        return String.format("%s-%s", tagTypeName, attTypeName);
+    }
+
+    public boolean isExtentTagType(String tagTypeName) {
+        return extTagTypeNames.contains(tagTypeName);
+    }
+
+    public boolean isLinkTagType(String tagTypeName) {
+        return linkTagTypeNames.contains(tagTypeName);
+    }
+
+    public List<String> getExtentTagTypeNames() {
+        return Collections.unmodifiableList(extTagTypeNames);
+    }
+
+    public List<String> getLinkTagTypeNames() {
+        return Collections.unmodifiableList(linkTagTypeNames);
+    }
+
+    MappedSet<String, String> getAttTypeMap() {
+        return attTypeMap;
+    }
+
+    Map<String, List<String>> getAttValueMap() {
+        return attValueMap;
+    }
+
+    Map<String, String> getAttDefValueMap() {
+        return attDefValueMap;
+    }
+
+    MappedSet<String, String> getArgTypeMap() {
+        return argTypeMap;
+    }
+}
@@ -48,7 +48,7 @@ public class AttributeType extends TagProperty implements ModelI {
     @DatabaseField(canBeNull = false, columnName = DBSchema.TAB_AT_COL_DEFVALUE)
     private String defaultValue;
 
-    @ForeignCollectionField(eager = true)
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<Attribute> attributes;
 
 
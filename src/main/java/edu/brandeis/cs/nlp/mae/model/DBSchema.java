@@ -30,6 +30,7 @@ package edu.brandeis.cs.nlp.mae.model;
 public class DBSchema {
 
     public final static String TAB_TASK = "task_meta";
+    public final static String TAB_TASK_COL_ID = "id";
     public final static String TAB_TASK_COL_NAME = "task_name";
     public final static String TAB_TASK_COL_TEXT = "text";
     public final static String TAB_TASK_COL_TASKFILE = "task_file";
@@ -45,12 +46,15 @@ public class DBSchema {
     public final static String TAB_TT_COL_PREFIX = "prefix";
     public final static String TAB_TT_COL_ISLINK = "is_link";
 
+    public final static String TAB_TAG_COL_ID = "id";
+    public final static String TAB_TAG_COL_DOC = "document";
     public final static String TAB_TAG_COL_TID = "tid";
     public final static String TAB_TAG_COL_FN = "filename";
     public final static String TAB_TAG_FCOL_TT = "tag_type_fid";
 
     public final static String TAB_ETAG = "extent_tag";
     public final static String TAB_ETAG_COL_TEXT = "text";
+    public final static String TAB_ETAG_COL_SPANS = "span_pairs";
 
     public final static String TAB_LTAG = "link_tag";
 
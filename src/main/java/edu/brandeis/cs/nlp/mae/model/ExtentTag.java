@@ -28,6 +28,7 @@ import com.j256.ormlite.dao.ForeignCollection;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
 import com.j256.ormlite.table.DatabaseTable;
+import edu.brandeis.cs.nlp.mae.MaeException;
 import edu.brandeis.cs.nlp.mae.MaeStrings;
 import edu.brandeis.cs.nlp.mae.database.ExtentTagDao;
 import edu.brandeis.cs.nlp.mae.util.SpanHandler;
@@ -48,7 +49,12 @@ public class ExtentTag extends Tag implements ModelI {
     @DatabaseField(columnName = DBSchema.TAB_ETAG_COL_TEXT)
     private String text;
 
-    @ForeignCollectionField(eager = true)
+    // spans are always kept as a compact string column,
+    // char_index rows are only written when span storage mode is off
+    @DatabaseField(columnName = DBSchema.TAB_ETAG_COL_SPANS)
+    private String spansString;
+
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<CharIndex> spans;
 
     public ExtentTag() {
@@ -58,12 +64,15 @@ public class ExtentTag extends Tag implements ModelI {
     public ExtentTag(String tid, TagType tagType, String filename) {
         super(tid, tagType, filename);
         this.spans = null;
+        this.spansString = null;
         this.text = null;
 
     }
 
     public List<CharIndex> setSpans(int...locations) {
         List<CharIndex> indices = new LinkedList<>();
+        this.spansString = SpanHandler.convertArrayToString(
+                locations == null ? new int[0] : locations.clone());
         if (locations != null) {
             for (int location : locations) {
                 indices.add(new CharIndex(location, this));
@@ -88,6 +97,9 @@ public class ExtentTag extends Tag implements ModelI {
     }
 
     public boolean isConsuming() {
+        if (spansString != null) {
+            return !spansString.equals(MaeStrings.NCSPAN_PLACEHOLDER);
+        }
         return getSpans() != null && getSpans().size() > 0;
     }
 
@@ -96,15 +108,19 @@ public class ExtentTag extends Tag implements ModelI {
     }
 
     public List<Integer> getSpansAsList() {
-        List<Integer> spans = new ArrayList<>();
-        for (CharIndex anchor : getSpans()) {
-            spans.add(anchor.getLocation());
-        }
-        return spans;
+        return SpanHandler.convertIntegerarrayToIntegerlist(getSpansAsArray());
 
     }
 
     public int[] getSpansAsArray() {
+        if (spansString != null) {
+            try {
+                return SpanHandler.convertStringToArray(spansString);
+            } catch (MaeException e) {
+                // spans string is always generated by setSpans(), so this should not happen
+                throw new IllegalStateException("corrupted spans in DB: " + spansString, e);
+            }
+        }
         int[] spans = new int[this.getSpans().size()];
         int i = 0;
         for (CharIndex ci : getSpans()) {
@@ -113,8 +129,22 @@ public class ExtentTag extends Tag implements ModelI {
         return spans;
     }
 
+    /**
+     * Returns spans as a sorted list of [start, end) pairs,
+     * or an empty list if this tag is non-consuming.
+     */
+    public List<int[]> getSpansAsPairs() {
+        if (!isConsuming()) {
+            return new ArrayList<>();
+        }
+        return SpanHandler.convertStringToPairs(getSpansAsString());
+    }
+
     public String getSpansAsString() {
-        return SpanHandler.convertPairsToString(SpanHandler.convertArrayToPairs(this.getSpansAsArray()));
+        if (spansString != null) {
+            return spansString;
+        }
+        return SpanHandler.convertArrayToString(this.getSpansAsArray());
     }
 
     public String getText() {
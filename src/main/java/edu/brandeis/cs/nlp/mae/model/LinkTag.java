@@ -40,7 +40,7 @@ import java.util.*;
 @DatabaseTable(tableName = DBSchema.TAB_LTAG, daoClass = LinkTagDao.class)
 public class LinkTag extends Tag implements ModelI {
 
-    @ForeignCollectionField(eager = true)
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<Argument> arguments;
 
     public LinkTag() {
@@ -55,6 +55,10 @@ public class LinkTag extends Tag implements ModelI {
         return arguments;
     }
 
+    public void setArguments(ForeignCollection<Argument> arguments) {
+        this.arguments = arguments;
+    }
+
     public ArrayList<ExtentTag> getArgumentTags() {
         ArrayList<ExtentTag> tags = new ArrayList<>();
         for (Argument arg : getArguments()) {
@@ -64,7 +68,8 @@ public class LinkTag extends Tag implements ModelI {
     }
 
     public Argument getArgumentByTypeName(String argTypeName) {
-        for (Argument arg : getArguments()) {
+        // materialize first, not to leave a lazy iterator open on early return
+        for (Argument arg : new ArrayList<>(getArguments())) {
             if (arg.getArgumentType().getName().equals(argTypeName)) {
                 return arg;
             }
@@ -37,7 +37,15 @@ import java.util.*;
 
 public abstract class Tag implements ModelI, Comparable<Tag> {
 
-    @DatabaseField(id = true, columnName = DBSchema.TAB_TAG_COL_TID)
+    // tids repeat across documents, so rows are keyed by a generated id,
+    // and a tid is unique only within a document
+    @DatabaseField(generatedId = true, columnName = DBSchema.TAB_TAG_COL_ID)
+    protected int rowId;
+
+    @DatabaseField(uniqueCombo = true, columnName = DBSchema.TAB_TAG_COL_DOC)
+    protected int document;
+
+    @DatabaseField(uniqueCombo = true, canBeNull = false, columnName = DBSchema.TAB_TAG_COL_TID)
     protected String tid;
 
     @DatabaseField(foreign = true, canBeNull = false, foreignAutoRefresh = true, columnName = DBSchema.TAB_TAG_FCOL_TT)
@@ -46,7 +54,7 @@ public abstract class Tag implements ModelI, Comparable<Tag> {
     @DatabaseField(columnName = DBSchema.TAB_TAG_COL_FN)
     protected String filename;
 
-    @ForeignCollectionField(eager = true)
+    @ForeignCollectionField(eager = false)
     protected ForeignCollection<Attribute> attributes;
 
     public Tag() {
@@ -83,6 +91,18 @@ public abstract class Tag implements ModelI, Comparable<Tag> {
         this.tid = tid;
     }
 
+    public int getRowId() {
+        return rowId;
+    }
+
+    public int getDocument() {
+        return document;
+    }
+
+    public void setDocument(int document) {
+        this.document = document;
+    }
+
     public TagType getTagtype() {
         return tagtype;
 
@@ -133,6 +153,10 @@ public abstract class Tag implements ModelI, Comparable<Tag> {
         return attributes;
     }
 
+    public void setAttributes(ForeignCollection<Attribute> attributes) {
+        this.attributes = attributes;
+    }
+
     @Override
     public int hashCode() {
         return this.tid.hashCode();
@@ -52,16 +52,18 @@ public class TagType implements ModelI, Comparable<TagType> {
     @DatabaseField
     private boolean isNonConsuming;
 
-    @ForeignCollectionField(eager = true)
+    // collections below are lazy; each iteration reads DB, so avoid holding iterators
+    // and use fetch-plan methods in MaeDriverI for bulk reads
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<AttributeType> attributeTypes;
 
-    @ForeignCollectionField(eager = true)
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<ArgumentType> argumentTypes;
 
-    @ForeignCollectionField(eager = true)
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<ExtentTag> extentTags;
 
-    @ForeignCollectionField(eager = true)
+    @ForeignCollectionField(eager = false)
     private ForeignCollection<LinkTag> linkTags;
 
     public TagType() {
@@ -127,14 +129,26 @@ public class TagType implements ModelI, Comparable<TagType> {
         return attributeTypes;
     }
 
+    public void setAttributeTypes(ForeignCollection<AttributeType> attributeTypes) {
+        this.attributeTypes = attributeTypes;
+    }
+
     public ForeignCollection<ArgumentType> getArgumentTypes() {
         return argumentTypes;
     }
 
+    public void setArgumentTypes(ForeignCollection<ArgumentType> argumentTypes) {
+        this.argumentTypes = argumentTypes;
+    }
+
     public ForeignCollection<ExtentTag> getExtentTags() {
         return this.extentTags;
     }
 
+    public void setExtentTags(ForeignCollection<ExtentTag> extentTags) {
+        this.extentTags = extentTags;
+    }
+
     public List<ExtentTag> getExtentTagsAsList(boolean consumingOnly) {
         ArrayList<ExtentTag> tags = new ArrayList<>();
         for (ExtentTag tag : getExtentTags()) {
@@ -149,6 +163,10 @@ public class TagType implements ModelI, Comparable<TagType> {
         return this.linkTags;
     }
 
+    public void setLinkTags(ForeignCollection<LinkTag> linkTags) {
+        this.linkTags = linkTags;
+    }
+
     public ForeignCollection<? extends Tag> getTags() {
         if (isExtent()) {
             return getExtentTags();
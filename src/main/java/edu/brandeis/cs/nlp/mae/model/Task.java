@@ -34,7 +34,11 @@ import com.j256.ormlite.table.DatabaseTable;
 @DatabaseTable(tableName = DBSchema.TAB_TASK)
 public class Task implements ModelI {
 
-    @DatabaseField(id = true, columnName = DBSchema.TAB_TASK_COL_NAME)
+    // one row per document, documents of a task share the tables
+    @DatabaseField(generatedId = true, columnName = DBSchema.TAB_TASK_COL_ID)
+    private int document;
+
+    @DatabaseField(columnName = DBSchema.TAB_TASK_COL_NAME)
     private String name;
 
     @DatabaseField(columnName = DBSchema.TAB_TASK_COL_TEXT)
@@ -53,6 +57,10 @@ public class Task implements ModelI {
         this.name = name;
     }
 
+    public int getDocument() {
+        return document;
+    }
+
     public String getName() {
         return name;
     }
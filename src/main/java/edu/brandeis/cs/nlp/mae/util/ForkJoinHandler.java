@@ -0,0 +1,46 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.util;
+
+/**
+ * Helpers for tasks run on fork/join pools.
+ */
+public class ForkJoinHandler {
+
+    /**
+     * Finds the exception a fork/join task actually failed with. Fork/join
+     * wraps checked exceptions thrown from callables in plain runtime
+     * exceptions, sometimes more than once.
+     *
+     * @param failure - cause of an ExecutionException, or an exception thrown from join()
+     * @return the innermost exception that is not a plain wrapper
+     */
+    public static Throwable unwrapFailure(Throwable failure) {
+        while (failure.getClass() == RuntimeException.class && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.util;
+
+/**
+ * Cheap, non-cryptographic hashing used to compare large strings
+ * (e.g. primary texts of annotation documents) without keeping or
+ * re-reading them.
+ */
+public class HashHandler {
+
+    private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
+    /**
+     * Computes 64-bit FNV-1a hash of a char sequence. Each UTF-16 char is fed
+     * as two octets, so surrogate pairs are hashed as they are stored.
+     *
+     * @param text - a char sequence to hash, null is hashed as an empty string
+     * @return hash value
+     */
+    public static long fnv1a64(CharSequence text) {
+        long hash = FNV64_OFFSET_BASIS;
+        if (text == null) {
+            return hash;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash ^= (c >>> 8);
+            hash *= FNV64_PRIME;
+            hash ^= (c & 0xff);
+            hash *= FNV64_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes 64-bit FNV-1a hash of a byte array, e.g. raw contents of a file.
+     *
+     * @param bytes - bytes to hash, null is hashed as an empty array
+     * @return hash value
+     */
+    public static long fnv1a64(byte[] bytes) {
+        long hash = FNV64_OFFSET_BASIS;
+        if (bytes == null) {
+            return hash;
+        }
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= FNV64_PRIME;
+        }
+        return hash;
+    }
+}
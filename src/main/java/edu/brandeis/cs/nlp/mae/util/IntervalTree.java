@@ -0,0 +1,277 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An augmented interval tree that maps half-open integer intervals
+ * [start, end) to values. Nodes are kept balanced as an AVL tree ordered by
+ * (start, end), and each node keeps the largest end offset of its subtree so
+ * that stabbing and range queries only visit branches that can overlap.
+ * Identical intervals share a node and keep their values in insertion order.
+ *
+ * @param <V> type of values attached to intervals
+ */
+public class IntervalTree<V> {
+
+    private Node<V> root;
+    private int size;
+
+    public IntervalTree() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Attaches a value to an interval [start, end).
+     * Empty or inverted intervals are ignored.
+     */
+    public void add(int start, int end, V value) {
+        if (start >= end) {
+            return;
+        }
+        root = insert(root, start, end, value);
+        size++;
+    }
+
+    /**
+     * Detaches a value from an interval [start, end).
+     *
+     * @return true if the value was attached to the interval and is removed
+     */
+    public boolean remove(int start, int end, V value) {
+        Node<V> node = find(root, start, end);
+        if (node == null || !node.values.remove(value)) {
+            return false;
+        }
+        if (node.values.isEmpty()) {
+            root = delete(root, start, end);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns values of all intervals that contain the given point.
+     */
+    public List<V> stab(int point) {
+        List<V> results = new ArrayList<>();
+        collectOverlapping(root, point, point + 1, results);
+        return results;
+    }
+
+    /**
+     * Returns values of all intervals that overlap with [begin, end).
+     */
+    public List<V> overlapping(int begin, int end) {
+        List<V> results = new ArrayList<>();
+        if (begin < end) {
+            collectOverlapping(root, begin, end, results);
+        }
+        return results;
+    }
+
+    /**
+     * Returns all intervals in the tree, in (start, end) order.
+     * Each interval is repeated once per attached value.
+     */
+    public List<int[]> intervals() {
+        List<int[]> results = new ArrayList<>();
+        collectIntervals(root, results);
+        return results;
+    }
+
+    /**
+     * Returns the number of (interval, value) entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    private void collectOverlapping(Node<V> node, int begin, int end, List<V> results) {
+        if (node == null || node.maxEnd <= begin) {
+            return;
+        }
+        collectOverlapping(node.left, begin, end, results);
+        if (node.start < end) {
+            if (begin < node.end) {
+                results.addAll(node.values);
+            }
+            // only right subtree has nodes starting after this one
+            collectOverlapping(node.right, begin, end, results);
+        }
+    }
+
+    private void collectIntervals(Node<V> node, List<int[]> results) {
+        if (node == null) {
+            return;
+        }
+        collectIntervals(node.left, results);
+        for (int i = 0; i < node.values.size(); i++) {
+            results.add(new int[]{node.start, node.end});
+        }
+        collectIntervals(node.right, results);
+    }
+
+    private Node<V> find(Node<V> node, int start, int end) {
+        while (node != null) {
+            int comp = compare(start, end, node);
+            if (comp == 0) {
+                return node;
+            }
+            node = comp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<V> insert(Node<V> node, int start, int end, V value) {
+        if (node == null) {
+            return new Node<>(start, end, value);
+        }
+        int comp = compare(start, end, node);
+        if (comp == 0) {
+            node.values.add(value);
+            return node;
+        } else if (comp < 0) {
+            node.left = insert(node.left, start, end, value);
+        } else {
+            node.right = insert(node.right, start, end, value);
+        }
+        return rebalance(node);
+    }
+
+    private Node<V> delete(Node<V> node, int start, int end) {
+        if (node == null) {
+            return null;
+        }
+        int comp = compare(start, end, node);
+        if (comp < 0) {
+            node.left = delete(node.left, start, end);
+        } else if (comp > 0) {
+            node.right = delete(node.right, start, end);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            } else if (node.right == null) {
+                return node.left;
+            }
+            Node<V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.start = successor.start;
+            node.end = successor.end;
+            node.values = successor.values;
+            node.right = delete(node.right, successor.start, successor.end);
+        }
+        return rebalance(node);
+    }
+
+    private int compare(int start, int end, Node<V> node) {
+        if (start != node.start) {
+            return Integer.compare(start, node.start);
+        }
+        return Integer.compare(end, node.end);
+    }
+
+    private Node<V> rebalance(Node<V> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        } else if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<V> rotateRight(Node<V> node) {
+        Node<V> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<V> rotateLeft(Node<V> node) {
+        Node<V> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void update(Node<V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.maxEnd = Math.max(node.end, Math.max(maxEnd(node.left), maxEnd(node.right)));
+    }
+
+    private int height(Node<V> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private int maxEnd(Node<V> node) {
+        return node == null ? Integer.MIN_VALUE : node.maxEnd;
+    }
+
+    private static class Node<V> {
+        int start;
+        int end;
+        int maxEnd;
+        int height;
+        List<V> values;
+        Node<V> left;
+        Node<V> right;
+
+        Node(int start, int end, V value) {
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+            this.height = 1;
+            this.values = new LinkedList<>();
+            this.values.add(value);
+        }
+    }
+}
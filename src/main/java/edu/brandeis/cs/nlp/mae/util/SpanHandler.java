@@ -124,16 +124,13 @@ public class SpanHandler {
         int start = spans[0];
         int prev = spans[0];
         for (int i = 1; i < spans.length; i++) {
-            if (i == spans.length - 1) {
-                spansList.add(new int[]{start, spans[i] + 1});
-            } else if (prev + 1 < spans[i]) {
+            if (prev + 1 < spans[i]) {
                 spansList.add(new int[]{start, prev + 1});
-                prev = spans[i];
                 start = spans[i];
-            } else {
-                prev = spans[i];
             }
+            prev = spans[i];
         }
+        spansList.add(new int[]{start, prev + 1});
         logger.debug("=== Conversion finished ===");
         return spansList;
 
@@ -0,0 +1,50 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one canonical instance of equal strings, so that names repeated
+ * over many annotations (tag types, attribute names and values) are stored
+ * only once. Unlike {@link String#intern()}, the pool is dropped with its owner.
+ * Thread-safe.
+ */
+public class StringInterner {
+
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+
+    public String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        String canonical = pool.putIfAbsent(string, string);
+        return canonical == null ? string : canonical;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
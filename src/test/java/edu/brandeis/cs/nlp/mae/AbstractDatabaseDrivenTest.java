@@ -6,6 +6,7 @@ import java.util.Properties;
 import edu.brandeis.cs.nlp.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
 import edu.brandeis.cs.nlp.mae.database.MySQLDriverBuilder;
+import edu.brandeis.cs.nlp.mae.database.SqliteProfile;
 
 public abstract class AbstractDatabaseDrivenTest {
 	protected MaeDriverI driver;
@@ -17,7 +18,7 @@ public abstract class AbstractDatabaseDrivenTest {
 			throw new MaeException(e);
 		}
     	if(Boolean.valueOf(applicationProperties.getProperty("useSqlite")))
-    		driver = new LocalSqliteDriverImpl(MaeStrings.TEST_DB_FILE);
+    		driver = new LocalSqliteDriverImpl(MaeStrings.TEST_DB_FILE, SqliteProfile.fromProperties(applicationProperties));
     	else
     		driver = MySQLDriverBuilder.buildDriverFromProperties();
 	}
@@ -0,0 +1,181 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.agreement.calculator.AgreementBootstrap;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.CodingStatistics;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.ConfidenceInterval;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.UnitizingStatistics;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.FleissKappaAgreement;
+import org.dkpro.statistics.agreement.coding.HubertKappaAgreement;
+import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
+import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AgreementBootstrapTest {
+
+    private static final int RATERS = 3;
+    private static final String[] CATEGORIES = {"A", "B", "C"};
+
+    private List<List<Object[]>> randomCodings(Random random, int documentCount) {
+        List<List<Object[]>> documents = new ArrayList<>();
+        for (int i = 0; i < documentCount; i++) {
+            List<Object[]> items = new ArrayList<>();
+            int itemCount = 1 + random.nextInt(8);
+            for (int j = 0; j < itemCount; j++) {
+                Object[] item = new Object[RATERS];
+                for (int rater = 0; rater < RATERS; rater++) {
+                    // mostly agreeing, with some missing codings
+                    int pick = random.nextInt(10);
+                    item[rater] = pick == 0 ? null : pick < 7 ? CATEGORIES[j % CATEGORIES.length] : CATEGORIES[random.nextInt(CATEGORIES.length)];
+                }
+                items.add(item);
+            }
+            documents.add(items);
+        }
+        return documents;
+    }
+
+    private List<DocumentUnits> randomUnits(Random random, int[] lengths) {
+        List<DocumentUnits> documents = new ArrayList<>();
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = 20 + random.nextInt(60);
+            DocumentUnits units = new DocumentUnits();
+            // leave some documents without any units
+            int unitCount = i % 4 == 3 ? 0 : random.nextInt(12);
+            for (int j = 0; j < unitCount; j++) {
+                int offset = random.nextInt(lengths[i]);
+                int length = 1 + random.nextInt(Math.min(8, lengths[i] - offset));
+                units.add(offset, length, random.nextInt(RATERS), CATEGORIES[random.nextInt(2)]);
+            }
+            documents.add(units);
+        }
+        return documents;
+    }
+
+    private static int[] randomSample(Random random, int documentCount) {
+        int[] sample = new int[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            sample[i] = random.nextInt(documentCount);
+        }
+        return sample;
+    }
+
+    @Test
+    public void canComputeCodingAgreementsSameAsDkpro() throws Exception {
+        Random random = new Random(42);
+        List<List<Object[]>> documents = randomCodings(random, 20);
+        List<CodingStatistics> statistics = new ArrayList<>();
+        for (List<Object[]> items : documents) {
+            statistics.add(CodingStatistics.of(RATERS, items));
+        }
+
+        for (int trial = 0; trial < 20; trial++) {
+            int[] sample = trial == 0 ? AgreementBootstrap.identitySample(documents.size()) : randomSample(random, documents.size());
+            CodingAnnotationStudy study = new CodingAnnotationStudy(RATERS);
+            for (int document : sample) {
+                for (Object[] item : documents.get(document)) {
+                    study.addItemAsArray(item);
+                }
+            }
+            CodingStatistics merged = CodingStatistics.merge(statistics, sample, RATERS);
+            double pi = new FleissKappaAgreement(study).calculateAgreement();
+            double kappa = new HubertKappaAgreement(study).calculateAgreement();
+            assertEquals("Expected multi-pi of dkpro, found: " + merged.getFleissKappa(), pi, merged.getFleissKappa(), 1e-9);
+            assertEquals("Expected multi-kappa of dkpro, found: " + merged.getHubertKappa(), kappa, merged.getHubertKappa(), 1e-9);
+        }
+    }
+
+    @Test
+    public void canComputeAlphaUSameAsDkpro() throws Exception {
+        Random random = new Random(7);
+        int[] lengths = new int[16];
+        List<DocumentUnits> documents = randomUnits(random, lengths);
+        List<UnitizingStatistics> statistics = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            statistics.add(UnitizingStatistics.of(documents.get(i), lengths[i], RATERS));
+        }
+
+        for (int trial = 0; trial < 20; trial++) {
+            int[] sample = trial == 0 ? AgreementBootstrap.identitySample(documents.size()) : randomSample(random, documents.size());
+            int totalLength = 0;
+            for (int document : sample) {
+                totalLength += lengths[document];
+            }
+            UnitizingAnnotationStudy study = new UnitizingAnnotationStudy(RATERS, totalLength);
+            int offset = 0;
+            for (int document : sample) {
+                documents.get(document).addTo(study, offset);
+                offset += lengths[document];
+            }
+            double expected = new KrippendorffAlphaUnitizingAgreement(study).calculateAgreement();
+            double found = UnitizingStatistics.alphaU(statistics, sample, RATERS);
+            assertEquals("Expected alpha-U of dkpro, found: " + found, expected, found, 1e-9);
+        }
+    }
+
+    @Test
+    public void canEstimateSameIntervalsInParallel() throws Exception {
+        Random random = new Random(42);
+        List<List<Object[]>> documents = randomCodings(random, 30);
+        List<CodingStatistics> statistics = new ArrayList<>();
+        for (List<Object[]> items : documents) {
+            statistics.add(CodingStatistics.of(RATERS, items));
+        }
+
+        AgreementBootstrap bootstrap = new AgreementBootstrap(500, 0.9, 1L);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool multiple = new ForkJoinPool(4);
+        try {
+            bootstrap.setPool(single);
+            ConfidenceInterval sequential = bootstrap.estimate(documents.size(),
+                    sample -> CodingStatistics.merge(statistics, sample, RATERS).getFleissKappa());
+            bootstrap.setPool(multiple);
+            ConfidenceInterval parallel = bootstrap.estimate(documents.size(),
+                    sample -> CodingStatistics.merge(statistics, sample, RATERS).getFleissKappa());
+            assertEquals("Expected same lower bound, found: " + parallel, sequential.getLower(), parallel.getLower(), 0.0);
+            assertEquals("Expected same upper bound, found: " + parallel, sequential.getUpper(), parallel.getUpper(), 0.0);
+
+            double estimate = CodingStatistics.merge(statistics, AgreementBootstrap.identitySample(documents.size()), RATERS).getFleissKappa();
+            assertTrue("Expected the interval to contain the estimate " + estimate + ", found: " + sequential,
+                    sequential.contains(estimate));
+            assertEquals("Expected all resamples to be defined, found: " + sequential.getUndefinedCount(),
+                    0, sequential.getUndefinedCount());
+        } finally {
+            single.shutdown();
+            multiple.shutdown();
+        }
+    }
+}
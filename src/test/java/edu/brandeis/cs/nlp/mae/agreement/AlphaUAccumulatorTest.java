@@ -0,0 +1,148 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.AbstractDatabaseDrivenTest;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.AlphaUAccumulator;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.UnitizingStatistics;
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
+import edu.brandeis.cs.nlp.mae.io.DTDLoader;
+import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
+import edu.brandeis.cs.nlp.mae.io.ParseSchema;
+import edu.brandeis.cs.nlp.mae.util.FileHandler;
+import edu.brandeis.cs.nlp.mae.util.StringInterner;
+import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreement;
+import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class AlphaUAccumulatorTest extends AbstractDatabaseDrivenTest {
+
+    private static final int RATERS = 5;
+
+    // parses of each document, by annotator
+    private List<CompactAnnotation[]> parses;
+    private List<Integer> textLengths;
+
+    @Before
+    public void setUp() throws Exception {
+        setupDriver();
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        new DTDLoader(driver).read(new File(sampleFileUrl.getPath()));
+        ParseSchema schema = new ParseSchema(driver);
+        StringInterner interner = new StringInterner();
+
+        // files are named as docN_aM.xml
+        URL exampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        List<File> files = FileHandler.getAllXMLFilesIn(new File(exampleFileUrl.getPath()));
+        Map<String, CompactAnnotation[]> parsesPerDocument = new TreeMap<>();
+        Map<String, Integer> textLengthPerDocument = new TreeMap<>();
+        for (File file : files) {
+            String[] name = file.getName().replace(".xml", "").split("_");
+            MaeXMLParser parser = new MaeXMLParser(schema);
+            parser.readAnnotationFile(file);
+            int annotator = Integer.parseInt(name[1].substring(1)) - 1;
+            parsesPerDocument.computeIfAbsent(name[0], key -> new CompactAnnotation[RATERS])[annotator]
+                    = new CompactAnnotation(parser, interner);
+            textLengthPerDocument.put(name[0], parser.getParsedPrimaryText().length());
+        }
+        parses = new ArrayList<>(parsesPerDocument.values());
+        textLengths = new ArrayList<>(textLengthPerDocument.values());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    /**
+     * Units of some tag types in a document, categorized by tag types.
+     */
+    private DocumentUnits getUnits(int document, Collection<String> tagTypeNames) {
+        DocumentUnits units = new DocumentUnits();
+        CompactAnnotation[] annotations = parses.get(document);
+        for (int annotator = 0; annotator < annotations.length; annotator++) {
+            CompactAnnotation parse = annotations[annotator];
+            if (parse == null) {
+                continue;
+            }
+            for (int tag = 0; tag < parse.getTagCount(); tag++) {
+                if (tagTypeNames.contains(parse.getTagTypeName(tag)) && parse.isConsuming(tag)) {
+                    for (int pair = 0; pair < parse.getSpanPairCount(tag); pair++) {
+                        int start = parse.getSpanPairStart(tag, pair);
+                        units.add(start, parse.getSpanPairEnd(tag, pair) - start, annotator, parse.getTagTypeName(tag));
+                    }
+                }
+            }
+        }
+        return units;
+    }
+
+    @Test
+    public void canStreamAlphaUSameAsDkpro() throws Exception {
+        List<Collection<String>> targets = Arrays.asList(
+                Arrays.asList("NOUN", "VERB", "ADJ_ADV"), Collections.singleton("NOUN"), Collections.singleton("ADJ_ADV"));
+        for (Collection<String> tagTypeNames : targets) {
+            List<DocumentUnits> documents = new ArrayList<>();
+            List<Integer> lengths = new ArrayList<>();
+            for (int i = 0; i < parses.size(); i++) {
+                documents.add(getUnits(i, tagTypeNames));
+                lengths.add(textLengths.get(i));
+                // a document without any units in between
+                if (i == 1) {
+                    documents.add(new DocumentUnits());
+                    lengths.add(textLengths.get(i));
+                }
+            }
+
+            AlphaUAccumulator accumulator = new AlphaUAccumulator(RATERS);
+            int totalLength = 0;
+            for (int count = 1; count <= documents.size(); count++) {
+                accumulator.add(UnitizingStatistics.of(documents.get(count - 1), lengths.get(count - 1), RATERS));
+                totalLength += lengths.get(count - 1);
+
+                UnitizingAnnotationStudy study = new UnitizingAnnotationStudy(RATERS, totalLength);
+                int offset = 0;
+                for (int i = 0; i < count; i++) {
+                    documents.get(i).addTo(study, offset);
+                    offset += lengths.get(i);
+                }
+                double expected = new KrippendorffAlphaUnitizingAgreement(study).calculateAgreement();
+                double found = accumulator.getAlphaU();
+                assertEquals("Expected alpha-U of dkpro on " + tagTypeNames + " over " + count + " documents, found: " + found,
+                        expected, found, 1e-9);
+            }
+        }
+    }
+}
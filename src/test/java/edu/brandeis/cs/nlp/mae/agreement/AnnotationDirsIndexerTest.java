@@ -0,0 +1,151 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.agreement.io.AnnotationDirsIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.AnnotationFilesIndexer;
+import edu.brandeis.cs.nlp.mae.io.MaeIOException;
+import edu.brandeis.cs.nlp.mae.util.FileHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AnnotationDirsIndexerTest {
+
+    private AnnotationDirsIndexer indexer;
+    private File datasetDir;
+
+    @Before
+    public void setUp() throws Exception {
+        indexer = new AnnotationDirsIndexer();
+        URL exampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        datasetDir = copyToAnnotatorDirs(new File(exampleFileUrl.getPath()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        deleteRecursively(datasetDir);
+    }
+
+    /**
+     * Copies a flat dataset of files with annotator suffixes into a new
+     * directory with a sub-directory per annotator.
+     */
+    static File copyToAnnotatorDirs(File flatDir) throws Exception {
+        File datasetDir = Files.createTempDirectory("mae-dirs").toFile();
+        for (File file : FileHandler.getAllXMLFilesIn(flatDir)) {
+            String annotator = FileHandler.splitAnnotationAnnotator(
+                    FileHandler.getFileNameWithoutExtension(file.getName()))[1];
+            File annotatorDir = new File(datasetDir, annotator);
+            annotatorDir.mkdirs();
+            Files.copy(file.toPath(), new File(annotatorDir, file.getName()).toPath());
+        }
+        return datasetDir;
+    }
+
+    static void deleteRecursively(File dir) throws Exception {
+        try (Stream<java.nio.file.Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void canIndexSameAsFlatDirectory() throws Exception {
+        indexer.indexAnnotations(datasetDir);
+        AnnotationFilesIndexer flat = new AnnotationFilesIndexer();
+        URL exampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        flat.indexAnnotations(new File(exampleFileUrl.getPath()));
+
+        assertEquals("Expected same annotators, found: " + indexer.getAnnotators(),
+                flat.getAnnotators(), indexer.getAnnotators());
+        assertEquals("Expected same documents, found: " + indexer.getDocumentNames(),
+                flat.getDocumentNames(), indexer.getDocumentNames());
+        for (String document : flat.getDocumentNames()) {
+            for (String annotator : flat.getAnnotators()) {
+                String flatFile = flat.getAnnotationsOfDocument(document)[flat.getAnnotatorIndex(annotator)];
+                String dirFile = indexer.getAnnotationsOfDocument(document)[indexer.getAnnotatorIndex(annotator)];
+                if (flatFile == null) {
+                    assertNull("Expected no file of " + annotator + " on " + document + ", found: " + dirFile, dirFile);
+                } else {
+                    assertNotNull("Expected a file of " + annotator + " on " + document, dirFile);
+                    assertEquals("Expected same file name, found: " + dirFile,
+                            new File(flatFile).getName(), new File(dirFile).getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void canCountMissingAnnotations() throws Exception {
+        File extra = new File(new File(datasetDir, "a1"), "nested");
+        extra.mkdirs();
+        Files.write(new File(extra, "doc9.xml").toPath(), "<?xml version=\"1.0\"?><Task/>".getBytes("UTF-8"));
+        indexer.indexAnnotations(datasetDir);
+
+        Map<String, String[]> map = indexer.getDocumentFileMap();
+        assertNotNull("Expected a nested document, found: " + map.keySet(), map.get("nested/doc9"));
+        Map<String, Integer> missing = indexer.getMissingAnnotationCounts();
+        assertEquals("Expected a1 misses nothing, found: " + missing, 0, (int) missing.get("a1"));
+        assertTrue("Expected a2 misses doc2 and nested/doc9 at least, found: " + missing, missing.get("a2") >= 2);
+        int expectedTotal = 0;
+        for (String[] fileNames : map.values()) {
+            for (String fileName : fileNames) {
+                if (fileName == null) {
+                    expectedTotal++;
+                }
+            }
+        }
+        assertEquals("Expected total of missing files, found: " + indexer.getMissingAnnotationCount(),
+                expectedTotal, indexer.getMissingAnnotationCount());
+    }
+
+    @Test
+    public void canRejectFilesOfSameDocument() throws Exception {
+        File a1 = new File(datasetDir, "a1");
+        File suffixed = new File(a1, "doc1_a1.xml");
+        File plain = new File(a1, "doc1.xml");
+        Files.copy(suffixed.toPath(), plain.toPath());
+        try {
+            indexer.indexAnnotations(datasetDir);
+            fail("Expected an exception on two files of a1 for doc1");
+        } catch (MaeIOException e) {
+            assertTrue("Expected both file names in the message, found: " + e.getMessage(),
+                    e.getMessage().contains(suffixed.getName()) && e.getMessage().contains(plain.getName()));
+        }
+    }
+}
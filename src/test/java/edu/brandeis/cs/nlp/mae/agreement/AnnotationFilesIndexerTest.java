@@ -25,14 +25,18 @@
 package edu.brandeis.cs.nlp.mae.agreement;
 
 import edu.brandeis.cs.nlp.mae.agreement.io.AnnotationFilesIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.TextFingerprint;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 /**
  * Created by krim on 4/13/16.
@@ -65,6 +69,30 @@ public class AnnotationFilesIndexerTest {
                 1, doc2nulls);
     }
 
+    @Test
+    public void canReindexAndKeepHeaderCache() throws Exception {
+        URL exmapleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        File exampleDir = new File(exmapleFileUrl.getPath());
+        indexer.indexAnnotations(exampleDir);
+        indexer.indexAnnotations(exampleDir);
+        assertEquals("Expected 4 documents after re-indexing, found " + indexer.getDocumentNames().size(),
+                4, indexer.getDocumentNames().size());
+
+        File file = File.createTempFile("mae-header", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "<?xml version=\"1.0\"?><Task><TEXT>abc</TEXT></Task>".getBytes("UTF-8"));
+        TextFingerprint fingerprint = TextFingerprint.of("abc");
+        indexer.cacheHeader(file, "Task", fingerprint);
+        assertEquals("Expected cached fingerprint, found: " + indexer.getCachedTextFingerprint(file),
+                fingerprint, indexer.getCachedTextFingerprint(file));
+        assertEquals("Expected cached task name, found: " + indexer.getCachedTaskName(file),
+                "Task", indexer.getCachedTaskName(file));
+
+        Files.write(file.toPath(), "<?xml version=\"1.0\"?><Task><TEXT>abcd</TEXT></Task>".getBytes("UTF-8"));
+        assertFalse("Expected changed file is not cached, found cached", indexer.hasCachedHeader(file));
+        assertNull(indexer.getCachedTextFingerprint(file));
+    }
+
     private int countNull(Object[] array) {
         int count = 0;
         for (Object obj : array) {
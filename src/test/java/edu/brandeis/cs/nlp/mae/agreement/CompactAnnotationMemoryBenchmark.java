@@ -0,0 +1,155 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.database.LocalSqliteDriverImpl;
+import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
+import edu.brandeis.cs.nlp.mae.io.DTDLoader;
+import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
+import edu.brandeis.cs.nlp.mae.io.ParseSchema;
+import edu.brandeis.cs.nlp.mae.io.ParsedAtt;
+import edu.brandeis.cs.nlp.mae.io.ParsedTag;
+import edu.brandeis.cs.nlp.mae.util.SpanHandler;
+import edu.brandeis.cs.nlp.mae.util.StringInterner;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares heap retained by full parses (what XMLParseCache used to keep)
+ * against {@link CompactAnnotation}s, over IAA sample annotations scaled up
+ * synthetically: each sample file is turned into a document with its text and
+ * extent tags repeated many times.
+ * Not a unit test; run {@link #main(String[])} from the test classpath,
+ * optionally with copies per document and number of documents as arguments.
+ */
+public class CompactAnnotationMemoryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int documents = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+        File dbFile = File.createTempFile("mae-memory-benchmark", ".db");
+        MaeDriverI driver = new LocalSqliteDriverImpl(dbFile.getAbsolutePath());
+        try {
+            URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+            new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+            ParseSchema schema = new ParseSchema(driver);
+
+            URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+            File[] samples = new File(exampleUrl.getPath()).listFiles((dir, name) -> name.endsWith(".xml"));
+            List<File> scaled = new ArrayList<>();
+            for (int i = 0; i < documents; i++) {
+                scaled.add(scaleUp(samples[i % samples.length], schema, copies));
+            }
+
+            long baseline = usedHeap();
+            List<MaeXMLParser> parses = new ArrayList<>();
+            int tags = 0;
+            for (File file : scaled) {
+                MaeXMLParser parser = new MaeXMLParser(schema);
+                parser.readAnnotationFile(file);
+                tags += parser.getParsedTags().size();
+                parses.add(parser);
+            }
+            long fullParseHeap = usedHeap() - baseline;
+
+            StringInterner interner = new StringInterner();
+            List<CompactAnnotation> compacts = new ArrayList<>();
+            for (MaeXMLParser parser : parses) {
+                compacts.add(new CompactAnnotation(parser, interner));
+            }
+            parses.clear();
+            long compactHeap = usedHeap() - baseline;
+
+            System.out.println(String.format("%d documents, %d tags", documents, tags));
+            System.out.println(String.format("full parses:         %,d bytes", fullParseHeap));
+            System.out.println(String.format("compact annotations: %,d bytes", compactHeap));
+            System.out.println(String.format("ratio:               %.1fx", (double) fullParseHeap / compactHeap));
+            // keep compacts reachable until measured
+            System.out.println(compacts.size() + " compact annotations kept");
+
+            for (File file : scaled) {
+                file.delete();
+            }
+        } finally {
+            driver.destroy();
+            dbFile.delete();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Writes a copy of an annotation file with its text and extent tags repeated.
+     */
+    private static File scaleUp(File sample, ParseSchema schema, int copies) throws Exception {
+        MaeXMLParser parser = new MaeXMLParser(schema);
+        parser.readAnnotationFile(sample);
+        String text = parser.getParsedPrimaryText();
+        String taskName = parser.getParsed().getTaskName();
+
+        StringBuilder textCopies = new StringBuilder();
+        StringBuilder tagCopies = new StringBuilder();
+        for (int c = 0; c < copies; c++) {
+            int offset = text.length() * c;
+            textCopies.append(text);
+            for (ParsedTag tag : parser.getParsedTags()) {
+                if (tag.isLink()) {
+                    continue;
+                }
+                int[] spans = tag.getSpans().clone();
+                for (int i = 0; i < spans.length; i++) {
+                    spans[i] += offset;
+                }
+                tagCopies.append(String.format("<%s id=\"%s_%d\" spans=\"%s\"",
+                        tag.getTagTypeName(), tag.getTid(), c,
+                        spans.length == 0 ? "-1~-1" : SpanHandler.convertArrayToString(spans)));
+                for (ParsedAtt att : parser.getParsedAttsOfTid(tag.getTid())) {
+                    tagCopies.append(String.format(" %s=\"%s\"", att.getAttTypeName(),
+                            att.getAttValue() == null ? "" : att.getAttValue()));
+                }
+                tagCopies.append(" />\n");
+            }
+        }
+        File scaled = File.createTempFile("mae-scaled-" + sample.getName(), ".xml");
+        String xml = String.format("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<%s>\n<TEXT><![CDATA[%s]]></TEXT>\n<TAGS>\n%s</TAGS>\n</%s>",
+                taskName, textCopies, tagCopies, taskName);
+        Files.write(scaled.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return scaled;
+    }
+}
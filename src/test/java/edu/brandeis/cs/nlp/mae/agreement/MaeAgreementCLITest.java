@@ -0,0 +1,123 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MaeAgreementCLITest {
+
+    private String dtdPath;
+    private String datasetPath;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setUp() throws Exception {
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        dtdPath = new File(dtdUrl.getPath()).getAbsolutePath();
+        URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        datasetPath = new File(exampleUrl.getPath()).getAbsolutePath();
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+    }
+
+    private int run(String... args) throws Exception {
+        return MaeAgreementCLI.run(args, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+    }
+
+    @Test
+    public void canWriteTsvRecords() throws Exception {
+        int status = run("--dtd", dtdPath, "--dataset", datasetPath, "--threads", "4",
+                "--target", "local alphau NOUN type comment",
+                "--target", "local multipi NAMED_ENTITY type",
+                "--target", "global multipi MOOD_DECL",
+                "--target", "global multipi MOOD_IMPE");
+        assertEquals("Expected success, found: " + err.toString("UTF-8"), 0, status);
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals("Expected header line, found: " + lines[0], "scope\tmetric\ttagType\tattType\tagreement", lines[0]);
+        // 1 global record, then 3 alpha-u and 2 multi-pi records
+        assertEquals("Expected 7 lines, found: " + lines.length, 7, lines.length);
+        assertTrue("Expected global record first, found: " + lines[1],
+                lines[1].startsWith("global\tmultipi\tMOOD_DECL,MOOD_IMPE\t-\t"));
+        assertTrue("Expected local span record, found: " + lines[2], lines[2].startsWith("local\talphau\tNOUN\t-\t"));
+    }
+
+    @Test
+    public void canWriteJsonRecordsSameAsSequential() throws Exception {
+        String[] args = {"--dtd", dtdPath, "--dataset", datasetPath, "--format", "json",
+                "--target", "local alphau VERB tense aspect", "--target", "global alphau NOUN", "--threads", "1"};
+        assertEquals("Expected success, found: " + err.toString("UTF-8"), 0, run(args));
+        String sequential = out.toString("UTF-8");
+        out.reset();
+        args[args.length - 1] = "3";
+        assertEquals("Expected success, found: " + err.toString("UTF-8"), 0, run(args));
+        String parallel = out.toString("UTF-8");
+        assertEquals("Expected same records from parallel run, found: " + parallel, sequential, parallel);
+
+        String[] lines = sequential.split("\n");
+        assertEquals("Expected 4 records, found: " + lines.length, 4, lines.length);
+        assertTrue("Expected a JSON record, found: " + lines[0],
+                lines[0].startsWith("{\"scope\":\"global\",\"metric\":\"alphau\",\"tagType\":\"NOUN\",\"attType\":\"-\",\"agreement\":"));
+    }
+
+    @Test
+    public void canWriteConfidenceIntervals() throws Exception {
+        int status = run("--dtd", dtdPath, "--dataset", datasetPath, "--bootstrap", "100", "--confidence", "0.9",
+                "--target", "local alphau NOUN", "--target", "global multipi MOOD_DECL");
+        assertEquals("Expected success, found: " + err.toString("UTF-8"), 0, status);
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals("Expected header with bounds, found: " + lines[0],
+                "scope\tmetric\ttagType\tattType\tagreement\tlower\tupper", lines[0]);
+        for (int i = 1; i < lines.length; i++) {
+            assertEquals("Expected 7 fields, found: " + lines[i], 7, lines[i].split("\t").length);
+        }
+        assertEquals("Expected usage error on invalid confidence", 2,
+                run("--dtd", dtdPath, "--dataset", datasetPath, "--confidence", "95", "--target", "local alphau NOUN"));
+    }
+
+    @Test
+    public void canRejectInvalidTargets() throws Exception {
+        assertEquals("Expected usage error without targets", 2, run("--dtd", dtdPath, "--dataset", datasetPath));
+        assertEquals("Expected usage error on unknown tag type", 2,
+                run("--dtd", dtdPath, "--dataset", datasetPath, "--target", "local alphau NO_SUCH_TAG"));
+        assertEquals("Expected usage error on unknown metric", 2,
+                run("--dtd", dtdPath, "--dataset", datasetPath, "--target", "local alpha NOUN"));
+        assertEquals("Expected usage error on unknown option", 2, run("--dtd", dtdPath, "--verbose", "true"));
+    }
+
+    @Test
+    public void canQuoteJsonStrings() throws Exception {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", MaeAgreementCLI.JsonWriter.quote("a\"b\\c\nd\u0001"));
+    }
+}
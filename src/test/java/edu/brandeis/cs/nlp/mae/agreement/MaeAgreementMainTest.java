@@ -26,6 +26,10 @@ package edu.brandeis.cs.nlp.mae.agreement;
 
 import edu.brandeis.cs.nlp.mae.AbstractDatabaseDrivenTest;
 import edu.brandeis.cs.nlp.mae.MaeStrings;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.AgreementBootstrap;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.ConfidenceInterval;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.PairwiseAgreementMatrix;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.SpanAligner;
 import edu.brandeis.cs.nlp.mae.database.LocalSqliteDriverImpl;
 import edu.brandeis.cs.nlp.mae.database.MaeDriverI;
 import edu.brandeis.cs.nlp.mae.io.DTDLoader;
@@ -36,8 +40,16 @@ import org.junit.Test;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import static edu.brandeis.cs.nlp.mae.agreement.MaeAgreementStrings.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -81,6 +93,185 @@ public class MaeAgreementMainTest extends AbstractDatabaseDrivenTest{
         assertTrue(calc.validateTextSharing().equals(SUCCESS));
     }
 
+    @Test
+    public void canReloadSameDirectory() throws Exception {
+        URL exmapleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        calc.loadAnnotationFiles(new File(exmapleFileUrl.getPath()));
+        assertTrue(calc.validateTaskNames("NounVerbTask").equals(SUCCESS));
+        assertTrue(calc.validateTextSharing().equals(SUCCESS));
+        assertFalse(calc.validateTaskNames("nounverbtask").equals(SUCCESS));
+    }
+
+    private Map<String, MappedSet<String, String>> getSampleLocalTargets() {
+        Map<String, MappedSet<String, String>> local = new TreeMap<>();
+        MappedSet<String, String> alphaU = new MappedSet<>();
+        alphaU.putCollection("NOUN", new LinkedList<String>() {{add("type"); add("comment");}});
+        alphaU.putCollection("VERB", new LinkedList<String>() {{add("tense"); add("aspect");}});
+        alphaU.putCollection("ADJ_ADV", new LinkedList<String>() {{add("type");}});
+        local.put(ALPHAU_CALC_STRING, alphaU);
+        MappedSet<String, String> multiPi = new MappedSet<>();
+        multiPi.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        local.put(MULTIPI_CALC_STRING, multiPi);
+        return local;
+    }
+
+    private Map<String, MappedSet<String, String>> getSampleGlobalTargets() {
+        MappedSet<String, String> moods = new MappedSet<>();
+        moods.putCollection("MOOD_DECL", new LinkedList<>());
+        moods.putCollection("MOOD_IMPE", new LinkedList<>());
+        moods.putCollection("MOOD_SUBJ", new LinkedList<>());
+        MappedSet<String, String> alphaU = new MappedSet<>();
+        alphaU.putCollection("NOUN", new LinkedList<>());
+        alphaU.putCollection("VERB", new LinkedList<>());
+        alphaU.putCollection("ADJ_ADV", new LinkedList<>());
+        Map<String, MappedSet<String, String>> global = new TreeMap<>();
+        global.put(MULTIPI_CALC_STRING, moods);
+        global.put(ALPHAU_CALC_STRING, alphaU);
+        return global;
+    }
+
+    @Test
+    public void canComputeInParallelSameAsSequential() throws Exception {
+        Map<String, MappedSet<String, String>> local = getSampleLocalTargets();
+        Map<String, MappedSet<String, String>> global = getSampleGlobalTargets();
+
+        String sequential = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+        calc.setParallelism(4);
+        String parallel = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+        calc.setParallelism(1);
+        assertEquals("Expected same agreements as sequential computation, found: " + parallel, sequential, parallel);
+    }
+
+    @Test
+    public void canEstimateConfidenceIntervals() throws Exception {
+        Map<String, MappedSet<String, String>> local = getSampleLocalTargets();
+        Map<String, MappedSet<String, String>> global = getSampleGlobalTargets();
+
+        calc.setBootstrap(new AgreementBootstrap(200, AgreementBootstrap.DEFAULT_CONFIDENCE, AgreementBootstrap.DEFAULT_SEED));
+        List<String> found = new ArrayList<>();
+        calc.calculateAgreements(global, local, (metricType, isLocal, targetTagsAndAtts, agreements, intervals) -> {
+            assertEquals("Expected an interval for every agreement, found: " + intervals.keySet(),
+                    agreements.keySet(), intervals.keySet());
+            for (String agreementKey : intervals.keySet()) {
+                ConfidenceInterval interval = intervals.get(agreementKey);
+                assertTrue("Expected ordered bounds, found: " + interval,
+                        Double.isNaN(interval.getLower()) || interval.getLower() <= interval.getUpper());
+                found.add(agreementKey);
+            }
+        });
+        assertFalse("Expected some intervals, found none", found.isEmpty());
+
+        String sequential = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+        calc.setParallelism(4);
+        String parallel = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+        calc.setParallelism(1);
+        assertEquals("Expected same intervals as sequential computation, found: " + parallel, sequential, parallel);
+        calc.setBootstrap(null);
+    }
+
+    @Test
+    public void canComputePairwiseAgreements() throws Exception {
+        MappedSet<String, String> targets = new MappedSet<>();
+        targets.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        targets.putCollection("NOUN", new LinkedList<String>() {{add("type");}});
+
+        Map<String, PairwiseAgreementMatrix> matrices = calc.calculatePairwiseAgreements(targets);
+        assertEquals("Expected a matrix per attribute including spans, found: " + matrices.keySet(), 4, matrices.size());
+        PairwiseAgreementMatrix matrix = matrices.get("NAMED_ENTITY" + TAG_ATT_DELIM + "type");
+        assertEquals("Expected 5 annotators, found: " + matrix.getAnnotators(), 5, matrix.size());
+        for (int i = 0; i < matrix.size(); i++) {
+            for (int j = 0; j < matrix.size(); j++) {
+                double kappa = matrix.getCohenKappa(i, j);
+                assertEquals("Expected a symmetric matrix", kappa, matrix.getCohenKappa(j, i), 0.0);
+            }
+        }
+
+        String sequential = calc.calcPairwiseAgreementToString(targets);
+        calc.setParallelism(4);
+        String parallel = calc.calcPairwiseAgreementToString(targets);
+        calc.setParallelism(1);
+        assertEquals("Expected same pairwise agreements as sequential computation, found: " + parallel, sequential, parallel);
+        System.out.println(sequential);
+    }
+
+    @Test
+    public void canLoadDirectoryPerAnnotator() throws Exception {
+        Map<String, MappedSet<String, String>> local = getSampleLocalTargets();
+        Map<String, MappedSet<String, String>> global = getSampleGlobalTargets();
+        String flat = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+
+        URL exmapleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        File datasetDir = AnnotationDirsIndexerTest.copyToAnnotatorDirs(new File(exmapleFileUrl.getPath()));
+        try {
+            calc.loadAnnotationFiles(datasetDir);
+            String dirs = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+            assertEquals("Expected same agreements as from a flat directory, found: " + dirs, flat, dirs);
+            assertEquals("Expected a5 misses no annotations, found: " + calc.getMissingAnnotationCounts(),
+                    0, (int) calc.getMissingAnnotationCounts().get("a5"));
+        } finally {
+            AnnotationDirsIndexerTest.deleteRecursively(datasetDir);
+        }
+    }
+
+    @Test
+    public void canMeasureRelaxedBoundaryAgreement() throws Exception {
+        MappedSet<String, String> sample = new MappedSet<>();
+        sample.putCollection("NAMED_ENTITY", new LinkedList<String>() {{add("type");}});
+        Map<String, Double> exact = calc.calculateLocalMultiPi(sample);
+
+        calc.setSpanAligner(SpanAligner.overlap(0.0));
+        Map<String, Double> relaxed = calc.calculateLocalMultiPi(sample);
+        calc.setSpanAligner(null);
+        assertEquals("Expected same targets with relaxed boundaries, found: " + relaxed.keySet(),
+                exact.keySet(), relaxed.keySet());
+        assertEquals("Expected exact matching back, found: " + calc.calculateLocalMultiPi(sample),
+                exact, calc.calculateLocalMultiPi(sample));
+        System.out.println(calc.agreementsToString("LocalMultiPi (overlap)", relaxed));
+    }
+
+    @Test
+    public void canReuseStudiesCachedInPreviousRun() throws Exception {
+        Map<String, MappedSet<String, String>> local = getSampleLocalTargets();
+        Map<String, MappedSet<String, String>> global = getSampleGlobalTargets();
+        String uncached = calc.calcGlobalAgreementToString(global) + calc.calcLocalAgreementToString(local);
+
+        File cacheDir = Files.createTempDirectory("mae-iaa-cache").toFile();
+        File exampleDir = new File(Thread.currentThread().getContextClassLoader().getResource("iaa_example").getPath());
+        try {
+            MaeAgreementMain firstRun = new MaeAgreementMain(driver);
+            firstRun.setStudyCacheDir(cacheDir);
+            firstRun.loadAnnotationFiles(exampleDir);
+            String first = firstRun.calcGlobalAgreementToString(global) + firstRun.calcLocalAgreementToString(local);
+            assertEquals("Expected same agreements as uncached computation, found: " + first, uncached, first);
+            assertTrue("Expected studies computed in the first run, found misses: " + firstRun.getStudyCache().getMissCount(),
+                    firstRun.getStudyCache().getMissCount() > 0);
+
+            MaeAgreementMain secondRun = new MaeAgreementMain(driver);
+            secondRun.setStudyCacheDir(cacheDir);
+            secondRun.setParallelism(4);
+            secondRun.loadAnnotationFiles(exampleDir);
+            String second = secondRun.calcGlobalAgreementToString(global) + secondRun.calcLocalAgreementToString(local);
+            secondRun.setParallelism(1);
+            assertEquals("Expected same agreements from cached studies, found: " + second, uncached, second);
+            assertEquals("Expected all studies from the cache, found misses: " + secondRun.getStudyCache().getMissCount(),
+                    0, secondRun.getStudyCache().getMissCount());
+            assertTrue("Expected studies from the cache, found hits: " + secondRun.getStudyCache().getHitCount(),
+                    secondRun.getStudyCache().getHitCount() > 0);
+        } finally {
+            deleteCacheDir(cacheDir);
+        }
+    }
+
+    private static void deleteCacheDir(File cacheDir) {
+        File[] entries = cacheDir.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                entry.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
     @Test
     public void testGlobalMultiPiAgreement() throws Exception {
         MappedSet<String, String> sample = new MappedSet<>();
@@ -0,0 +1,125 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.agreement.calculator.PairwiseAgreementMatrix;
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.CohenKappaAgreement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PairwiseAgreementMatrixTest {
+
+    private static final List<String> ANNOTATORS = Arrays.asList("a1", "a2", "a3", "a4");
+    private static final String[] CATEGORIES = {"A", "B", "C"};
+
+    private List<Object[]> randomItems(Random random, int itemCount, int outlier) {
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            Object[] item = new Object[ANNOTATORS.size()];
+            String truth = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            for (int annotator = 0; annotator < item.length; annotator++) {
+                int pick = random.nextInt(10);
+                if (pick == 0) {
+                    item[annotator] = null;
+                } else if (annotator == outlier || pick < 3) {
+                    item[annotator] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                } else {
+                    item[annotator] = truth;
+                }
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    public void canComputeCohenKappaOfEveryPairSameAsDkpro() throws Exception {
+        List<Object[]> items = randomItems(new Random(42), 200, 2);
+        PairwiseAgreementMatrix matrix = new PairwiseAgreementMatrix(ANNOTATORS);
+        for (Object[] item : items) {
+            matrix.addItem(item);
+        }
+
+        for (int i = 0; i < ANNOTATORS.size(); i++) {
+            assertEquals("Expected perfect self agreement", 1.0, matrix.getCohenKappa(i, i), 0.0);
+            for (int j = i + 1; j < ANNOTATORS.size(); j++) {
+                CodingAnnotationStudy study = new CodingAnnotationStudy(2);
+                for (Object[] item : items) {
+                    if (item[i] != null && item[j] != null) {
+                        study.addItem(item[i], item[j]);
+                    }
+                }
+                double expected = new CohenKappaAgreement(study).calculateAgreement();
+                assertEquals("Expected kappa of dkpro, found: " + matrix.getCohenKappa(i, j),
+                        expected, matrix.getCohenKappa(i, j), 1e-9);
+                assertEquals("Expected a symmetric matrix", matrix.getCohenKappa(i, j), matrix.getCohenKappa(j, i), 0.0);
+                assertEquals("Expected number of items coded by both, found: " + matrix.getItemCount(i, j),
+                        study.getItemCount(), matrix.getItemCount(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void canMergeMatricesOfDocuments() throws Exception {
+        Random random = new Random(7);
+        PairwiseAgreementMatrix whole = new PairwiseAgreementMatrix(ANNOTATORS);
+        PairwiseAgreementMatrix merged = new PairwiseAgreementMatrix(ANNOTATORS);
+        for (int document = 0; document < 5; document++) {
+            PairwiseAgreementMatrix matrix = new PairwiseAgreementMatrix(ANNOTATORS);
+            for (Object[] item : randomItems(random, 30, 1)) {
+                whole.addItem(item);
+                matrix.addItem(item);
+            }
+            merged.add(matrix);
+        }
+        for (int i = 0; i < ANNOTATORS.size(); i++) {
+            for (int j = 0; j < ANNOTATORS.size(); j++) {
+                assertEquals("Expected same kappa after merging", whole.getCohenKappa(i, j), merged.getCohenKappa(i, j), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void canFindOutlierAnnotator() throws Exception {
+        PairwiseAgreementMatrix matrix = new PairwiseAgreementMatrix(ANNOTATORS);
+        for (Object[] item : randomItems(new Random(1), 300, 3)) {
+            matrix.addItem(item);
+        }
+        int lowest = 0;
+        for (int annotator = 1; annotator < ANNOTATORS.size(); annotator++) {
+            if (matrix.getMeanCohenKappa(annotator) < matrix.getMeanCohenKappa(lowest)) {
+                lowest = annotator;
+            }
+        }
+        assertEquals("Expected the outlier to have the lowest mean kappa, found: " + ANNOTATORS.get(lowest), 3, lowest);
+    }
+}
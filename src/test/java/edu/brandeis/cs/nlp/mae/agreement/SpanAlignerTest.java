@@ -0,0 +1,198 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.AbstractDatabaseDrivenTest;
+import edu.brandeis.cs.nlp.mae.agreement.calculator.SpanAligner;
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.io.DTDLoader;
+import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
+import edu.brandeis.cs.nlp.mae.io.ParseSchema;
+import edu.brandeis.cs.nlp.mae.util.FileHandler;
+import edu.brandeis.cs.nlp.mae.util.StringInterner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpanAlignerTest extends AbstractDatabaseDrivenTest {
+
+    private ParseSchema schema;
+    private StringInterner interner;
+
+    @Before
+    public void setUp() throws Exception {
+        setupDriver();
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        URL sampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        new DTDLoader(driver).read(new File(sampleFileUrl.getPath()));
+        schema = new ParseSchema(driver);
+        interner = new StringInterner();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    private CompactAnnotation parse(File file) throws Exception {
+        MaeXMLParser parser = new MaeXMLParser(schema);
+        parser.readAnnotationFile(file);
+        return new CompactAnnotation(parser, interner);
+    }
+
+    private CompactAnnotation parse(String... nounSpans) throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<NounVerbTask>\n" +
+                "<TEXT><![CDATA[Mrs Miller wants the entire house repainted.]]></TEXT>\n<TAGS>\n");
+        for (int i = 0; i < nounSpans.length; i++) {
+            xml.append(String.format("<NOUN id=\"N%d\" spans=\"%s\" text=\"\" />\n", i, nounSpans[i]));
+        }
+        xml.append("</TAGS>\n</NounVerbTask>\n");
+        MaeXMLParser parser = new MaeXMLParser(schema);
+        parser.readAnnotationFile(xml.toString().getBytes("UTF-8"));
+        return new CompactAnnotation(parser, interner);
+    }
+
+    @Test
+    public void canListTagsInSpanOrder() throws Exception {
+        URL exampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        Set<String> tagTypeNames = new HashSet<>(Arrays.asList("NOUN", "VERB", "ADJ_ADV", "NAMED_ENTITY"));
+        for (File file : FileHandler.getAllXMLFilesIn(new File(exampleFileUrl.getPath()))) {
+            CompactAnnotation parse = parse(file);
+            List<Integer> expected = new ArrayList<>();
+            for (int tag = 0; tag < parse.getTagCount(); tag++) {
+                if (tagTypeNames.contains(parse.getTagTypeName(tag))) {
+                    expected.add(tag);
+                }
+            }
+            // stable, tags with the same spans stay in order of appearance
+            expected.sort((a, b) -> {
+                for (int p = 0; p < Math.min(parse.getSpanPairCount(a), parse.getSpanPairCount(b)); p++) {
+                    int c = Integer.compare(parse.getSpanPairStart(a, p), parse.getSpanPairStart(b, p));
+                    if (c == 0) {
+                        c = Integer.compare(parse.getSpanPairEnd(a, p), parse.getSpanPairEnd(b, p));
+                    }
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return Integer.compare(parse.getSpanPairCount(a), parse.getSpanPairCount(b));
+            });
+            List<Integer> found = new ArrayList<>();
+            for (int tag : parse.getTagsInSpanOrder(tagTypeNames)) {
+                found.add(tag);
+            }
+            assertEquals("Expected tags sorted by spans in " + file.getName() + ", found: " + found, expected, found);
+        }
+    }
+
+    @Test
+    public void canAlignSameAsLookingUpSpans() throws Exception {
+        URL exampleFileUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        List<File> files = FileHandler.getAllXMLFilesIn(new File(exampleFileUrl.getPath()));
+        Collections.sort(files);
+        CompactAnnotation[] parses = new CompactAnnotation[files.size()];
+        for (int i = 0; i < parses.length; i++) {
+            parses[i] = parse(files.get(i));
+        }
+        List<Set<String>> targets = Arrays.asList(
+                Collections.singleton("NOUN"), Collections.singleton("NAMED_ENTITY"),
+                new HashSet<>(Arrays.asList("NOUN", "VERB", "ADJ_ADV")));
+
+        for (Set<String> tagTypeNames : targets) {
+            // hits per span, by scanning every tag of every parse
+            Map<String, List<Integer>> expected = new TreeMap<>();
+            for (int a = 0; a < parses.length; a++) {
+                for (int tag = 0; tag < parses[a].getTagCount(); tag++) {
+                    if (tagTypeNames.contains(parses[a].getTagTypeName(tag))) {
+                        String span = Arrays.toString(parses[a].getSpans(tag));
+                        if (!expected.containsKey(span)) {
+                            expected.put(span, new ArrayList<>(Collections.nCopies(parses.length, 0)));
+                        }
+                        List<Integer> hits = expected.get(span);
+                        hits.set(a, hits.get(a) + 1);
+                    }
+                }
+            }
+
+            Map<String, List<Integer>> found = new TreeMap<>();
+            for (SpanAligner.AlignedUnit unit : SpanAligner.EXACT.align(parses, tagTypeNames)) {
+                String span = null;
+                List<Integer> hits = new ArrayList<>();
+                for (int a = 0; a < parses.length; a++) {
+                    hits.add(unit.getHitCount(a));
+                    if (unit.getHit(a) >= 0) {
+                        span = Arrays.toString(parses[a].getSpans(unit.getHit(a)));
+                    }
+                }
+                found.put(span, hits);
+            }
+            assertEquals("Expected same units as looking up spans of " + tagTypeNames + ", found: " + found,
+                    expected, found);
+        }
+    }
+
+    @Test
+    public void canAlignOverlappingSpans() throws Exception {
+        CompactAnnotation[] parses = {
+                parse("0~5", "21~34"),
+                parse("1~5", "28~34"),
+                parse("10~12"),
+                null
+        };
+        List<SpanAligner.AlignedUnit> exact = SpanAligner.EXACT.align(parses, Collections.singleton("NOUN"));
+        assertEquals("Expected a unit per distinct span, found: " + exact.size(), 5, exact.size());
+
+        List<SpanAligner.AlignedUnit> overlap = SpanAligner.overlap(0.0).align(parses, Collections.singleton("NOUN"));
+        assertEquals("Expected overlapping spans aligned, found: " + overlap.size(), 3, overlap.size());
+        SpanAligner.AlignedUnit first = overlap.get(0);
+        assertEquals("Expected the unit to start at 0, found: " + first.getStart(), 0, first.getStart());
+        assertEquals(1, first.getHitCount(0));
+        assertEquals(1, first.getHitCount(1));
+        assertEquals(0, first.getHitCount(2));
+        assertEquals(0, first.getHitCount(3));
+
+        // 4 of 5 characters are shared at the beginning, 6 of 13 at the end
+        List<SpanAligner.AlignedUnit> strict = SpanAligner.overlap(0.5).align(parses, Collections.singleton("NOUN"));
+        assertEquals("Expected only the close overlap aligned, found: " + strict.size(), 4, strict.size());
+    }
+
+    @Test
+    public void canKeepLongestOfSplitTags() throws Exception {
+        CompactAnnotation[] parses = {
+                parse("0~10"),
+                parse("0~3", "4~10")
+        };
+        List<SpanAligner.AlignedUnit> units = SpanAligner.overlap(0.0).align(parses, Collections.singleton("NOUN"));
+        assertEquals("Expected one unit, found: " + units.size(), 1, units.size());
+        assertEquals("Expected both split tags hit", 2, units.get(0).getHitCount(1));
+        assertEquals("Expected the longest tag to stand for the annotator", 1, units.get(0).getHit(1));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.agreement.io.DocumentUnits;
+import edu.brandeis.cs.nlp.mae.agreement.io.StudyCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class StudyCacheTest {
+
+    private File cacheDir;
+    private File annotationFile;
+    private String[] fileNames;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("mae-iaa-cache").toFile();
+        annotationFile = File.createTempFile("mae-study", ".xml");
+        Files.write(annotationFile.toPath(), "<?xml version=\"1.0\"?><Task><TEXT>abc</TEXT></Task>".getBytes("UTF-8"));
+        fileNames = new String[]{annotationFile.getAbsolutePath(), null};
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        new StudyCache(cacheDir, "").clear();
+        cacheDir.delete();
+        annotationFile.delete();
+    }
+
+    private DocumentUnits sampleUnits() {
+        DocumentUnits units = new DocumentUnits();
+        units.add(0, 3, 0, "NOUN");
+        units.add(1, 2, 1, null);
+        return units;
+    }
+
+    @Test
+    public void canPersistResultsAcrossInstances() throws Exception {
+        StudyCache cache = new StudyCache(cacheDir, "task");
+        assertNull(cache.get("doc", fileNames, "units"));
+        cache.put("doc", fileNames, "units", sampleUnits());
+        cache.flush();
+
+        DocumentUnits units = (DocumentUnits) new StudyCache(cacheDir, "task").get("doc", fileNames, "units");
+        assertNotNull("Expected units read from disk, found: null", units);
+        assertEquals("Expected 2 units, found: " + units.size(), 2, units.size());
+        assertEquals("Expected category of a unit, found: " + units.getCategory(0), "NOUN", units.getCategory(0));
+        assertNull("Expected null category, found: " + units.getCategory(1), units.getCategory(1));
+    }
+
+    @Test
+    public void canKeepResultsOfTouchedFile() throws Exception {
+        StudyCache cache = new StudyCache(cacheDir, "task");
+        cache.put("doc", fileNames, "units", sampleUnits());
+        cache.flush();
+
+        annotationFile.setLastModified(annotationFile.lastModified() - 60000);
+        assertNotNull("Expected units of a file with same contents, found: null",
+                new StudyCache(cacheDir, "task").get("doc", fileNames, "units"));
+    }
+
+    @Test
+    public void canInvalidateResultsOfChangedFile() throws Exception {
+        StudyCache cache = new StudyCache(cacheDir, "task");
+        cache.put("doc", fileNames, "units", sampleUnits());
+        cache.flush();
+
+        Files.write(annotationFile.toPath(), "<?xml version=\"1.0\"?><Task><TEXT>abd</TEXT></Task>".getBytes("UTF-8"));
+        annotationFile.setLastModified(annotationFile.lastModified() + 60000);
+        assertNull("Expected no units of a changed file", cache.get("doc", fileNames, "units"));
+        assertNull("Expected no units of a changed file", new StudyCache(cacheDir, "task").get("doc", fileNames, "units"));
+    }
+
+    @Test
+    public void canInvalidateResultsOfOtherSchema() throws Exception {
+        StudyCache cache = new StudyCache(cacheDir, "task");
+        cache.put("doc", fileNames, "units", sampleUnits());
+        cache.flush();
+
+        assertNull("Expected no units under a different schema",
+                new StudyCache(cacheDir, "task2").get("doc", fileNames, "units"));
+        assertNull("Expected no units with different annotators",
+                new StudyCache(cacheDir, "task").get("doc", new String[]{null, annotationFile.getAbsolutePath()}, "units"));
+    }
+
+    @Test
+    public void canDropLeastRecentlyUsedEntries() throws Exception {
+        StudyCache cache = new StudyCache(cacheDir, "task", 1);
+        cache.put("doc1", fileNames, "units", sampleUnits());
+        cache.put("doc2", fileNames, "units", sampleUnits());
+        assertEquals("Expected 1 entry in memory, found: " + cache.getLoadedEntryCount(),
+                1, cache.getLoadedEntryCount());
+
+        // dropped entry is written out without a flush
+        assertNotNull("Expected units of a dropped entry read from disk, found: null",
+                new StudyCache(cacheDir, "task").get("doc1", fileNames, "units"));
+        assertNotNull("Expected units of a dropped entry read back, found: null",
+                cache.get("doc1", fileNames, "units"));
+        assertEquals("Expected 1 entry in memory, found: " + cache.getLoadedEntryCount(),
+                1, cache.getLoadedEntryCount());
+    }
+}
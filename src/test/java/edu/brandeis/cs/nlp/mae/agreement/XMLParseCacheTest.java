@@ -0,0 +1,137 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.agreement;
+
+import edu.brandeis.cs.nlp.mae.AbstractDatabaseDrivenTest;
+import edu.brandeis.cs.nlp.mae.agreement.io.AnnotationFilesIndexer;
+import edu.brandeis.cs.nlp.mae.agreement.io.CompactAnnotation;
+import edu.brandeis.cs.nlp.mae.agreement.io.XMLParseCache;
+import edu.brandeis.cs.nlp.mae.io.DTDLoader;
+import edu.brandeis.cs.nlp.mae.io.MaeXMLParser;
+import edu.brandeis.cs.nlp.mae.io.ParsedAtt;
+import edu.brandeis.cs.nlp.mae.io.ParsedTag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class XMLParseCacheTest extends AbstractDatabaseDrivenTest {
+
+    private AnnotationFilesIndexer indexer;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        setupDriver();
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+
+        URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        indexer = new AnnotationFilesIndexer();
+        indexer.indexAnnotations(new File(exampleUrl.getPath()));
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+        driver.destroy();
+    }
+
+    @Test
+    public void canParseInParallelLikeSequentialParse() throws Exception {
+        XMLParseCache cache = new XMLParseCache(driver, indexer, pool, 8, 2);
+        for (String docName : indexer.getDocumentNames()) {
+            CompactAnnotation[] parses = cache.getParses(docName);
+            String[] fileNames = indexer.getAnnotationsOfDocument(docName);
+            for (int i = 0; i < fileNames.length; i++) {
+                if (fileNames[i] == null) {
+                    continue;
+                }
+                MaeXMLParser sequential = new MaeXMLParser(driver);
+                sequential.readAnnotationFile(new File(fileNames[i]));
+                List<ParsedTag> tags = sequential.getParsedTags();
+                assertEquals("Expected same number of tags as sequential parse, found: " + parses[i].getTagCount(),
+                        tags.size(), parses[i].getTagCount());
+                for (int tag = 0; tag < tags.size(); tag++) {
+                    ParsedTag parsedTag = tags.get(tag);
+                    assertEquals("Expected same tag type as sequential parse, found: " + parses[i].getTagTypeName(tag),
+                            parsedTag.getTagTypeName(), parses[i].getTagTypeName(tag));
+                    if (!parsedTag.isLink()) {
+                        assertArrayEquals(parsedTag.getSpans(), parses[i].getSpans(tag));
+                    }
+                    List<ParsedAtt> atts = sequential.getParsedAttsOfTid(parsedTag.getTid());
+                    assertEquals("Expected same number of attributes as sequential parse, found: " + parses[i].getAttCount(tag),
+                            atts.size(), parses[i].getAttCount(tag));
+                    for (int att = 0; att < atts.size(); att++) {
+                        assertEquals(atts.get(att).getAttTypeName(), parses[i].getAttTypeName(tag, att));
+                        assertEquals(atts.get(att).getAttValue(), parses[i].getAttValue(tag, att));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void canLookUpAttributesByTid() throws Exception {
+        MaeXMLParser parse = new MaeXMLParser(driver);
+        parse.readAnnotationFile(new File(indexer.getAnnotationsOfDocument("doc1")[indexer.getAnnotatorIndex("a1")]));
+        List<ParsedAtt> atts = parse.getParsedAttsOfTid("NE0");
+        assertEquals("Expected 1 attribute of NE0, found: " + atts.size(), 1, atts.size());
+        assertEquals("Expected type=person, found: " + atts.get(0).getAttValue(), "person", atts.get(0).getAttValue());
+        int total = 0;
+        for (ParsedTag tag : parse.getParsedTags()) {
+            total += parse.getParsedAttsOfTid(tag.getTid()).size();
+        }
+        assertEquals("Expected all attributes grouped by tids, found: " + total, parse.getParsedAtts().size(), total);
+    }
+
+    @Test
+    public void canPrefetchAndEvict() throws Exception {
+        XMLParseCache cache = new XMLParseCache(driver, indexer, pool, 2, 1);
+        List<String> docNames = indexer.getDocumentNames();
+        for (String docName : docNames) {
+            cache.getParses(docName);
+        }
+        // only the first document is a miss, the rest are prefetched by their predecessors
+        assertEquals("Expected 1 miss, found: " + cache.getMissCount(), 1, cache.getMissCount());
+        assertEquals("Expected 3 hits, found: " + cache.getHitCount(), 3, cache.getHitCount());
+        assertEquals("Expected 2 evictions, found: " + cache.getEvictionCount(), 2, cache.getEvictionCount());
+        assertTrue("Expected at most 2 cached documents, found: " + cache.getCachedDocumentCount(),
+                cache.getCachedDocumentCount() <= 2);
+
+        cache.getParses(docNames.get(0));
+        assertEquals("Expected evicted document to be a miss, found: " + cache.getMissCount(), 2, cache.getMissCount());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import edu.brandeis.cs.nlp.mae.model.ArgumentType;
+import edu.brandeis.cs.nlp.mae.model.AttributeType;
+import edu.brandeis.cs.nlp.mae.model.ExtentTag;
+import edu.brandeis.cs.nlp.mae.model.LinkTag;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentDriverAccessTest {
+
+    private static final String DB_FILE = "test-concurrent.db";
+    private static final int READERS = 4;
+    private static final int READS = 200;
+    private static final int WRITES = 100;
+
+    private LocalSqliteDriverImpl driver;
+    private TagType noun;
+    private TagType verb;
+    private TagType link;
+    private AttributeType nounType;
+    private AttributeType verbTense;
+    private ArgumentType linkFrom;
+    private List<ExtentTag> nouns;
+    private List<LinkTag> links;
+
+    @Before
+    public void setUp() throws Exception {
+        driver = new LocalSqliteDriverImpl(DB_FILE);
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        noun = driver.createTagType("NOUN", "N", false);
+        verb = driver.createTagType("VERB", "V", false);
+        link = driver.createTagType("LINK", "L", true);
+        nounType = driver.createAttributeType(noun, "type");
+        verbTense = driver.createAttributeType(verb, "tense");
+        linkFrom = driver.createArgumentType(link, "from");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+    }
+
+    private void createNouns() throws Exception {
+        nouns = new ArrayList<>();
+        links = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ExtentTag nounTag = driver.createExtentTag(String.format("N%02d", i), noun, "jenny", i * 10, i * 10 + 1, i * 10 + 2);
+            driver.addAttribute(nounTag, nounType, "person");
+            nouns.add(nounTag);
+            LinkTag linkTag = driver.createLinkTag(String.format("L%02d", i), link);
+            driver.addArgument(linkTag, linkFrom, nounTag);
+            links.add(linkTag);
+        }
+    }
+
+    @Test
+    public void canReadWhileWriting() throws Exception {
+        createNouns();
+        readWhileWriting();
+    }
+
+    @Test
+    public void canReadWhileWritingInSpanStorageMode() throws Exception {
+        driver.setSpanStorageMode(true);
+        createNouns();
+        readWhileWriting();
+    }
+
+    private void readWhileWriting() throws Exception {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            final int seed = r;
+            Thread reader = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < READS; i++) {
+                        ExtentTag expected = nouns.get((seed + i) % nouns.size());
+                        int location = expected.getSpansAsList().get(1);
+                        List<ExtentTag> at = driver.getTagsOfTypeAt(noun, location);
+                        if (at.size() != 1 || !at.get(0).getId().equals(expected.getId())) {
+                            throw new AssertionError("Expected only " + expected.getId() + " at " + location + ", found: " + at);
+                        }
+                        if (!driver.getTagsAt(location).contains(expected)) {
+                            throw new AssertionError("Expected " + expected.getId() + " among tags at " + location);
+                        }
+                        if (driver.getTagsIntersecting(0, 100, noun).size() != 10) {
+                            throw new AssertionError("Expected 10 nouns in the first 100 chars");
+                        }
+                        if (!driver.getTagTypeByName("NOUN").equals(noun)) {
+                            throw new AssertionError("Expected NOUN type is found by name");
+                        }
+                        Map<String, String> atts = driver.getAttributeMapOfTag(driver.getTagByTid(expected.getId()));
+                        if (!atts.containsKey("type")) {
+                            throw new AssertionError("Expected type attribute of " + expected.getId() + ", found: " + atts);
+                        }
+                        LinkTag linkTag = (LinkTag) driver.getTagByTid(links.get((seed + i) % links.size()).getId());
+                        List<ExtentTag> args = driver.getArgumentTags(linkTag);
+                        if (args.size() != 1 || !args.get(0).getId().equals(expected.getId())) {
+                            throw new AssertionError("Expected only " + expected.getId() + " as argument, found: " + args);
+                        }
+                        if (!driver.getAnchorsByTid(linkTag.getId()).equals(expected.getSpansAsList())) {
+                            throw new AssertionError("Expected anchors of " + linkTag.getId() + " are those of " + expected.getId());
+                        }
+                        if (i % 20 == 0) {
+                            int count = 0;
+                            try (TagCursor<ExtentTag> cursor = driver.getExtentTagCursorOfType(noun)) {
+                                while (cursor.hasNext()) {
+                                    if (!driver.getAttributeMapOfTag(cursor.next()).containsKey("type")) {
+                                        throw new AssertionError("Expected type attribute of nouns from a cursor");
+                                    }
+                                    count++;
+                                }
+                            }
+                            if (count != nouns.size()) {
+                                throw new AssertionError("Expected " + nouns.size() + " nouns from a cursor, found: " + count);
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+
+        start.countDown();
+        for (int i = 0; i < WRITES; i++) {
+            // verbs are put past the nouns, not to change what readers expect
+            int offset = 1000 + i * 10;
+            ExtentTag verbTag = driver.createExtentTag(String.format("V%03d", i), verb, "loves", offset, offset + 1);
+            driver.addAttribute(verbTag, verbTense, "present");
+            driver.updateAttribute(verbTag, verbTense, "past");
+            driver.updateAttribute(nouns.get(i % nouns.size()), nounType, i % 2 == 0 ? "place" : "person");
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(
+                "Expected no errors from concurrent readers, found: " + errors,
+                errors.isEmpty());
+        assertEquals(
+                "Expected all verbs are written, found: " + driver.getAllExtentTagsOfType(verb).size(),
+                WRITES, driver.getAllExtentTagsOfType(verb).size());
+        for (ExtentTag verbTag : driver.getAllExtentTagsOfType(verb)) {
+            assertEquals("Expected updated tense of " + verbTag.getId() + ", found: " + driver.getAttributeMapOfTag(verbTag),
+                    "past", driver.getAttributeMapOfTag(verbTag).get("tense"));
+        }
+    }
+}
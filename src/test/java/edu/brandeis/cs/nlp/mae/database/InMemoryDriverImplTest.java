@@ -0,0 +1,156 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import edu.brandeis.cs.nlp.mae.MaeStrings;
+import edu.brandeis.cs.nlp.mae.model.ExtentTag;
+import edu.brandeis.cs.nlp.mae.model.LinkTag;
+import edu.brandeis.cs.nlp.mae.model.Tag;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the driver test suite against the in-memory driver.
+ */
+public class InMemoryDriverImplTest extends LocalSqliteDriverImplTest {
+
+    @Override
+    protected MaeDriverI createDriver() throws Exception {
+        return new InMemoryDriverImpl();
+    }
+
+    @Override
+    protected long countCharIndexRows() throws Exception {
+        // there's no char index in memory
+        return 0;
+    }
+
+    @Test
+    public void canLookUpLinksByArguments() throws Exception {
+        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag vTag2 = driver.createExtentTag("V02", verb, "hates", 17, 18, 19, 20, 21);
+        LinkTag link = driver.createLinkTag("A01", semanticRole);
+        driver.addArgument(link, agent, nTag);
+        driver.addArgument(link, pred, vTag);
+
+        Set<LinkTag> links = driver.getLinksHasArgumentTag(nTag);
+        assertTrue(
+                "Expected A01 has N01 as an argument, found: " + links,
+                links.size() == 1 && links.contains(link));
+
+        driver.UpdateArgument(link, pred, vTag2);
+        assertEquals(
+                "Expected A01 no longer has V01 as an argument, found: " + driver.getLinksHasArgumentTag(vTag),
+                0, driver.getLinksHasArgumentTag(vTag).size());
+        assertEquals(
+                "Expected A01 spans over its new predicate, found: " + driver.getAnchorsByTid("A01"),
+                10, driver.getAnchorsByTid("A01").size());
+
+        driver.deleteTag(link);
+        assertEquals(
+                "Expected links of N01 are gone with the link, found: " + driver.getLinksHasArgumentTag(nTag),
+                0, driver.getLinksHasArgumentTag(nTag).size());
+    }
+
+    @Test
+    public void canShareSchemaAcrossDocuments() throws Exception {
+        InMemoryDriverImpl other = new InMemoryDriverImpl((InMemoryDriverImpl) driver);
+        other.setAnnotationFileName("OTHER_SAMPLE");
+        assertSame(
+                "Expected both documents use the same tag type object",
+                driver.getTagTypeByName("NOUN"), other.getTagTypeByName("NOUN"));
+
+        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag otherTag = other.createExtentTag("N01", noun, "jim", 20,21,22);
+        assertEquals(
+                "Expected only the first N01 at 5, found: " + driver.getTagsAt(5),
+                nTag, driver.getTagsAt(5).get(0));
+        assertEquals(
+                "Expected tags of one document are not in the other, found: " + other.getTagsAt(5),
+                0, other.getTagsAt(5).size());
+        assertEquals(
+                "Expected 1 noun in the other document, found: " + other.getAllExtentTagsOfType(noun),
+                otherTag, other.getAllExtentTagsOfType(noun).get(0));
+
+        other.createAttributeType(noun, "case");
+        assertEquals(
+                "Expected schema change is seen from both documents, found: " + driver.getAttributeTypesOfTagType(noun),
+                1, driver.getAttributeTypesOfTagType(noun).size());
+
+        driver.destroy();
+        assertEquals(
+                "Expected schema is kept after the first document is closed, found: " + other.getAllTagTypes(),
+                3, other.getAllTagTypes().size());
+        assertEquals(
+                "Expected tags are kept after the first document is closed, found: " + other.getTagsAt(20),
+                otherTag, other.getTagsAt(20).get(0));
+    }
+
+    @Test
+    public void canReadAnnotationSameAsSqlite() throws Exception {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        File dtd = new File(loader.getResource("iaa_example/iaaSample.dtd").getPath());
+        File xml = new File(loader.getResource("iaa_example/doc1_a1.xml").getPath());
+        driver.readTask(dtd);
+        driver.readAnnotation(xml);
+
+        LocalSqliteDriverImpl sqlite = new LocalSqliteDriverImpl(MaeStrings.TEST_DB_FILE);
+        try {
+            sqlite.readTask(dtd);
+            sqlite.readAnnotation(xml);
+            assertEquals(
+                    "Expected same primary text, found: " + driver.getPrimaryText(),
+                    sqlite.getPrimaryText(), driver.getPrimaryText());
+            for (TagType type : sqlite.getAllTagTypes()) {
+                TagType inMemory = driver.getTagTypeByName(type.getName());
+                StringBuilder expected = new StringBuilder();
+                StringBuilder found = new StringBuilder();
+                for (Tag tag : sqlite.getAllTagsOfType(type)) {
+                    expected.append(tag.toXmlString()).append('\n');
+                }
+                for (Tag tag : driver.getAllTagsOfType(inMemory)) {
+                    found.append(tag.toXmlString()).append('\n');
+                }
+                assertEquals("Expected same " + type.getName() + " tags, found: " + found,
+                        expected.toString(), found.toString());
+            }
+            for (int location = 0; location < sqlite.getPrimaryText().length(); location++) {
+                assertEquals("Expected same tags at " + location + ", found: " + driver.getTagsAt(location),
+                        new TreeSet<>(sqlite.getTagsAt(location)), new TreeSet<>(driver.getTagsAt(location)));
+            }
+        } finally {
+            sqlite.destroy();
+        }
+    }
+}
@@ -26,6 +26,7 @@ package edu.brandeis.cs.nlp.mae.database;
 
 import edu.brandeis.cs.nlp.mae.MaeStrings;
 import edu.brandeis.cs.nlp.mae.model.*;
+import edu.brandeis.cs.nlp.mae.util.MappedList;
 import edu.brandeis.cs.nlp.mae.util.MappedSet;
 import edu.brandeis.cs.nlp.mae.util.SpanHandler;
 import org.junit.After;
@@ -35,6 +36,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -43,7 +45,7 @@ import static org.junit.Assert.*;
  */
 public class LocalSqliteDriverImplTest {
 
-    private LocalSqliteDriverImpl driver;
+    protected MaeDriverI driver;
 
     TagType noun;
     TagType verb;
@@ -52,9 +54,23 @@ public class LocalSqliteDriverImplTest {
     ArgumentType agent;
 
 
+    /**
+     * Creates a driver to test, other driver implementations can run this suite by overriding it.
+     */
+    protected MaeDriverI createDriver() throws Exception {
+        return new LocalSqliteDriverImpl(MaeStrings.TEST_DB_FILE);
+    }
+
+    /**
+     * Returns the number of char index rows stored by the driver.
+     */
+    protected long countCharIndexRows() throws Exception {
+        return ((LocalSqliteDriverImpl) driver).charIndexDao.countOf();
+    }
+
     @Before
     public void setUp() throws Exception {
-        driver = new LocalSqliteDriverImpl(MaeStrings.TEST_DB_FILE);
+        driver = createDriver();
         driver.setAnnotationFileName("TEST_SAMPLE");
 
         noun = driver.createTagType("NOUN", "N", false);
@@ -244,6 +260,53 @@ public class LocalSqliteDriverImplTest {
 
     }
 
+    @Test
+    public void canShareDBAcrossDocuments() throws Exception {
+        driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        driver.createExtentTag("N02", noun, null, null);
+
+        MaeDriverI other = driver.createDocumentDriver();
+        try {
+            other.setAnnotationFileName("TEST_SAMPLE_2");
+            // same tid in another document
+            other.createExtentTag("N01", noun, "jen", 5,6,7);
+            other.createExtentTag("V01", verb, "loves", 11,12,13,14,15);
+            assertTrue(
+                    "Expected documents of a task to share a DB",
+                    driver.isSharingStoreWith(other));
+            assertEquals(
+                    "Expected N01 of the first document, found: " + driver.getTagByTid("N01"),
+                    "jenny", ((ExtentTag) driver.getTagByTid("N01")).getText());
+            assertEquals(
+                    "Expected N01 of the second document, found: " + other.getTagByTid("N01"),
+                    "jen", ((ExtentTag) other.getTagByTid("N01")).getText());
+            assertEquals(
+                    "Expected only tags of the document at 5, found: " + driver.getTagsIn(new int[]{5}),
+                    1, driver.getTagsIn(new int[]{5}).size());
+
+            List<ExtentTag> retrievedTags = driver.getTagsOfAllDocumentsIn(new int[]{5, 6, 11});
+            assertEquals(
+                    "Expected both N01 and V01 from all documents, found: " + retrievedTags,
+                    3, retrievedTags.size());
+            retrievedTags = other.getTagsOfTypeOfAllDocumentsIn(noun, new int[]{5, 6, 11});
+            assertEquals(
+                    "Expected both N01 from all documents, found: " + retrievedTags,
+                    2, retrievedTags.size());
+            retrievedTags = other.getAllNCTagsOfTypeOfAllDocuments(noun);
+            assertEquals(
+                    "Expected N02 from the first document, found: " + retrievedTags,
+                    1, retrievedTags.size());
+        } finally {
+            other.destroy();
+        }
+        assertEquals(
+                "Expected tags of the first document are kept, found: " + driver.getAllExtentTagsOfAllTypes(false),
+                2, driver.getAllExtentTagsOfAllTypes(false).size());
+        assertEquals(
+                "Expected tags of the closed document are gone, found: " + driver.getTagsOfAllDocumentsIn(new int[]{5, 11}),
+                1, driver.getTagsOfAllDocumentsIn(new int[]{5, 11}).size());
+    }
+
     @Test
     public void canUpdateAttribute() throws Exception {
         ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
@@ -301,6 +364,34 @@ public class LocalSqliteDriverImplTest {
 
     }
 
+    @Test
+    public void canRetrieveLinkTagsByArgument() throws Exception {
+        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag nTag2 = driver.createExtentTag("N02", noun, "tom", 17,18,19);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+
+        LinkTag link = driver.createLinkTag("A01", semanticRole);
+        driver.addArgument(link, agent, nTag);
+        driver.addArgument(link, pred, vTag);
+        LinkTag link2 = driver.createLinkTag("A02", semanticRole);
+        driver.addArgument(link2, agent, nTag2);
+        driver.addArgument(link2, pred, vTag);
+
+        Set<LinkTag> links = driver.getLinksHasArgumentTag(nTag);
+        assertTrue(
+                "Expected only A01 has N01 as an argument, found: " + links,
+                links.size() == 1 && links.contains(link));
+        links = driver.getLinksHasArgumentTag(vTag);
+        assertEquals(
+                "Expected 2 links have V01 as an argument, found: " + links,
+                2, links.size());
+        links = driver.getLinksHasArgumentTag(nTag2);
+        assertTrue(
+                "Expected only A02 has N02 as an argument, found: " + links,
+                links.size() == 1 && links.contains(link2));
+
+    }
+
     @Test
     public void canOnlyDropTagTables() throws Exception {
         ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
@@ -336,4 +427,128 @@ public class LocalSqliteDriverImplTest {
         // cannot continue test on atts/args, because of lack of methods in driver to get atts/args without referencing tag
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void canRetrieveTagsIntersectingRange() throws Exception {
+        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag nTag2 = driver.createExtentTag("N02", noun, "monty", 17, 18, 19, 20, 21);
+
+        List<ExtentTag> retrievedTags = driver.getTagsIntersecting(9, 12);
+        assertTrue(
+                "Expected N01 and V01 overlapping [9, 12), found: " + retrievedTags,
+                retrievedTags.size() == 2 && retrievedTags.contains(nTag) && retrievedTags.contains(vTag));
+
+        retrievedTags = driver.getTagsIntersecting(0, 30, noun);
+        assertTrue(
+                "Expected only nouns when type is given, found: " + retrievedTags,
+                retrievedTags.size() == 2 && retrievedTags.contains(nTag) && retrievedTags.contains(nTag2));
+
+        retrievedTags = driver.getTagsIntersecting(10, 11);
+        assertEquals(
+                "Expected nothing in a gap, found: " + retrievedTags,
+                0, retrievedTags.size());
+
+        MappedSet<TagType, ExtentTag> byTypes = driver.getTagsByTypesBetween(0, 30);
+        assertTrue(
+                "Expected tags grouped by types, found: " + byTypes.keyList(),
+                byTypes.get(noun).size() == 2 && byTypes.get(verb).size() == 1);
+    }
+
+    @Test
+    public void canRetrieveTagsInDiscontiguousLocations() throws Exception {
+        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag nTag2 = driver.createExtentTag("N02", noun, "monty", 17, 18, 19, 20, 21);
+
+        List<ExtentTag> retrievedTags = driver.getTagsIn(new int[]{21, 6, 5, 10});
+        assertEquals(
+                "Expected N01 and N02 in tid order, found: " + retrievedTags,
+                "[N01 (jenny), N02 (monty)]", retrievedTags.toString());
+
+        MappedSet<TagType, ExtentTag> byTypes = driver.getTagsByTypesIn(12, 20, 3);
+        assertTrue(
+                "Expected V01 and N02 grouped by types, found: " + byTypes.keyList(),
+                byTypes.size() == 2 && byTypes.get(verb).contains(vTag) && byTypes.get(noun).contains(nTag2));
+
+        retrievedTags = driver.getTagsOfTypeIn(noun, new int[]{7, 13});
+        assertTrue(
+                "Expected only N01 as a noun, found: " + retrievedTags,
+                retrievedTags.size() == 1 && retrievedTags.contains(nTag));
+    }
+
+    @Test
+    public void canFetchSchemaAndTagsByPlans() throws Exception {
+        AttributeType proper = driver.createAttributeType(noun, "proper");
+        AttributeType tense = driver.createAttributeType(verb, "tense");
+        driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        driver.createExtentTag("N02", noun, null, new int[0]);
+        driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+
+        MappedList<TagType, AttributeType> schema = driver.getTagTypesWithAttributeTypes();
+        assertEquals(
+                "Expected all 3 tag types in schema, found: " + schema.keyList(),
+                3, schema.size());
+        assertTrue(
+                "Expected attribute types are grouped by tag types, found: " + schema.get(noun) + schema.get(verb),
+                schema.get(noun).contains(proper) && schema.get(verb).contains(tense) && schema.get(semanticRole).isEmpty());
+
+        MappedList<TagType, ExtentTag> tags = driver.getExtentTagsWithSpans(true);
+        assertEquals(
+                "Expected only 1 consuming noun, found: " + tags.get(noun),
+                1, tags.get(noun).size());
+        assertEquals(
+                "Expected spans are fetched together, found: " + tags.get(verb),
+                "11~16", tags.getAsList(verb).get(0).getSpansAsString());
+        assertEquals(
+                "Expected 2 nouns including NC, found: " + driver.getExtentTagsWithSpans(false).get(noun),
+                2, driver.getExtentTagsWithSpans(false).get(noun).size());
+    }
+
+    @Test
+    public void canLookUpTagsInSpanStorageMode() throws Exception {
+        driver.setSpanStorageMode(true);
+        ExtentTag nTag = driver.createExtentTag("N01", noun, "jenny", 5,6,7,8,9);
+        ExtentTag vTag = driver.createExtentTag("V01", verb, "loves", 11, 12, 13, 14, 15);
+        ExtentTag ncTag = driver.createExtentTag("N02", noun, null, new int[0]);
+
+        assertEquals(
+                "Expected no char index is stored in span storage mode, found: " + countCharIndexRows(),
+                0, countCharIndexRows());
+        assertEquals(
+                "Expected spans to be read from span column, found: " + nTag.getSpansAsString(),
+                "5~10", nTag.getSpansAsString());
+
+        List<ExtentTag> retrievedTags = driver.getTagsAt(7);
+        assertTrue(
+                "Expected N01 is found at 7, found: " + retrievedTags,
+                retrievedTags.size() == 1 && retrievedTags.contains(nTag));
+
+        retrievedTags = driver.getTagsOfTypeBetween(verb, 0, 12);
+        assertTrue(
+                "Expected only V01 is found as a verb in [0, 12), found: " + retrievedTags,
+                retrievedTags.size() == 1 && retrievedTags.contains(vTag));
+
+        retrievedTags = driver.getAllNCTagsOfType(noun);
+        assertTrue(
+                "Expected N02 is the only NC noun, found: " + retrievedTags,
+                retrievedTags.size() == 1 && retrievedTags.contains(ncTag));
+
+        assertEquals(
+                "Expected 10 anchors in total, found: " + driver.getAllAnchors().size(),
+                10, driver.getAllAnchors().size());
+
+        driver.updateTagSpans(nTag, new int[]{20, 21});
+        assertEquals(
+                "Expected N01 is moved away from 7, found: " + driver.getTagsAt(7),
+                0, driver.getTagsAt(7).size());
+        assertEquals(
+                "Expected N01 is moved to 20, found: " + driver.getTagsAt(20),
+                "20~22", driver.getTagsAt(20).get(0).getSpansAsString());
+
+        driver.deleteTag(vTag);
+        assertEquals(
+                "Expected V01 is deleted from the index, found: " + driver.getTagsAt(12),
+                0, driver.getTagsAt(12).size());
+    }
+}
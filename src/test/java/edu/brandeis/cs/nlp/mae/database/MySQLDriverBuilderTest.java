@@ -0,0 +1,54 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MySQLDriverBuilderTest {
+
+    @Test
+    public void canAddPrepStmtCacheToUrl() throws Exception {
+        String url = MySQLDriverBuilder.withPrepStmtCache("jdbc:mysql://localhost:3306/maedb");
+        assertTrue(
+                "Expected options start a query string, found: " + url,
+                url.startsWith("jdbc:mysql://localhost:3306/maedb?useServerPrepStmts=true&cachePrepStmts=true"));
+
+        url = MySQLDriverBuilder.withPrepStmtCache("jdbc:mysql://localhost:3306/maedb?useSSL=false");
+        assertTrue(
+                "Expected options are appended to existing ones, found: " + url,
+                url.startsWith("jdbc:mysql://localhost:3306/maedb?useSSL=false&useServerPrepStmts=true"));
+    }
+
+    @Test
+    public void canKeepUserPrepStmtSettings() throws Exception {
+        String url = "jdbc:mysql://localhost:3306/maedb?useServerPrepStmts=false";
+        assertEquals(
+                "Expected url with its own prepared statement setting is left alone, found: "
+                        + MySQLDriverBuilder.withPrepStmtCache(url),
+                url, MySQLDriverBuilder.withPrepStmtCache(url));
+    }
+}
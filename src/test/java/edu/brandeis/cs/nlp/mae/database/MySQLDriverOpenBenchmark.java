@@ -0,0 +1,105 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import edu.brandeis.cs.nlp.mae.model.TagType;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Times opening documents on the MySQL backend the way the main controller
+ * does, a new driver per document, with a single connection per driver vs.
+ * a shared connection pool with prepared statement cache. Each document
+ * reads the IAA sample task and an annotation, then looks up tags over the
+ * text, which hits the prepared queries.
+ * Not a unit test; needs a MySQL server configured in application.properties.
+ * Run {@link #main(String[])} from the test classpath, optionally with the
+ * number of documents as an argument.
+ */
+public class MySQLDriverOpenBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        Properties properties = new Properties();
+        try (InputStream in = MySQLDriverOpenBenchmark.class.getClassLoader().getResourceAsStream("application.properties")) {
+            properties.load(in);
+        }
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example/iaaSample.dtd");
+        File dtd = new File(dtdUrl.getPath());
+        URL exampleUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        File[] samples = new File(exampleUrl.getPath()).listFiles((dir, name) -> name.endsWith(".xml"));
+        Arrays.sort(samples);
+
+        Properties single = new Properties();
+        single.putAll(properties);
+        single.setProperty(MySQLDriverBuilder.POOL_ENABLED, "false");
+        single.setProperty(MySQLDriverBuilder.PREP_STMT_CACHE, "false");
+        Properties pooled = new Properties();
+        pooled.putAll(properties);
+        pooled.setProperty(MySQLDriverBuilder.POOL_ENABLED, "true");
+        pooled.setProperty(MySQLDriverBuilder.PREP_STMT_CACHE, "true");
+
+        // warm up class loading and the server
+        openDocuments(single, dtd, samples, 2);
+        openDocuments(pooled, dtd, samples, 2);
+        MySQLDriverBuilder.closeSharedPools();
+
+        long singleMillis = openDocuments(single, dtd, samples, documents);
+        long pooledMillis = openDocuments(pooled, dtd, samples, documents);
+        MySQLDriverBuilder.closeSharedPools();
+
+        System.out.println(String.format("%d documents", documents));
+        System.out.println(String.format("connection per driver: %,d ms (%.1f ms/document)",
+                singleMillis, (double) singleMillis / documents));
+        System.out.println(String.format("shared pool:           %,d ms (%.1f ms/document)",
+                pooledMillis, (double) pooledMillis / documents));
+    }
+
+    private static long openDocuments(Properties properties, File dtd, File[] samples, int documents) throws Exception {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < documents; i++) {
+            MaeDriverI driver = MySQLDriverBuilder.buildDriver(properties);
+            try {
+                driver.readTask(dtd);
+                driver.readAnnotation(samples[i % samples.length]);
+                for (TagType type : driver.getExtentTagTypes()) {
+                    driver.getTagTypeByName(type.getName());
+                }
+                int length = driver.getPrimaryText().length();
+                for (int location = 0; location < length; location += 10) {
+                    driver.getTagsAt(location);
+                }
+            } finally {
+                driver.destroy();
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
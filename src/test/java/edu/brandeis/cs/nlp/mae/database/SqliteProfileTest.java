@@ -0,0 +1,149 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.database;
+
+import com.j256.ormlite.dao.GenericRawResults;
+import edu.brandeis.cs.nlp.mae.model.DBSchema;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class SqliteProfileTest {
+
+    private static final String DB_FILE = "test-profile.db";
+    private static final String SNAPSHOT_FILE = "test-profile-snapshot.db";
+
+    private LocalSqliteDriverImpl driver;
+
+    @After
+    public void tearDown() throws Exception {
+        if (driver != null) {
+            driver.destroy();
+        }
+        new File(SNAPSHOT_FILE).delete();
+    }
+
+    private String queryPragma(String pragma) throws Exception {
+        GenericRawResults<String[]> results = driver.taskDao.queryRaw("PRAGMA " + pragma);
+        try {
+            return results.getFirstResult()[0];
+        } finally {
+            results.close();
+        }
+    }
+
+    @Test
+    public void canReadProfileFromProperties() throws Exception {
+        Properties properties = new Properties();
+        assertEquals(
+                "Expected default profile when not set, found: " + SqliteProfile.fromProperties(properties),
+                SqliteProfile.DEFAULT, SqliteProfile.fromProperties(properties));
+
+        properties.setProperty(SqliteProfile.PROPERTY, " wal ");
+        assertEquals(
+                "Expected profile name is case insensitive, found: " + SqliteProfile.fromProperties(properties),
+                SqliteProfile.WAL, SqliteProfile.fromProperties(properties));
+
+        properties.setProperty(SqliteProfile.PROPERTY, "fastest");
+        assertEquals(
+                "Expected default profile for an unknown name, found: " + SqliteProfile.fromProperties(properties),
+                SqliteProfile.DEFAULT, SqliteProfile.fromProperties(properties));
+    }
+
+    @Test
+    public void canApplyWalProfile() throws Exception {
+        driver = new LocalSqliteDriverImpl(DB_FILE, SqliteProfile.WAL);
+        String journalMode = queryPragma("journal_mode");
+        assertEquals(
+                "Expected WAL journal mode, found: " + journalMode,
+                "wal", journalMode.toLowerCase());
+        String synchronous = queryPragma("synchronous");
+        assertEquals(
+                "Expected synchronous is off, found: " + synchronous,
+                "0", synchronous);
+
+        driver.createExtentTag("N01", driver.createTagType("NOUN", "N", false), "jenny", 5, 6, 7, 8, 9);
+        driver.destroy();
+        driver = null;
+        for (String name : new String[]{DB_FILE, DB_FILE + "-wal", DB_FILE + "-shm"}) {
+            assertFalse(
+                    "Expected DB files are deleted on destroy, found: " + name,
+                    new File(name).exists());
+        }
+    }
+
+    @Test
+    public void memoryProfileDoesNotWriteFile() throws Exception {
+        driver = new LocalSqliteDriverImpl(DB_FILE, SqliteProfile.MEMORY);
+        driver.createExtentTag("N01", driver.createTagType("NOUN", "N", false), "jenny", 5, 6, 7, 8, 9);
+        assertTrue(
+                "Expected driver reports in-memory DB",
+                driver.isInMemory());
+        assertFalse(
+                "Expected no DB file is made with in-memory profile",
+                new File(DB_FILE).exists());
+        assertEquals(
+                "Expected file name is still used as DB source name, found: " + driver.getDBSourceName(),
+                DB_FILE, driver.getDBSourceName());
+    }
+
+    @Test
+    public void canBackupToSnapshotFile() throws Exception {
+        driver = new LocalSqliteDriverImpl(DB_FILE, SqliteProfile.MEMORY);
+        TagType noun = driver.createTagType("NOUN", "N", false);
+        driver.createExtentTag("N01", noun, "jenny", 5, 6, 7, 8, 9);
+        driver.createExtentTag("N02", noun, "tom", 11, 12, 13);
+
+        File snapshot = new File(SNAPSHOT_FILE);
+        driver.backupTo(snapshot);
+        assertTrue(
+                "Expected snapshot file is written",
+                snapshot.exists());
+
+        try (Connection connection = DriverManager.getConnection(LocalSqliteDriverImpl.JDBC_DRIVER + SNAPSHOT_FILE);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + DBSchema.TAB_ETAG)) {
+            assertTrue(result.next());
+            assertEquals(
+                    "Expected 2 extent tags in the snapshot, found: " + result.getInt(1),
+                    2, result.getInt(1));
+        }
+    }
+
+    @Test(expected = MaeDBException.class)
+    public void cannotBackupToQuotedPath() throws Exception {
+        driver = new LocalSqliteDriverImpl(DB_FILE, SqliteProfile.MEMORY);
+        driver.backupTo(new File("snap\"shot.db"));
+    }
+}
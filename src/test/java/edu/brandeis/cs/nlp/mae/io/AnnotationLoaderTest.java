@@ -38,7 +38,10 @@ import org.xml.sax.SAXException;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -104,6 +107,28 @@ public class AnnotationLoaderTest extends AbstractDatabaseDrivenTest{
 
     }
 
+    @Test
+    public void canSniffHeaderWithoutReadingTags() throws Exception {
+        // tags section is broken on purpose, header-only reads should never reach it
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("line ").append(i).append(" & more\n");
+        }
+        File file = File.createTempFile("mae-header", ".xml");
+        file.deleteOnExit();
+        FileWriter.writeTextToEmptyXML(text.toString(), "NounVerbTask", file);
+        Files.write(file.toPath(), "<TAGS><BROKEN".getBytes("UTF-8"), StandardOpenOption.APPEND);
+
+        assertTrue(AnnotationLoader.isTaskNameMatching(file, "NounVerbTask"));
+        assertTrue(AnnotationLoader.isPrimaryTextMatching(file, text.toString()));
+        assertFalse(AnnotationLoader.isPrimaryTextMatching(file, text.toString() + " "));
+
+        MaeXMLParser parser = new MaeXMLParser();
+        parser.readAnnotationPreamble(file);
+        assertEquals(String.format("Expected primary text of length %d, found: ", text.length()),
+                text.toString(), parser.getParsedPrimaryText());
+    }
+
     @Test
     public void canReadSimpleXML() throws IOException, SAXException, MaeIOException, MaeDBException {
         readSimpleDTD();
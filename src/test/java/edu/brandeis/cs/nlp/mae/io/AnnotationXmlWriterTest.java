@@ -0,0 +1,98 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.io;
+
+import edu.brandeis.cs.nlp.mae.AbstractDatabaseDrivenTest;
+import edu.brandeis.cs.nlp.mae.model.ExtentTag;
+import edu.brandeis.cs.nlp.mae.model.LinkTag;
+import edu.brandeis.cs.nlp.mae.model.TagType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationXmlWriterTest extends AbstractDatabaseDrivenTest {
+
+    @Before
+    public void setUp() throws Exception {
+        setupDriver();
+        driver.setAnnotationFileName("TEST_SAMPLE");
+        URL dtdUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.dtd");
+        new DTDLoader(driver).read(new File(dtdUrl.getPath()));
+        URL xmlUrl = Thread.currentThread().getContextClassLoader().getResource("xml_samples/sampleTask.xml");
+        new AnnotationLoader(driver).readAsXml(new File(xmlUrl.getPath()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        driver.destroy();
+
+    }
+
+    private String generateXMLStringFromTags() throws Exception {
+        StringBuilder tags = new StringBuilder();
+        for (TagType eType : driver.getExtentTagTypes()) {
+            for (ExtentTag tag : driver.getAllExtentTagsOfType(eType)) {
+                tags.append(tag.toXmlString()).append("\n");
+            }
+        }
+        for (TagType lType : driver.getLinkTagTypes()) {
+            for (LinkTag tag : driver.getAllLinkTagsOfType(lType)) {
+                tags.append(tag.toXmlString()).append("\n");
+            }
+        }
+        return String.format("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<%s>\n<TEXT><![CDATA[%s]]></TEXT>\n<TAGS>\n%s</TAGS>\n</%s>",
+                driver.getTaskName(), driver.getPrimaryText(), tags, driver.getTaskName());
+    }
+
+    @Test
+    public void canWriteSameAsTagXmlStrings() throws Exception {
+        StringWriter written = new StringWriter();
+        new AnnotationXmlWriter(driver).write(written);
+        assertEquals(
+                "Expected streamed XML to be identical to one from toXmlString(), found: " + written,
+                generateXMLStringFromTags(), written.toString());
+    }
+
+    @Test
+    public void canEscapeLikeTags() throws Exception {
+        TagType noun = driver.getTagTypeByName("NOUN");
+        ExtentTag tag = driver.createExtentTag("N9", noun, "a & b &amp; <c>\n\"d\" 'e'", new int[]{1, 2});
+        StringWriter written = new StringWriter();
+        new AnnotationXmlWriter(driver).writeExtentTag(written, tag);
+        assertEquals(
+                "Expected escaping to be identical to toXmlString(), found: " + written,
+                tag.toXmlString() + "\n", written.toString());
+        assertTrue(
+                "Expected special chars escaped, found: " + written,
+                written.toString().contains("text=\"a &amp; b &amp; &lt;c&gt; &quot;d&quot; &apos;e&apos;\""));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures per-file overhead of reading IAA sample annotations,
+ * creating a new SAX parser per file (as MAE used to) vs. reusing a pooled one.
+ * Both sides read the same preamble with the same handler, which stops after TEXT.
+ * Not a unit test (surefire skips it); run {@link #main(String[])} from the
+ * test classpath after {@code mvn test-compile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaeXMLParserBenchmark {
+
+    private File[] files;
+
+    @Setup
+    public void setUp() throws Exception {
+        URL iaaUrl = Thread.currentThread().getContextClassLoader().getResource("iaa_example");
+        files = new File(iaaUrl.getPath()).listFiles((dir, name) -> name.endsWith(".xml"));
+    }
+
+    @Benchmark
+    public void newParserPerFile(Blackhole bh) throws Exception {
+        for (File file : files) {
+            MaeXMLParser parser = new MaeXMLParser();
+            parser.readAnnotationPreamble(file, SAXParserFactory.newInstance().newSAXParser());
+            bh.consume(parser.getParsed().getTaskName());
+        }
+    }
+
+    @Benchmark
+    public void pooledParser(Blackhole bh) throws Exception {
+        for (File file : files) {
+            MaeXMLParser parser = new MaeXMLParser();
+            parser.readAnnotationPreamble(file);
+            bh.consume(parser.getParsed().getTaskName());
+        }
+    }
+
+    @Benchmark
+    public void parserCreationOnly(Blackhole bh) throws Exception {
+        bh.consume(SAXParserFactory.newInstance().newSAXParser());
+    }
+
+    @Benchmark
+    public void pooledParserResetOnly(Blackhole bh) throws Exception {
+        SAXParser parser = MaeXMLParser.getPooledParser();
+        parser.reset();
+        bh.consume(parser);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(MaeXMLParserBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
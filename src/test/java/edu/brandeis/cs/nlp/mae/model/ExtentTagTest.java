@@ -49,7 +49,7 @@ public class ExtentTagTest {
     protected ConnectionSource cs;
 
     Dao<CharIndex, Integer> charIndexDao;
-    Dao<ExtentTag, String> eTagDao;
+    Dao<ExtentTag, Integer> eTagDao;
     Dao<TagType, Integer> tagTypeDao;
     Dao<AttributeType, Integer> attTypeDao;
     Dao<Attribute, Integer> attDao;
@@ -121,9 +121,11 @@ public class ExtentTagTest {
 
     protected ExtentTag createTag(String tid, TagType tagType, String text, int[] spans) throws Exception {
         ExtentTag tag = new ExtentTag(tid, tagType, "filename");
-        for (CharIndex ci: tag.setSpans(spans)) { charIndexDao.create(ci); }
+        List<CharIndex> anchors = tag.setSpans(spans);
         tag.setText(text);
+        // char indices refer to the generated id of the tag
         eTagDao.create(tag);
+        for (CharIndex ci: anchors) { charIndexDao.create(ci); }
         return tag;
     }
 
@@ -131,8 +133,9 @@ public class ExtentTagTest {
     public void canSaveTag() throws Exception {
         ExtentTag tag = new ExtentTag("N01", noun, "filename");
         tag.setText("John");
-        for (CharIndex ci: tag.setSpans(1, 2, 3, 4)) { charIndexDao.create(ci); }
+        List<CharIndex> anchors = tag.setSpans(1, 2, 3, 4);
         eTagDao.create(tag);
+        for (CharIndex ci: anchors) { charIndexDao.create(ci); }
         assertEquals(
                 "Expected 1 tag in DB, found " + eTagDao.countOf(),
                 1, eTagDao.countOf()
@@ -153,9 +156,10 @@ public class ExtentTagTest {
         ArrayList<int[]> spans = new ArrayList<>();
         spans.add(span);
         ExtentTag nTag = new ExtentTag("N01", noun, "filename");
-        for (CharIndex ci: nTag.setSpans(spans)) { charIndexDao.create(ci); }
+        List<CharIndex> anchors = nTag.setSpans(spans);
         nTag.setText("Crown");
         eTagDao.create(nTag);
+        for (CharIndex ci: anchors) { charIndexDao.create(ci); }
 
         List<ExtentTag> retrievedTags
                 = eTagDao.queryForEq(DBSchema.TAB_TAG_COL_TID, "N01");
@@ -206,7 +210,7 @@ public class ExtentTagTest {
         attDao.create(att);
 
         List<Attribute> retrievedAtts
-                = attDao.queryForEq(DBSchema.TAB_ATT_FCOL_ETAG, "N01");
+                = attDao.queryForEq(DBSchema.TAB_ATT_FCOL_ETAG, nTag);
         assertEquals(
                 "Expected 1 att is assgined, found: " + retrievedAtts.size(),
                 1, retrievedAtts.size());
@@ -223,7 +227,7 @@ public class ExtentTagTest {
         eTagDao.update(nTag);
 
         List<Attribute> retrievedAttsAfterUpdate
-                = attDao.queryForEq(DBSchema.TAB_ATT_FCOL_ETAG, "N01");
+                = attDao.queryForEq(DBSchema.TAB_ATT_FCOL_ETAG, nTag);
         Attribute retrievedAttAfterUpdate = retrievedAttsAfterUpdate.get(0);
         assertEquals(
                 "Expected N01 to updated to non proper noun, found: " + retrievedAttAfterUpdate.getValue(),
@@ -258,7 +262,7 @@ public class ExtentTagTest {
 
         QueryBuilder<CharIndex, Integer> ciQb = charIndexDao.queryBuilder();
         ciQb.where().eq(DBSchema.TAB_CI_COL_LOCATION, 3);
-        QueryBuilder<ExtentTag, String> tagQb = eTagDao.queryBuilder();
+        QueryBuilder<ExtentTag, Integer> tagQb = eTagDao.queryBuilder();
         List<ExtentTag> retrievedTags = tagQb.join(ciQb).query();
 
         assertEquals(
@@ -306,7 +310,7 @@ public class ExtentTagTest {
         );
 
         List<Attribute> retrievedAtts
-                = attDao.queryForEq(DBSchema.TAB_ATT_FCOL_ETAG, "N01");
+                = attDao.queryForEq(DBSchema.TAB_ATT_FCOL_ETAG, nTag);
         assertEquals(
                 "Expected att is gone; not retrievable by N01, found: " + retrievedAtts.size() + " attribute",
                 0, retrievedAtts.size());
@@ -91,9 +91,9 @@ public class LinkTagTest extends ExtentTagTest {
         LinkTag link = new LinkTag("A01", semanticRole, "filename");
         Argument agentArg = new Argument(link, agent, nTag);
         Argument predArg = new Argument(link, pred, vTag);
+        lTagDao.create(link);
         argDao.create(agentArg);
         argDao.create(predArg);
-        lTagDao.create(link);
 
         assertEquals(
                 "Expected 1 link tag in DB, found " + lTagDao.countOf(),
@@ -0,0 +1,129 @@
+/*
+ * MAE - Multi-purpose Annotation Environment
+ *
+ * Copyright Keigh Rim (krim@brandeis.edu)
+ * Department of Computer Science, Brandeis University
+ * Original program by Amber Stubbs (astubbs@cs.brandeis.edu)
+ *
+ * MAE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, @see <a href="http://www.gnu.org/licenses">http://www.gnu.org/licenses</a>.
+ *
+ * For feedback, reporting bugs, use the project on Github
+ * @see <a href="https://github.com/keighrim/mae-annotation">https://github.com/keighrim/mae-annotation</a>.
+ */
+
+package edu.brandeis.cs.nlp.mae.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntervalTreeTest {
+
+    private IntervalTree<String> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new IntervalTree<>();
+        tree.add(0, 5, "a");
+        tree.add(3, 8, "b");
+        tree.add(10, 12, "c");
+        tree.add(3, 8, "d");
+    }
+
+    @Test
+    public void canStab() throws Exception {
+        List<String> found = tree.stab(4);
+        assertTrue(
+                "Expected a, b, d at 4, found: " + found,
+                found.size() == 3 && found.containsAll(Arrays.asList("a", "b", "d")));
+
+        found = tree.stab(8);
+        assertTrue(
+                "Expected nothing at 8 (exclusive end), found: " + found,
+                found.isEmpty());
+
+        found = tree.stab(10);
+        assertEquals(
+                "Expected c at 10, found: " + found,
+                Arrays.asList("c"), found);
+    }
+
+    @Test
+    public void canQueryOverlapping() throws Exception {
+        List<String> found = tree.overlapping(5, 11);
+        assertTrue(
+                "Expected b, c, d in [5, 11), found: " + found,
+                found.size() == 3 && found.containsAll(Arrays.asList("b", "c", "d")));
+
+        found = tree.overlapping(8, 10);
+        assertTrue(
+                "Expected nothing in [8, 10), found: " + found,
+                found.isEmpty());
+    }
+
+    @Test
+    public void canRemove() throws Exception {
+        assertTrue("Expected b is removed", tree.remove(3, 8, "b"));
+        assertFalse("Expected b is not removed twice", tree.remove(3, 8, "b"));
+        assertEquals(
+                "Expected only d at 6 after removal, found: " + tree.stab(6),
+                Arrays.asList("d"), tree.stab(6));
+
+        tree.remove(3, 8, "d");
+        tree.remove(0, 5, "a");
+        assertEquals(
+                "Expected 1 entry left, found: " + tree.size(),
+                1, tree.size());
+        assertTrue(
+                "Expected nothing at 4 after removal, found: " + tree.stab(4),
+                tree.stab(4).isEmpty());
+    }
+
+    @Test
+    public void canAgreeWithLinearScan() throws Exception {
+        Random random = new Random(42);
+        IntervalTree<Integer> big = new IntervalTree<>();
+        List<int[]> intervals = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(5000);
+            int[] interval = new int[]{start, start + 1 + random.nextInt(50)};
+            intervals.add(interval);
+            big.add(interval[0], interval[1], i);
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            big.remove(intervals.get(i)[0], intervals.get(i)[1], i);
+        }
+        for (int q = 0; q < 200; q++) {
+            int begin = random.nextInt(5000);
+            int end = begin + 1 + random.nextInt(100);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < intervals.size(); i++) {
+                if (i % 3 != 0 && intervals.get(i)[0] < end && begin < intervals.get(i)[1]) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = big.overlapping(begin, end);
+            found.sort(null);
+            assertEquals(
+                    String.format("Expected same results as linear scan in [%d, %d), found: %s", begin, end, found),
+                    expected, found);
+        }
+    }
+}
@@ -156,6 +156,26 @@ public class SpanHandlerTest {
                 SpanHandler.listOfArraysEquals(pairs, gold)
         );
 
+        array = new int[]{1,2,5};
+        pairs = SpanHandler.convertArrayToPairs(array);
+        gold.clear();
+        gold.add(new int[]{1,3});
+        gold.add(new int[]{5,6});
+        assertTrue(
+                "Should convert a multispan ending with a singleton, found: " + SpanHandler.listOfArraysToString(pairs),
+                SpanHandler.listOfArraysEquals(pairs, gold)
+        );
+
+        array = new int[]{8,3,4,3};
+        pairs = SpanHandler.convertArrayToPairs(array);
+        gold.clear();
+        gold.add(new int[]{3,5});
+        gold.add(new int[]{8,9});
+        assertTrue(
+                "Should convert a not-sorted array with duplicates, found: " + SpanHandler.listOfArraysToString(pairs),
+                SpanHandler.listOfArraysEquals(pairs, gold)
+        );
+
     }
 
 